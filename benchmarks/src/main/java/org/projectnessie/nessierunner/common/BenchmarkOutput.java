@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Random;
+
+/** Generates console output that looks like the output of a Quarkus application. */
+final class BenchmarkOutput {
+
+  private static final String[] LOGGERS = {
+    "io.quarkus", "org.projectnessie.versioned", "io.vertx.core", "org.hibernate.validator"
+  };
+
+  private BenchmarkOutput() {}
+
+  /**
+   * Generates approximately {@code totalBytes} of {@code LF} terminated log lines with an average
+   * length of {@code avgLineLength} characters.
+   */
+  static byte[] quarkusLikeOutput(int totalBytes, int avgLineLength) {
+    Random random = new Random(42L);
+    StringBuilder sb = new StringBuilder(totalBytes + avgLineLength * 2);
+    while (sb.length() < totalBytes) {
+      int lineStart = sb.length();
+      sb.append("2023-05-28 12:12:25,")
+          .append(100 + random.nextInt(900))
+          .append(" DEBUG [")
+          .append(LOGGERS[random.nextInt(LOGGERS.length)])
+          .append("] (main) ");
+      int lineLength = avgLineLength / 2 + random.nextInt(avgLineLength);
+      while (sb.length() - lineStart < lineLength) {
+        sb.append((char) ('a' + random.nextInt(26)));
+        if (random.nextInt(8) == 0) {
+          sb.append(' ');
+        }
+      }
+      sb.append('\n');
+    }
+    return sb.toString().getBytes(UTF_8);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * The former line splitting implementation of {@link InputBuffer}, which reads and appends one
+ * character at a time, only kept as the baseline for {@link InputBufferBench}.
+ */
+final class CharByCharInputBuffer {
+
+  private final Reader input;
+  private final Consumer<String> output;
+  private final StringBuilder lineBuffer = new StringBuilder();
+
+  CharByCharInputBuffer(Reader input, Consumer<String> output) {
+    this.input = input;
+    this.output = output;
+  }
+
+  boolean io() throws IOException {
+    if (!input.ready()) {
+      return false;
+    }
+
+    boolean any = false;
+    while (input.ready()) {
+      int c = input.read();
+
+      if (c == -1) {
+        return any;
+      }
+
+      any = true;
+      if (c == 13) { // CR
+        // ignore
+      } else if (c == 10) { // LF
+        output.accept(lineBuffer.toString());
+        lineBuffer.setLength(0);
+      } else {
+        lineBuffer.append((char) c);
+      }
+    }
+    return true;
+  }
+
+  void flush() {
+    if (lineBuffer.length() > 0) {
+      output.accept(lineBuffer.toString());
+      lineBuffer.setLength(0);
+    }
+  }
+}
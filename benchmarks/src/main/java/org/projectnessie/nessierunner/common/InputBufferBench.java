@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the line splitting throughput of {@link InputBuffer} against the former
+ * character-by-character implementation in {@link CharByCharInputBuffer}, using multi-megabyte,
+ * Quarkus-like console output. {@code bulkNoDecode} measures line splitting on bytes alone, without
+ * decoding lines to strings.
+ *
+ * <p>Run with {@code java -jar benchmarks/target/nessie-runner-benchmarks.jar InputBufferBench}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputBufferBench {
+
+  @Param({"1", "8"})
+  public int megabytes;
+
+  @Param({"160"})
+  public int lineLength;
+
+  private byte[] output;
+
+  @Setup
+  public void setup() {
+    output = BenchmarkOutput.quarkusLikeOutput(megabytes * 1024 * 1024, lineLength);
+  }
+
+  private Reader reader() {
+    return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(output), UTF_8));
+  }
+
+  @Benchmark
+  public void bulk(Blackhole bh) {
+    new InputBuffer(new ByteArrayInputStream(output), UTF_8, l -> bh.consume(l.asString())).drain();
+  }
+
+  @Benchmark
+  public void bulkNoDecode(Blackhole bh) {
+    new InputBuffer(new ByteArrayInputStream(output), UTF_8, l -> bh.consume(l.length())).drain();
+  }
+
+  @Benchmark
+  public void charByChar(Blackhole bh) throws IOException {
+    CharByCharInputBuffer buffer = new CharByCharInputBuffer(reader(), bh::consume);
+    while (buffer.io()) {
+      // drain
+    }
+    buffer.flush();
+  }
+}
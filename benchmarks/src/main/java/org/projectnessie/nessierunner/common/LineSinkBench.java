@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the per-line allocations of a {@link LineSink} that processes lines in place against a
+ * {@code Consumer<String>} stdout target, for output received after the listen URL.
+ *
+ * <p>Run with {@code java -jar benchmarks/target/nessie-runner-benchmarks.jar LineSinkBench -prof
+ * gc} and compare the {@code gc.alloc.rate.norm} values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineSinkBench {
+
+  private static final String PREFIX = "2023-05-28 12:12:25,5";
+
+  @Param({"1"})
+  public int megabytes;
+
+  @Param({"160"})
+  public int lineLength;
+
+  private byte[] output;
+
+  @Setup
+  public void setup() {
+    output = BenchmarkOutput.quarkusLikeOutput(megabytes * 1024 * 1024, lineLength);
+  }
+
+  private void run(ListenUrlWaiter waiter) {
+    waiter.accept("Listening on: http://127.0.0.1:19120");
+    new InputBuffer(new ByteArrayInputStream(output), UTF_8, waiter::acceptLine).drain();
+  }
+
+  @Benchmark
+  public int stringConsumer() {
+    int[] count = new int[1];
+    run(
+        new ListenUrlWaiter(
+            System::nanoTime,
+            60_000L,
+            (String line) -> {
+              if (line.startsWith(PREFIX)) {
+                count[0]++;
+              }
+            }));
+    return count[0];
+  }
+
+  @Benchmark
+  public int lineSink() {
+    int[] count = new int[1];
+    run(
+        new ListenUrlWaiter(
+            System::nanoTime,
+            60_000L,
+            (CharSequence line) -> {
+              if (startsWith(line, PREFIX)) {
+                count[0]++;
+              }
+            }));
+    return count[0];
+  }
+
+  private static boolean startsWith(CharSequence line, String prefix) {
+    if (line.length() < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (line.charAt(i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-line cost of the output inspected before the listen URL has been received:
+ * readiness detection and failure pattern matching ({@code detect}), and additionally line
+ * splitting, decoding and capturing the line ({@code pipeline}).
+ *
+ * <p>The {@code legacy} detectors evaluate a {@code ^.*Listening on: ...} regular expression
+ * against every line, as before the literal pre-filter existed. Allocations per line can be
+ * measured with {@code -prof gc}, {@code gc.alloc.rate.norm} is per line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadinessDetectionBench {
+
+  static final int LINES = 10_000;
+
+  private static final String LEGACY_REGEX =
+      "^.*Listening on: (?<httpUrl>https?://[^ ]*)"
+          + "([.] Management interface listening on (?<managementUrl>https?://[^ ]*)[.])?$";
+
+  @Param({"default", "legacy"})
+  public String detectors;
+
+  @Param({"true", "false"})
+  public boolean failurePatterns;
+
+  @Param({"160"})
+  public int lineLength;
+
+  private byte[] output;
+  private String[] lines;
+  private List<ReadinessDetector> readinessDetectors;
+  private List<Pattern> patterns;
+
+  @Setup
+  public void setup() {
+    output = BenchmarkOutput.quarkusLikeOutput(LINES * lineLength, lineLength);
+    lines = new String(output, UTF_8).split("\n");
+    // quarkusLikeOutput produces approximately LINES lines, use exactly LINES
+    int len = 0;
+    for (int i = 0; i < LINES; i++) {
+      len += lines[i % lines.length].getBytes(UTF_8).length + 1;
+    }
+    StringBuilder sb = new StringBuilder(len);
+    String[] exact = new String[LINES];
+    for (int i = 0; i < LINES; i++) {
+      exact[i] = lines[i % lines.length];
+      sb.append(exact[i]).append('\n');
+    }
+    lines = exact;
+    output = sb.toString().getBytes(UTF_8);
+
+    readinessDetectors =
+        "legacy".equals(detectors)
+            ? Collections.singletonList(new RegexReadinessDetector(null, LEGACY_REGEX, null))
+            : ReadinessDetectors.defaults();
+    patterns =
+        failurePatterns
+            ? ProcessHandler.DEFAULT_FAILURE_PATTERNS.stream()
+                .map(Pattern::compile)
+                .collect(Collectors.toList())
+            : Collections.emptyList();
+  }
+
+  private ListenUrlWaiter newWaiter(LineSink sink) {
+    return new ListenUrlWaiter(
+        System::nanoTime,
+        60_000L,
+        sink,
+        new CapturedLog(CapturedLog.DEFAULT_MAX_LINES, CapturedLog.DEFAULT_MAX_BYTES),
+        readinessDetectors,
+        patterns,
+        () -> {});
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public int detect() {
+    int[] count = new int[1];
+    ListenUrlWaiter waiter = newWaiter(line -> count[0]++);
+    for (String line : lines) {
+      waiter.accept(line);
+    }
+    return count[0];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public int pipeline() {
+    int[] count = new int[1];
+    ListenUrlWaiter waiter = newWaiter(line -> count[0]++);
+    new InputBuffer(new ByteArrayInputStream(output), UTF_8, waiter::acceptLine).drain();
+    return count[0];
+  }
+}
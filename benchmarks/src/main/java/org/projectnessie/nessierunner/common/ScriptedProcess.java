@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stand-in for a Quarkus application: emits Quarkus-like output with a configurable volume and
+ * rate, then the {@code Listening on: ...} message, and waits until its stdin is closed or it is
+ * terminated.
+ *
+ * <p>Arguments: {@code <lines> <line length> <lines per second, 0 = unlimited>}.
+ */
+public final class ScriptedProcess {
+
+  static final String LISTEN_LINE =
+      "2023-05-28 12:12:25,753 INFO  [io.quarkus] (main) nessie-quarkus 0.99.0 on JVM "
+          + "(powered by Quarkus 3.2.0.Final) started in 1.444s. Listening on: http://0.0.0.0:19120";
+
+  private ScriptedProcess() {}
+
+  /** Builds the command to launch this class with the current Java-VM and class path. */
+  static List<String> command(int lines, int lineLength, int linesPerSecond) {
+    return new ArrayList<>(
+        Arrays.asList(
+            JavaVM.getCurrentJavaVM().getJavaExecutable().toString(),
+            "-XX:TieredStopAtLevel=1",
+            "-cp",
+            System.getProperty("java.class.path"),
+            ScriptedProcess.class.getName(),
+            Integer.toString(lines),
+            Integer.toString(lineLength),
+            Integer.toString(linesPerSecond)));
+  }
+
+  public static void main(String[] args) throws IOException {
+    int lines = Integer.parseInt(args[0]);
+    int lineLength = Integer.parseInt(args[1]);
+    int linesPerSecond = Integer.parseInt(args[2]);
+
+    byte[] output = BenchmarkOutput.quarkusLikeOutput(lineLength * 1000, lineLength);
+    int[] lineEnds = lineEnds(output);
+
+    OutputStream out = new BufferedOutputStream(System.out, 65536);
+    long start = System.nanoTime();
+    for (int i = 0; i < lines; i++) {
+      int idx = i % lineEnds.length;
+      int from = idx == 0 ? 0 : lineEnds[idx - 1] + 1;
+      out.write(output, from, lineEnds[idx] - from + 1);
+      if (linesPerSecond > 0) {
+        long due = start + TimeUnit.SECONDS.toNanos(i + 1) / linesPerSecond;
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+          out.flush();
+          LockSupport.parkNanos(wait);
+        }
+      }
+    }
+    out.write(LISTEN_LINE.getBytes(UTF_8));
+    out.write('\n');
+    out.flush();
+
+    // Wait until terminated
+    InputStream in = System.in;
+    while (in.read() >= 0) {
+      // ignore
+    }
+  }
+
+  private static int[] lineEnds(byte[] output) {
+    int count = 0;
+    for (byte b : output) {
+      if (b == '\n') {
+        count++;
+      }
+    }
+    int[] ends = new int[count];
+    for (int i = 0, n = 0; i < output.length; i++) {
+      if (output[i] == '\n') {
+        ends[n++] = i;
+      }
+    }
+    return ends;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end time from starting a process until the listen URL has been received, using {@link
+ * ScriptedProcess} as a stand-in for a Quarkus application that emits {@code lines} lines of
+ * output, at {@code linesPerSecond} (0 = unlimited), before the listen URL.
+ *
+ * <p>Includes the start of the stand-in JVM, compare the results for different volumes to isolate
+ * the cost of the output pipeline. Stopping the process is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBench {
+
+  @Param({"0", "100000"})
+  public int lines;
+
+  @Param({"160"})
+  public int lineLength;
+
+  @Param({"0"})
+  public int linesPerSecond;
+
+  @Param({"false", "true"})
+  public boolean asyncOutput;
+
+  private ProcessHandler processHandler;
+
+  @Benchmark
+  public List<String> startToListenUrl() throws Exception {
+    long[] count = new long[1];
+    processHandler =
+        new ProcessHandler()
+            .setOutputCharset(UTF_8)
+            .setStdoutSink(line -> count[0] += line.length());
+    if (asyncOutput) {
+      processHandler.setAsyncOutput(10_000, OutputOverflowPolicy.BLOCK);
+    }
+    processHandler.start(
+        new ProcessBuilder(ScriptedProcess.command(lines, lineLength, linesPerSecond)));
+    return processHandler.getListenUrls();
+  }
+
+  @TearDown(Level.Invocation)
+  public void stop() {
+    if (processHandler != null) {
+      processHandler.stop();
+      processHandler = null;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Forwards lines to a (potentially slow) {@link LineSink} from a separate thread via a bounded
+ * queue, so that the thread reading the process' output is not blocked by the build tool's logger.
+ * The forwarding thread takes lines from the queue in batches to reduce contention on the queue and
+ * passes each batch to {@link LineSink#acceptBatch(List)} to reduce the number of calls to the
+ * target.
+ *
+ * <p>There must only be a single thread calling {@link #accept(CharSequence)} and {@link
+ * #close(long)}.
+ */
+final class AsyncLineForwarder implements LineSink {
+
+  static final int MAX_BATCH = 256;
+
+  private static final Object END = new Object();
+  private static final long OFFER_WAIT_MILLIS = 100L;
+
+  private final BlockingQueue<Object> queue;
+  private final OutputOverflowPolicy policy;
+  private final LineSink target;
+  private final AtomicLong dropped = new AtomicLong();
+  private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+  AsyncLineForwarder(
+      int queueSize, OutputOverflowPolicy policy, LineSink target, ThreadFactory threadFactory) {
+    if (queueSize < 1) {
+      throw new IllegalArgumentException("queueSize must be positive");
+    }
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.policy = policy;
+    this.target = target;
+    threadFactory.newThread(this::forward).start();
+  }
+
+  @Override
+  public void accept(CharSequence line) {
+    String s = line.toString();
+    if (policy == OutputOverflowPolicy.BLOCK) {
+      try {
+        while (!queue.offer(s, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+          if (finished.isDone()) {
+            // forwarding thread failed, don't wait forever
+            dropped.incrementAndGet();
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        dropped.incrementAndGet();
+        Thread.currentThread().interrupt();
+      }
+    } else if (!queue.offer(s)) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  /** Number of lines dropped so far. */
+  long dropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Signals the end of the output and waits until all queued lines have been forwarded.
+   *
+   * @param timeoutMillis maximum time to wait for the forwarding thread
+   */
+  void close(long timeoutMillis) throws InterruptedException, TimeoutException {
+    if (!finished.isDone() && !queue.offer(END, timeoutMillis, TimeUnit.MILLISECONDS)) {
+      throw new TimeoutException("Output forwarding did not finish in time");
+    }
+    try {
+      finished.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Output forwarding failed", e.getCause());
+    }
+  }
+
+  private void forward() {
+    try {
+      List<Object> batch = new ArrayList<>(MAX_BATCH);
+      List<String> lines = new ArrayList<>(MAX_BATCH);
+      long summarized = 0L;
+      while (true) {
+        batch.add(queue.take());
+        queue.drainTo(batch, MAX_BATCH - 1);
+        boolean end = false;
+        for (Object line : batch) {
+          if (line == END) {
+            end = true;
+            break;
+          }
+          lines.add((String) line);
+        }
+        if (!lines.isEmpty()) {
+          target.acceptBatch(lines);
+        }
+        if (end) {
+          summarize(summarized);
+          finished.complete(null);
+          return;
+        }
+        batch.clear();
+        lines.clear();
+        summarized = summarize(summarized);
+      }
+    } catch (Throwable t) {
+      finished.completeExceptionally(t);
+    }
+  }
+
+  private long summarize(long summarized) {
+    if (policy != OutputOverflowPolicy.SUMMARIZE) {
+      return summarized;
+    }
+    long total = dropped.get();
+    if (total > summarized) {
+      target.accept(
+          "[... "
+              + (total - summarized)
+              + " output lines dropped, the output target could not keep up ...]");
+    }
+    return total;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer of the most recent output lines, bounded by both the number of lines and the
+ * number of bytes of the retained lines. The oldest lines are dropped when either limit is
+ * exceeded, the most recent line is always retained.
+ *
+ * <p>There must only be a single writer thread calling {@link #add(String, int)} and {@link
+ * #clear()}, which do not lock. {@link #snapshot()} and {@link #format()} can be called from any
+ * thread.
+ */
+final class CapturedLog {
+
+  static final int DEFAULT_MAX_LINES = 500;
+  static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+  private final int maxBytes;
+  private final AtomicReferenceArray<String> lines;
+  private final int[] lineBytes;
+
+  /** Sequence number of the next line to add. */
+  private final AtomicLong head = new AtomicLong();
+
+  /** Sequence number of the oldest retained line, equals the number of dropped lines. */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** Bytes of the retained lines, only accessed by the writer. */
+  private long bytes;
+
+  CapturedLog(int maxLines, int maxBytes) {
+    if (maxLines < 1 || maxBytes < 1) {
+      throw new IllegalArgumentException("maxLines and maxBytes must be positive");
+    }
+    this.maxBytes = maxBytes;
+    this.lines = new AtomicReferenceArray<>(maxLines);
+    this.lineBytes = new int[maxLines];
+  }
+
+  void add(String line, int byteLength) {
+    int capacity = lines.length();
+    long h = head.get();
+    long t = tail.get();
+    // Drop the oldest lines before overwriting their slots, readers re-check the tail.
+    while (t < h && (h - t >= capacity || bytes + byteLength > maxBytes)) {
+      bytes -= lineBytes[(int) (t % capacity)];
+      tail.set(++t);
+    }
+    int slot = (int) (h % capacity);
+    lineBytes[slot] = byteLength;
+    lines.set(slot, line);
+    bytes += byteLength;
+    head.set(h + 1);
+  }
+
+  /** Drops all retained lines. */
+  void clear() {
+    tail.set(head.get());
+    for (int i = 0; i < lines.length(); i++) {
+      lines.set(i, null);
+    }
+    bytes = 0;
+  }
+
+  /** Number of lines that have been dropped so far. */
+  long dropped() {
+    return tail.get();
+  }
+
+  /** Returns the currently retained lines, oldest first. */
+  List<String> snapshot() {
+    List<String> result = new ArrayList<>();
+    copy(result);
+    return result;
+  }
+
+  /**
+   * Returns the retained lines joined by {@code \n}, prefixed with a note about the number of
+   * dropped lines, or an empty string if no lines have been captured.
+   */
+  String format() {
+    List<String> snapshot = new ArrayList<>();
+    long dropped = copy(snapshot);
+    if (snapshot.isEmpty()) {
+      return "";
+    }
+    String log = String.join("\n", snapshot);
+    return dropped > 0 ? "[... " + dropped + " earlier lines dropped ...]\n" + log : log;
+  }
+
+  /**
+   * Copies the retained lines to {@code target}.
+   *
+   * @return sequence number of the first copied line, which is the number of dropped lines
+   */
+  private long copy(List<String> target) {
+    int capacity = lines.length();
+    long h = head.get();
+    long t = tail.get();
+    for (long seq = t; seq < h; seq++) {
+      target.add(lines.get((int) (seq % capacity)));
+    }
+    // Lines that have been dropped while copying may have been overwritten by newer lines.
+    long t2 = tail.get();
+    if (t2 > t) {
+      target.subList(0, (int) Math.min(t2 - t, target.size())).clear();
+      return t2;
+    }
+    return t;
+  }
+}
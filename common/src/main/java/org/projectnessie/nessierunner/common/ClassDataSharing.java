@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Class data sharing support for the launched Java process, reduces the startup time, which is
+ * dominated by class loading.
+ *
+ * <p>The first run creates a dynamic CDS archive, or an AOT cache for Java 25 and newer, in the
+ * working directory, when the process exits. Later runs use that archive. The archive is keyed by a
+ * hash of the executable jar and the Java-Home, archives for other keys are deleted, so a changed
+ * jar or Java-VM automatically results in a new archive.
+ *
+ * <p>The startup times with and without the archive are recorded next to the archive, see {@link
+ * #recordStartup(long)}.
+ */
+public final class ClassDataSharing {
+
+  static final String FILE_PREFIX = "nessie-runner-cds-";
+  static final int MIN_DYNAMIC_ARCHIVE_VERSION = 13;
+  static final int MIN_AUTO_CREATE_ARCHIVE_VERSION = 19;
+  static final int MIN_AOT_CACHE_VERSION = 25;
+
+  static final String STARTUP_WITH_ARCHIVE = "startupMillis.withArchive";
+  static final String STARTUP_WITHOUT_ARCHIVE = "startupMillis.withoutArchive";
+
+  private static final List<String> USER_CDS_OPTIONS =
+      Arrays.asList(
+          "-Xshare:",
+          "-XX:SharedArchiveFile",
+          "-XX:ArchiveClassesAtExit",
+          "-XX:+AutoCreateSharedArchive",
+          "-XX:AOTCache",
+          "-XX:AOTMode");
+
+  private final int javaMajorVersion;
+  private final Path archiveFile;
+  private final Path statsFile;
+  private final boolean archiveAvailable;
+
+  private ClassDataSharing(int javaMajorVersion, Path archiveFile, Path statsFile) {
+    this.javaMajorVersion = javaMajorVersion;
+    this.archiveFile = archiveFile;
+    this.statsFile = statsFile;
+    this.archiveAvailable = archiveFile != null && Files.isRegularFile(archiveFile);
+  }
+
+  /**
+   * Sets up class data sharing for the given executable jar and Java-VM, deletes outdated archives
+   * in the working directory.
+   *
+   * @param workDir working directory of the process, contains the archive
+   * @param executableJar the jar to launch
+   * @param javaVM the Java-VM to launch the jar with
+   * @return class data sharing instance, check {@link #isSupported()}
+   */
+  public static ClassDataSharing forApplication(Path workDir, Path executableJar, JavaVM javaVM)
+      throws IOException {
+    int javaMajorVersion = javaVM.getMajorVersion();
+    if (javaMajorVersion < MIN_DYNAMIC_ARCHIVE_VERSION) {
+      return new ClassDataSharing(javaMajorVersion, null, null);
+    }
+
+    String key = archiveKey(executableJar, javaVM.getJavaHome());
+    deleteOutdated(workDir, FILE_PREFIX + key + ".");
+
+    String extension = javaMajorVersion >= MIN_AOT_CACHE_VERSION ? ".aot" : ".jsa";
+    return new ClassDataSharing(
+        javaMajorVersion,
+        workDir.resolve(FILE_PREFIX + key + extension),
+        workDir.resolve(FILE_PREFIX + key + ".properties"));
+  }
+
+  /**
+   * Checks whether the given JVM arguments already configure class data sharing, in which case the
+   * arguments from this class must not be used.
+   */
+  public static boolean isConfiguredByUser(List<String> jvmArguments) {
+    return jvmArguments.stream()
+        .anyMatch(arg -> USER_CDS_OPTIONS.stream().anyMatch(arg::startsWith));
+  }
+
+  /**
+   * Computes the archive key from the content of the executable jar, Quarkus' application model
+   * next to it, if present, and the identity of the Java-Home.
+   */
+  static String archiveKey(Path executableJar, Path javaHome) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    digestFile(digest, executableJar);
+    Path parent = executableJar.toAbsolutePath().getParent();
+    if (parent != null) {
+      // Quarkus fast-jar: quarkus-run.jar does not change, when the application changes
+      Path applicationModel = parent.resolve("quarkus").resolve("quarkus-application.dat");
+      if (Files.isRegularFile(applicationModel)) {
+        digestFile(digest, applicationModel);
+      }
+    }
+
+    digest.update(javaHome.toRealPath().toString().getBytes(StandardCharsets.UTF_8));
+    Path release = javaHome.resolve("release");
+    if (Files.isRegularFile(release)) {
+      digestFile(digest, release);
+    }
+    Path modules = javaHome.resolve("lib").resolve("modules");
+    if (Files.isRegularFile(modules)) {
+      digest.update(
+          (Files.size(modules) + ":" + Files.getLastModifiedTime(modules).toMillis())
+              .getBytes(StandardCharsets.UTF_8));
+    }
+
+    StringBuilder sb = new StringBuilder();
+    byte[] hash = digest.digest();
+    // 16 bytes are plenty to distinguish archives
+    for (int i = 0; i < 16; i++) {
+      sb.append(String.format("%02x", hash[i]));
+    }
+    return sb.toString();
+  }
+
+  private static void digestFile(MessageDigest digest, Path file) throws IOException {
+    byte[] buffer = new byte[65536];
+    try (InputStream in = Files.newInputStream(file)) {
+      int rd;
+      while ((rd = in.read(buffer)) >= 0) {
+        digest.update(buffer, 0, rd);
+      }
+    }
+    digest.update((byte) 0);
+  }
+
+  private static void deleteOutdated(Path workDir, String currentPrefix) throws IOException {
+    if (!Files.isDirectory(workDir)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(workDir, FILE_PREFIX + "*")) {
+      for (Path file : files) {
+        if (!file.getFileName().toString().startsWith(currentPrefix)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  /** Whether the Java-VM supports dynamic class data sharing archives, requires Java 13. */
+  public boolean isSupported() {
+    return archiveFile != null;
+  }
+
+  /** Whether the archive existed, when this instance was created, and will be used. */
+  public boolean isArchiveAvailable() {
+    return archiveAvailable;
+  }
+
+  /** The archive file, {@code null} if not {@link #isSupported() supported}. */
+  public Path getArchiveFile() {
+    return archiveFile;
+  }
+
+  /**
+   * The JVM arguments to create or use the archive, empty if not {@link #isSupported() supported}.
+   */
+  public List<String> jvmArguments() {
+    if (archiveFile == null) {
+      return Collections.emptyList();
+    }
+    String file = archiveFile.toAbsolutePath().toString();
+    if (javaMajorVersion >= MIN_AOT_CACHE_VERSION) {
+      return Collections.singletonList(
+          (archiveAvailable ? "-XX:AOTCache=" : "-XX:AOTCacheOutput=") + file);
+    }
+    if (javaMajorVersion >= MIN_AUTO_CREATE_ARCHIVE_VERSION) {
+      // Also re-creates an archive that cannot be used
+      return Arrays.asList("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + file);
+    }
+    return Collections.singletonList(
+        (archiveAvailable ? "-XX:SharedArchiveFile=" : "-XX:ArchiveClassesAtExit=") + file);
+  }
+
+  /**
+   * Records the startup time, with or without the archive, and returns a human readable report
+   * comparing the startup time with the previously recorded one.
+   *
+   * @param startupMillis time from starting the process until the listen URL has been received
+   * @return human readable startup time report
+   */
+  public String recordStartup(long startupMillis) throws IOException {
+    if (archiveFile == null) {
+      return String.format(
+          "Startup took %d ms, class data sharing requires Java %d or newer",
+          startupMillis, MIN_DYNAMIC_ARCHIVE_VERSION);
+    }
+
+    Properties stats = new Properties();
+    if (Files.isRegularFile(statsFile)) {
+      try (Reader reader = Files.newBufferedReader(statsFile, StandardCharsets.UTF_8)) {
+        stats.load(reader);
+      }
+    }
+    stats.setProperty(
+        archiveAvailable ? STARTUP_WITH_ARCHIVE : STARTUP_WITHOUT_ARCHIVE,
+        Long.toString(startupMillis));
+
+    Path tmp = statsFile.resolveSibling(statsFile.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(tmp)) {
+      stats.store(out, null);
+    }
+    Files.move(tmp, statsFile, StandardCopyOption.REPLACE_EXISTING);
+
+    if (!archiveAvailable) {
+      return String.format(
+          "Startup took %d ms without class data sharing archive, "
+              + "the archive %s will be created when the process exits",
+          startupMillis, archiveFile);
+    }
+    String without = stats.getProperty(STARTUP_WITHOUT_ARCHIVE);
+    return String.format(
+        "Startup took %d ms with class data sharing archive %s%s",
+        startupMillis, archiveFile, without != null ? (", " + without + " ms without") : "");
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clones a pre-seeded data directory, for example a RocksDB version store, into a fresh directory
+ * for each run, so the server starts with pre-populated state without seeding it via the API.
+ *
+ * <p>On Linux, the template is first cloned via {@code cp --reflink=always}, which shares the file
+ * contents copy-on-write on file systems like Btrfs and XFS. Otherwise, files matching the link
+ * patterns are hard-linked and all other files are copied. Hard links are only safe for files that
+ * are never modified in place, like RocksDB's SST and blob files, see {@link
+ * #DEFAULT_LINK_PATTERNS}. Files that cannot be hard-linked, for example because the template is on
+ * another file system, are copied.
+ */
+public final class DataDirectoryTemplate {
+
+  /** Glob patterns for the immutable files of a RocksDB database. */
+  public static final List<String> DEFAULT_LINK_PATTERNS =
+      Collections.unmodifiableList(Arrays.asList("*.sst", "*.blob"));
+
+  private static final long REFLINK_TIMEOUT_SECONDS = 60L;
+
+  private final Path template;
+  private final List<PathMatcher> linkMatchers;
+
+  private DataDirectoryTemplate(Path template, List<PathMatcher> linkMatchers) {
+    this.template = template;
+    this.linkMatchers = linkMatchers;
+  }
+
+  /**
+   * Creates a template for the given directory.
+   *
+   * @param template the pre-seeded data directory
+   * @param linkPatterns glob patterns for the names of the files that may be hard-linked
+   * @throws IllegalArgumentException if the template is not a directory
+   */
+  public static DataDirectoryTemplate of(Path template, List<String> linkPatterns) {
+    if (!Files.isDirectory(template)) {
+      throw new IllegalArgumentException(
+          String.format("Data directory template %s is not a directory", template));
+    }
+    FileSystem fs = template.getFileSystem();
+    List<PathMatcher> linkMatchers = new ArrayList<>();
+    for (String pattern : linkPatterns) {
+      linkMatchers.add(fs.getPathMatcher("glob:" + pattern));
+    }
+    return new DataDirectoryTemplate(template.toAbsolutePath().normalize(), linkMatchers);
+  }
+
+  public Path getTemplate() {
+    return template;
+  }
+
+  /**
+   * Replaces the given directory with a clone of the template, an existing directory is deleted.
+   *
+   * @param target the data directory of the run, must neither contain nor be inside the template
+   * @return how the files have been cloned
+   */
+  public Result cloneTo(Path target) throws IOException {
+    return cloneTo(
+        target, System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux"));
+  }
+
+  Result cloneTo(Path target, boolean tryReflink) throws IOException {
+    Path dir = target.toAbsolutePath().normalize();
+    if (dir.startsWith(template) || template.startsWith(dir)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Data directory %s must neither contain nor be inside the template %s",
+              dir, template));
+    }
+
+    long started = System.nanoTime();
+    deleteRecursively(dir);
+    Path parent = dir.getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+
+    if (tryReflink) {
+      if (reflink(dir)) {
+        return new Result(true, 0, 0, System.nanoTime() - started);
+      }
+      deleteRecursively(dir);
+    }
+
+    int[] counts = new int[2];
+    Files.walkFileTree(
+        template,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path source, BasicFileAttributes attrs)
+              throws IOException {
+            Files.createDirectories(resolve(dir, source));
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path source, BasicFileAttributes attrs)
+              throws IOException {
+            Path file = resolve(dir, source);
+            if (mayLink(source)) {
+              try {
+                Files.createLink(file, source);
+                counts[0]++;
+                return FileVisitResult.CONTINUE;
+              } catch (IOException | UnsupportedOperationException e) {
+                // fall through, copy the file
+              }
+            }
+            Files.copy(source, file, StandardCopyOption.COPY_ATTRIBUTES);
+            counts[1]++;
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return new Result(false, counts[0], counts[1], System.nanoTime() - started);
+  }
+
+  private Path resolve(Path dir, Path source) {
+    Path relative = template.relativize(source);
+    return relative.toString().isEmpty() ? dir : dir.resolve(relative.toString());
+  }
+
+  private boolean mayLink(Path file) {
+    Path name = file.getFileName();
+    return linkMatchers.stream().anyMatch(m -> m.matches(name));
+  }
+
+  private boolean reflink(Path dir) {
+    try {
+      Process process =
+          new ProcessBuilder("cp", "-R", "--reflink=always", template.toString(), dir.toString())
+              .redirectErrorStream(true)
+              .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+              .start();
+      if (!process.waitFor(REFLINK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+        return false;
+      }
+      return process.exitValue() == 0;
+    } catch (IOException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  static void deleteRecursively(Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    Files.walkFileTree(
+        dir,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+            if (exc != null) {
+              throw exc;
+            }
+            Files.delete(d);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  /** How the files of the template have been cloned. */
+  public static final class Result {
+    private final boolean reflinked;
+    private final int hardLinks;
+    private final int copies;
+    private final long nanos;
+
+    Result(boolean reflinked, int hardLinks, int copies, long nanos) {
+      this.reflinked = reflinked;
+      this.hardLinks = hardLinks;
+      this.copies = copies;
+      this.nanos = nanos;
+    }
+
+    /** Whether the whole template has been cloned via reflinks. */
+    public boolean isReflinked() {
+      return reflinked;
+    }
+
+    public int getHardLinks() {
+      return hardLinks;
+    }
+
+    public int getCopies() {
+      return copies;
+    }
+
+    @Override
+    public String toString() {
+      String how =
+          reflinked
+              ? "via reflinks"
+              : String.format("with %d hard link(s) and %d copied file(s)", hardLinks, copies);
+      return String.format("%s in %d ms", how, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+  }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * JDK Flight Recorder recording of a launched process, started via {@code -XX:StartFlightRecording}
+ * and dumped to a file when the process exits, which includes a graceful stop via {@link
+ * ProcessHandler#stop()} and the stop after a startup timeout.
+ *
+ * <p>The {@link #summarize(Duration) summary} is read via {@code jdk.jfr.consumer}: the methods
+ * most often on top of the stack in the execution samples during startup, the GC pauses and the
+ * loaded classes. The time spent loading classes is only available if the settings enable the
+ * {@code jdk.ClassLoad} event, which is enabled via the command line for Java 17 or newer.
+ */
+public final class FlightRecording {
+
+  /** Name of the default JFR settings. */
+  public static final String DEFAULT_SETTINGS = "profile";
+
+  static final String RECORDING_NAME = "nessie-runner";
+  static final int TOP_METHODS = 5;
+
+  private final Path file;
+  private final String settings;
+
+  private FlightRecording(Path file, String settings) {
+    this.file = file;
+    this.settings = settings;
+  }
+
+  /**
+   * Creates a recording.
+   *
+   * @param file the file the recording is dumped to
+   * @param settings name of JFR settings, like {@code default} or {@code profile}, or the path to a
+   *     {@code .jfc} file, {@value #DEFAULT_SETTINGS} if {@code null} or empty
+   */
+  public static FlightRecording of(Path file, String settings) {
+    return new FlightRecording(
+        file.toAbsolutePath(),
+        settings == null || settings.trim().isEmpty() ? DEFAULT_SETTINGS : settings.trim());
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public String getSettings() {
+    return settings;
+  }
+
+  /**
+   * Removes the recording of a previous run, which would be mistaken for the recording of the
+   * process to start, if that does not write one, and creates the directory of the recording.
+   */
+  public void prepare() throws IOException {
+    Files.deleteIfExists(file);
+    Files.createDirectories(file.getParent());
+  }
+
+  /** JVM arguments that start the recording for a Java-VM of the given major version. */
+  public List<String> jvmArguments(int javaMajorVersion) {
+    StringBuilder option =
+        new StringBuilder("-XX:StartFlightRecording=")
+            .append("name=")
+            .append(RECORDING_NAME)
+            .append(",settings=")
+            .append(settings)
+            .append(",filename=")
+            .append(file)
+            .append(",dumponexit=true");
+    if (javaMajorVersion >= 17) {
+      // Event settings on the command line are supported since Java 17
+      option.append(",jdk.ClassLoad#enabled=true,jdk.ClassLoad#threshold=0ms");
+    }
+    return Collections.singletonList(option.toString());
+  }
+
+  /**
+   * Summarizes the recording, if it has been written.
+   *
+   * @param startup time from spawning the process to the listen URL, the whole recording is
+   *     considered as startup if {@code null}
+   * @return the summary or {@code null}, if the recording has not been written
+   */
+  public Summary summarize(Duration startup) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+
+    Instant jvmStart = null;
+    Instant firstEvent = null;
+    List<Instant> sampleTimes = new ArrayList<>();
+    List<String> sampleMethods = new ArrayList<>();
+    List<ClassLoad> classLoads = new ArrayList<>();
+    int gcCount = 0;
+    Duration gcPauses = Duration.ZERO;
+    Duration gcLongestPause = Duration.ZERO;
+    long loadedClasses = -1L;
+
+    try (RecordingFile recording = new RecordingFile(file)) {
+      while (recording.hasMoreEvents()) {
+        RecordedEvent event = recording.readEvent();
+        Instant start = event.getStartTime();
+        if (firstEvent == null || start.isBefore(firstEvent)) {
+          firstEvent = start;
+        }
+        switch (event.getEventType().getName()) {
+          case "jdk.JVMInformation":
+            jvmStart = event.getInstant("jvmStartTime");
+            break;
+          case "jdk.ExecutionSample":
+            String method = topMethod(event.getStackTrace());
+            if (method != null) {
+              sampleTimes.add(start);
+              sampleMethods.add(method);
+            }
+            break;
+          case "jdk.GarbageCollection":
+            gcCount++;
+            gcPauses = gcPauses.plus(event.getDuration("sumOfPauses"));
+            Duration longest = event.getDuration("longestPause");
+            if (longest.compareTo(gcLongestPause) > 0) {
+              gcLongestPause = longest;
+            }
+            break;
+          case "jdk.ClassLoadingStatistics":
+            loadedClasses = Math.max(loadedClasses, event.getLong("loadedClassCount"));
+            break;
+          case "jdk.ClassLoad":
+            RecordedThread thread = event.getThread();
+            classLoads.add(
+                new ClassLoad(
+                    thread != null ? thread.getJavaThreadId() : -1L, start, event.getEndTime()));
+            break;
+          default:
+            break;
+        }
+      }
+    }
+
+    Instant startupEnd = null;
+    if (startup != null && (jvmStart != null || firstEvent != null)) {
+      startupEnd = (jvmStart != null ? jvmStart : firstEvent).plus(startup);
+    }
+
+    Map<String, Integer> methodCounts = new HashMap<>();
+    int startupSamples = 0;
+    for (int i = 0; i < sampleTimes.size(); i++) {
+      if (startupEnd == null || !sampleTimes.get(i).isAfter(startupEnd)) {
+        methodCounts.merge(sampleMethods.get(i), 1, Integer::sum);
+        startupSamples++;
+      }
+    }
+    List<MethodSamples> topMethods =
+        methodCounts.entrySet().stream()
+            .map(e -> new MethodSamples(e.getKey(), e.getValue()))
+            .sorted(
+                Comparator.comparingInt(MethodSamples::getSamples)
+                    .reversed()
+                    .thenComparing(MethodSamples::getMethod))
+            .limit(TOP_METHODS)
+            .collect(Collectors.toList());
+
+    Instant end = startupEnd;
+    List<ClassLoad> startupClassLoads =
+        classLoads.stream()
+            .filter(c -> end == null || !c.start.isAfter(end))
+            .collect(Collectors.toList());
+
+    return new Summary(
+        file,
+        startupSamples,
+        topMethods,
+        gcCount,
+        gcPauses,
+        gcLongestPause,
+        loadedClasses,
+        startupClassLoads.size(),
+        startupClassLoads.isEmpty() ? null : classLoadingTime(startupClassLoads));
+  }
+
+  /**
+   * Summarizes the recording for the log, does not fail if the recording cannot be read.
+   *
+   * @param timings the timings of the process, to determine the startup time
+   * @return human-readable summary
+   */
+  public String report(ProcessTimings timings) {
+    try {
+      Summary summary =
+          summarize(timings.between(ProcessTimings.Phase.SPAWN, ProcessTimings.Phase.LISTEN_URL));
+      return summary != null
+          ? summary.toString()
+          : String.format("JFR recording %s has not been written", file);
+    } catch (IOException | RuntimeException e) {
+      return String.format("Failed to read the JFR recording %s: %s", file, e);
+    }
+  }
+
+  private static String topMethod(RecordedStackTrace stackTrace) {
+    if (stackTrace == null) {
+      return null;
+    }
+    List<RecordedFrame> frames = stackTrace.getFrames();
+    if (frames.isEmpty()) {
+      return null;
+    }
+    RecordedMethod method = frames.get(0).getMethod();
+    return method.getType().getName() + '.' + method.getName();
+  }
+
+  /**
+   * The time spent loading classes, class loads that happen while loading another class on the same
+   * thread are not counted twice.
+   */
+  static Duration classLoadingTime(List<ClassLoad> classLoads) {
+    Map<Long, List<ClassLoad>> byThread =
+        classLoads.stream().collect(Collectors.groupingBy(c -> c.thread));
+    Duration total = Duration.ZERO;
+    for (List<ClassLoad> loads : byThread.values()) {
+      loads.sort(Comparator.comparing(c -> c.start));
+      Instant start = null;
+      Instant end = null;
+      for (ClassLoad load : loads) {
+        if (end == null || load.start.isAfter(end)) {
+          if (end != null) {
+            total = total.plus(Duration.between(start, end));
+          }
+          start = load.start;
+          end = load.end;
+        } else if (load.end.isAfter(end)) {
+          end = load.end;
+        }
+      }
+      if (end != null) {
+        total = total.plus(Duration.between(start, end));
+      }
+    }
+    return total;
+  }
+
+  static final class ClassLoad {
+    final long thread;
+    final Instant start;
+    final Instant end;
+
+    ClassLoad(long thread, Instant start, Instant end) {
+      this.thread = thread;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /** Number of execution samples with a method on top of the stack. */
+  public static final class MethodSamples {
+    private final String method;
+    private final int samples;
+
+    MethodSamples(String method, int samples) {
+      this.method = method;
+      this.samples = samples;
+    }
+
+    public String getMethod() {
+      return method;
+    }
+
+    public int getSamples() {
+      return samples;
+    }
+  }
+
+  /** Summary of a recording. */
+  public static final class Summary {
+    private final Path file;
+    private final int startupSamples;
+    private final List<MethodSamples> topStartupMethods;
+    private final int gcCount;
+    private final Duration gcPauses;
+    private final Duration gcLongestPause;
+    private final long loadedClasses;
+    private final int startupClassLoads;
+    private final Duration startupClassLoadingTime;
+
+    Summary(
+        Path file,
+        int startupSamples,
+        List<MethodSamples> topStartupMethods,
+        int gcCount,
+        Duration gcPauses,
+        Duration gcLongestPause,
+        long loadedClasses,
+        int startupClassLoads,
+        Duration startupClassLoadingTime) {
+      this.file = file;
+      this.startupSamples = startupSamples;
+      this.topStartupMethods = topStartupMethods;
+      this.gcCount = gcCount;
+      this.gcPauses = gcPauses;
+      this.gcLongestPause = gcLongestPause;
+      this.loadedClasses = loadedClasses;
+      this.startupClassLoads = startupClassLoads;
+      this.startupClassLoadingTime = startupClassLoadingTime;
+    }
+
+    public Path getFile() {
+      return file;
+    }
+
+    /** Number of execution samples during startup. */
+    public int getStartupSamples() {
+      return startupSamples;
+    }
+
+    /** The methods most often on top of the stack during startup, most often first. */
+    public List<MethodSamples> getTopStartupMethods() {
+      return topStartupMethods;
+    }
+
+    /** Number of garbage collections. */
+    public int getGcCount() {
+      return gcCount;
+    }
+
+    /** Sum of all GC pauses. */
+    public Duration getGcPauses() {
+      return gcPauses;
+    }
+
+    /** The longest GC pause. */
+    public Duration getGcLongestPause() {
+      return gcLongestPause;
+    }
+
+    /** Number of loaded classes, {@code -1} if not recorded. */
+    public long getLoadedClasses() {
+      return loadedClasses;
+    }
+
+    /** Number of recorded {@code jdk.ClassLoad} events during startup. */
+    public int getStartupClassLoads() {
+      return startupClassLoads;
+    }
+
+    /**
+     * Time spent loading classes during startup.
+     *
+     * @return the time or {@code null}, if no {@code jdk.ClassLoad} events have been recorded
+     */
+    public Duration getStartupClassLoadingTime() {
+      return startupClassLoadingTime;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("JFR recording ").append(file).append(": ");
+      sb.append(startupSamples).append(" startup CPU samples");
+      if (!topStartupMethods.isEmpty()) {
+        sb.append(", top methods ")
+            .append(
+                topStartupMethods.stream()
+                    .map(
+                        m ->
+                            String.format(
+                                Locale.ROOT,
+                                "%s (%.1f%%)",
+                                m.getMethod(),
+                                100d * m.getSamples() / startupSamples))
+                    .collect(Collectors.joining(", ")));
+      }
+      sb.append(String.format(Locale.ROOT, "; %d garbage collection(s)", gcCount));
+      if (gcCount > 0) {
+        sb.append(
+            String.format(
+                Locale.ROOT,
+                ", total pause %d ms, longest pause %d ms",
+                gcPauses.toMillis(),
+                gcLongestPause.toMillis()));
+      }
+      sb.append("; ");
+      if (loadedClasses >= 0L) {
+        sb.append(loadedClasses).append(" classes loaded");
+      } else {
+        sb.append("loaded classes not recorded");
+      }
+      if (startupClassLoadingTime != null) {
+        sb.append(
+            String.format(
+                Locale.ROOT,
+                ", %d ms loading %d classes during startup",
+                startupClassLoadingTime.toMillis(),
+                startupClassLoads));
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -15,75 +15,132 @@
  */
 package org.projectnessie.nessierunner.common;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.function.Consumer;
 
-/** Captures input from an {@link InputStream} and emits full lines terminated with a {@code LF}. */
+/**
+ * Captures input from an {@link InputStream} and emits full lines terminated with a {@code LF}.
+ *
+ * <p>Lines are split on the raw {@code LF} byte in a reusable buffer, {@code CR} bytes are ignored.
+ * Lines are emitted as {@link OutputLine}s, which are only decoded using the given {@link Charset},
+ * if a consumer needs the string representation. The charset must be ASCII compatible, for example
+ * {@code UTF-8} or {@code ISO-8859-1}.
+ */
 final class InputBuffer {
 
-  private final Reader input;
-  private final Consumer<String> output;
-  private final StringBuilder lineBuffer = new StringBuilder();
-  private boolean failed;
+  private static final int INITIAL_BUFFER_SIZE = 8192;
 
-  InputBuffer(InputStream input, Consumer<String> output) {
-    this(new BufferedReader(new InputStreamReader(input, Charset.defaultCharset())), output);
-  }
+  private final InputStream input;
+  private final Consumer<OutputLine> output;
+  private final OutputLine line;
+
+  /** Holds the bytes of the current, yet unterminated line starting at index 0. */
+  private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
 
-  InputBuffer(Reader input, Consumer<String> output) {
+  private ByteBuffer lineView = ByteBuffer.wrap(buffer);
+
+  /** Number of bytes in {@link #buffer} that belong to the current, yet unterminated line. */
+  private int pending;
+
+  private long outputFailures;
+
+  InputBuffer(InputStream input, Charset charset, Consumer<OutputLine> output) {
     this.input = input;
     this.output = output;
+    this.line = new OutputLine(charset);
   }
 
   /**
-   * Drains the input passed to the constructor until there's no more data to read, captures full
-   * lines terminated with a {@code LF}) and pushes these lines to the consumer passed into the
-   * constructor.
+   * Reads from the input passed to the constructor until it reaches end-of-stream, captures full
+   * lines terminated with a {@code LF} and pushes these lines to the consumer passed into the
+   * constructor. Any remaining, unterminated line is pushed when end-of-stream has been reached.
+   *
+   * <p>Exceptions thrown by the consumer do not end draining, because the process would block once
+   * its output pipe is full. Only the first one is reported.
    *
-   * @return {@code true} if any data has been read from the input stream
+   * <p>This method blocks and is intended to be run by a dedicated thread.
    */
-  boolean io() {
-    // Note: cannot use BufferedReader.readLine() here, because that would block.
+  void drain() {
     try {
-      if (failed || !input.ready()) {
-        return false;
+      while (true) {
+        ensureCapacity();
+        int n = input.read(buffer, pending, buffer.length - pending);
+        if (n == -1) {
+          break;
+        }
+        onBytes(n);
       }
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      flush();
+    }
+  }
 
-      boolean any = false;
-      while (input.ready()) {
-        int c = input.read();
+  /** Grows the buffer, if the current unterminated line occupies the whole buffer. */
+  private void ensureCapacity() {
+    if (pending == buffer.length) {
+      byte[] newBuffer = new byte[buffer.length * 2];
+      System.arraycopy(buffer, 0, newBuffer, 0, pending);
+      buffer = newBuffer;
+      lineView = ByteBuffer.wrap(buffer);
+    }
+  }
 
-        if (c == -1) {
-          return any;
-        }
+  /**
+   * Scans the {@code len} bytes that have just been read into {@link #buffer} for line terminators
+   * and emits complete lines. {@code CR} bytes are removed in place.
+   */
+  private void onBytes(int len) {
+    byte[] buf = buffer;
+    int end = pending + len;
+    int lineStart = 0;
+    int w = pending;
+    for (int i = pending; i < end; i++) {
+      byte b = buf[i];
+      if (b == 13) { // CR
+        continue;
+      }
+      if (w != i) {
+        buf[w] = b;
+      }
+      if (b == 10) { // LF
+        emit(lineStart, w);
+        lineStart = w + 1;
+      }
+      w++;
+    }
 
-        any = true;
-        if (c == 13) { // CR
-          // ignore
-        } else if (c == 10) { // LF
-          output.accept(lineBuffer.toString());
-          lineBuffer.setLength(0);
-        } else {
-          lineBuffer.append((char) c);
-        }
+    // Move the remaining, unterminated line to the beginning of the buffer
+    pending = w - lineStart;
+    if (lineStart > 0 && pending > 0) {
+      System.arraycopy(buf, lineStart, buf, 0, pending);
+    }
+  }
+
+  private void emit(int start, int end) {
+    lineView.limit(end).position(start);
+    try {
+      output.accept(line.reset(lineView));
+    } catch (RuntimeException e) {
+      if (outputFailures++ == 0) {
+        e.printStackTrace();
       }
-      return true;
-    } catch (IOException e) {
-      e.printStackTrace();
-      failed = true;
-      return false;
     }
   }
 
+  /** Number of lines, for which the consumer threw an exception. */
+  long outputFailures() {
+    return outputFailures;
+  }
+
   void flush() {
-    if (lineBuffer.length() > 0) {
-      output.accept(lineBuffer.toString());
-      lineBuffer.setLength(0);
+    if (pending > 0) {
+      emit(0, pending);
+      pending = 0;
     }
   }
 }
@@ -18,11 +18,14 @@ package org.projectnessie.nessierunner.common;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Locale;
+import java.util.Properties;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.IntFunction;
@@ -41,6 +44,7 @@ public final class JavaVM {
 
   private static final AtomicReference<JavaVM> CURRENT_JVM = new AtomicReference<>();
   private final Path javaHome;
+  private volatile int majorVersion;
 
   static String locateJavaHome(
       int majorVersion,
@@ -74,8 +78,10 @@ public final class JavaVM {
   }
 
   /**
-   * Loops from {@code majorVersion} up to {@value #MAX_JAVA_VERSION_TO_CHECK} until a call to
-   * {@link #findJavaVMTryExact(int)} returns a Java-Home.
+   * Loops from {@code majorVersion} up to {@value #MAX_JAVA_VERSION_TO_CHECK} until the environment
+   * variables, the system properties or the {@link JavaVMIndex} yield a Java-Home with that exact
+   * version, then tries the newer Java versions in the {@link JavaVMIndex}. Uses {@code
+   * /usr/libexec/java_home} on MacOS only, if no Java-Home has been found that way.
    *
    * <p>Returns the current JVM from {@link #getCurrentJavaVM()}, if its major version is greater
    * than or equal to the requested {@code majorVersion}.
@@ -87,12 +93,27 @@ public final class JavaVM {
     if (currentJavaVMMajorVersion() >= majorVersion) {
       return getCurrentJavaVM();
     }
+    JavaVMIndex index = JavaVMIndex.load();
     for (int i = majorVersion; i < MAX_JAVA_VERSION_TO_CHECK; i++) {
-      JavaVM jvm = findJavaVMTryExact(i);
+      String home = locateJavaHome(i, System::getenv, System::getProperty, ver -> null);
+      if (home != null) {
+        return forJavaHome(home);
+      }
+      JavaVM jvm = index.findExact(i);
       if (jvm != null) {
         return jvm;
       }
     }
+    JavaVM jvm = index.find(majorVersion);
+    if (jvm != null) {
+      return jvm;
+    }
+    for (int i = majorVersion; i < MAX_JAVA_VERSION_TO_CHECK; i++) {
+      String home = locateJavaHome(i, System::getenv, System::getProperty, JavaVM::macosJavaHome);
+      if (home != null) {
+        return forJavaHome(home);
+      }
+    }
     return null;
   }
 
@@ -106,6 +127,7 @@ public final class JavaVM {
    *   <li>Environment variable {@code JAVAxx_HOME}, where {@code xx} is the {@code majorVersion}.
    *   <li>System property {@code jdkXX.home}, where {@code XX} is the {@code majorVersion}.
    *   <li>System property {@code javaXX.home}, where {@code XX} is the {@code majorVersion}.
+   *   <li>The {@link JavaVMIndex} of the JDKs in well-known locations.
    *   <li>Using the {@code /usr/libexec/java_home} on MacOS, which may return a newer Java version.
    * </ol>
    *
@@ -117,31 +139,34 @@ public final class JavaVM {
       return getCurrentJavaVM();
     }
 
-    String home =
-        locateJavaHome(
-            majorVersion,
-            System::getenv,
-            System::getProperty,
-            ver -> {
-              try {
-                String versionArg = ver < 9 ? ("1." + ver) : Integer.toString(ver);
-                Process proc =
-                    new ProcessBuilder()
-                        .command("/usr/libexec/java_home", "-v", versionArg)
-                        .start();
-                return new BufferedReader(
-                        new InputStreamReader(proc.getInputStream(), Charset.defaultCharset()))
-                    .readLine();
-              } catch (IOException e) {
-                return null;
-              }
-            });
+    String home = locateJavaHome(majorVersion, System::getenv, System::getProperty, ver -> null);
+    if (home == null) {
+      JavaVM jvm = JavaVMIndex.load().findExact(majorVersion);
+      if (jvm != null) {
+        return jvm;
+      }
+      home =
+          locateJavaHome(majorVersion, System::getenv, System::getProperty, JavaVM::macosJavaHome);
+    }
     if (home != null) {
       return forJavaHome(home);
     }
     return null;
   }
 
+  private static String macosJavaHome(int majorVersion) {
+    try {
+      String versionArg = majorVersion < 9 ? ("1." + majorVersion) : Integer.toString(majorVersion);
+      Process proc =
+          new ProcessBuilder().command("/usr/libexec/java_home", "-v", versionArg).start();
+      return new BufferedReader(
+              new InputStreamReader(proc.getInputStream(), Charset.defaultCharset()))
+          .readLine();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
   /**
    * Get the {@link JavaVM} instance for the current JVM.
    *
@@ -202,10 +227,62 @@ public final class JavaVM {
     return javaHome;
   }
 
+  /**
+   * Returns the Java major version of this Java-VM, read from the {@code release} file in the
+   * Java-Home.
+   *
+   * @return the Java major version or {@code -1}, if it cannot be determined
+   */
+  public int getMajorVersion() {
+    int version = majorVersion;
+    if (version == 0) {
+      version = majorVersionFromReleaseFile(javaHome);
+      if (version < 0 && isCurrentJavaHome(javaHome)) {
+        version = currentJavaVMMajorVersion();
+      }
+      majorVersion = version;
+    }
+    return version;
+  }
+
+  static int majorVersionFromReleaseFile(Path javaHome) {
+    Path releaseFile = javaHome.resolve("release");
+    if (!Files.isRegularFile(releaseFile)) {
+      return -1;
+    }
+    Properties release = new Properties();
+    try (Reader reader = Files.newBufferedReader(releaseFile, StandardCharsets.UTF_8)) {
+      release.load(reader);
+    } catch (IOException | IllegalArgumentException e) {
+      return -1;
+    }
+    String version = release.getProperty("JAVA_VERSION");
+    if (version == null) {
+      return -1;
+    }
+    version = version.trim();
+    if (version.length() >= 2 && version.startsWith("\"") && version.endsWith("\"")) {
+      version = version.substring(1, version.length() - 1);
+    }
+    try {
+      return majorVersionFromString(version);
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+  }
+
+  private static boolean isCurrentJavaHome(Path javaHome) {
+    return javaHome.equals(fixJavaHome(Paths.get(System.getProperty("java.home"))));
+  }
+
   public Path getJavaExecutable() {
     return getExecutable("java");
   }
 
+  public Path getJcmdExecutable() {
+    return getExecutable("jcmd");
+  }
+
   private Path getExecutable(String executable) {
     return javaHome.resolve("bin").resolve(executableName(executable));
   }
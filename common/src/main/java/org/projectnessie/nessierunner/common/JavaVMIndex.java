@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the JDKs installed in well-known locations, used by {@link JavaVM#findJavaVM(int)}.
+ *
+ * <p>The locations are scanned in parallel, the major version of each JDK is read from its {@code
+ * release} file, no {@code java} process is started. The results are cached on disk per location,
+ * keyed by the location's modification time, so only added or removed JDKs cause a re-scan.
+ */
+public final class JavaVMIndex {
+
+  static final String CACHE_FILE_NAME = "jvm-index.properties";
+
+  private static final Pattern TOOLCHAINS_JDK_HOME =
+      Pattern.compile("<jdkHome>\\s*([^<]+?)\\s*</jdkHome>");
+
+  private final List<Entry> entries;
+
+  private JavaVMIndex(List<Entry> entries) {
+    this.entries = entries;
+  }
+
+  /** Loads the index for the {@link #defaultLocations(Function, Function) default locations}. */
+  public static JavaVMIndex load() {
+    return load(
+        defaultCacheFile(System::getenv, System::getProperty),
+        defaultLocations(System::getenv, System::getProperty));
+  }
+
+  /**
+   * Loads the index for the given locations, re-scans the locations that changed since they have
+   * been cached and updates the cache file. Failures to read or write the cache file are ignored.
+   *
+   * @param cacheFile the cache file, {@code null} to not use a cache
+   * @param locations the locations to scan, in order of preference
+   */
+  static JavaVMIndex load(Path cacheFile, List<Location> locations) {
+    Properties cache = readCache(cacheFile);
+
+    List<Location.Scanned> scanned =
+        locations.parallelStream()
+            .map(location -> location.entries(cache))
+            .collect(Collectors.toList());
+
+    List<Entry> entries = new ArrayList<>();
+    Properties updated = new Properties();
+    for (Location.Scanned locationEntries : scanned) {
+      if (locationEntries != null) {
+        entries.addAll(locationEntries.entries);
+        locationEntries.store(updated);
+      }
+    }
+
+    if (cacheFile != null && !updated.equals(cache)) {
+      writeCache(cacheFile, updated);
+    }
+
+    return new JavaVMIndex(Collections.unmodifiableList(entries));
+  }
+
+  /**
+   * The default locations, in this order: {@code JAVA_HOME}, the JDKs in Maven's {@code
+   * ~/.m2/toolchains.xml}, SDKMAN's Java candidates, Gradle's auto-provisioned JDKs in {@code
+   * ~/.gradle/jdks}, {@code /usr/lib/jvm} on Linux and {@code /Library/Java/JavaVirtualMachines} on
+   * macOS.
+   */
+  static List<Location> defaultLocations(
+      Function<String, String> getenv, Function<String, String> getProperty) {
+    String userHome = getProperty.apply("user.home");
+    String osName = getProperty.apply("os.name").toLowerCase(Locale.ROOT);
+
+    List<Location> locations = new ArrayList<>();
+    String javaHome = getenv.apply("JAVA_HOME");
+    if (javaHome != null && !javaHome.isEmpty()) {
+      locations.add(new Location(Paths.get(javaHome), Location.Kind.JAVA_HOME));
+    }
+    if (userHome != null) {
+      locations.add(
+          new Location(
+              Paths.get(userHome, ".m2", "toolchains.xml"), Location.Kind.MAVEN_TOOLCHAINS));
+    }
+    String sdkmanDir = getenv.apply("SDKMAN_DIR");
+    if (sdkmanDir != null && !sdkmanDir.isEmpty()) {
+      locations.add(
+          new Location(Paths.get(sdkmanDir, "candidates", "java"), Location.Kind.DIRECTORY));
+    } else if (userHome != null) {
+      locations.add(
+          new Location(
+              Paths.get(userHome, ".sdkman", "candidates", "java"), Location.Kind.DIRECTORY));
+    }
+    String gradleUserHome = getenv.apply("GRADLE_USER_HOME");
+    if (gradleUserHome != null && !gradleUserHome.isEmpty()) {
+      locations.add(new Location(Paths.get(gradleUserHome, "jdks"), Location.Kind.DIRECTORY));
+    } else if (userHome != null) {
+      locations.add(new Location(Paths.get(userHome, ".gradle", "jdks"), Location.Kind.DIRECTORY));
+    }
+    if (osName.contains("linux")) {
+      locations.add(new Location(Paths.get("/usr/lib/jvm"), Location.Kind.DIRECTORY));
+    }
+    if (osName.contains("darwin") || osName.contains("mac")) {
+      locations.add(
+          new Location(Paths.get("/Library/Java/JavaVirtualMachines"), Location.Kind.DIRECTORY));
+    }
+    return locations;
+  }
+
+  /** The cache file in {@code $XDG_CACHE_HOME/nessie-runner} or {@code ~/.cache/nessie-runner}. */
+  static Path defaultCacheFile(
+      Function<String, String> getenv, Function<String, String> getProperty) {
+    String cacheHome = getenv.apply("XDG_CACHE_HOME");
+    if (cacheHome != null && !cacheHome.isEmpty()) {
+      return Paths.get(cacheHome, "nessie-runner", CACHE_FILE_NAME);
+    }
+    String userHome = getProperty.apply("user.home");
+    return userHome != null
+        ? Paths.get(userHome, ".cache", "nessie-runner", CACHE_FILE_NAME)
+        : null;
+  }
+
+  /**
+   * Returns the first indexed Java-VM with exactly the given major version.
+   *
+   * @return the Java-VM or {@code null}, if no JDK with that major version is indexed
+   */
+  public JavaVM findExact(int majorVersion) {
+    return entries.stream()
+        .filter(e -> e.majorVersion == majorVersion && e.isValid())
+        .findFirst()
+        .map(e -> JavaVM.forJavaHome(e.javaHome))
+        .orElse(null);
+  }
+
+  /**
+   * Returns the indexed Java-VM with the lowest major version that is greater than or equal to the
+   * given major version.
+   *
+   * @return the Java-VM or {@code null}, if no matching JDK is indexed
+   */
+  public JavaVM find(int majorVersion) {
+    Entry best = null;
+    for (Entry e : entries) {
+      if (e.majorVersion >= majorVersion
+          && (best == null || e.majorVersion < best.majorVersion)
+          && e.isValid()) {
+        best = e;
+      }
+    }
+    return best != null ? JavaVM.forJavaHome(best.javaHome) : null;
+  }
+
+  /** The indexed JDKs, in order of the locations. */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  private static Properties readCache(Path cacheFile) {
+    Properties cache = new Properties();
+    if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+      try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+        cache.load(reader);
+      } catch (IOException | IllegalArgumentException e) {
+        cache.clear();
+      }
+    }
+    return cache;
+  }
+
+  private static void writeCache(Path cacheFile, Properties cache) {
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      Path tmp = Files.createTempFile(cacheFile.getParent(), CACHE_FILE_NAME, ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+          cache.store(writer, "Nessie runner JVM index");
+        }
+        Files.move(
+            tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      // The cache is an optimization, ignore
+    }
+  }
+
+  /**
+   * Returns the major version of the JDK in the given directory, or in {@code Contents/Home} on
+   * macOS, and the Java-Home.
+   */
+  static Entry probe(Path dir) {
+    for (Path javaHome : new Path[] {dir, dir.resolve("Contents").resolve("Home")}) {
+      if (Files.isExecutable(javaHome.resolve("bin").resolve(JavaVM.executableName("java")))) {
+        int majorVersion = JavaVM.majorVersionFromReleaseFile(javaHome);
+        if (majorVersion > 0) {
+          return new Entry(javaHome.toAbsolutePath().normalize(), majorVersion);
+        }
+      }
+    }
+    return null;
+  }
+
+  /** An indexed JDK. */
+  public static final class Entry {
+    private final Path javaHome;
+    private final int majorVersion;
+
+    Entry(Path javaHome, int majorVersion) {
+      this.javaHome = javaHome;
+      this.majorVersion = majorVersion;
+    }
+
+    public Path getJavaHome() {
+      return javaHome;
+    }
+
+    public int getMajorVersion() {
+      return majorVersion;
+    }
+
+    boolean isValid() {
+      return Files.isExecutable(javaHome.resolve("bin").resolve(JavaVM.executableName("java")));
+    }
+
+    @Override
+    public String toString() {
+      return majorVersion + ":" + javaHome;
+    }
+  }
+
+  /** A location to scan for JDKs. */
+  static final class Location {
+    enum Kind {
+      /** A single Java-Home. */
+      JAVA_HOME,
+      /** A directory containing Java-Homes. */
+      DIRECTORY,
+      /** Maven's {@code toolchains.xml}, the Java-Homes are the {@code jdkHome} elements. */
+      MAVEN_TOOLCHAINS
+    }
+
+    private final Path path;
+    private final Kind kind;
+
+    Location(Path path, Kind kind) {
+      this.path = path.toAbsolutePath().normalize();
+      this.kind = kind;
+    }
+
+    private String cacheKey() {
+      return kind.name().toLowerCase(Locale.ROOT) + ":" + path;
+    }
+
+    @Override
+    public String toString() {
+      return cacheKey();
+    }
+
+    /**
+     * Returns the cached entries, if the location did not change since, else scans the location.
+     *
+     * @return the entries, or {@code null} if the location does not exist
+     */
+    Scanned entries(Properties cache) {
+      long modified;
+      try {
+        modified = Files.getLastModifiedTime(path).toMillis();
+      } catch (IOException e) {
+        return null;
+      }
+
+      String key = cacheKey();
+      if (Long.toString(modified).equals(cache.getProperty(key))) {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; ; i++) {
+          String value = cache.getProperty(key + "#" + i);
+          if (value == null) {
+            return new Scanned(key, modified, entries);
+          }
+          int sep = value.indexOf(':');
+          try {
+            entries.add(
+                new Entry(
+                    Paths.get(value.substring(sep + 1)),
+                    Integer.parseInt(value.substring(0, sep))));
+          } catch (RuntimeException e) {
+            break;
+          }
+        }
+      }
+
+      return new Scanned(key, modified, scan());
+    }
+
+    private List<Entry> scan() {
+      List<Path> candidates = new ArrayList<>();
+      try {
+        switch (kind) {
+          case JAVA_HOME:
+            candidates.add(path);
+            break;
+          case DIRECTORY:
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+              for (Path child : children) {
+                if (Files.isDirectory(child)) {
+                  candidates.add(child);
+                }
+              }
+            }
+            Collections.sort(candidates);
+            break;
+          case MAVEN_TOOLCHAINS:
+            String toolchains = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            Matcher m = TOOLCHAINS_JDK_HOME.matcher(toolchains);
+            while (m.find()) {
+              // Property references like ${env.JAVA_HOME} are not supported
+              if (!m.group(1).contains("${")) {
+                candidates.add(Paths.get(m.group(1)));
+              }
+            }
+            break;
+          default:
+            throw new IllegalStateException(kind.name());
+        }
+      } catch (IOException e) {
+        return Collections.emptyList();
+      }
+
+      List<Entry> entries = new ArrayList<>();
+      for (Path candidate : candidates) {
+        Entry entry = probe(candidate);
+        if (entry != null && entries.stream().noneMatch(e -> e.javaHome.equals(entry.javaHome))) {
+          entries.add(entry);
+        }
+      }
+      return entries;
+    }
+
+    /** The entries of a location and its modification time. */
+    static final class Scanned {
+      private final String key;
+      private final long modified;
+      private final List<Entry> entries;
+
+      Scanned(String key, long modified, List<Entry> entries) {
+        this.key = key;
+        this.modified = modified;
+        this.entries = entries;
+      }
+
+      void store(Properties cache) {
+        cache.setProperty(key, Long.toString(modified));
+        for (int i = 0; i < entries.size(); i++) {
+          cache.setProperty(key + "#" + i, entries.get(i).toString());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.Map;
+
+/**
+ * {@link ReadinessDetector} for JSON formatted log lines, passes the value of the {@code message}
+ * attribute to a delegate detector. Parses only as much of the line as necessary, without a JSON
+ * library.
+ */
+final class JsonMessageReadinessDetector implements ReadinessDetector {
+
+  private static final String MESSAGE_ATTRIBUTE = "\"message\"";
+
+  private final ReadinessDetector delegate;
+
+  JsonMessageReadinessDetector(ReadinessDetector delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String literal() {
+    return delegate.literal();
+  }
+
+  @Override
+  public Map<String, String> detect(String line) {
+    if (line.isEmpty() || line.charAt(0) != '{') {
+      return null;
+    }
+    String message = message(line);
+    if (message == null) {
+      return null;
+    }
+    String literal = delegate.literal();
+    if (literal != null && !message.contains(literal)) {
+      return null;
+    }
+    return delegate.detect(message);
+  }
+
+  /** Extracts the unescaped value of the top-level {@code message} attribute. */
+  static String message(String json) {
+    int idx = 0;
+    while (true) {
+      idx = json.indexOf(MESSAGE_ATTRIBUTE, idx);
+      if (idx < 0) {
+        return null;
+      }
+      idx += MESSAGE_ATTRIBUTE.length();
+      int i = skipWhitespace(json, idx);
+      if (i < json.length() && json.charAt(i) == ':') {
+        i = skipWhitespace(json, i + 1);
+        if (i < json.length() && json.charAt(i) == '"') {
+          return unescape(json, i + 1);
+        }
+      }
+    }
+  }
+
+  private static int skipWhitespace(String s, int i) {
+    while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static String unescape(String s, int start) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = start; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"') {
+        return sb.toString();
+      }
+      if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      if (++i == s.length()) {
+        return null;
+      }
+      c = s.charAt(i);
+      switch (c) {
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'u':
+          if (i + 4 >= s.length()) {
+            return null;
+          }
+          try {
+            sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+          } catch (NumberFormatException e) {
+            return null;
+          }
+          i += 4;
+          break;
+        default:
+          // '"', '\\', '/'
+          sb.append(c);
+          break;
+      }
+    }
+    // unterminated string
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "json:" + delegate;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes a key from the effective launch configuration of a process, processes with the same key
+ * are interchangeable and can be shared.
+ */
+public final class LaunchKey {
+  private LaunchKey() {}
+
+  /**
+   * Hex encoded SHA-256 over the given launch configuration values, the order of the environment
+   * entries does not matter.
+   *
+   * @param command the command including the JVM and application arguments
+   * @param environment additional environment variables
+   * @param workDir the working directory
+   * @param readinessDetectors the specifications of the readiness detectors
+   * @param readinessPath the readiness path, if the readiness probe is enabled, else {@code null}
+   * @param failurePatterns the failure patterns
+   */
+  public static String of(
+      List<String> command,
+      Map<String, String> environment,
+      String workDir,
+      List<String> readinessDetectors,
+      String readinessPath,
+      List<String> failurePatterns) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    update(digest, "command");
+    command.forEach(value -> update(digest, value));
+    update(digest, "environment");
+    new TreeMap<>(environment)
+        .forEach(
+            (k, v) -> {
+              update(digest, k);
+              update(digest, v);
+            });
+    update(digest, "workDir");
+    update(digest, workDir);
+    update(digest, "readinessDetectors");
+    readinessDetectors.forEach(value -> update(digest, value));
+    update(digest, "readinessPath");
+    update(digest, readinessPath != null ? readinessPath : "");
+    update(digest, "failurePatterns");
+    failurePatterns.forEach(value -> update(digest, value));
+
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    // separator, so that "ab","c" and "a","bc" result in different keys
+    digest.update((byte) 0);
+  }
+}
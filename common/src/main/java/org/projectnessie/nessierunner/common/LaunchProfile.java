@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Named sets of JVM options for the launched process. Options that are not supported by the Java
+ * major version of the target Java-VM are dropped, options that are also configured in the user's
+ * JVM arguments are dropped, so the user's JVM arguments always take precedence.
+ */
+public enum LaunchProfile {
+  /** Minimize the time to the listen URL: C1 only, a single compiler thread and the serial GC. */
+  FAST_STARTUP(
+      "fast-startup",
+      new Options(11, "-XX:TieredStopAtLevel=1", "-XX:CICompilerCount=1"),
+      new Options(11, "-XX:+UseSerialGC"),
+      new Options(11, "-XX:-UsePerfData")),
+  /** Maximize the throughput for load tests, at the expense of startup time and memory. */
+  THROUGHPUT(
+      "throughput",
+      new Options(11, "-XX:+UseParallelGC"),
+      new Options(11, "-XX:+AlwaysPreTouch"),
+      new Options(11, "-XX:+PerfDisableSharedMem"),
+      // Supported by all GCs since Java 18
+      new Options(18, "-XX:+UseStringDeduplication")),
+  /** Minimize the memory footprint, for example when running many servers concurrently. */
+  LOW_MEMORY(
+      "low-memory",
+      new Options(11, "-XX:+UseSerialGC"),
+      new Options(11, "-XX:TieredStopAtLevel=1"),
+      new Options(11, "-XX:ReservedCodeCacheSize=64m"),
+      new Options(11, "-XX:MaxRAMPercentage=25.0"),
+      new Options(11, "-Xss512k"),
+      new Options(18, "-XX:+UseStringDeduplication"),
+      // JEP 519, product option since Java 25
+      new Options(25, "-XX:+UseCompactObjectHeaders"));
+
+  private static final Pattern GC_SELECTION = Pattern.compile("-XX:\\+Use\\w+GC");
+
+  private final String profileName;
+  private final List<Options> options;
+
+  LaunchProfile(String profileName, Options... options) {
+    this.profileName = profileName;
+    this.options = asList(options);
+  }
+
+  public String profileName() {
+    return profileName;
+  }
+
+  /**
+   * Returns the profile for the given name, for example {@code fast-startup}.
+   *
+   * @throws IllegalArgumentException if no profile with the given name exists
+   */
+  public static LaunchProfile forName(String name) {
+    for (LaunchProfile profile : values()) {
+      if (profile.profileName.equals(name.trim().toLowerCase(Locale.ROOT))) {
+        return profile;
+      }
+    }
+    throw new IllegalArgumentException(
+        String.format(
+            "Unknown launch profile '%s', supported: %s",
+            name,
+            Arrays.stream(values()).map(p -> p.profileName).collect(Collectors.joining(", "))));
+  }
+
+  /**
+   * Returns the JVM options of this profile, that are supported by the given Java major version and
+   * not overridden by the user's JVM arguments.
+   *
+   * @param javaMajorVersion the Java major version of the target Java-VM, see {@link
+   *     JavaVM#getMajorVersion()}, options that require a newer version are dropped, an unknown
+   *     (negative) version is treated as Java 11
+   * @param userJvmArguments the user's JVM arguments, which take precedence
+   */
+  public List<String> jvmArguments(int javaMajorVersion, List<String> userJvmArguments) {
+    Set<String> userOptions =
+        userJvmArguments.stream().map(LaunchProfile::optionName).collect(Collectors.toSet());
+    boolean userSelectsGc = userJvmArguments.stream().anyMatch(LaunchProfile::isGcSelection);
+    List<String> jvmArguments = new ArrayList<>();
+    for (Options opts : options) {
+      if (opts.minJavaVersion > Math.max(javaMajorVersion, 11)) {
+        continue;
+      }
+      boolean overridden =
+          opts.arguments.stream()
+              .anyMatch(
+                  arg ->
+                      userOptions.contains(optionName(arg))
+                          || (userSelectsGc && isGcSelection(arg)));
+      if (!overridden) {
+        jvmArguments.addAll(opts.arguments);
+      }
+    }
+    return jvmArguments;
+  }
+
+  /**
+   * Returns the name of a JVM option without its value, for example {@code -XX:TieredStopAtLevel}
+   * for {@code -XX:TieredStopAtLevel=1}, {@code -XX:UseSerialGC} for {@code -XX:+UseSerialGC} and
+   * {@code -Xmx} for {@code -Xmx1g}.
+   */
+  static String optionName(String arg) {
+    if (arg.startsWith("-XX:")) {
+      String name = arg.substring(4);
+      if (name.startsWith("+") || name.startsWith("-")) {
+        name = name.substring(1);
+      }
+      int eq = name.indexOf('=');
+      return "-XX:" + (eq >= 0 ? name.substring(0, eq) : name);
+    }
+    if (arg.startsWith("-Xms") || arg.startsWith("-Xmx") || arg.startsWith("-Xss")) {
+      return arg.substring(0, 4);
+    }
+    int sep = arg.startsWith("-D") ? arg.indexOf('=') : arg.indexOf(':');
+    return sep > 0 ? arg.substring(0, sep) : arg;
+  }
+
+  private static boolean isGcSelection(String arg) {
+    return GC_SELECTION.matcher(arg).matches();
+  }
+
+  /** JVM options that are applied or dropped together. */
+  private static final class Options {
+    private final int minJavaVersion;
+    private final List<String> arguments;
+
+    Options(int minJavaVersion, String... arguments) {
+      this.minJavaVersion = minJavaVersion;
+      this.arguments = asList(arguments);
+    }
+  }
+}
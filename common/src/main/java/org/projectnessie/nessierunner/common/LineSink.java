@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Receives the lines of a process' output, without line terminators.
+ *
+ * <p>The {@link CharSequence} passed to {@link #accept(CharSequence)} is a reused view that is only
+ * valid for the duration of the call and must not be modified. Implementations that need to retain
+ * a line must call {@link CharSequence#toString()}. Implementations that process lines in place,
+ * for example to count lines, filter by prefix or write the characters to a file, do not cause any
+ * per-line allocations.
+ */
+@FunctionalInterface
+public interface LineSink {
+
+  void accept(CharSequence line);
+
+  /**
+   * Receives a batch of lines taken from the queue of the asynchronous output forwarding, see
+   * {@link ProcessHandler#setAsyncOutput(int, OutputOverflowPolicy)}. Calls {@link
+   * #accept(CharSequence)} for each line by default. Targets that are expensive to call per line,
+   * like a contended build tool logger, can handle the whole batch in one call.
+   */
+  default void acceptBatch(List<String> lines) {
+    for (String line : lines) {
+      accept(line);
+    }
+  }
+
+  /** Adapts a {@code Consumer<String>}, which receives one {@link String} per line. */
+  static LineSink of(Consumer<String> consumer) {
+    return line -> consumer.accept(line.toString());
+  }
+
+  /**
+   * Adapts a {@code Consumer<String>}, which receives one {@link String} per line prefixed with the
+   * given prefix, or the prefixed lines of a whole batch separated by line feeds.
+   */
+  static LineSink joining(String linePrefix, Consumer<String> consumer) {
+    return new LineSink() {
+      @Override
+      public void accept(CharSequence line) {
+        consumer.accept(linePrefix + line);
+      }
+
+      @Override
+      public void acceptBatch(List<String> lines) {
+        StringBuilder joined = new StringBuilder();
+        for (String line : lines) {
+          if (joined.length() > 0) {
+            joined.append('\n');
+          }
+          joined.append(linePrefix).append(line);
+        }
+        consumer.accept(joined.toString());
+      }
+    };
+  }
+}
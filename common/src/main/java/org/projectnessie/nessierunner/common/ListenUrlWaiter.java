@@ -15,10 +15,12 @@
  */
 package org.projectnessie.nessierunner.common;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -28,26 +30,30 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Accepts {@link String}s via it's {@link #accept(String)} method and checks for the {@code
- * Listening on: http...} pattern.
+ * Accepts {@link String}s via it's {@link #accept(String)} method and passes them to the {@link
+ * ReadinessDetector}s, by default detecting the {@code Listening on: http...} message, and checks
+ * for failure patterns, which indicate that the process failed to start.
  */
 final class ListenUrlWaiter implements Consumer<String> {
 
-  private static final Pattern HTTP_PORT_LOG_PATTERN =
-      Pattern.compile(
-          "^.*Listening on: (http[s]?://[^ ]*)([.] Management interface listening on (http[s]?://[^ ]*)[.])?$");
   static final String TIMEOUT_MESSAGE =
       "Did not get the http(s) listen URL from the console output.";
-  private static final long MAX_ITER_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
   public static final String NOTHING_RECEIVED = " No output received from process.";
   public static final String CAPTURED_LOG_FOLLOWS = " Captured output follows:\n";
+  static final String STARTUP_FAILURE_MESSAGE = "Process reported a startup failure: ";
 
   private final LongSupplier clock;
-  private final Consumer<String> stdoutTarget;
+  private final LineSink stdoutTarget;
   private final long deadlineListenUrl;
 
   private final CompletableFuture<List<String>> listenUrl = new CompletableFuture<>();
-  private final List<String> capturedLog = new ArrayList<>();
+  private final CapturedLog capturedLog;
+  private final ReadinessDetector[] lineDetectors;
+  private final Matcher[] failureMatchers;
+  private final String[] failureLiterals;
+  private final Runnable onStartupFailure;
+  private volatile Map<String, String> detectedValues;
+  private volatile StartupDiagnostics.Result diagnostics;
 
   /**
    * Construct a new instance to wait for Quarkus' {@code Listening on: ...} message.
@@ -58,27 +64,144 @@ final class ListenUrlWaiter implements Consumer<String> {
    * @param stdoutTarget "real" target for "stdout"
    */
   ListenUrlWaiter(LongSupplier clock, long timeToListenUrlMillis, Consumer<String> stdoutTarget) {
+    this(clock, timeToListenUrlMillis, LineSink.of(stdoutTarget));
+  }
+
+  /**
+   * Construct a new instance to wait for Quarkus' {@code Listening on: ...} message.
+   *
+   * @param clock monotonic clock, nanoseconds
+   * @param timeToListenUrlMillis timeout in millis, the "Listen on: ..." must be received within
+   *     this time (otherwise it will fail)
+   * @param stdoutTarget "real" target for "stdout"
+   */
+  ListenUrlWaiter(LongSupplier clock, long timeToListenUrlMillis, LineSink stdoutTarget) {
+    this(
+        clock,
+        timeToListenUrlMillis,
+        stdoutTarget,
+        new CapturedLog(CapturedLog.DEFAULT_MAX_LINES, CapturedLog.DEFAULT_MAX_BYTES),
+        ReadinessDetectors.defaults(),
+        Collections.emptyList(),
+        () -> {});
+  }
+
+  /**
+   * Construct a new instance to wait for Quarkus' {@code Listening on: ...} message.
+   *
+   * @param clock monotonic clock, nanoseconds
+   * @param timeToListenUrlMillis timeout in millis, the "Listen on: ..." must be received within
+   *     this time (otherwise it will fail)
+   * @param stdoutTarget "real" target for "stdout"
+   * @param capturedLog receives the output lines until the listen URL has been received, included
+   *     in the timeout and early exit messages
+   * @param detectors readiness detectors, the line based ones are evaluated in the given order
+   * @param failurePatterns if any of these patterns is found in a line before the listen URL has
+   *     been received, the process failed to start
+   * @param onStartupFailure called after a line matched one of the failure patterns
+   */
+  ListenUrlWaiter(
+      LongSupplier clock,
+      long timeToListenUrlMillis,
+      LineSink stdoutTarget,
+      CapturedLog capturedLog,
+      List<ReadinessDetector> detectors,
+      List<Pattern> failurePatterns,
+      Runnable onStartupFailure) {
     this.clock = clock;
+    this.capturedLog = capturedLog;
+    this.lineDetectors =
+        detectors.stream().filter(d -> !d.polling()).toArray(ReadinessDetector[]::new);
+    this.failureMatchers = failurePatterns.stream().map(p -> p.matcher("")).toArray(Matcher[]::new);
+    this.failureLiterals =
+        failurePatterns.stream()
+            .map(p -> p.flags() == 0 ? ReadinessDetectors.requiredLiteral(p.pattern()) : null)
+            .toArray(String[]::new);
+    this.onStartupFailure = onStartupFailure;
     this.stdoutTarget = stdoutTarget;
     this.deadlineListenUrl =
         clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(timeToListenUrlMillis);
   }
 
+  /**
+   * Accepts a line from {@link InputBuffer}. Lines are decoded to a {@link String} only until the
+   * listen URL has been received, later lines are passed to the stdout target as a reused {@link
+   * CharSequence}.
+   */
+  void acceptLine(OutputLine line) {
+    if (!listenUrl.isDone()) {
+      String s = line.asString();
+      waitForListenUrl(s, line.length());
+      stdoutTarget.accept(s);
+    } else {
+      stdoutTarget.accept(line.asCharSequence());
+    }
+  }
+
   @Override
   public void accept(String line) {
     if (!listenUrl.isDone()) {
-      synchronized (capturedLog) {
-        capturedLog.add(line);
-        Matcher m = HTTP_PORT_LOG_PATTERN.matcher(line);
-        if (m.matches()) {
-          listenUrl.complete(Arrays.asList(m.group(1), m.group(3)));
-          capturedLog.clear();
-        }
-      }
+      waitForListenUrl(line, line.length());
     }
     stdoutTarget.accept(line);
   }
 
+  private void waitForListenUrl(String line, int byteLength) {
+    capturedLog.add(line, byteLength);
+    for (ReadinessDetector detector : lineDetectors) {
+      String literal = detector.literal();
+      // cheap pre-filter, most lines do not contain the literal
+      if (literal != null && !line.contains(literal)) {
+        continue;
+      }
+      Map<String, String> values = detector.detect(line);
+      if (values != null && detected(values)) {
+        capturedLog.clear();
+        return;
+      }
+    }
+    for (int i = 0; i < failureMatchers.length; i++) {
+      // same cheap pre-filter as for the readiness detectors, most lines do not match
+      String literal = failureLiterals[i];
+      if (literal != null && !line.contains(literal)) {
+        continue;
+      }
+      // Lines are passed by a single thread, the matchers can be reused.
+      if (failureMatchers[i].reset(line).find()) {
+        listenUrl.completeExceptionally(
+            new RuntimeException(
+                STARTUP_FAILURE_MESSAGE + line + CAPTURED_LOG_FOLLOWS + capturedLog.format()));
+        onStartupFailure.run();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Completes the listen URL with the values detected by a {@link ReadinessDetector}. Called for
+   * the line based detectors and by the owner of this instance for polling detectors.
+   *
+   * @return whether the values have been accepted
+   */
+  synchronized boolean detected(Map<String, String> values) {
+    Map<String, String> derived = ReadinessDetectors.withDerivedValues(values);
+    String httpUrl = derived.get(ReadinessDetector.HTTP_URL);
+    if (httpUrl == null || listenUrl.isDone()) {
+      return false;
+    }
+    detectedValues = derived;
+    return listenUrl.complete(
+        Arrays.asList(httpUrl, derived.get(ReadinessDetector.MANAGEMENT_URL)));
+  }
+
+  /**
+   * The values detected by the {@link ReadinessDetector}, {@code null} if the process is not ready
+   * (yet).
+   */
+  Map<String, String> getDetectedValues() {
+    return detectedValues;
+  }
+
   List<String> peekListenUrls() {
     try {
       return listenUrl.isDone() ? listenUrl.get() : null;
@@ -102,32 +225,60 @@ final class ListenUrlWaiter implements Consumer<String> {
       }
 
       try {
-        return listenUrl.get(Math.min(MAX_ITER_WAIT_NANOS, remainingNanos), TimeUnit.NANOSECONDS);
+        return listenUrl.get(remainingNanos, TimeUnit.NANOSECONDS);
       } catch (TimeoutException e) {
-        // Continue, check above.
-        // This "short get()" is implemented to make the unit test TestListenUrlWaiter.noTimeout()
-        // run faster.
+        // Deadline passed, check above. Loops, if the clock did not advance as much as the real
+        // time, which happens in tests.
       } catch (ExecutionException e) {
-        if (e.getCause() instanceof TimeoutException) {
-          throw getTimeoutException(e.getCause());
+        Throwable failure = mapFailure(e.getCause());
+        if (failure instanceof TimeoutException) {
+          throw (TimeoutException) failure;
         }
-        if (e.getCause() instanceof RuntimeException) {
-          throw (RuntimeException) e.getCause();
+        if (failure instanceof RuntimeException) {
+          throw (RuntimeException) failure;
         } else {
-          throw new RuntimeException(e.getCause());
+          throw new RuntimeException(failure);
         }
       }
     }
   }
 
-  private TimeoutException getTimeoutException(Throwable cause) {
-    String log;
-    synchronized (capturedLog) {
-      log = String.join("\n", capturedLog);
+  /**
+   * Get the first captured {@code Listening on: http...} pattern asynchronously.
+   *
+   * <p>The returned future completes exceptionally with a {@link TimeoutException}, when {@link
+   * #timedOut()} is called, the owner of this instance is responsible to call it when the deadline
+   * has passed.
+   */
+  CompletableFuture<List<String>> getListenUrlsAsync() {
+    CompletableFuture<List<String>> result = new CompletableFuture<>();
+    listenUrl.whenComplete(
+        (urls, failure) -> {
+          if (failure == null) {
+            result.complete(urls);
+          } else {
+            result.completeExceptionally(mapFailure(failure));
+          }
+        });
+    return result;
+  }
+
+  private Throwable mapFailure(Throwable failure) {
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
     }
+    return failure instanceof TimeoutException ? getTimeoutException(failure) : failure;
+  }
+
+  private TimeoutException getTimeoutException(Throwable cause) {
+    String log = capturedLog.format();
+    String message =
+        TIMEOUT_MESSAGE + (log.isEmpty() ? NOTHING_RECEIVED : (CAPTURED_LOG_FOLLOWS + log));
+    StartupDiagnostics.Result diag = diagnostics;
     TimeoutException ex =
-        new TimeoutException(
-            TIMEOUT_MESSAGE + (log.isEmpty() ? NOTHING_RECEIVED : (CAPTURED_LOG_FOLLOWS + log)));
+        diag != null
+            ? new StartupTimeoutException(message + diag.format(), diag)
+            : new TimeoutException(message);
     if (cause != null) {
       ex.addSuppressed(cause);
     }
@@ -139,16 +290,24 @@ final class ListenUrlWaiter implements Consumer<String> {
   }
 
   void timedOut() {
+    timedOut(null);
+  }
+
+  /**
+   * Like {@link #timedOut()}, the given diagnostics of the process are included in the timeout
+   * exception.
+   */
+  void timedOut(StartupDiagnostics.Result diagnostics) {
+    if (diagnostics != null && !listenUrl.isDone()) {
+      this.diagnostics = diagnostics;
+    }
     listenUrl.completeExceptionally(new TimeoutException());
   }
 
   public void exited(int exitCode) {
     // No-op, if the listen-URL has already been received, so using the TIMEOUT_MESSAGE here is
     // fine.
-    String log;
-    synchronized (capturedLog) {
-      log = String.join("\n", capturedLog);
-    }
+    String log = capturedLog.format();
     listenUrl.completeExceptionally(
         new RuntimeException(
             ListenUrlWaiter.TIMEOUT_MESSAGE
@@ -162,6 +321,10 @@ final class ListenUrlWaiter implements Consumer<String> {
     return deadlineListenUrl - clock.getAsLong();
   }
 
+  boolean isDone() {
+    return listenUrl.isDone();
+  }
+
   boolean isTimeout() {
     if (listenUrl.isDone() && !listenUrl.isCompletedExceptionally()) {
       return false;
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A single line of process output, without the line terminator, as undecoded bytes.
+ *
+ * <p>Instances are reused by {@link InputBuffer} for every line and are only valid during the call
+ * to the line consumer. The bytes are decoded to a {@link String} only when {@link #asString()} is
+ * called, and only once per line, regardless how many consumers need the string representation.
+ * {@link #asCharSequence()} decodes into a reused character buffer and does not allocate per line.
+ */
+final class OutputLine {
+
+  private final Charset charset;
+  private ByteBuffer bytes;
+  private String string;
+
+  private CharsetDecoder decoder;
+  private CharBuffer chars;
+  private boolean charsValid;
+
+  OutputLine(Charset charset) {
+    this.charset = charset;
+  }
+
+  OutputLine reset(ByteBuffer bytes) {
+    this.bytes = bytes;
+    this.string = null;
+    this.charsValid = false;
+    return this;
+  }
+
+  /**
+   * The raw bytes of this line, position and limit of the returned buffer delimit the line. The
+   * returned buffer must not be modified.
+   */
+  ByteBuffer bytes() {
+    return bytes;
+  }
+
+  int length() {
+    return bytes.remaining();
+  }
+
+  /** Returns the decoded line, decodes the bytes on the first invocation. */
+  String asString() {
+    String s = string;
+    if (s == null) {
+      string =
+          s = new String(bytes.array(), bytes.arrayOffset() + bytes.position(), length(), charset);
+    }
+    return s;
+  }
+
+  /**
+   * Returns the decoded line as a {@link CharSequence}, which is either the already decoded {@link
+   * String} or a reused {@link CharBuffer} that is only valid until the next line.
+   */
+  CharSequence asCharSequence() {
+    if (string != null) {
+      return string;
+    }
+    if (!charsValid) {
+      decodeChars();
+    }
+    return chars;
+  }
+
+  private void decodeChars() {
+    if (decoder == null) {
+      decoder =
+          charset
+              .newDecoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    int maxChars = (int) (length() * (double) decoder.maxCharsPerByte()) + 1;
+    if (chars == null || chars.capacity() < maxChars) {
+      chars = CharBuffer.allocate(Math.max(maxChars, chars == null ? 256 : chars.capacity() * 2));
+    }
+    int position = bytes.position();
+    chars.clear();
+    decoder.reset();
+    decoder.decode(bytes, chars, true);
+    decoder.flush(chars);
+    chars.flip();
+    bytes.position(position);
+    charsValid = true;
+  }
+
+  @Override
+  public String toString() {
+    return asString();
+  }
+}
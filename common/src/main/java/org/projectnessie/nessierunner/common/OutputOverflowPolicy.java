@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+/**
+ * Policy applied by {@link ProcessHandler}, when asynchronous output forwarding is enabled via
+ * {@link ProcessHandler#setAsyncOutput(int, OutputOverflowPolicy)} and the queue of lines to be
+ * forwarded is full, because the stdout target cannot keep up.
+ */
+public enum OutputOverflowPolicy {
+  /** Silently drop lines that do not fit into the queue. */
+  DROP,
+  /**
+   * Wait until the line fits into the queue, which lets the process block, when its output pipe is
+   * full. No lines are lost.
+   */
+  BLOCK,
+  /**
+   * Drop lines that do not fit into the queue, but forward a line with the number of dropped lines
+   * once the queue has room again.
+   */
+  SUMMARIZE
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Polling {@link ReadinessDetector} that waits for a file containing either a port number, the HTTP
+ * port, or named values in properties format.
+ */
+final class PortFileReadinessDetector implements ReadinessDetector {
+
+  private final Path file;
+
+  PortFileReadinessDetector(Path file) {
+    this.file = file;
+  }
+
+  @Override
+  public String literal() {
+    return null;
+  }
+
+  @Override
+  public Map<String, String> detect(String line) {
+    return null;
+  }
+
+  @Override
+  public void prepare() throws IOException {
+    // a port file written by a previous process would be reported as ready immediately
+    Files.deleteIfExists(file);
+  }
+
+  @Override
+  public boolean polling() {
+    return true;
+  }
+
+  @Override
+  public Map<String, String> poll() {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    String content;
+    try {
+      content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+    } catch (IOException e) {
+      // file may be in the process of being written or replaced, retry later
+      return null;
+    }
+    if (content.isEmpty()) {
+      return null;
+    }
+    Map<String, String> values = new LinkedHashMap<>();
+    if (content.chars().allMatch(Character::isDigit)) {
+      values.put(HTTP_PORT, content);
+      return values;
+    }
+    Properties props = new Properties();
+    try {
+      props.load(new StringReader(content));
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    }
+    for (String name : props.stringPropertyNames()) {
+      values.put(name, props.getProperty(name).trim());
+    }
+    if (!values.containsKey(HTTP_URL) && !values.containsKey(HTTP_PORT)) {
+      // incomplete
+      return null;
+    }
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return "port-file:" + file;
+  }
+}
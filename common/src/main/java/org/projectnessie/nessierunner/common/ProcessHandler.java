@@ -15,19 +15,32 @@
  */
 package org.projectnessie.nessierunner.common;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
 import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Handles the execution of an external process, focused on running a Quarkus application jar.
@@ -36,6 +49,12 @@ import java.util.function.LongSupplier;
  * #getListenUrls() Quarkus HTTP listen URL} as Quarkus prints to stdout, and manages process
  * lifetime and line-by-line I/O pass-through for stdout + stderr.
  *
+ * <p>I/O is event driven: a dedicated thread blocks on the process' (merged) output stream, process
+ * termination is signalled via {@link Process#onExit()} and the deadline for the listen URL is
+ * enforced by a scheduled check. There is no busy polling while the process is running. {@link
+ * #getListenUrlsAsync()} allows waiting for the listen URLs of multiple processes without blocking
+ * a thread per process.
+ *
  * <p>Any instance of this class can only be used to start (and stop) one process and cannot be
  * reused for another process.
  *
@@ -47,29 +66,71 @@ public class ProcessHandler {
   public static final long MILLIS_TO_HTTP_PORT = 30_000L;
   public static final long MILLIS_TO_STOP = 15_000L;
 
+  /** Quarkus' default readiness endpoint path, see {@link #setReadinessPath(String)}. */
+  public static final String DEFAULT_READINESS_PATH = "/q/health/ready";
+
+  /** Resource sampling interval for plugins, if only resource limits are configured. */
+  public static final long DEFAULT_RESOURCE_SAMPLING_INTERVAL_MILLIS = 1000L;
+
+  /**
+   * Default regular expressions for output lines that indicate that Quarkus/Nessie failed to start,
+   * see {@link #setFailurePatterns(List)}.
+   */
+  public static final List<String> DEFAULT_FAILURE_PATTERNS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              "Failed to start application",
+              "seems to be in use by another process",
+              "java\\.lang\\.OutOfMemoryError"));
+
+  private static final long MIN_TIMEOUT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long DETECTOR_POLL_INTERVAL_MILLIS = 50L;
+  private static final AtomicInteger THREAD_NUM = new AtomicInteger();
+
   private LongSupplier ticker = System::nanoTime;
 
   private static final int NOT_STARTED = -1;
   private static final int RUNNING = -2;
-  private static final int ERROR = -3;
   private final AtomicInteger exitCode = new AtomicInteger(NOT_STARTED);
 
   private final AtomicBoolean stopped = new AtomicBoolean();
+  private final AtomicLongArray timings = new AtomicLongArray(ProcessTimings.Phase.values().length);
 
   private Process process;
 
   private long timeToListenUrlMillis = MILLIS_TO_HTTP_PORT;
   private long timeStopMillis = MILLIS_TO_STOP;
 
-  private Consumer<String> stdoutTarget = System.out::println;
+  private LineSink stdoutTarget = System.out::println;
+  private Charset outputCharset = Charset.defaultCharset();
+  private int capturedLogMaxLines = CapturedLog.DEFAULT_MAX_LINES;
+  private int capturedLogMaxBytes = CapturedLog.DEFAULT_MAX_BYTES;
+  private int asyncOutputQueueSize;
+  private OutputOverflowPolicy asyncOutputOverflowPolicy = OutputOverflowPolicy.BLOCK;
+  private List<Pattern> failurePatterns = compilePatterns(DEFAULT_FAILURE_PATTERNS);
+  private List<ReadinessDetector> readinessDetectors = ReadinessDetectors.defaults();
+  private String readinessPath;
+  private Consumer<String> debugTarget = line -> {};
+  private AsyncLineForwarder asyncOutput;
   private ListenUrlWaiter listenUrlWaiter;
-
-  private volatile ExecutorService watchdogExecutor;
-  private volatile Future<?> watchdogFuture;
+  private CompletableFuture<List<String>> readyListenUrls;
+  private volatile ReadinessProbe readinessProbe;
+  private long resourceSamplingIntervalMillis;
+  private ResourceLimits resourceLimits = ResourceLimits.NONE;
+  private volatile ResourceSampler resourceSampler;
+  private FlightRecording flightRecording;
+  private StartupDiagnostics startupDiagnostics;
+
+  private volatile ScheduledThreadPoolExecutor watchdogExecutor;
+  private volatile CompletableFuture<Process> exitedFuture;
+  private volatile CompletableFuture<Void> outputDrainedFuture;
   private volatile Thread shutdownHook;
+  private HttpClient httpClient;
 
   public ProcessHandler() {
-    // empty
+    for (int i = 0; i < timings.length(); i++) {
+      timings.set(i, ProcessTimings.NOT_RECORDED);
+    }
   }
 
   public ProcessHandler setTimeToListenUrlMillis(long timeToListenUrlMillis) {
@@ -82,8 +143,146 @@ public class ProcessHandler {
     return this;
   }
 
+  /**
+   * Sets the target for the process' output lines, receives one {@link String} per line. See {@link
+   * #setStdoutSink(LineSink)} for an alternative that does not require a {@link String} allocation
+   * per line.
+   */
   public ProcessHandler setStdoutTarget(Consumer<String> stdoutTarget) {
-    this.stdoutTarget = stdoutTarget;
+    this.stdoutTarget = LineSink.of(stdoutTarget);
+    return this;
+  }
+
+  /**
+   * Sets the target for the process' output lines, receives a reused {@link CharSequence} per line,
+   * see {@link LineSink}.
+   */
+  public ProcessHandler setStdoutSink(LineSink stdoutSink) {
+    this.stdoutTarget = stdoutSink;
+    return this;
+  }
+
+  /**
+   * Sets the charset used to decode the process' output, defaults to the platform's default
+   * charset. Must be an ASCII compatible charset, like {@code UTF-8}.
+   */
+  public ProcessHandler setOutputCharset(Charset outputCharset) {
+    this.outputCharset = outputCharset;
+    return this;
+  }
+
+  /**
+   * Enables asynchronous forwarding of output lines to the stdout target via a bounded queue, so
+   * that a slow stdout target, like a contended build tool logger, does not stall the process.
+   * Output lines are still inspected for the listen URL synchronously.
+   *
+   * @param queueSize maximum number of queued lines, {@code 0} disables asynchronous forwarding,
+   *     which is the default
+   * @param overflowPolicy policy to apply, when the queue is full
+   */
+  public ProcessHandler setAsyncOutput(int queueSize, OutputOverflowPolicy overflowPolicy) {
+    this.asyncOutputQueueSize = queueSize;
+    this.asyncOutputOverflowPolicy = overflowPolicy;
+    return this;
+  }
+
+  /**
+   * Sets the regular expressions for output lines that indicate that the process failed to start,
+   * defaults to {@link #DEFAULT_FAILURE_PATTERNS}. If a line emitted before the listen URL matches
+   * (see {@link java.util.regex.Matcher#find()}) any of the patterns, the process is stopped
+   * immediately instead of waiting for the listen URL timeout. An empty list disables this check.
+   */
+  public ProcessHandler setFailurePatterns(List<String> failurePatterns) {
+    this.failurePatterns = compilePatterns(failurePatterns);
+    return this;
+  }
+
+  /**
+   * Sets the {@link ReadinessDetector}s, which detect the listen URL and other values, defaults to
+   * {@link ReadinessDetectors#defaults()}, which detect Quarkus' {@code Listening on: ...} message
+   * in plain text and JSON console logs. Line based detectors are evaluated in the given order,
+   * polling detectors are polled every {@value #DETECTOR_POLL_INTERVAL_MILLIS} ms.
+   */
+  public ProcessHandler setReadinessDetectors(List<ReadinessDetector> readinessDetectors) {
+    if (readinessDetectors.isEmpty()) {
+      throw new IllegalArgumentException("At least one readiness detector is required");
+    }
+    this.readinessDetectors = readinessDetectors;
+    return this;
+  }
+
+  /**
+   * Enables the readiness probe. After the listen URL has been received, the readiness endpoint at
+   * {@code readinessPath}, usually {@value #DEFAULT_READINESS_PATH}, is polled on the management
+   * URL, or the HTTP URL if there is no management interface, until it responds with HTTP status
+   * 200. {@link #getListenUrls()} and {@link #getListenUrlsAsync()} complete only after that. The
+   * readiness probe must succeed within the time configured via {@link
+   * #setTimeToListenUrlMillis(long)}.
+   *
+   * @param readinessPath path of the readiness endpoint, {@code null} disables the readiness probe,
+   *     which is the default
+   */
+  public ProcessHandler setReadinessPath(String readinessPath) {
+    this.readinessPath = readinessPath;
+    return this;
+  }
+
+  /** Sets the target for debug messages, for example the latency of each readiness probe. */
+  public ProcessHandler setDebugTarget(Consumer<String> debugTarget) {
+    this.debugTarget = debugTarget;
+    return this;
+  }
+
+  /**
+   * Maximum number of output lines retained until the listen URL has been received, the retained
+   * lines are included in the exception message, if the listen URL is not received. Defaults to
+   * 500.
+   */
+  public ProcessHandler setCapturedLogMaxLines(int capturedLogMaxLines) {
+    this.capturedLogMaxLines = capturedLogMaxLines;
+    return this;
+  }
+
+  /**
+   * Maximum number of bytes of the output lines retained until the listen URL has been received,
+   * see {@link #setCapturedLogMaxLines(int)}. Defaults to 256 KiB.
+   */
+  public ProcessHandler setCapturedLogMaxBytes(int capturedLogMaxBytes) {
+    this.capturedLogMaxBytes = capturedLogMaxBytes;
+    return this;
+  }
+
+  /**
+   * Samples the resident set size, CPU time and thread count of the process and its descendants
+   * from {@code /proc} every {@code intervalMillis} and when the process is stopped, see {@link
+   * #getResourceUsage()}. Only supported on Linux, ignored on other platforms.
+   *
+   * @param intervalMillis sampling interval, {@code 0} disables sampling
+   * @param limits thresholds checked by {@link #getResourceLimitViolations()}
+   */
+  public ProcessHandler setResourceSampling(long intervalMillis, ResourceLimits limits) {
+    this.resourceSamplingIntervalMillis = intervalMillis;
+    this.resourceLimits = limits;
+    return this;
+  }
+
+  /**
+   * Associates the JFR recording started via the process' command, which the process dumps when it
+   * exits, see {@link #getFlightRecording()}.
+   */
+  public ProcessHandler setFlightRecording(FlightRecording flightRecording) {
+    this.flightRecording = flightRecording;
+    return this;
+  }
+
+  /**
+   * Collects a thread dump and a class histogram, before the process is stopped because it did not
+   * emit the listen URL in time. The diagnostics are included in the {@link
+   * StartupTimeoutException}. Collecting them delays stopping the process and the other checks of
+   * the watchdog for up to {@link StartupDiagnostics#collect(long) the diagnostics' time limit}.
+   */
+  public ProcessHandler setStartupDiagnostics(StartupDiagnostics startupDiagnostics) {
+    this.startupDiagnostics = startupDiagnostics;
     return this;
   }
 
@@ -92,18 +291,33 @@ public class ProcessHandler {
     return this;
   }
 
+  /**
+   * Records the start of building the process' command, for {@link #getTimings()}. Building the
+   * command ends with the call to {@link #start(ProcessBuilder)}.
+   */
+  public ProcessHandler commandBuildStarted() {
+    recordPhase(ProcessTimings.Phase.COMMAND_BUILD);
+    return this;
+  }
+
   /**
    * Starts the process from the given {@link ProcessBuilder}.
    *
    * @param processBuilder process to start
    * @return instance handling the process' runtime
-   * @throws IOException usually, if the process fails to start
+   * @throws IOException usually, if the process fails to start, or if a {@link
+   *     ReadinessDetector#prepare() readiness detector} cannot be prepared
    */
   public ProcessHandler start(ProcessBuilder processBuilder) throws IOException {
     if (process != null) {
       throw new IllegalStateException("Process already started");
     }
 
+    for (ReadinessDetector detector : readinessDetectors) {
+      detector.prepare();
+    }
+
+    recordPhase(ProcessTimings.Phase.SPAWN);
     return started(processBuilder.redirectErrorStream(true).start());
   }
 
@@ -117,8 +331,40 @@ public class ProcessHandler {
     if (this.process != null) {
       throw new IllegalStateException("Process already started");
     }
+    recordPhase(ProcessTimings.Phase.SPAWNED);
+
+    LineSink target = stdoutTarget;
+    if (asyncOutputQueueSize > 0) {
+      asyncOutput =
+          new AsyncLineForwarder(
+              asyncOutputQueueSize,
+              asyncOutputOverflowPolicy,
+              stdoutTarget,
+              daemonThreads("output-forwarder"));
+      target = asyncOutput;
+    }
 
-    listenUrlWaiter = new ListenUrlWaiter(ticker, timeToListenUrlMillis, stdoutTarget);
+    listenUrlWaiter =
+        new ListenUrlWaiter(
+            ticker,
+            timeToListenUrlMillis,
+            target,
+            new CapturedLog(capturedLogMaxLines, capturedLogMaxBytes),
+            readinessDetectors,
+            failurePatterns,
+            this::startupFailed);
+
+    readyListenUrls =
+        listenUrlWaiter
+            .getListenUrlsAsync()
+            .whenComplete(
+                (urls, failure) -> recordPhaseOnSuccess(ProcessTimings.Phase.LISTEN_URL, failure));
+    if (readinessPath != null) {
+      readyListenUrls = readyListenUrls.thenCompose(this::probeReadiness);
+    }
+    readyListenUrls =
+        readyListenUrls.whenComplete(
+            (urls, failure) -> recordPhaseOnSuccess(ProcessTimings.Phase.READY, failure));
 
     this.process = process;
     exitCode.set(RUNNING);
@@ -126,8 +372,44 @@ public class ProcessHandler {
     shutdownHook = new Thread(this::shutdownHandler);
     Runtime.getRuntime().addShutdownHook(shutdownHook);
 
-    watchdogExecutor = Executors.newSingleThreadExecutor();
-    watchdogFuture = watchdogExecutor.submit(this::watchdog);
+    watchdogExecutor = new ScheduledThreadPoolExecutor(1, daemonThreads("watchdog"));
+    watchdogExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+    CompletableFuture<Void> outputDrained = new CompletableFuture<>();
+    daemonThreads("output").newThread(() -> drainOutput(outputDrained)).start();
+
+    CompletableFuture<Process> exited =
+        process
+            .onExit()
+            .thenApply(
+                p -> {
+                  recordPhase(ProcessTimings.Phase.EXITED);
+                  exitCode.set(p.exitValue());
+                  return p;
+                });
+
+    // The watchdog is "done", when the process has exited _and_ its output has been consumed, so
+    // that the listen URL waiter sees all output. But not later than the stop timeout after the
+    // exit, because the output thread may have failed or a descendant process may keep the output
+    // open.
+    exited
+        .thenCompose(
+            p ->
+                outputDrained
+                    .handle((v, failure) -> p)
+                    .completeOnTimeout(p, timeStopMillis, TimeUnit.MILLISECONDS))
+        .whenComplete(
+            (p, failure) -> {
+              watchdogExecutor.shutdown();
+              listenUrlWaiter.exited(exitCode.get());
+              cancelReadinessProbe("Process exited, exit code is " + exitCode.get());
+            });
+    exitedFuture = exited;
+    outputDrainedFuture = outputDrained;
+
+    scheduleTimeoutCheck();
+    scheduleDetectorPolling();
+    scheduleResourceSampling(process);
 
     return this;
   }
@@ -145,7 +427,124 @@ public class ProcessHandler {
    * @throws TimeoutException if the Quarkus process did not write the listen URL to stdout.
    */
   public List<String> getListenUrls() throws InterruptedException, TimeoutException {
-    return listenUrlWaiter.getListenUrls();
+    try {
+      listenUrlWaiter.getListenUrls();
+      // The readiness probe, if enabled, enforces the deadline. Without the readiness probe,
+      // readyListenUrls completes right after the listen URL has been received.
+      return readyListenUrls.get();
+    } catch (TimeoutException e) {
+      // The caller noticed the timeout before the scheduled check, stop the process. Stopping
+      // collects the startup diagnostics first, which the timeout of readyListenUrls includes, even
+      // if the scheduled check stops the process concurrently.
+      doStop(null);
+      try {
+        readyListenUrls.get();
+      } catch (ExecutionException failure) {
+        if (failure.getCause() instanceof TimeoutException) {
+          throw (TimeoutException) failure.getCause();
+        }
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof TimeoutException) {
+        throw (TimeoutException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Returns the http(s) listen URL as emitted to stdout by Quarkus, without blocking the calling
+   * thread.
+   *
+   * <p>If the Quarkus process does not emit that URL within the time configured via {@link
+   * #setTimeToListenUrlMillis(long)}, which defaults to {@value #MILLIS_TO_HTTP_PORT} ms, the
+   * process is stopped and the returned stage completes exceptionally with a {@link
+   * TimeoutException}. The stage also completes exceptionally, if the process exits or is stopped
+   * before emitting the listen URL.
+   *
+   * @return stage that completes with the listen URLs, never {@code null}.
+   */
+  public CompletionStage<List<String>> getListenUrlsAsync() {
+    if (process == null) {
+      throw new IllegalStateException("No process started");
+    }
+    return readyListenUrls.minimalCompletionStage();
+  }
+
+  /**
+   * Returns the values detected by the {@link ReadinessDetector}s, for example {@code httpUrl},
+   * {@code httpPort} or {@code version}.
+   *
+   * @return the detected values, empty if the listen URL has not been detected (yet)
+   */
+  public Map<String, String> getDetectedValues() {
+    if (process == null) {
+      throw new IllegalStateException("No process started");
+    }
+    Map<String, String> values = listenUrlWaiter.getDetectedValues();
+    return values != null ? values : Collections.emptyMap();
+  }
+
+  /**
+   * Returns the timestamps of the phases of the process' lifetime recorded so far, using the
+   * monotonic {@link #setTicker(LongSupplier) ticker}.
+   *
+   * @return snapshot of the timings
+   */
+  public ProcessTimings getTimings() {
+    long[] nanos = new long[timings.length()];
+    for (int i = 0; i < nanos.length; i++) {
+      nanos[i] = timings.get(i);
+    }
+    return new ProcessTimings(nanos);
+  }
+
+  /**
+   * Summary of the resource usage sampled so far, see {@link #setResourceSampling(long,
+   * ResourceLimits)}.
+   *
+   * @return the resource usage or {@code null}, if resource sampling is disabled or not supported
+   */
+  public ResourceUsage getResourceUsage() {
+    ResourceSampler sampler = resourceSampler;
+    return sampler != null ? sampler.usage() : null;
+  }
+
+  /**
+   * Checks the {@link #getResourceUsage() resource usage} against the limits passed to {@link
+   * #setResourceSampling(long, ResourceLimits)}.
+   *
+   * @return human-readable descriptions of the exceeded limits, empty if none is exceeded
+   */
+  public List<String> getResourceLimitViolations() {
+    ResourceUsage usage = getResourceUsage();
+    return usage != null ? resourceLimits.check(usage) : Collections.emptyList();
+  }
+
+  /**
+   * The JFR recording of the process, complete after the process has exited.
+   *
+   * @return the recording or {@code null}, if none is {@link #setFlightRecording(FlightRecording)
+   *     associated}
+   */
+  public FlightRecording getFlightRecording() {
+    return flightRecording;
+  }
+
+  private void recordPhase(ProcessTimings.Phase phase) {
+    // keep the first timestamp
+    timings.compareAndSet(phase.ordinal(), ProcessTimings.NOT_RECORDED, ticker.getAsLong());
+  }
+
+  private void recordPhaseOnSuccess(ProcessTimings.Phase phase, Throwable failure) {
+    if (failure == null) {
+      recordPhase(phase);
+    }
   }
 
   /**
@@ -171,22 +570,27 @@ public class ProcessHandler {
 
   private void doStop(String reason) {
     if (stopped.compareAndSet(false, true)) {
+      recordPhase(ProcessTimings.Phase.STOP_REQUESTED);
       try {
         if (reason != null) {
           listenUrlWaiter.stopped(reason);
         } else {
-          listenUrlWaiter.timedOut();
+          listenUrlWaiter.timedOut(collectStartupDiagnostics());
         }
-        process.destroy();
+        cancelReadinessProbe(reason != null ? reason : "Timed out");
+        ResourceSampler sampler = resourceSampler;
+        if (sampler != null) {
+          sampler.sample();
+        }
+        terminate(false);
         try {
           if (!process.waitFor(timeStopMillis, TimeUnit.MILLISECONDS)) {
-            process.destroyForcibly();
+            terminate(true);
           }
         } catch (InterruptedException e) {
-          process.destroyForcibly();
+          terminate(true);
           Thread.currentThread().interrupt();
         }
-        watchdogExecutor.shutdown();
       } finally {
         try {
           // Don't remove the shutdown-hook if we're running in the shutdown-hook
@@ -198,17 +602,66 @@ public class ProcessHandler {
     }
   }
 
+  private StartupDiagnostics.Result collectStartupDiagnostics() {
+    StartupDiagnostics diagnostics = startupDiagnostics;
+    if (diagnostics == null || !process.isAlive()) {
+      return null;
+    }
+    long pid;
+    try {
+      pid = process.pid();
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+    debugTarget.accept("Collecting startup diagnostics of process " + pid);
+    return diagnostics.collect(pid);
+  }
+
+  /**
+   * Terminates the process via its {@link ProcessHandle}, because {@link Process#destroy()} also
+   * closes the process' streams, which would fail the output thread and lose the output emitted
+   * while the process shuts down.
+   */
+  private void terminate(boolean forcibly) {
+    boolean requested;
+    try {
+      ProcessHandle handle = process.toHandle();
+      requested = forcibly ? handle.destroyForcibly() : handle.destroy();
+    } catch (UnsupportedOperationException e) {
+      requested = false;
+    }
+    if (!requested) {
+      if (forcibly) {
+        process.destroyForcibly();
+      } else {
+        process.destroy();
+      }
+    }
+  }
+
   void watchdogExitGrace() {
     try {
-      // Give the watchdog task/thread some time to finish its work
-      watchdogFuture.get(timeStopMillis, TimeUnit.MILLISECONDS);
+      // Give the process some time to exit, it has been killed, if it did not stop in time
+      exitedFuture.get(timeStopMillis, TimeUnit.MILLISECONDS);
     } catch (ExecutionException e) {
       throw new RuntimeException("ProcessHandler's watchdog thread failed.", e);
     } catch (TimeoutException e) {
-      throw new IllegalStateException("ProcessHandler's watchdog thread failed to finish in time.");
+      throw new IllegalStateException("Process failed to exit in time.");
     } catch (InterruptedException e) {
       process.destroyForcibly();
       Thread.currentThread().interrupt();
+      return;
+    }
+    try {
+      // Give the output thread some time to forward the remaining output
+      outputDrainedFuture.get(timeStopMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      debugTarget.accept("Failed to consume the output of the process: " + e.getCause());
+    } catch (TimeoutException e) {
+      debugTarget.accept(
+          "The output of the process has not been closed, a descendant process may still use it");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -234,59 +687,220 @@ public class ProcessHandler {
     return listenUrlWaiter.remainingNanos();
   }
 
-  private Object watchdog() throws IOException {
-    try (InputStream out = process.getInputStream()) {
-      InputBuffer stdout = new InputBuffer(out, listenUrlWaiter);
-      try {
+  private void scheduleTimeoutCheck() {
+    try {
+      watchdogExecutor.schedule(
+          this::checkTimeout,
+          Math.max(listenUrlWaiter.remainingNanos(), MIN_TIMEOUT_CHECK_NANOS),
+          TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // watchdog has already been shut down
+    }
+  }
 
-        /*
-         * I/O loop.
-         *
-         * Fetches data from stdout + stderr and pushes the read data to the associated `InputBuffer`
-         * instances. The one for `stdout` listens for the HTTP listen address from Quarkus.
-         *
-         * As long as there is data from stdout or stderr, the loop does not wait/sleep to get data
-         * out as fast as possible. If there's no data available, the loop will "yield" via a
-         * Thread.sleep(1L), which is good enough.
-         *
-         * Note: we cannot do blocking-I/O here, because we have to read from both stdout+stderr.
-         *
-         * If the process exits, the loop will exit as soon as there is no more data left from
-         * stdout/stderr.
-         */
-        while (true) {
-          boolean anyIo = stdout.io();
-
-          try {
-            int ec = process.exitValue();
-            exitCode.set(ec);
-            if (!anyIo) {
-              listenUrlWaiter.exited(exitCode.get());
-              break;
-            }
-          } catch (IllegalThreadStateException e) {
-            // nessie server still alive
-          }
+  private void scheduleDetectorPolling() {
+    List<ReadinessDetector> polling =
+        readinessDetectors.stream().filter(ReadinessDetector::polling).collect(Collectors.toList());
+    if (polling.isEmpty()) {
+      return;
+    }
+    try {
+      ScheduledFuture<?> future =
+          watchdogExecutor.scheduleWithFixedDelay(
+              () -> pollDetectors(polling),
+              0L,
+              DETECTOR_POLL_INTERVAL_MILLIS,
+              TimeUnit.MILLISECONDS);
+      listenUrlWaiter.getListenUrlsAsync().whenComplete((urls, failure) -> future.cancel(false));
+    } catch (RejectedExecutionException e) {
+      // watchdog has already been shut down
+    }
+  }
 
-          if (listenUrlWaiter.isTimeout() && !stopped.get()) {
-            doStop(null);
-          }
+  private void scheduleResourceSampling(Process process) {
+    if (resourceSamplingIntervalMillis <= 0L) {
+      return;
+    }
+    long pid;
+    ProcessHandle handle;
+    try {
+      pid = process.pid();
+      handle = process.toHandle();
+    } catch (UnsupportedOperationException e) {
+      return;
+    }
+    if (!ResourceSampler.isSupported(pid)) {
+      debugTarget.accept("Resource sampling via /proc is not supported on this platform");
+      return;
+    }
+    ResourceSampler sampler =
+        new ResourceSampler(
+            ResourceSampler.PROC,
+            pid,
+            () -> handle.descendants().mapToLong(ProcessHandle::pid),
+            ticker);
+    resourceSampler = sampler;
+    try {
+      watchdogExecutor.scheduleAtFixedRate(
+          sampler::sample, 0L, resourceSamplingIntervalMillis, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // watchdog has already been shut down
+    }
+  }
 
-          if (!anyIo) {
-            try {
-              // Yield CPU for a little while, so this background thread does not consume 100% CPU.
-              Thread.sleep(1L);
-            } catch (InterruptedException interruptedException) {
-              doStop("ProcessHandler's watchdog thread interrupted.");
-              exitCode.set(ERROR);
-              break;
-            }
-          }
-        }
-      } finally {
-        stdout.flush();
+  private void pollDetectors(List<ReadinessDetector> polling) {
+    for (ReadinessDetector detector : polling) {
+      if (listenUrlWaiter.isDone()) {
+        return;
+      }
+      Map<String, String> values = detector.poll();
+      if (values != null && listenUrlWaiter.detected(values)) {
+        debugTarget.accept("Readiness detected by " + detector + ": " + values);
+        return;
       }
     }
-    return null;
+  }
+
+  /**
+   * Called from the output thread when a line matched a failure pattern. The process is stopped
+   * from the watchdog executor, because the output thread has to continue draining the process'
+   * output while the process terminates.
+   */
+  private void startupFailed() {
+    stopAsync("Process reported a startup failure");
+  }
+
+  private void stopAsync(String reason) {
+    try {
+      watchdogExecutor.execute(() -> doStop(reason));
+    } catch (RejectedExecutionException e) {
+      // watchdog has already been shut down
+    }
+  }
+
+  private synchronized HttpClient httpClient() {
+    if (httpClient == null) {
+      httpClient =
+          HttpClient.newBuilder()
+              .connectTimeout(Duration.ofMillis(ReadinessProbe.MAX_REQUEST_MILLIS))
+              .build();
+    }
+    return httpClient;
+  }
+
+  /**
+   * Starts the readiness probe against the management URL, if present, or the HTTP URL, within the
+   * listen URL deadline. The process is stopped, if the readiness probe fails.
+   */
+  private CompletableFuture<List<String>> probeReadiness(List<String> listenUrls) {
+    String url = listenUrls.get(1) != null ? listenUrls.get(1) : listenUrls.get(0);
+    ReadinessProbe probe =
+        new ReadinessProbe(
+            httpClient(),
+            ReadinessProbe.readinessUri(url, readinessPath),
+            ticker,
+            ticker.getAsLong() + listenUrlWaiter.remainingNanos(),
+            watchdogExecutor,
+            debugTarget);
+    readinessProbe = probe;
+    if (stopped.get()) {
+      probe.cancel("Process stopped");
+    }
+    return probe
+        .probe()
+        .whenComplete(
+            (v, failure) -> {
+              if (failure instanceof TimeoutException) {
+                stopAsync(null);
+              }
+            })
+        .thenApply(v -> listenUrls);
+  }
+
+  private void cancelReadinessProbe(String reason) {
+    ReadinessProbe probe = readinessProbe;
+    if (probe != null) {
+      probe.cancel(reason);
+    }
+  }
+
+  /**
+   * Scheduled check for the listen-URL deadline. Re-schedules itself until either the listen URL
+   * has been received, the process has been stopped or the deadline has passed, in which case the
+   * process is stopped.
+   */
+  private void checkTimeout() {
+    if (stopped.get() || listenUrlWaiter.isDone()) {
+      return;
+    }
+    if (listenUrlWaiter.isTimeout()) {
+      doStop(null);
+    } else {
+      scheduleTimeoutCheck();
+    }
+  }
+
+  /**
+   * Drains stdout (with stderr redirected to stdout) of the process via blocking reads and pushes
+   * the read data to the associated {@link InputBuffer}, which listens for the HTTP listen address
+   * from Quarkus. Returns when the process closed its output, usually when it exited, and all lines
+   * have been forwarded to the stdout target.
+   */
+  private void drainOutput(CompletableFuture<Void> outputDrained) {
+    try (InputStream out = new FirstOutputInputStream(process.getInputStream())) {
+      new InputBuffer(out, outputCharset, listenUrlWaiter::acceptLine).drain();
+      if (asyncOutput != null) {
+        asyncOutput.close(timeStopMillis);
+      }
+      outputDrained.complete(null);
+    } catch (Throwable t) {
+      outputDrained.completeExceptionally(t);
+    }
+  }
+
+  /** Records {@link ProcessTimings.Phase#FIRST_OUTPUT}, when the first byte has been read. */
+  private final class FirstOutputInputStream extends FilterInputStream {
+    private boolean received;
+
+    FirstOutputInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        received();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int rd = super.read(b, off, len);
+      if (rd > 0) {
+        received();
+      }
+      return rd;
+    }
+
+    private void received() {
+      if (!received) {
+        received = true;
+        recordPhase(ProcessTimings.Phase.FIRST_OUTPUT);
+      }
+    }
+  }
+
+  private static List<Pattern> compilePatterns(List<String> patterns) {
+    return patterns.stream().map(Pattern::compile).collect(Collectors.toList());
+  }
+
+  private static ThreadFactory daemonThreads(String purpose) {
+    return r -> {
+      Thread t = new Thread(r, "nessie-runner-" + purpose + "-" + THREAD_NUM.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
   }
 }
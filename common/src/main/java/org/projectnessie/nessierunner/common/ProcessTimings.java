@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Snapshot of the monotonic timestamps of the phases of a process' lifetime, see {@link
+ * ProcessHandler#getTimings()}.
+ */
+public final class ProcessTimings {
+
+  /** Phases of a process' lifetime, in their natural order. */
+  public enum Phase {
+    /** Started building the command, recorded via {@link ProcessHandler#commandBuildStarted()}. */
+    COMMAND_BUILD("commandBuild"),
+    /** Started spawning the process. */
+    SPAWN("spawn"),
+    /** Process has been spawned. */
+    SPAWNED("spawned"),
+    /** The first byte of output has been received. */
+    FIRST_OUTPUT("firstOutput"),
+    /** The listen URL has been received. */
+    LISTEN_URL("listenUrl"),
+    /** The process is ready, after the readiness probe, if enabled, succeeded. */
+    READY("ready"),
+    /** Stopping the process has been requested. */
+    STOP_REQUESTED("stopRequested"),
+    /** The process has exited. */
+    EXITED("exited");
+
+    private final String jsonName;
+
+    Phase(String jsonName) {
+      this.jsonName = jsonName;
+    }
+
+    public String jsonName() {
+      return jsonName;
+    }
+  }
+
+  static final long NOT_RECORDED = Long.MIN_VALUE;
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final long[] nanos;
+
+  ProcessTimings(long[] nanos) {
+    this.nanos = Arrays.copyOf(nanos, PHASES.length);
+  }
+
+  /** Whether the given phase has been recorded. */
+  public boolean isRecorded(Phase phase) {
+    return nanos[phase.ordinal()] != NOT_RECORDED;
+  }
+
+  /**
+   * Time from the first recorded phase, usually {@link Phase#COMMAND_BUILD} or {@link Phase#SPAWN},
+   * to the given phase.
+   *
+   * @return the elapsed time or {@code null}, if the phase has not been recorded
+   */
+  public Duration elapsed(Phase phase) {
+    for (Phase first : PHASES) {
+      if (isRecorded(first)) {
+        return between(first, phase);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Time between two phases.
+   *
+   * @return the time between the phases or {@code null}, if either phase has not been recorded
+   */
+  public Duration between(Phase from, Phase to) {
+    if (!isRecorded(from) || !isRecorded(to)) {
+      return null;
+    }
+    return Duration.ofNanos(nanos[to.ordinal()] - nanos[from.ordinal()]);
+  }
+
+  /**
+   * Renders the timings as a JSON object containing the given attributes, the elapsed time of each
+   * recorded phase ({@code phasesMillis}) and the durations of the startup and shutdown steps
+   * ({@code durationsMillis}), in milliseconds.
+   */
+  public String toJson(Map<String, String> attributes) {
+    StringBuilder json = new StringBuilder("{\n");
+    appendAttributes(json, attributes);
+
+    json.append("  \"phasesMillis\": {");
+    String sep = "\n";
+    for (Phase phase : PHASES) {
+      Duration elapsed = elapsed(phase);
+      if (elapsed != null) {
+        json.append(sep).append("    \"").append(phase.jsonName()).append("\": ");
+        appendMillis(json, elapsed);
+        sep = ",\n";
+      }
+    }
+    json.append(sep.equals("\n") ? "},\n" : "\n  },\n");
+
+    json.append("  \"durationsMillis\": {");
+    sep = "\n";
+    sep = appendDuration(json, sep, "commandBuild", Phase.COMMAND_BUILD, Phase.SPAWN);
+    sep = appendDuration(json, sep, "spawn", Phase.SPAWN, Phase.SPAWNED);
+    sep = appendDuration(json, sep, "toFirstOutput", Phase.SPAWNED, Phase.FIRST_OUTPUT);
+    sep = appendDuration(json, sep, "toListenUrl", Phase.SPAWNED, Phase.LISTEN_URL);
+    sep = appendDuration(json, sep, "readiness", Phase.LISTEN_URL, Phase.READY);
+    sep = appendDuration(json, sep, "startup", firstStartPhase(), Phase.READY);
+    sep = appendDuration(json, sep, "stop", Phase.STOP_REQUESTED, Phase.EXITED);
+    json.append(sep.equals("\n") ? "}\n" : "\n  }\n");
+
+    return json.append("}\n").toString();
+  }
+
+  /**
+   * Writes the {@link #toJson(Map) JSON representation} to the given file, creates the parent
+   * directories.
+   */
+  public void writeReport(Path file, Map<String, String> attributes) throws IOException {
+    writeJson(file, toJson(attributes));
+  }
+
+  /** Writes the JSON to the given file via a temporary file, creates the parent directories. */
+  static void writeJson(Path file, String json) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tmp = dir.resolve(file.getFileName() + ".tmp");
+    try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      writer.write(json);
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  static void appendAttributes(StringBuilder json, Map<String, String> attributes) {
+    json.append("  \"attributes\": {");
+    String sep = "\n";
+    for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+      json.append(sep).append("    ");
+      appendString(json, attribute.getKey());
+      json.append(": ");
+      appendString(json, attribute.getValue());
+      sep = ",\n";
+    }
+    json.append(attributes.isEmpty() ? "},\n" : "\n  },\n");
+  }
+
+  private Phase firstStartPhase() {
+    return isRecorded(Phase.COMMAND_BUILD) ? Phase.COMMAND_BUILD : Phase.SPAWN;
+  }
+
+  private String appendDuration(StringBuilder json, String sep, String name, Phase from, Phase to) {
+    Duration duration = between(from, to);
+    if (duration == null) {
+      return sep;
+    }
+    json.append(sep).append("    \"").append(name).append("\": ");
+    appendMillis(json, duration);
+    return ",\n";
+  }
+
+  static void appendMillis(StringBuilder json, Duration duration) {
+    json.append(String.format(Locale.ROOT, "%.3f", duration.toNanos() / 1_000_000d));
+  }
+
+  static void appendString(StringBuilder json, String s) {
+    json.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+          break;
+      }
+    }
+    json.append('"');
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("ProcessTimings{");
+    String sep = "";
+    for (Phase phase : PHASES) {
+      Duration elapsed = elapsed(phase);
+      if (elapsed != null) {
+        sb.append(sep).append(phase.jsonName()).append('=').append(elapsed.toMillis()).append("ms");
+        sep = ", ";
+      }
+    }
+    return sb.append('}').toString();
+  }
+}
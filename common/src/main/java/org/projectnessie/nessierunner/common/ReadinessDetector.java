@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Detects that a process is ready to serve requests and extracts named values, like the listen URLs
+ * and ports, from the process' output or from other sources.
+ *
+ * <p>Line based detectors declare a {@link #literal() literal}, that must be contained in a line,
+ * so that {@link #detect(String)} is only invoked for candidate lines. This keeps (potentially
+ * expensive) regular expressions off the vast majority of lines.
+ *
+ * <p>Detectors that do not inspect the output, for example detectors that wait for a file, return
+ * {@code true} from {@link #polling()}, {@link #poll()} is then invoked periodically.
+ *
+ * <p>Detected values must contain {@link #HTTP_URL}. See {@link ReadinessDetectors} for the
+ * built-in detectors.
+ */
+public interface ReadinessDetector {
+
+  /** Name of the detected HTTP listen URL value, mandatory. */
+  String HTTP_URL = "httpUrl";
+
+  /** Name of the detected HTTP port value, derived from {@link #HTTP_URL}, if not detected. */
+  String HTTP_PORT = "httpPort";
+
+  /** Name of the detected management interface listen URL value, optional. */
+  String MANAGEMENT_URL = "managementUrl";
+
+  /**
+   * Name of the detected management interface port value, derived from {@link #MANAGEMENT_URL}, if
+   * not detected.
+   */
+  String MANAGEMENT_PORT = "managementPort";
+
+  /**
+   * Literal that must be contained in a line for {@link #detect(String)} to be invoked, {@code
+   * null} for detectors that do not inspect lines.
+   */
+  String literal();
+
+  /**
+   * Inspects an output line, that contains the {@link #literal() literal}.
+   *
+   * @return the detected values, if the line indicates readiness, otherwise {@code null}
+   */
+  Map<String, String> detect(String line);
+
+  /**
+   * Invoked before the process is spawned, for example to remove state left behind by a previous
+   * process, which must not be mistaken as readiness of the new process.
+   *
+   * @throws IOException if the detector cannot be prepared
+   */
+  default void prepare() throws IOException {}
+
+  /** Whether {@link #poll()} shall be invoked periodically. */
+  default boolean polling() {
+    return false;
+  }
+
+  /**
+   * Checks for readiness, invoked periodically if {@link #polling()} returns {@code true}.
+   *
+   * @return the detected values, if the process is ready, otherwise {@code null}
+   */
+  default Map<String, String> poll() {
+    return null;
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Built-in {@link ReadinessDetector}s.
+ *
+ * <p>Detectors can be configured using the following specifications, see {@link #parse(String,
+ * Path)}:
+ *
+ * <ul>
+ *   <li>{@code quarkus} - Quarkus' plain text console log, {@link #quarkusConsole()}
+ *   <li>{@code quarkus-json} - Quarkus' JSON console log, {@link #quarkusJsonConsole()}
+ *   <li>{@code port-file:<path>} - a file containing the port(s), {@link #portFile(Path)}
+ *   <li>{@code regex:<regex>} - a regular expression with named groups, {@link #regex(String)}
+ * </ul>
+ */
+public final class ReadinessDetectors {
+
+  static final String QUARKUS_LITERAL = "Listening on: ";
+
+  private static final String QUARKUS_REGEX =
+      "Listening on: (?<httpUrl>https?://[^ ]*)"
+          + "(?:[.] Management interface listening on (?<managementUrl>https?://[^ ]*)[.])?$";
+
+  /** Extracts the application name and version and the Quarkus version, if present. */
+  private static final Pattern QUARKUS_VERSION_PATTERN =
+      Pattern.compile(
+          "(?<application>[^ ]+) (?<version>[^ ]+) on JVM \\(powered by Quarkus (?<quarkusVersion>[^ )]+)\\)");
+
+  private static final Pattern INLINE_FLAGS = Pattern.compile("\\(\\?[a-zA-Z-]");
+
+  private ReadinessDetectors() {}
+
+  /**
+   * The default detectors, {@link #quarkusJsonConsole()} and {@link #quarkusConsole()}.
+   *
+   * @return new list of detectors
+   */
+  public static List<ReadinessDetector> defaults() {
+    return Arrays.asList(quarkusJsonConsole(), quarkusConsole());
+  }
+
+  /**
+   * Detects Quarkus' {@code Listening on: ...} message in the plain text console log. Detects the
+   * {@code httpUrl} and {@code managementUrl} and, if present, the {@code application}, {@code
+   * version} and {@code quarkusVersion}.
+   */
+  public static ReadinessDetector quarkusConsole() {
+    return new RegexReadinessDetector(QUARKUS_LITERAL, QUARKUS_REGEX, QUARKUS_VERSION_PATTERN);
+  }
+
+  /**
+   * Detects Quarkus' {@code Listening on: ...} message in the JSON console log, see {@code
+   * quarkus-logging-json}, same values as {@link #quarkusConsole()}.
+   */
+  public static ReadinessDetector quarkusJsonConsole() {
+    return new JsonMessageReadinessDetector(quarkusConsole());
+  }
+
+  /**
+   * Waits for a file that contains the port(s) the process listens on, which is either a single
+   * port number, the HTTP port, or a properties file with named values, including {@code httpPort}
+   * and optionally {@code managementPort}, or {@code httpUrl} and {@code managementUrl}.
+   */
+  public static ReadinessDetector portFile(Path file) {
+    return new PortFileReadinessDetector(file);
+  }
+
+  /**
+   * Detects readiness from a line matching the given regular expression, using {@link
+   * java.util.regex.Matcher#find()}. The values of named groups are the detected values, a group
+   * named {@code httpUrl} or {@code httpPort} is mandatory. The pre-filter literal is derived from
+   * the regular expression.
+   */
+  public static ReadinessDetector regex(String regex) {
+    return new RegexReadinessDetector(requiredLiteral(regex), regex, null);
+  }
+
+  /**
+   * Creates a detector from a specification, see {@link ReadinessDetectors class docs}.
+   *
+   * @param spec detector specification
+   * @param baseDirectory directory to resolve relative paths against
+   */
+  public static ReadinessDetector parse(String spec, Path baseDirectory) {
+    String s = spec.trim();
+    if (s.equals("quarkus")) {
+      return quarkusConsole();
+    }
+    if (s.equals("quarkus-json")) {
+      return quarkusJsonConsole();
+    }
+    if (s.startsWith("port-file:")) {
+      return portFile(baseDirectory.resolve(s.substring("port-file:".length())));
+    }
+    if (s.startsWith("regex:")) {
+      return regex(s.substring("regex:".length()));
+    }
+    throw new IllegalArgumentException("Unknown readiness detector specification: " + spec);
+  }
+
+  /**
+   * Adds the {@code httpPort} and {@code managementPort} values derived from the URLs, or the URLs
+   * derived from the ports, if not present.
+   */
+  static Map<String, String> withDerivedValues(Map<String, String> values) {
+    Map<String, String> result = new LinkedHashMap<>(values);
+    derive(result, ReadinessDetector.HTTP_URL, ReadinessDetector.HTTP_PORT);
+    derive(result, ReadinessDetector.MANAGEMENT_URL, ReadinessDetector.MANAGEMENT_PORT);
+    return Collections.unmodifiableMap(result);
+  }
+
+  private static void derive(Map<String, String> values, String urlKey, String portKey) {
+    String url = values.get(urlKey);
+    String port = values.get(portKey);
+    if (url != null && port == null) {
+      int p = URI.create(url).getPort();
+      if (p > 0) {
+        values.put(portKey, Integer.toString(p));
+      }
+    } else if (url == null && port != null) {
+      values.put(urlKey, "http://localhost:" + port);
+    }
+  }
+
+  /**
+   * Returns the longest literal that any match of the given regular expression must contain, or
+   * {@code null}. Only considers the top level of the regular expression, returns {@code null} for
+   * regular expressions with a top level alternation.
+   */
+  static String requiredLiteral(String regex) {
+    if (INLINE_FLAGS.matcher(regex).find() || regex.contains("\\Q")) {
+      // flags, like case insensitive matching, would invalidate the literal, quoted sections are
+      // not worth the complexity
+      return null;
+    }
+    String best = "";
+    StringBuilder current = new StringBuilder();
+    int depth = 0;
+    int classDepth = 0;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (classDepth > 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == '[') {
+          classDepth++;
+          i = skipLeadingClassBracket(regex, i);
+        } else if (c == ']') {
+          classDepth--;
+        }
+        continue;
+      }
+      char literal = 0;
+      switch (c) {
+        case '\\':
+          if (i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+            literal = regex.charAt(++i);
+          } else {
+            i++;
+          }
+          break;
+        case '[':
+          classDepth = 1;
+          i = skipLeadingClassBracket(regex, i);
+          break;
+        case '(':
+          depth++;
+          break;
+        case ')':
+          depth--;
+          break;
+        case '|':
+          if (depth == 0) {
+            return null;
+          }
+          break;
+        case '{':
+          i = regex.indexOf('}', i);
+          if (i < 0) {
+            return null;
+          }
+          break;
+        case '.':
+        case '^':
+        case '$':
+        case '*':
+        case '+':
+        case '?':
+          break;
+        default:
+          literal = c;
+          break;
+      }
+      if (literal != 0 && depth == 0) {
+        char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+        if (next == '?' || next == '*' || next == '{') {
+          // optional character, ends the current literal
+          best = longer(best, current);
+          current.setLength(0);
+        } else {
+          current.append(literal);
+          if (next == '+') {
+            best = longer(best, current);
+            current.setLength(0);
+          }
+        }
+      } else {
+        best = longer(best, current);
+        current.setLength(0);
+      }
+    }
+    best = longer(best, current);
+    return best.isEmpty() ? null : best;
+  }
+
+  /**
+   * Returns the index of the last character belonging to the start of the character class opened at
+   * {@code open}, which includes a negation and a {@code ]} directly following the {@code [} or
+   * {@code [^}, because such a {@code ]} is a member of the class and does not close it.
+   */
+  private static int skipLeadingClassBracket(String regex, int open) {
+    int i = open;
+    if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+      i++;
+    }
+    if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+      i++;
+    }
+    return i;
+  }
+
+  private static String longer(String best, CharSequence current) {
+    return current.length() > best.length() ? current.toString() : best;
+  }
+}
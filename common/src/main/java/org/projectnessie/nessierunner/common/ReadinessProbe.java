@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Polls an HTTP readiness endpoint, like Quarkus' {@code /q/health/ready}, until it responds with
+ * HTTP status 200 or the deadline passes.
+ *
+ * <p>The first {@value #TIGHT_ATTEMPTS} attempts are {@value #TIGHT_DELAY_MILLIS} ms apart, the
+ * delay doubles after each further attempt, up to {@value #MAX_DELAY_MILLIS} ms. Requests are sent
+ * asynchronously and the delays are scheduled, no thread is blocked while waiting.
+ */
+final class ReadinessProbe {
+
+  static final int TIGHT_ATTEMPTS = 5;
+  static final long TIGHT_DELAY_MILLIS = 10L;
+  static final long MAX_DELAY_MILLIS = 1000L;
+  static final long MAX_REQUEST_MILLIS = 5000L;
+  static final String TIMEOUT_MESSAGE = "Readiness probe did not succeed in time against ";
+
+  private final HttpClient client;
+  private final URI uri;
+  private final LongSupplier clock;
+  private final long deadline;
+  private final ScheduledExecutorService scheduler;
+  private final Consumer<String> debugLog;
+
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+  private volatile String lastResult = "no response";
+
+  /**
+   * Construct a new probe.
+   *
+   * @param client HTTP client to use
+   * @param uri URI of the readiness endpoint
+   * @param clock monotonic clock, nanoseconds
+   * @param deadline value of {@code clock} after which the probe fails
+   * @param scheduler executor to schedule the attempts
+   * @param debugLog receives a message with the result and the latency of each attempt
+   */
+  ReadinessProbe(
+      HttpClient client,
+      URI uri,
+      LongSupplier clock,
+      long deadline,
+      ScheduledExecutorService scheduler,
+      Consumer<String> debugLog) {
+    this.client = client;
+    this.uri = uri;
+    this.clock = clock;
+    this.deadline = deadline;
+    this.scheduler = scheduler;
+    this.debugLog = debugLog;
+  }
+
+  /**
+   * Resolves the readiness endpoint {@code path} against a listen URL as emitted by Quarkus, which
+   * usually contains the wildcard address.
+   */
+  static URI readinessUri(String listenUrl, String path) {
+    URI uri = URI.create(listenUrl);
+    String host = uri.getHost();
+    if (host == null || "0.0.0.0".equals(host) || "[::]".equals(host)) {
+      host = "localhost";
+    }
+    return URI.create(uri.getScheme() + "://" + host + ":" + uri.getPort()).resolve(path);
+  }
+
+  static long delayMillis(int attempt) {
+    if (attempt < TIGHT_ATTEMPTS) {
+      return TIGHT_DELAY_MILLIS;
+    }
+    int shift = Math.min(attempt - TIGHT_ATTEMPTS + 1, 30);
+    return Math.min(TIGHT_DELAY_MILLIS << shift, MAX_DELAY_MILLIS);
+  }
+
+  /** Starts probing, the returned future completes when the endpoint reported readiness. */
+  CompletableFuture<Void> probe() {
+    attempt(0);
+    return ready;
+  }
+
+  private void attempt(int attempt) {
+    if (ready.isDone()) {
+      return;
+    }
+    long remainingNanos = deadline - clock.getAsLong();
+    if (remainingNanos < 0) {
+      ready.completeExceptionally(
+          new TimeoutException(TIMEOUT_MESSAGE + uri + ", last result: " + lastResult));
+      return;
+    }
+
+    HttpRequest request =
+        HttpRequest.newBuilder(uri)
+            .timeout(
+                Duration.ofNanos(
+                    Math.max(
+                        Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(MAX_REQUEST_MILLIS)),
+                        1L)))
+            .GET()
+            .build();
+    long start = System.nanoTime();
+    CompletableFuture<HttpResponse<Void>> response;
+    try {
+      response = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    } catch (RuntimeException e) {
+      response = CompletableFuture.failedFuture(e);
+    }
+    response.whenComplete(
+        (resp, failure) -> {
+          long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+          Throwable cause =
+              failure instanceof CompletionException && failure.getCause() != null
+                  ? failure.getCause()
+                  : failure;
+          lastResult = cause != null ? cause.toString() : "HTTP status " + resp.statusCode();
+          debugLog.accept(
+              String.format(
+                  "Readiness probe #%d against %s: %s, latency %d.%03d ms",
+                  attempt + 1, uri, lastResult, latencyMicros / 1000, latencyMicros % 1000));
+          if (failure == null && resp.statusCode() == 200) {
+            ready.complete(null);
+            return;
+          }
+          // Do not delay the next attempt beyond the deadline, so the deadline is not exceeded
+          long delayNanos =
+              Math.min(
+                  TimeUnit.MILLISECONDS.toNanos(delayMillis(attempt)),
+                  Math.max(deadline - clock.getAsLong() + 1L, 0L));
+          try {
+            scheduler.schedule(() -> attempt(attempt + 1), delayNanos, TimeUnit.NANOSECONDS);
+          } catch (RejectedExecutionException e) {
+            ready.completeExceptionally(
+                new IllegalStateException("Readiness probe cancelled, process terminated", e));
+          }
+        });
+  }
+
+  /** Stops probing, the returned future of {@link #probe()} completes exceptionally. */
+  void cancel(String reason) {
+    ready.completeExceptionally(new IllegalStateException(reason));
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Line based {@link ReadinessDetector} using a regular expression with named groups, which is only
+ * evaluated for lines that contain the literal.
+ */
+final class RegexReadinessDetector implements ReadinessDetector {
+
+  private static final Pattern GROUP_NAME = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+
+  private final String literal;
+  private final Pattern pattern;
+  private final List<String> groupNames;
+  private final Pattern additionalValues;
+  private final List<String> additionalGroupNames;
+
+  /**
+   * Constructs a detector for the given regular expression.
+   *
+   * @param literal pre-filter literal, {@code null} to evaluate the regular expression against all
+   *     lines
+   * @param regex regular expression, named groups are the detected values
+   * @param additionalValues optional pattern, evaluated against a matching line, named groups are
+   *     additional detected values
+   */
+  RegexReadinessDetector(String literal, String regex, Pattern additionalValues) {
+    this.literal = literal;
+    this.pattern = Pattern.compile(regex);
+    this.groupNames = groupNames(regex);
+    if (!groupNames.contains(HTTP_URL) && !groupNames.contains(HTTP_PORT)) {
+      throw new IllegalArgumentException(
+          "Readiness detector regular expression must contain a named group '"
+              + HTTP_URL
+              + "' or '"
+              + HTTP_PORT
+              + "': "
+              + regex);
+    }
+    this.additionalValues = additionalValues;
+    this.additionalGroupNames =
+        additionalValues != null ? groupNames(additionalValues.pattern()) : List.of();
+  }
+
+  /**
+   * Extracts the names of the named groups, {@code Matcher.namedGroups()} requires Java 20. Escaped
+   * parentheses are not considered.
+   */
+  static List<String> groupNames(String regex) {
+    List<String> names = new ArrayList<>();
+    Matcher m = GROUP_NAME.matcher(regex);
+    while (m.find()) {
+      int backslashes = 0;
+      for (int i = m.start() - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+        backslashes++;
+      }
+      if ((backslashes & 1) == 0) {
+        names.add(m.group(1));
+      }
+    }
+    return names;
+  }
+
+  @Override
+  public String literal() {
+    return literal;
+  }
+
+  @Override
+  public Map<String, String> detect(String line) {
+    if (!line.isEmpty() && line.charAt(0) == '{' && additionalValues != null) {
+      // JSON formatted line, handled by JsonMessageReadinessDetector
+      return null;
+    }
+    Matcher m = pattern.matcher(line);
+    if (!m.find()) {
+      return null;
+    }
+    Map<String, String> values = new LinkedHashMap<>();
+    addGroups(m, groupNames, values);
+    if (additionalValues != null) {
+      Matcher additional = additionalValues.matcher(line);
+      if (additional.find()) {
+        addGroups(additional, additionalGroupNames, values);
+      }
+    }
+    return values;
+  }
+
+  private static void addGroups(Matcher m, List<String> names, Map<String, String> values) {
+    for (String name : names) {
+      String value = m.group(name);
+      if (value != null) {
+        values.put(name, value);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "regex:" + pattern.pattern();
+  }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the memory and CPUs available to the build, limited by the cgroup (v1 or v2) of the build
+ * process, between the concurrently running servers, so that the servers' JVMs, which size their
+ * defaults from the whole container, do not overcommit it together.
+ *
+ * <p>Each server gets a maximum heap of {@value #HEAP_PERCENTAGE}% of its share of the memory
+ * budget, the rest is left for the JVM's non-heap memory, and the available CPUs divided by the
+ * number of servers, at least one, as {@code -XX:ActiveProcessorCount}.
+ */
+public final class ResourceBudget {
+
+  /** Default percentage of the available memory shared by the servers. */
+  public static final int DEFAULT_MEMORY_PERCENTAGE = 50;
+
+  static final int HEAP_PERCENTAGE = 75;
+  static final long MIN_HEAP_MEGABYTES = 64L;
+
+  /** Values at or above this are "unlimited" in cgroup v1. */
+  private static final long CGROUP_V1_UNLIMITED = Long.MAX_VALUE / 2;
+
+  /** User options that configure the maximum heap size. */
+  private static final Set<String> HEAP_OPTIONS =
+      Collections.unmodifiableSet(
+          new HashSet<>(
+              Arrays.asList(
+                  "-Xmx",
+                  "-XX:MaxHeapSize",
+                  "-XX:MaxRAM",
+                  "-XX:MaxRAMPercentage",
+                  "-XX:MaxRAMFraction")));
+
+  private static final String ACTIVE_PROCESSOR_COUNT = "-XX:ActiveProcessorCount";
+
+  private final long memoryBytes;
+  private final int cpus;
+  private final String source;
+
+  ResourceBudget(long memoryBytes, int cpus, String source) {
+    this.memoryBytes = memoryBytes;
+    this.cpus = cpus;
+    this.source = source;
+  }
+
+  /** Detects the memory and CPU limits of the current process. */
+  public static ResourceBudget detect() {
+    return detect(
+        Paths.get("/proc/self/cgroup"),
+        Paths.get("/sys/fs/cgroup"),
+        Paths.get("/proc/meminfo"),
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Detects the memory and CPU limits from the cgroup of the process, the tightest limit of the
+   * cgroup and its ancestors applies. Without a memory limit, the physical memory is used, the CPUs
+   * are limited by the available processors in any case.
+   */
+  static ResourceBudget detect(
+      Path procSelfCgroup, Path cgroupRoot, Path meminfo, int availableProcessors) {
+    long memory = -1L;
+    double cpuQuota = -1d;
+    String source = "host";
+
+    List<String> cgroups = readLines(procSelfCgroup);
+    for (String line : cgroups) {
+      // hierarchy-ID:controller-list:cgroup-path
+      String[] parts = line.split(":", 3);
+      if (parts.length != 3) {
+        continue;
+      }
+      String controllers = parts[1];
+      String path = parts[2];
+      if (controllers.isEmpty()) {
+        // cgroup v2, unified hierarchy
+        long v2Memory = tightest(cgroupRoot, path, "memory.max", ResourceBudget::parseV2Memory);
+        double v2Cpu =
+            tightestCpu(cgroupRoot, path, dir -> parseV2Cpu(readFirstLine(dir.resolve("cpu.max"))));
+        if (v2Memory > 0L || v2Cpu > 0d) {
+          source = "cgroup v2";
+        }
+        memory = min(memory, v2Memory);
+        cpuQuota = min(cpuQuota, v2Cpu);
+        continue;
+      }
+      List<String> controllerList = Arrays.asList(controllers.split(","));
+      Path mount = cgroupRoot.resolve(controllers);
+      if (!Files.isDirectory(mount)) {
+        mount = cgroupRoot.resolve(controllerList.get(0));
+      }
+      if (controllerList.contains("memory")) {
+        long v1Memory =
+            tightest(mount, path, "memory.limit_in_bytes", ResourceBudget::parseV1Memory);
+        if (v1Memory > 0L) {
+          source = "cgroup v1";
+        }
+        memory = min(memory, v1Memory);
+      }
+      if (controllerList.contains("cpu")) {
+        double v1Cpu =
+            tightestCpu(
+                mount,
+                path,
+                dir ->
+                    parseV1Cpu(
+                        readFirstLine(dir.resolve("cpu.cfs_quota_us")),
+                        readFirstLine(dir.resolve("cpu.cfs_period_us"))));
+        if (v1Cpu > 0d) {
+          source = "cgroup v1";
+        }
+        cpuQuota = min(cpuQuota, v1Cpu);
+      }
+    }
+
+    memory = min(memory, physicalMemory(meminfo));
+    int cpus = availableProcessors;
+    if (cpuQuota > 0d) {
+      cpus = Math.max(1, Math.min(cpus, (int) Math.ceil(cpuQuota)));
+    }
+    return new ResourceBudget(memory, cpus, source);
+  }
+
+  /** Memory available to the build in bytes, {@code -1} if unknown. */
+  public long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  /** CPUs available to the build. */
+  public int getCpus() {
+    return cpus;
+  }
+
+  /**
+   * Computes the JVM arguments for one of {@code servers} concurrently running servers.
+   *
+   * @param servers number of concurrently running servers, including the one to launch
+   * @param memoryPercentage percentage of the available memory shared by the servers
+   * @param userJvmArguments the user's JVM arguments, which take precedence
+   * @return the JVM arguments, not overridden by the user's JVM arguments
+   */
+  public List<String> jvmArguments(
+      int servers, int memoryPercentage, List<String> userJvmArguments) {
+    int n = Math.max(1, servers);
+    Set<String> userOptions =
+        userJvmArguments.stream().map(LaunchProfile::optionName).collect(Collectors.toSet());
+
+    List<String> jvmArguments = new ArrayList<>();
+    if (memoryBytes > 0L && userOptions.stream().noneMatch(HEAP_OPTIONS::contains)) {
+      long heapMegabytes =
+          memoryBytes / (1024L * 1024L) * memoryPercentage * HEAP_PERCENTAGE / (100L * 100L * n);
+      jvmArguments.add(String.format("-Xmx%dm", Math.max(MIN_HEAP_MEGABYTES, heapMegabytes)));
+    }
+    if (!userOptions.contains(ACTIVE_PROCESSOR_COUNT)) {
+      jvmArguments.add(String.format("%s=%d", ACTIVE_PROCESSOR_COUNT, Math.max(1, cpus / n)));
+    }
+    return jvmArguments;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.ROOT,
+        "%s memory, %d CPUs (%s)",
+        memoryBytes > 0L ? ResourceUsage.mebibytes(memoryBytes) : "unknown",
+        cpus,
+        source);
+  }
+
+  @FunctionalInterface
+  private interface LimitParser {
+    long parse(String value);
+  }
+
+  @FunctionalInterface
+  private interface CpuReader {
+    double read(Path dir);
+  }
+
+  /**
+   * Returns the tightest limit of the given file in the cgroup and its ancestors, {@code -1} if
+   * unlimited. In a container, the cgroup path may refer to the host's hierarchy, while the
+   * container's cgroup is mounted as the root, so the root is checked in any case.
+   */
+  private static long tightest(Path mount, String cgroupPath, String file, LimitParser parser) {
+    long limit = -1L;
+    for (Path dir : cgroupDirs(mount, cgroupPath)) {
+      String value = readFirstLine(dir.resolve(file));
+      if (value != null) {
+        try {
+          limit = min(limit, parser.parse(value));
+        } catch (NumberFormatException e) {
+          // ignore
+        }
+      }
+    }
+    return limit;
+  }
+
+  private static double tightestCpu(Path mount, String cgroupPath, CpuReader reader) {
+    double limit = -1d;
+    for (Path dir : cgroupDirs(mount, cgroupPath)) {
+      try {
+        limit = min(limit, reader.read(dir));
+      } catch (NumberFormatException e) {
+        // ignore
+      }
+    }
+    return limit;
+  }
+
+  private static List<Path> cgroupDirs(Path mount, String cgroupPath) {
+    List<Path> dirs = new ArrayList<>();
+    Path dir = mount;
+    dirs.add(dir);
+    for (String element : cgroupPath.split("/")) {
+      if (!element.isEmpty()) {
+        dir = dir.resolve(element);
+        if (!Files.isDirectory(dir)) {
+          break;
+        }
+        dirs.add(dir);
+      }
+    }
+    return dirs;
+  }
+
+  static long parseV2Memory(String value) {
+    return "max".equals(value) ? -1L : Long.parseLong(value);
+  }
+
+  static long parseV1Memory(String value) {
+    long limit = Long.parseLong(value);
+    return limit <= 0L || limit >= CGROUP_V1_UNLIMITED ? -1L : limit;
+  }
+
+  /** Parses {@code cpu.max}, for example {@code 200000 100000} or {@code max 100000}. */
+  static double parseV2Cpu(String value) {
+    if (value == null) {
+      return -1d;
+    }
+    String[] parts = value.trim().split("\\s+");
+    if ("max".equals(parts[0])) {
+      return -1d;
+    }
+    long period = parts.length > 1 ? Long.parseLong(parts[1]) : 100_000L;
+    return period > 0L ? (double) Long.parseLong(parts[0]) / period : -1d;
+  }
+
+  static double parseV1Cpu(String quota, String period) {
+    if (quota == null || period == null) {
+      return -1d;
+    }
+    long q = Long.parseLong(quota);
+    long p = Long.parseLong(period);
+    return q > 0L && p > 0L ? (double) q / p : -1d;
+  }
+
+  /** Reads {@code MemTotal} from {@code /proc/meminfo}, {@code -1} if not available. */
+  static long physicalMemory(Path meminfo) {
+    for (String line : readLines(meminfo)) {
+      if (line.startsWith("MemTotal:")) {
+        String[] parts = line.substring("MemTotal:".length()).trim().split("\\s+");
+        try {
+          return Long.parseLong(parts[0]) * 1024L;
+        } catch (NumberFormatException e) {
+          return -1L;
+        }
+      }
+    }
+    return -1L;
+  }
+
+  private static long min(long current, long value) {
+    if (value <= 0L) {
+      return current;
+    }
+    return current <= 0L ? value : Math.min(current, value);
+  }
+
+  private static double min(double current, double value) {
+    if (value <= 0d) {
+      return current;
+    }
+    return current <= 0d ? value : Math.min(current, value);
+  }
+
+  private static List<String> readLines(Path file) {
+    try {
+      return Files.readAllLines(file, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return Collections.emptyList();
+    }
+  }
+
+  private static String readFirstLine(Path file) {
+    List<String> lines = readLines(file);
+    return lines.isEmpty() ? null : lines.get(0).trim();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thresholds for the {@link ResourceUsage} of a process, a value of {@code 0} or less means no
+ * limit.
+ */
+public final class ResourceLimits {
+  /** No limits. */
+  public static final ResourceLimits NONE = new ResourceLimits(0L, 0L, 0);
+
+  private final long maxRssBytes;
+  private final long maxCpuMillis;
+  private final int maxThreads;
+
+  private ResourceLimits(long maxRssBytes, long maxCpuMillis, int maxThreads) {
+    this.maxRssBytes = maxRssBytes;
+    this.maxCpuMillis = maxCpuMillis;
+    this.maxThreads = maxThreads;
+  }
+
+  /**
+   * Creates resource limits.
+   *
+   * @param maxRssMegabytes maximum peak resident set size in MiB
+   * @param maxCpuMillis maximum CPU time in milliseconds
+   * @param maxThreads maximum peak number of threads
+   */
+  public static ResourceLimits of(long maxRssMegabytes, long maxCpuMillis, int maxThreads) {
+    return new ResourceLimits(
+        maxRssMegabytes > 0L ? maxRssMegabytes * 1024L * 1024L : 0L, maxCpuMillis, maxThreads);
+  }
+
+  /** Whether any limit is set. */
+  public boolean isLimited() {
+    return maxRssBytes > 0L || maxCpuMillis > 0L || maxThreads > 0;
+  }
+
+  /**
+   * Checks the given usage against the limits.
+   *
+   * @return human-readable descriptions of the exceeded limits, empty if none is exceeded
+   */
+  public List<String> check(ResourceUsage usage) {
+    List<String> violations = new ArrayList<>();
+    if (maxRssBytes > 0L && usage.getPeakRssBytes() > maxRssBytes) {
+      violations.add(
+          String.format(
+              "peak RSS %s exceeds the limit of %s",
+              ResourceUsage.mebibytes(usage.getPeakRssBytes()),
+              ResourceUsage.mebibytes(maxRssBytes)));
+    }
+    if (maxCpuMillis > 0L && usage.getCpuMillis() > maxCpuMillis) {
+      violations.add(
+          String.format(
+              "CPU time %d ms exceeds the limit of %d ms", usage.getCpuMillis(), maxCpuMillis));
+    }
+    if (maxThreads > 0 && usage.getPeakThreads() > maxThreads) {
+      violations.add(
+          String.format(
+              "peak thread count %d exceeds the limit of %d", usage.getPeakThreads(), maxThreads));
+    }
+    return violations;
+  }
+}
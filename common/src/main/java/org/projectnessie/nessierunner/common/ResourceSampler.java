@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * Samples the resident set size, CPU time and thread count of a process and its descendants from
+ * {@code /proc/<pid>/stat} and {@code /proc/<pid>/status}. Only supported on Linux.
+ */
+final class ResourceSampler {
+  static final Path PROC = Paths.get("/proc");
+
+  /**
+   * Clock ticks per second of the CPU times in {@code /proc/<pid>/stat}, fixed to 100 for user
+   * space on Linux.
+   */
+  static final long CLOCK_TICKS_PER_SECOND = 100L;
+
+  // Fields of /proc/<pid>/stat, 1-based as in proc(5)
+  private static final int STAT_UTIME = 14;
+  private static final int STAT_STIME = 15;
+  private static final int STAT_CUTIME = 16;
+  private static final int STAT_CSTIME = 17;
+  private static final int STAT_NUM_THREADS = 20;
+
+  private final Path proc;
+  private final long pid;
+  private final Supplier<LongStream> descendants;
+  private final LongSupplier ticker;
+
+  private int samples;
+  private long firstSampleNanos;
+  private long lastSampleNanos;
+  private long peakRssBytes;
+  private long sumRssBytes;
+  private long cpuTicks;
+  private int peakThreads;
+  private long sumThreads;
+
+  ResourceSampler(Path proc, long pid, Supplier<LongStream> descendants, LongSupplier ticker) {
+    this.proc = proc;
+    this.pid = pid;
+    this.descendants = descendants;
+    this.ticker = ticker;
+  }
+
+  /** Whether {@code /proc} provides the information for the given process. */
+  static boolean isSupported(long pid) {
+    return Files.isReadable(PROC.resolve(Long.toString(pid)).resolve("stat"));
+  }
+
+  /**
+   * Takes a sample of the process and its current descendants, processes that exited in the
+   * meantime are ignored.
+   */
+  synchronized void sample() {
+    long rssBytes = 0L;
+    long threads = 0L;
+    long ticks = 0L;
+    boolean sampled = false;
+
+    long[] pids = LongStream.concat(LongStream.of(pid), descendants.get()).toArray();
+    for (long p : pids) {
+      Path dir = proc.resolve(Long.toString(p));
+      String[] stat;
+      long rss;
+      try {
+        stat =
+            statFields(new String(Files.readAllBytes(dir.resolve("stat")), StandardCharsets.UTF_8));
+        rss = rssBytes(Files.readAllLines(dir.resolve("status"), StandardCharsets.UTF_8));
+      } catch (IOException | RuntimeException e) {
+        // process exited or is not accessible
+        continue;
+      }
+      if (stat.length < STAT_NUM_THREADS) {
+        continue;
+      }
+      sampled = true;
+      rssBytes += rss;
+      threads += Long.parseLong(stat[STAT_NUM_THREADS - 1]);
+      ticks += Long.parseLong(stat[STAT_UTIME - 1]) + Long.parseLong(stat[STAT_STIME - 1]);
+      if (p == pid) {
+        // CPU time of descendants that already exited and have been waited for
+        ticks += Long.parseLong(stat[STAT_CUTIME - 1]) + Long.parseLong(stat[STAT_CSTIME - 1]);
+      }
+    }
+    if (!sampled) {
+      return;
+    }
+
+    long now = ticker.getAsLong();
+    if (samples == 0) {
+      firstSampleNanos = now;
+    }
+    lastSampleNanos = now;
+    samples++;
+    peakRssBytes = Math.max(peakRssBytes, rssBytes);
+    sumRssBytes += rssBytes;
+    peakThreads = (int) Math.max(peakThreads, threads);
+    sumThreads += threads;
+    // CPU time of exited descendants, that have not been waited for, is lost
+    cpuTicks = Math.max(cpuTicks, ticks);
+  }
+
+  /** The summary of the samples taken so far, {@code null} if no sample has been taken. */
+  synchronized ResourceUsage usage() {
+    if (samples == 0) {
+      return null;
+    }
+    return new ResourceUsage(
+        samples,
+        peakRssBytes,
+        sumRssBytes / samples,
+        cpuTicks * 1000L / CLOCK_TICKS_PER_SECOND,
+        TimeUnit.NANOSECONDS.toMillis(lastSampleNanos - firstSampleNanos),
+        peakThreads,
+        (int) (sumThreads / samples));
+  }
+
+  /**
+   * Splits the content of {@code /proc/<pid>/stat} into its fields. The second field, the command
+   * name in parentheses, may contain spaces and parentheses, so the fields after it are split after
+   * the last closing parenthesis.
+   */
+  static String[] statFields(String stat) {
+    int open = stat.indexOf('(');
+    int close = stat.lastIndexOf(')');
+    if (open < 0 || close < open) {
+      throw new IllegalArgumentException("Invalid stat: " + stat);
+    }
+    String[] rest = stat.substring(close + 1).trim().split("\\s+");
+    String[] fields = new String[rest.length + 2];
+    fields[0] = stat.substring(0, open).trim();
+    fields[1] = stat.substring(open + 1, close);
+    System.arraycopy(rest, 0, fields, 2, rest.length);
+    return fields;
+  }
+
+  /** Extracts {@code VmRSS} from the lines of {@code /proc/<pid>/status}, {@code 0} if absent. */
+  static long rssBytes(List<String> status) {
+    for (String line : status) {
+      if (line.startsWith("VmRSS:")) {
+        String[] parts = line.substring("VmRSS:".length()).trim().split("\\s+");
+        return Long.parseLong(parts[0]) * 1024L;
+      }
+    }
+    // kernel threads and zombies have no VmRSS
+    return 0L;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Summary of the resources used by a process and its descendants, sampled from {@code /proc}, see
+ * {@link ProcessHandler#setResourceSampling(long, ResourceLimits)}.
+ */
+public final class ResourceUsage {
+  private final int samples;
+  private final long peakRssBytes;
+  private final long averageRssBytes;
+  private final long cpuMillis;
+  private final long sampledMillis;
+  private final int peakThreads;
+  private final int averageThreads;
+
+  ResourceUsage(
+      int samples,
+      long peakRssBytes,
+      long averageRssBytes,
+      long cpuMillis,
+      long sampledMillis,
+      int peakThreads,
+      int averageThreads) {
+    this.samples = samples;
+    this.peakRssBytes = peakRssBytes;
+    this.averageRssBytes = averageRssBytes;
+    this.cpuMillis = cpuMillis;
+    this.sampledMillis = sampledMillis;
+    this.peakThreads = peakThreads;
+    this.averageThreads = averageThreads;
+  }
+
+  /** Number of samples taken. */
+  public int getSamples() {
+    return samples;
+  }
+
+  /** Peak resident set size of the process and its descendants, in bytes. */
+  public long getPeakRssBytes() {
+    return peakRssBytes;
+  }
+
+  /** Average resident set size of the process and its descendants, in bytes. */
+  public long getAverageRssBytes() {
+    return averageRssBytes;
+  }
+
+  /** CPU time (user and system) used by the process and its descendants, in milliseconds. */
+  public long getCpuMillis() {
+    return cpuMillis;
+  }
+
+  /** Time between the first and the last sample, in milliseconds. */
+  public long getSampledMillis() {
+    return sampledMillis;
+  }
+
+  /** Peak number of threads of the process and its descendants. */
+  public int getPeakThreads() {
+    return peakThreads;
+  }
+
+  /** Average number of threads of the process and its descendants. */
+  public int getAverageThreads() {
+    return averageThreads;
+  }
+
+  /**
+   * Attributes for the timings report, see {@link ProcessTimings#writeReport(java.nio.file.Path,
+   * Map)}.
+   */
+  public Map<String, String> toAttributes() {
+    Map<String, String> attributes = new LinkedHashMap<>();
+    attributes.put("resourceSamples", Integer.toString(samples));
+    attributes.put("peakRssBytes", Long.toString(peakRssBytes));
+    attributes.put("averageRssBytes", Long.toString(averageRssBytes));
+    attributes.put("cpuMillis", Long.toString(cpuMillis));
+    attributes.put("peakThreads", Integer.toString(peakThreads));
+    attributes.put("averageThreads", Integer.toString(averageThreads));
+    return attributes;
+  }
+
+  @Override
+  public String toString() {
+    String cpu =
+        sampledMillis > 0L
+            ? String.format(
+                Locale.ROOT,
+                "CPU %.1f s (%.0f%% of one core)",
+                cpuMillis / 1000d,
+                100d * cpuMillis / sampledMillis)
+            : String.format(Locale.ROOT, "CPU %.1f s", cpuMillis / 1000d);
+    return String.format(
+        Locale.ROOT,
+        "peak RSS %s, average RSS %s, %s, peak threads %d, average threads %d (n=%d)",
+        mebibytes(peakRssBytes),
+        mebibytes(averageRssBytes),
+        cpu,
+        peakThreads,
+        averageThreads,
+        samples);
+  }
+
+  static String mebibytes(long bytes) {
+    return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024d * 1024d));
+  }
+}
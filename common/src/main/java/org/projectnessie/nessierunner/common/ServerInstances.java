@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+/**
+ * Picks one of several server instances started for a test task, for use in the test JVMs. The
+ * instances are passed as indexed system properties, for example {@code quarkus.http.test-url.0}
+ * and {@code quarkus.http.test-url.1}, and their number as {@value #INSTANCES_PROPERTY}. Each test
+ * JVM picks one instance deterministically from its Gradle test worker ID, so parallel test forks
+ * use different instances.
+ */
+public final class ServerInstances {
+  /** System property with the number of server instances. */
+  public static final String INSTANCES_PROPERTY = "nessie.apprunner.instances";
+
+  /** System property with the ID of the Gradle test worker, set by Gradle in test forks. */
+  public static final String TEST_WORKER_PROPERTY = "org.gradle.test.worker";
+
+  private ServerInstances() {}
+
+  /** Name of the system property for the instance with the given index. */
+  public static String indexedName(String property, int index) {
+    return property + '.' + index;
+  }
+
+  /** Index of the server instance for this JVM, {@code 0} if there is only one instance. */
+  public static int instanceIndex() {
+    return instanceIndex(
+        System.getProperty(INSTANCES_PROPERTY), System.getProperty(TEST_WORKER_PROPERTY));
+  }
+
+  static int instanceIndex(String instances, String testWorker) {
+    int count;
+    try {
+      count = instances != null ? Integer.parseInt(instances.trim()) : 1;
+    } catch (NumberFormatException e) {
+      count = 1;
+    }
+    if (count <= 1 || testWorker == null) {
+      return 0;
+    }
+    long worker;
+    try {
+      worker = Long.parseLong(testWorker.trim());
+    } catch (NumberFormatException e) {
+      worker = testWorker.hashCode();
+    }
+    return (int) Math.floorMod(worker, (long) count);
+  }
+
+  /**
+   * Value of the given system property, for example {@code quarkus.http.test-url}, for the server
+   * instance of this JVM. Falls back to the non-indexed system property, if there is no indexed
+   * one.
+   */
+  public static String property(String property) {
+    String value = System.getProperty(indexedName(property, instanceIndex()));
+    return value != null ? value : System.getProperty(property);
+  }
+}
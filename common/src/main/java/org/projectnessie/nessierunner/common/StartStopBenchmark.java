@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Starts and stops a process repeatedly and collects the latencies to the listen URL, to readiness
+ * and to stop the process, to compare for example JVM arguments, Java versions or application
+ * versions.
+ */
+public final class StartStopBenchmark {
+
+  /** The latencies measured per iteration. */
+  public enum Metric {
+    /** From spawning the process to the detected listen URL. */
+    TO_LISTEN_URL("toListenUrl", ProcessTimings.Phase.SPAWN, ProcessTimings.Phase.LISTEN_URL),
+    /** From spawning the process to readiness, see {@link ProcessTimings.Phase#READY}. */
+    TO_READY("toReady", ProcessTimings.Phase.SPAWN, ProcessTimings.Phase.READY),
+    /** From requesting the process to stop to its exit. */
+    STOP("stop", ProcessTimings.Phase.STOP_REQUESTED, ProcessTimings.Phase.EXITED);
+
+    private final String jsonName;
+    private final ProcessTimings.Phase from;
+    private final ProcessTimings.Phase to;
+
+    Metric(String jsonName, ProcessTimings.Phase from, ProcessTimings.Phase to) {
+      this.jsonName = jsonName;
+      this.from = from;
+      this.to = to;
+    }
+
+    public String jsonName() {
+      return jsonName;
+    }
+  }
+
+  /** Starts a new process, invoked once per iteration. */
+  @FunctionalInterface
+  public interface ProcessStarter {
+    ProcessHandler start() throws Exception;
+  }
+
+  private static final Metric[] METRICS = Metric.values();
+
+  private final List<long[]> iterations = new ArrayList<>();
+
+  /**
+   * Runs the benchmark, each iteration starts a process, waits for its listen URLs and stops it.
+   * The warmup iterations are not recorded.
+   *
+   * @param warmupIterations number of iterations before the measured ones
+   * @param iterations number of measured iterations
+   * @param starter starts the process for an iteration
+   * @param progress receives a message after each iteration
+   */
+  public static StartStopBenchmark run(
+      int warmupIterations, int iterations, ProcessStarter starter, Consumer<String> progress)
+      throws Exception {
+    if (warmupIterations < 0 || iterations <= 0) {
+      throw new IllegalArgumentException(
+          "Number of warmup iterations must not be negative, number of iterations must be positive");
+    }
+    StartStopBenchmark benchmark = new StartStopBenchmark();
+    int total = warmupIterations + iterations;
+    for (int i = 0; i < total; i++) {
+      ProcessHandler processHandler = starter.start();
+      try {
+        processHandler.getListenUrls();
+      } finally {
+        processHandler.stop();
+      }
+      ProcessTimings timings = processHandler.getTimings();
+      boolean warmup = i < warmupIterations;
+      if (!warmup) {
+        benchmark.record(timings);
+      }
+      progress.accept(
+          String.format(
+              "%s %d/%d: %s",
+              warmup ? "Warmup iteration" : "Iteration",
+              warmup ? i + 1 : i + 1 - warmupIterations,
+              warmup ? warmupIterations : iterations,
+              timings));
+    }
+    return benchmark;
+  }
+
+  /** Records the timings of one iteration. */
+  public void record(ProcessTimings timings) {
+    long[] nanos = new long[METRICS.length];
+    for (Metric metric : METRICS) {
+      Duration duration = timings.between(metric.from, metric.to);
+      nanos[metric.ordinal()] = duration != null ? duration.toNanos() : -1L;
+    }
+    iterations.add(nanos);
+  }
+
+  public int getIterations() {
+    return iterations.size();
+  }
+
+  /** Returns the statistics for the given metric, or {@code null}, if it has not been recorded. */
+  public Statistics statistics(Metric metric) {
+    long[] values =
+        iterations.stream()
+            .mapToLong(nanos -> nanos[metric.ordinal()])
+            .filter(n -> n >= 0)
+            .toArray();
+    if (values.length == 0) {
+      return null;
+    }
+    Arrays.sort(values);
+    return new Statistics(values);
+  }
+
+  /** Percentiles of a metric over all recorded iterations, using the nearest-rank method. */
+  public static final class Statistics {
+    private final long[] sortedNanos;
+
+    Statistics(long[] sortedNanos) {
+      this.sortedNanos = sortedNanos;
+    }
+
+    public int count() {
+      return sortedNanos.length;
+    }
+
+    /**
+     * The value, for which {@code percentile} percent of the iterations were faster or equal.
+     *
+     * @param percentile the percentile, greater than {@code 0} and up to {@code 100}
+     */
+    public Duration percentile(double percentile) {
+      if (percentile <= 0d || percentile > 100d) {
+        throw new IllegalArgumentException("Percentile must be in the range (0, 100]");
+      }
+      int rank = (int) Math.ceil(percentile / 100d * sortedNanos.length);
+      return Duration.ofNanos(sortedNanos[rank - 1]);
+    }
+
+    public Duration min() {
+      return Duration.ofNanos(sortedNanos[0]);
+    }
+
+    public Duration max() {
+      return Duration.ofNanos(sortedNanos[sortedNanos.length - 1]);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.ROOT,
+          "p50=%dms p90=%dms p99=%dms max=%dms (n=%d)",
+          percentile(50).toMillis(),
+          percentile(90).toMillis(),
+          percentile(99).toMillis(),
+          max().toMillis(),
+          count());
+    }
+  }
+
+  /** Human readable summary, one line per metric. */
+  public List<String> summary() {
+    List<String> lines = new ArrayList<>();
+    for (Metric metric : METRICS) {
+      Statistics statistics = statistics(metric);
+      if (statistics != null) {
+        lines.add(String.format("%-12s %s", metric.jsonName(), statistics));
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Renders the results as a JSON object containing the given attributes, the percentiles of each
+   * metric ({@code statisticsMillis}) and the values of each iteration ({@code iterationsMillis}),
+   * in milliseconds.
+   */
+  public String toJson(Map<String, String> attributes) {
+    StringBuilder json = new StringBuilder("{\n");
+    ProcessTimings.appendAttributes(json, attributes);
+    json.append("  \"iterations\": ").append(iterations.size()).append(",\n");
+
+    json.append("  \"statisticsMillis\": {");
+    String sep = "\n";
+    for (Metric metric : METRICS) {
+      Statistics statistics = statistics(metric);
+      if (statistics != null) {
+        json.append(sep).append("    \"").append(metric.jsonName()).append("\": {");
+        appendStatistic(json, "min", statistics.min(), ", ");
+        appendStatistic(json, "p50", statistics.percentile(50), ", ");
+        appendStatistic(json, "p90", statistics.percentile(90), ", ");
+        appendStatistic(json, "p99", statistics.percentile(99), ", ");
+        appendStatistic(json, "max", statistics.max(), "}");
+        sep = ",\n";
+      }
+    }
+    json.append(sep.equals("\n") ? "},\n" : "\n  },\n");
+
+    json.append("  \"iterationsMillis\": {");
+    sep = "\n";
+    for (Metric metric : METRICS) {
+      if (statistics(metric) != null) {
+        json.append(sep).append("    \"").append(metric.jsonName()).append("\": [");
+        String valueSep = "";
+        for (long[] nanos : iterations) {
+          json.append(valueSep);
+          long value = nanos[metric.ordinal()];
+          if (value >= 0) {
+            ProcessTimings.appendMillis(json, Duration.ofNanos(value));
+          } else {
+            json.append("null");
+          }
+          valueSep = ", ";
+        }
+        json.append(']');
+        sep = ",\n";
+      }
+    }
+    json.append(sep.equals("\n") ? "}\n" : "\n  }\n");
+
+    return json.append("}\n").toString();
+  }
+
+  /**
+   * Writes the {@link #toJson(Map) JSON representation} to the given file, creates the parent
+   * directories.
+   */
+  public void writeReport(Path file, Map<String, String> attributes) throws IOException {
+    ProcessTimings.writeJson(file, toJson(attributes));
+  }
+
+  private static void appendStatistic(
+      StringBuilder json, String name, Duration value, String suffix) {
+    json.append('"').append(name).append("\": ");
+    ProcessTimings.appendMillis(json, value);
+    json.append(suffix);
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects a thread dump and a class histogram of a Java process, that did not start within its
+ * deadline, before it is stopped, see {@link ProcessHandler#setStartupDiagnostics}.
+ *
+ * <p>Both are taken via {@code jcmd} of the process' Java-VM and written to {@value
+ * #THREAD_DUMP_FILE} and {@value #CLASS_HISTOGRAM_FILE} in the process' working directory. Without
+ * {@code jcmd}, for example in a JRE, the process gets a {@code SIGQUIT}, which makes the Java-VM
+ * print a thread dump to its output, which is captured like any other output.
+ */
+public final class StartupDiagnostics {
+
+  public static final String THREAD_DUMP_FILE = "startup-timeout-thread-dump.txt";
+  public static final String CLASS_HISTOGRAM_FILE = "startup-timeout-class-histogram.txt";
+
+  /** Maximum time to wait for the {@code jcmd} commands, in total. */
+  static final long COMMAND_TIMEOUT_MILLIS = 10_000L;
+
+  /** Time to give the Java-VM to print the thread dump after a {@code SIGQUIT}. */
+  static final long SIGQUIT_GRACE_MILLIS = 1_000L;
+
+  /** Number of lines of the thread dump included in the timeout exception's message. */
+  static final int THREAD_DUMP_MESSAGE_LINES = 40;
+
+  /** Number of lines of the class histogram included in the timeout exception's message. */
+  static final int HISTOGRAM_MESSAGE_LINES = 25;
+
+  private final Path jcmd;
+  private final Path directory;
+  private final long commandTimeoutMillis;
+
+  StartupDiagnostics(Path jcmd, Path directory, long commandTimeoutMillis) {
+    this.jcmd = jcmd;
+    this.directory = directory;
+    this.commandTimeoutMillis = commandTimeoutMillis;
+  }
+
+  /**
+   * Creates the diagnostics for a process launched with the given Java-VM.
+   *
+   * @param javaVM the process' Java-VM, provides {@code jcmd}
+   * @param directory the process' working directory, receives the diagnostics files
+   */
+  public static StartupDiagnostics of(JavaVM javaVM, Path directory) {
+    Path jcmd = javaVM.getJcmdExecutable();
+    return new StartupDiagnostics(
+        Files.isExecutable(jcmd) ? jcmd : null, directory.toAbsolutePath(), COMMAND_TIMEOUT_MILLIS);
+  }
+
+  /** Whether {@code jcmd} is available, otherwise the thread dump is requested via SIGQUIT. */
+  public boolean hasJcmd() {
+    return jcmd != null;
+  }
+
+  /**
+   * Takes a thread dump and a class histogram of the given process. Failures are recorded in the
+   * result, collecting the diagnostics must not prevent stopping the process.
+   *
+   * <p>Blocks until both {@code jcmd} commands finished, but not longer than {@value
+   * #COMMAND_TIMEOUT_MILLIS} ms in total, or, without {@code jcmd}, for about twice {@value
+   * #SIGQUIT_GRACE_MILLIS} ms.
+   */
+  public Result collect(long pid) {
+    List<String> failures = new ArrayList<>();
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      failures.add(String.format("Failed to create %s: %s", directory, e));
+      return new Result(null, null, null, null, false, failures);
+    }
+
+    if (jcmd == null) {
+      boolean signalled = sigquit(pid, failures);
+      return new Result(null, null, null, null, signalled, failures);
+    }
+
+    Path threadDumpFile = directory.resolve(THREAD_DUMP_FILE);
+    Path histogramFile = directory.resolve(CLASS_HISTOGRAM_FILE);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commandTimeoutMillis);
+    String threadDump = jcmd(pid, "Thread.print", threadDumpFile, deadline, failures);
+    String histogram = jcmd(pid, "GC.class_histogram", histogramFile, deadline, failures);
+    return new Result(
+        threadDump,
+        threadDump != null ? threadDumpFile : null,
+        histogram,
+        histogram != null ? histogramFile : null,
+        false,
+        failures);
+  }
+
+  private String jcmd(long pid, String command, Path file, long deadline, List<String> failures) {
+    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    if (remainingMillis <= 0L) {
+      failures.add(
+          String.format(
+              Locale.ROOT,
+              "jcmd %s skipped, the diagnostics took longer than %d ms",
+              command,
+              commandTimeoutMillis));
+      return null;
+    }
+    try {
+      Process process =
+          new ProcessBuilder(jcmd.toString(), Long.toString(pid), command)
+              .redirectErrorStream(true)
+              .redirectOutput(file.toFile())
+              .start();
+      if (!process.waitFor(remainingMillis, TimeUnit.MILLISECONDS)) {
+        process.destroyForcibly();
+        failures.add(
+            String.format(
+                Locale.ROOT, "jcmd %s did not finish within %d ms", command, commandTimeoutMillis));
+      } else if (process.exitValue() != 0) {
+        failures.add(
+            String.format(
+                Locale.ROOT, "jcmd %s failed with exit code %d", command, process.exitValue()));
+      }
+      return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      failures.add(String.format("jcmd %s failed: %s", command, e));
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failures.add(String.format("jcmd %s interrupted", command));
+      return null;
+    }
+  }
+
+  private static boolean sigquit(long pid, List<String> failures) {
+    if (System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("windows")) {
+      failures.add("No jcmd available to take a thread dump");
+      return false;
+    }
+    try {
+      Process kill = new ProcessBuilder("kill", "-QUIT", Long.toString(pid)).start();
+      if (!kill.waitFor(SIGQUIT_GRACE_MILLIS, TimeUnit.MILLISECONDS) || kill.exitValue() != 0) {
+        failures.add("Failed to send SIGQUIT to take a thread dump");
+        return false;
+      }
+      // The Java-VM prints the thread dump asynchronously
+      Thread.sleep(SIGQUIT_GRACE_MILLIS);
+      return true;
+    } catch (IOException e) {
+      failures.add(String.format("Failed to send SIGQUIT to take a thread dump: %s", e));
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /** Thread dump and class histogram of a process. */
+  public static final class Result {
+    private final String threadDump;
+    private final Path threadDumpFile;
+    private final String classHistogram;
+    private final Path classHistogramFile;
+    private final boolean sigquit;
+    private final List<String> failures;
+
+    Result(
+        String threadDump,
+        Path threadDumpFile,
+        String classHistogram,
+        Path classHistogramFile,
+        boolean sigquit,
+        List<String> failures) {
+      this.threadDump = threadDump;
+      this.threadDumpFile = threadDumpFile;
+      this.classHistogram = classHistogram;
+      this.classHistogramFile = classHistogramFile;
+      this.sigquit = sigquit;
+      this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+    }
+
+    /** The thread dump taken via {@code jcmd}, {@code null} if none has been taken. */
+    public String getThreadDump() {
+      return threadDump;
+    }
+
+    public Path getThreadDumpFile() {
+      return threadDumpFile;
+    }
+
+    /** The class histogram taken via {@code jcmd}, {@code null} if none has been taken. */
+    public String getClassHistogram() {
+      return classHistogram;
+    }
+
+    public Path getClassHistogramFile() {
+      return classHistogramFile;
+    }
+
+    /** Whether the thread dump has been requested via {@code SIGQUIT} and is in the output. */
+    public boolean isSigquit() {
+      return sigquit;
+    }
+
+    public List<String> getFailures() {
+      return failures;
+    }
+
+    /**
+     * Formats the diagnostics for the timeout exception's message, the thread dump and the class
+     * histogram are truncated to their first lines, the files contain the complete diagnostics.
+     */
+    public String format() {
+      StringBuilder sb = new StringBuilder();
+      if (threadDump != null) {
+        sb.append("\nThread dump, written to ").append(threadDumpFile).append(":\n");
+        appendLines(sb, threadDump, THREAD_DUMP_MESSAGE_LINES, threadDumpFile);
+      } else if (sigquit) {
+        sb.append("\nThread dump requested via SIGQUIT, printed to the process output.\n");
+      }
+      if (classHistogram != null) {
+        sb.append("\nClass histogram, written to ").append(classHistogramFile).append(":\n");
+        appendLines(sb, classHistogram, HISTOGRAM_MESSAGE_LINES, classHistogramFile);
+      }
+      for (String failure : failures) {
+        sb.append("\nDiagnostics failure: ").append(failure).append('\n');
+      }
+      return sb.toString();
+    }
+
+    private static void appendLines(StringBuilder sb, String text, int maxLines, Path file) {
+      List<String> lines = Arrays.asList(text.trim().split("\r?\n"));
+      lines.stream().limit(maxLines).forEach(line -> sb.append(line).append('\n'));
+      if (lines.size() > maxLines) {
+        sb.append(
+            String.format(Locale.ROOT, "... %d more lines in %s\n", lines.size() - maxLines, file));
+      }
+    }
+  }
+}
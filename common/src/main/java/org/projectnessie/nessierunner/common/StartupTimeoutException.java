@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The process did not emit its listen URL in time, carries the {@link StartupDiagnostics} collected
+ * before the process was stopped.
+ */
+public class StartupTimeoutException extends TimeoutException {
+  private static final long serialVersionUID = 1L;
+
+  private final transient StartupDiagnostics.Result diagnostics;
+
+  public StartupTimeoutException(String message, StartupDiagnostics.Result diagnostics) {
+    super(message);
+    this.diagnostics = diagnostics;
+  }
+
+  /** The thread dump and class histogram of the process. */
+  public StartupDiagnostics.Result getDiagnostics() {
+    return diagnostics;
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestAsyncLineForwarder {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  private static final ThreadFactory THREADS =
+      r -> {
+        Thread t = new Thread(r, "test-forwarder");
+        t.setDaemon(true);
+        return t;
+      };
+
+  private static List<String> lines(String prefix, int count) {
+    return IntStream.range(0, count).mapToObj(i -> prefix + i).collect(Collectors.toList());
+  }
+
+  @Test
+  void invalidQueueSize() {
+    assertThatThrownBy(
+            () -> new AsyncLineForwarder(0, OutputOverflowPolicy.BLOCK, line -> {}, THREADS))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @RepeatedTest(20) // repeat, concurrency test
+  void block() throws Exception {
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    AsyncLineForwarder forwarder =
+        new AsyncLineForwarder(
+            3, OutputOverflowPolicy.BLOCK, line -> received.add(line.toString()), THREADS);
+
+    List<String> lines = lines("line ", 1000);
+    lines.forEach(forwarder::accept);
+    forwarder.close(10_000L);
+
+    soft.assertThat(received).containsExactlyElementsOf(lines);
+    soft.assertThat(forwarder.dropped()).isEqualTo(0L);
+  }
+
+  @Test
+  void drop() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch unblock = new CountDownLatch(1);
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    AsyncLineForwarder forwarder =
+        new AsyncLineForwarder(
+            3, OutputOverflowPolicy.DROP, slowTarget(received, blocked, unblock), THREADS);
+
+    forwarder.accept("first");
+    blocked.await();
+    // The forwarding thread is blocked in the target, the queue can take 3 lines
+    lines("line ", 10).forEach(forwarder::accept);
+    unblock.countDown();
+    forwarder.close(10_000L);
+
+    soft.assertThat(received).containsExactly("first", "line 0", "line 1", "line 2");
+    soft.assertThat(forwarder.dropped()).isEqualTo(7L);
+  }
+
+  @Test
+  void summarize() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch unblock = new CountDownLatch(1);
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    AsyncLineForwarder forwarder =
+        new AsyncLineForwarder(
+            3, OutputOverflowPolicy.SUMMARIZE, slowTarget(received, blocked, unblock), THREADS);
+
+    forwarder.accept("first");
+    blocked.await();
+    lines("line ", 10).forEach(forwarder::accept);
+    unblock.countDown();
+    forwarder.close(10_000L);
+
+    soft.assertThat(received)
+        .containsExactly(
+            "first",
+            "[... 7 output lines dropped, the output target could not keep up ...]",
+            "line 0",
+            "line 1",
+            "line 2");
+    soft.assertThat(forwarder.dropped()).isEqualTo(7L);
+  }
+
+  @Test
+  void batches() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch unblock = new CountDownLatch(1);
+    List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    LineSink target =
+        new LineSink() {
+          @Override
+          public void accept(CharSequence line) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public void acceptBatch(List<String> lines) {
+            batches.add(new ArrayList<>(lines));
+            if (blocked.getCount() > 0) {
+              blocked.countDown();
+              try {
+                unblock.await();
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            }
+          }
+        };
+    AsyncLineForwarder forwarder =
+        new AsyncLineForwarder(100, OutputOverflowPolicy.BLOCK, target, THREADS);
+
+    forwarder.accept("first");
+    blocked.await();
+    // The forwarding thread is blocked in the target, the queued lines form the next batch
+    lines("line ", 10).forEach(forwarder::accept);
+    unblock.countDown();
+    forwarder.close(10_000L);
+
+    soft.assertThat(batches).containsExactly(List.of("first"), lines("line ", 10));
+  }
+
+  @Test
+  void joining() {
+    List<String> received = new ArrayList<>();
+    LineSink sink = LineSink.joining("> ", received::add);
+
+    sink.accept(new StringBuilder("single"));
+    sink.acceptBatch(List.of("a", "b", "c"));
+
+    soft.assertThat(received).containsExactly("> single", "> a\n> b\n> c");
+  }
+
+  @Test
+  void failingTarget() throws Exception {
+    AsyncLineForwarder forwarder =
+        new AsyncLineForwarder(
+            1,
+            OutputOverflowPolicy.BLOCK,
+            line -> {
+              throw new IllegalStateException("boom");
+            },
+            THREADS);
+
+    // Must not block forever
+    lines("line ", 10).forEach(forwarder::accept);
+
+    soft.assertThatThrownBy(() -> forwarder.close(10_000L))
+        .hasMessage("Output forwarding failed")
+        .hasRootCauseMessage("boom");
+  }
+
+  /**
+   * Target that blocks on the first line until {@code unblock} is counted down, so that the
+   * forwarding thread only takes lines from the queue after that.
+   */
+  private static LineSink slowTarget(
+      List<String> received, CountDownLatch blocked, CountDownLatch unblock) {
+    return line -> {
+      received.add(line.toString());
+      if (blocked.getCount() > 0) {
+        blocked.countDown();
+        try {
+          unblock.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+  }
+}
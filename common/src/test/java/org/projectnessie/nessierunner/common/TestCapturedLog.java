@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestCapturedLog {
+
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @Test
+  void invalidLimits() {
+    assertThatThrownBy(() -> new CapturedLog(0, 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new CapturedLog(1, 0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void empty() {
+    CapturedLog log = new CapturedLog(3, 100);
+    soft.assertThat(log.snapshot()).isEmpty();
+    soft.assertThat(log.dropped()).isEqualTo(0L);
+    soft.assertThat(log.format()).isEmpty();
+  }
+
+  @Test
+  void boundedByLines() {
+    CapturedLog log = new CapturedLog(3, 1000);
+    log.add("one", 3);
+    log.add("two", 3);
+    soft.assertThat(log.snapshot()).containsExactly("one", "two");
+    soft.assertThat(log.format()).isEqualTo("one\ntwo");
+
+    log.add("three", 5);
+    log.add("four", 4);
+    log.add("five", 4);
+    soft.assertThat(log.snapshot()).containsExactly("three", "four", "five");
+    soft.assertThat(log.dropped()).isEqualTo(2L);
+    soft.assertThat(log.format()).isEqualTo("[... 2 earlier lines dropped ...]\nthree\nfour\nfive");
+  }
+
+  @Test
+  void boundedByBytes() {
+    CapturedLog log = new CapturedLog(100, 10);
+    log.add("one", 3);
+    log.add("two", 3);
+    log.add("three", 5);
+    soft.assertThat(log.snapshot()).containsExactly("two", "three");
+    soft.assertThat(log.dropped()).isEqualTo(1L);
+
+    // The most recent line is always retained, even if it exceeds the limit
+    log.add("something longer", 16);
+    soft.assertThat(log.snapshot()).containsExactly("something longer");
+    soft.assertThat(log.dropped()).isEqualTo(3L);
+
+    log.add("x", 1);
+    soft.assertThat(log.snapshot()).containsExactly("x");
+    soft.assertThat(log.dropped()).isEqualTo(4L);
+  }
+
+  @Test
+  void clear() {
+    CapturedLog log = new CapturedLog(3, 100);
+    log.add("one", 3);
+    log.add("two", 3);
+    log.clear();
+    soft.assertThat(log.snapshot()).isEmpty();
+    log.add("three", 5);
+    soft.assertThat(log.snapshot()).containsExactly("three");
+  }
+
+  @RepeatedTest(20) // repeat, concurrency test
+  void concurrentReader() throws Exception {
+    CapturedLog log = new CapturedLog(16, 1_000_000);
+    AtomicBoolean done = new AtomicBoolean();
+    List<String> failures = new ArrayList<>();
+
+    CompletableFuture<Void> reader =
+        CompletableFuture.runAsync(
+            () -> {
+              while (!done.get()) {
+                List<String> snapshot = log.snapshot();
+                // Retained lines must always be consecutive
+                for (int i = 1; i < snapshot.size(); i++) {
+                  int prev = Integer.parseInt(snapshot.get(i - 1));
+                  int cur = Integer.parseInt(snapshot.get(i));
+                  if (cur != prev + 1) {
+                    failures.add(snapshot.toString());
+                    return;
+                  }
+                }
+              }
+            });
+
+    for (int i = 0; i < 100_000; i++) {
+      log.add(Integer.toString(i), 6);
+    }
+    done.set(true);
+    reader.get();
+
+    soft.assertThat(failures).isEmpty();
+    soft.assertThat(log.snapshot())
+        .containsExactlyElementsOf(
+            IntStream.range(100_000 - 16, 100_000)
+                .mapToObj(Integer::toString)
+                .collect(Collectors.toList()));
+    soft.assertThat(log.dropped()).isEqualTo(100_000L - 16);
+  }
+}
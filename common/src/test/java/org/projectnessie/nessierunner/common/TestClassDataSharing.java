@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestClassDataSharing {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @TempDir Path dir;
+
+  private JavaVM javaVM(String name, String version) throws IOException {
+    Path home = Files.createDirectories(dir.resolve(name));
+    Files.write(home.resolve("release"), Arrays.asList("JAVA_VERSION=\"" + version + "\""));
+    return JavaVM.forJavaHome(home);
+  }
+
+  private Path jar(String content) throws IOException {
+    return Files.write(dir.resolve("app.jar"), content.getBytes(UTF_8));
+  }
+
+  private Stream<String> workDirFiles(Path workDir) throws IOException {
+    return Files.list(workDir).map(p -> p.getFileName().toString());
+  }
+
+  @Test
+  void unsupported() throws Exception {
+    Path workDir = Files.createDirectories(dir.resolve("work"));
+    ClassDataSharing cds =
+        ClassDataSharing.forApplication(workDir, jar("foo"), javaVM("jdk", "11"));
+    soft.assertThat(cds.isSupported()).isFalse();
+    soft.assertThat(cds.isArchiveAvailable()).isFalse();
+    soft.assertThat(cds.getArchiveFile()).isNull();
+    soft.assertThat(cds.jvmArguments()).isEmpty();
+    soft.assertThat(cds.recordStartup(1234L))
+        .isEqualTo("Startup took 1234 ms, class data sharing requires Java 13 or newer");
+  }
+
+  @Test
+  void dynamicArchive() throws Exception {
+    Path workDir = Files.createDirectories(dir.resolve("work"));
+    Path jar = jar("foo");
+    JavaVM jvm = javaVM("jdk", "17.0.2");
+
+    ClassDataSharing cds = ClassDataSharing.forApplication(workDir, jar, jvm);
+    Path archive = cds.getArchiveFile();
+    soft.assertThat(cds.isSupported()).isTrue();
+    soft.assertThat(cds.isArchiveAvailable()).isFalse();
+    soft.assertThat(archive.getFileName().toString())
+        .startsWith(ClassDataSharing.FILE_PREFIX)
+        .endsWith(".jsa");
+    soft.assertThat(cds.jvmArguments())
+        .containsExactly("-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath());
+    soft.assertThat(cds.recordStartup(3000L))
+        .isEqualTo(
+            "Startup took 3000 ms without class data sharing archive, the archive "
+                + archive
+                + " will be created when the process exits");
+
+    // the process created the archive
+    Files.write(archive, new byte[] {1, 2, 3});
+
+    cds = ClassDataSharing.forApplication(workDir, jar, jvm);
+    soft.assertThat(cds.getArchiveFile()).isEqualTo(archive);
+    soft.assertThat(cds.isArchiveAvailable()).isTrue();
+    soft.assertThat(cds.jvmArguments())
+        .containsExactly("-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+    soft.assertThat(cds.recordStartup(1000L))
+        .isEqualTo(
+            "Startup took 1000 ms with class data sharing archive "
+                + archive
+                + ", 3000 ms without");
+
+    // changed jar invalidates the archive
+    jar = jar("bar");
+    cds = ClassDataSharing.forApplication(workDir, jar, jvm);
+    soft.assertThat(cds.getArchiveFile()).isNotEqualTo(archive);
+    soft.assertThat(cds.isArchiveAvailable()).isFalse();
+    soft.assertThat(workDirFiles(workDir)).isEmpty();
+  }
+
+  @Test
+  void autoCreateArchive() throws Exception {
+    Path workDir = Files.createDirectories(dir.resolve("work"));
+    ClassDataSharing cds =
+        ClassDataSharing.forApplication(workDir, jar("foo"), javaVM("jdk", "21"));
+    soft.assertThat(cds.jvmArguments())
+        .containsExactly(
+            "-XX:+AutoCreateSharedArchive",
+            "-XX:SharedArchiveFile=" + cds.getArchiveFile().toAbsolutePath());
+  }
+
+  @Test
+  void aotCache() throws Exception {
+    Path workDir = Files.createDirectories(dir.resolve("work"));
+    Path jar = jar("foo");
+    JavaVM jvm = javaVM("jdk", "25");
+    ClassDataSharing cds = ClassDataSharing.forApplication(workDir, jar, jvm);
+    Path archive = cds.getArchiveFile();
+    soft.assertThat(archive.getFileName().toString()).endsWith(".aot");
+    soft.assertThat(cds.jvmArguments())
+        .containsExactly("-XX:AOTCacheOutput=" + archive.toAbsolutePath());
+
+    Files.write(archive, new byte[] {1, 2, 3});
+    cds = ClassDataSharing.forApplication(workDir, jar, jvm);
+    soft.assertThat(cds.jvmArguments()).containsExactly("-XX:AOTCache=" + archive.toAbsolutePath());
+  }
+
+  @Test
+  void archiveKey() throws Exception {
+    Path jar = jar("foo");
+    JavaVM jvm = javaVM("jdk", "17.0.2");
+    String key = ClassDataSharing.archiveKey(jar, jvm.getJavaHome());
+    soft.assertThat(key).hasSize(32).isEqualTo(ClassDataSharing.archiveKey(jar, jvm.getJavaHome()));
+
+    // Other Java-Home
+    soft.assertThat(ClassDataSharing.archiveKey(jar, javaVM("jdk2", "17.0.2").getJavaHome()))
+        .isNotEqualTo(key);
+    // Java update in the same Java-Home
+    soft.assertThat(ClassDataSharing.archiveKey(jar, javaVM("jdk", "17.0.3").getJavaHome()))
+        .isNotEqualTo(key);
+    javaVM("jdk", "17.0.2");
+
+    // Quarkus application model changed
+    Files.createDirectories(dir.resolve("quarkus"));
+    Files.write(dir.resolve("quarkus").resolve("quarkus-application.dat"), new byte[] {42});
+    soft.assertThat(ClassDataSharing.archiveKey(jar, jvm.getJavaHome())).isNotEqualTo(key);
+  }
+
+  @Test
+  void configuredByUser() {
+    soft.assertThat(ClassDataSharing.isConfiguredByUser(Collections.emptyList())).isFalse();
+    soft.assertThat(ClassDataSharing.isConfiguredByUser(Arrays.asList("-Xmx1g", "-Dfoo=bar")))
+        .isFalse();
+    soft.assertThat(ClassDataSharing.isConfiguredByUser(Arrays.asList("-Xmx1g", "-Xshare:off")))
+        .isTrue();
+    soft.assertThat(
+            ClassDataSharing.isConfiguredByUser(
+                Collections.singletonList("-XX:SharedArchiveFile=app.jsa")))
+        .isTrue();
+    soft.assertThat(
+            ClassDataSharing.isConfiguredByUser(Collections.singletonList("-XX:AOTCache=app.aot")))
+        .isTrue();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestDataDirectoryTemplate {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @TempDir Path dir;
+
+  private Path seedTemplate() throws IOException {
+    Path template = dir.resolve("template");
+    Files.createDirectories(template.resolve("sub"));
+    Files.write(template.resolve("000001.sst"), "sst".getBytes(UTF_8));
+    Files.write(template.resolve("sub/000002.sst"), "sst2".getBytes(UTF_8));
+    Files.write(template.resolve("MANIFEST-000001"), "manifest".getBytes(UTF_8));
+    return template;
+  }
+
+  @Test
+  void hardLinksAndCopies() throws IOException {
+    Path template = seedTemplate();
+    Path target = dir.resolve("work/data");
+
+    DataDirectoryTemplate.Result result =
+        DataDirectoryTemplate.of(template, DataDirectoryTemplate.DEFAULT_LINK_PATTERNS)
+            .cloneTo(target, false);
+
+    soft.assertThat(result.isReflinked()).isFalse();
+    soft.assertThat(result.getHardLinks()).isEqualTo(2);
+    soft.assertThat(result.getCopies()).isEqualTo(1);
+    soft.assertThat(Files.isSameFile(target.resolve("000001.sst"), template.resolve("000001.sst")))
+        .isTrue();
+    soft.assertThat(result.toString()).contains("hard link(s)").contains("copied file(s)");
+    soft.assertThat(target.resolve("000001.sst")).hasContent("sst");
+    soft.assertThat(target.resolve("sub/000002.sst")).hasContent("sst2");
+    soft.assertThat(target.resolve("MANIFEST-000001")).hasContent("manifest");
+    soft.assertThat(
+            Files.isSameFile(
+                target.resolve("MANIFEST-000001"), template.resolve("MANIFEST-000001")))
+        .isFalse();
+
+    // mutable files are copied, modifying them does not change the template
+    Files.write(target.resolve("MANIFEST-000001"), "changed".getBytes(UTF_8));
+    soft.assertThat(template.resolve("MANIFEST-000001")).hasContent("manifest");
+  }
+
+  @Test
+  void copyOnly() throws IOException {
+    Path template = seedTemplate();
+    Path target = dir.resolve("data");
+
+    DataDirectoryTemplate.Result result =
+        DataDirectoryTemplate.of(template, emptyList()).cloneTo(target, false);
+
+    soft.assertThat(result.getHardLinks()).isEqualTo(0);
+    soft.assertThat(result.getCopies()).isEqualTo(3);
+    soft.assertThat(Files.isSameFile(target.resolve("000001.sst"), template.resolve("000001.sst")))
+        .isFalse();
+  }
+
+  @Test
+  void replacesExistingDirectory() throws IOException {
+    Path template = seedTemplate();
+    Path target = dir.resolve("data");
+    Files.createDirectories(target.resolve("old"));
+    Files.write(target.resolve("old/LOG"), "old".getBytes(UTF_8));
+    Files.write(target.resolve("MANIFEST-000001"), "dirty".getBytes(UTF_8));
+
+    DataDirectoryTemplate dataTemplate =
+        DataDirectoryTemplate.of(template, DataDirectoryTemplate.DEFAULT_LINK_PATTERNS);
+    dataTemplate.cloneTo(target);
+
+    soft.assertThat(target.resolve("old")).doesNotExist();
+    soft.assertThat(target.resolve("MANIFEST-000001")).hasContent("manifest");
+    soft.assertThat(target.resolve("sub/000002.sst")).hasContent("sst2");
+  }
+
+  @Test
+  void invalid() throws IOException {
+    Path template = seedTemplate();
+
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> DataDirectoryTemplate.of(dir.resolve("missing"), emptyList()))
+        .withMessageContaining("is not a directory");
+
+    DataDirectoryTemplate dataTemplate = DataDirectoryTemplate.of(template, emptyList());
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> dataTemplate.cloneTo(template.resolve("sub"), false))
+        .withMessageContaining("must neither contain nor be inside");
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> dataTemplate.cloneTo(dir, false))
+        .withMessageContaining("must neither contain nor be inside");
+    soft.assertThat(template.resolve("000001.sst")).hasContent("sst");
+  }
+}
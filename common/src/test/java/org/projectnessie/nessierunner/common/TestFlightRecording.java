@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.Arrays.asList;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestFlightRecording {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @TempDir Path dir;
+
+  @Test
+  void jvmArguments() {
+    FlightRecording recording = FlightRecording.of(dir.resolve("r.jfr"), null);
+    soft.assertThat(recording.getSettings()).isEqualTo(FlightRecording.DEFAULT_SETTINGS);
+    soft.assertThat(recording.jvmArguments(11))
+        .containsExactly(
+            "-XX:StartFlightRecording=name=nessie-runner,settings=profile,filename="
+                + dir.resolve("r.jfr")
+                + ",dumponexit=true");
+    soft.assertThat(FlightRecording.of(dir.resolve("r.jfr"), " default ").jvmArguments(17))
+        .containsExactly(
+            "-XX:StartFlightRecording=name=nessie-runner,settings=default,filename="
+                + dir.resolve("r.jfr")
+                + ",dumponexit=true,jdk.ClassLoad#enabled=true,jdk.ClassLoad#threshold=0ms");
+  }
+
+  @Test
+  void notWritten() throws Exception {
+    FlightRecording recording = FlightRecording.of(dir.resolve("missing.jfr"), null);
+    soft.assertThat(recording.summarize(null)).isNull();
+    soft.assertThat(recording.report(new ProcessHandler().getTimings()))
+        .isEqualTo("JFR recording " + dir.resolve("missing.jfr") + " has not been written");
+  }
+
+  @Test
+  void summarize() throws Exception {
+    Path file = dir.resolve("recording.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(10));
+      recording.enable("jdk.GarbageCollection");
+      recording.enable("jdk.ClassLoadingStatistics").withPeriod(Duration.ofMillis(100));
+      recording.enable("jdk.ClassLoad").withThreshold(Duration.ZERO);
+      recording.enable("jdk.JVMInformation");
+      recording.start();
+
+      burnCpu(Duration.ofMillis(1500));
+      System.gc();
+      URL classes = TestFlightRecording.class.getProtectionDomain().getCodeSource().getLocation();
+      try (URLClassLoader loader = new URLClassLoader(new URL[] {classes}, null)) {
+        loader.loadClass(TestFlightRecording.class.getName());
+      }
+
+      recording.stop();
+      recording.dump(file);
+    }
+
+    FlightRecording.Summary summary = FlightRecording.of(file, null).summarize(null);
+    soft.assertThat(summary).isNotNull();
+    soft.assertThat(summary.getStartupSamples()).isPositive();
+    soft.assertThat(summary.getTopStartupMethods())
+        .isNotEmpty()
+        .hasSizeLessThanOrEqualTo(FlightRecording.TOP_METHODS)
+        .first()
+        .extracting(FlightRecording.MethodSamples::getMethod)
+        .isEqualTo(TestFlightRecording.class.getName() + ".burnCpu");
+    soft.assertThat(summary.getGcCount()).isPositive();
+    soft.assertThat(summary.getGcLongestPause()).isLessThanOrEqualTo(summary.getGcPauses());
+    soft.assertThat(summary.getLoadedClasses()).isPositive();
+    soft.assertThat(summary.getStartupClassLoads()).isPositive();
+    soft.assertThat(summary.getStartupClassLoadingTime()).isNotNull();
+    soft.assertThat(summary.toString())
+        .startsWith("JFR recording " + file + ": ")
+        .contains(" startup CPU samples, top methods ")
+        .contains(TestFlightRecording.class.getName() + ".burnCpu (")
+        .contains(" garbage collection(s), total pause ")
+        .contains(" classes loaded, ");
+
+    // The test JVM started before the recording, nothing happened during a zero-length startup
+    FlightRecording.Summary noStartup = FlightRecording.of(file, null).summarize(Duration.ZERO);
+    soft.assertThat(noStartup.getStartupSamples()).isZero();
+    soft.assertThat(noStartup.getTopStartupMethods()).isEmpty();
+    soft.assertThat(noStartup.getStartupClassLoadingTime()).isNull();
+    soft.assertThat(noStartup.getGcCount()).isEqualTo(summary.getGcCount());
+  }
+
+  @Test
+  void classLoadingTime() {
+    Instant t = Instant.parse("2024-01-01T00:00:00Z");
+    List<FlightRecording.ClassLoad> loads =
+        new ArrayList<>(
+            asList(
+                // nested loads on thread 1 count once
+                new FlightRecording.ClassLoad(1L, t, t.plusMillis(10)),
+                new FlightRecording.ClassLoad(1L, t.plusMillis(2), t.plusMillis(5)),
+                new FlightRecording.ClassLoad(1L, t.plusMillis(8), t.plusMillis(12)),
+                new FlightRecording.ClassLoad(1L, t.plusMillis(20), t.plusMillis(25)),
+                // concurrent loads on another thread count separately
+                new FlightRecording.ClassLoad(2L, t.plusMillis(1), t.plusMillis(4))));
+    soft.assertThat(FlightRecording.classLoadingTime(loads)).isEqualTo(Duration.ofMillis(20));
+  }
+
+  private static long burnCpu(Duration duration) {
+    long end = System.nanoTime() + duration.toNanos();
+    long value = 0L;
+    while (System.nanoTime() < end) {
+      for (int i = 0; i < 10_000; i++) {
+        value = value * 31L + i;
+      }
+    }
+    return value;
+  }
+}
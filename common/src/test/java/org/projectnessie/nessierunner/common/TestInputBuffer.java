@@ -15,87 +15,204 @@
  */
 package org.projectnessie.nessierunner.common;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
 
-import java.io.Reader;
-import java.io.StringReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
 import org.junit.jupiter.api.Test;
 
 class TestInputBuffer {
 
+  private static InputStream bytes(String s) {
+    return new ByteArrayInputStream(s.getBytes(UTF_8));
+  }
+
   @Test
   void emptyInput() {
     List<String> lines = new ArrayList<>();
-    InputBuffer buf = new InputBuffer(new StringReader(""), lines::add);
-    assertThat(buf.io()).isFalse();
+    InputBuffer buf = new InputBuffer(bytes(""), UTF_8, l -> lines.add(l.asString()));
+    buf.drain();
     assertThat(lines).isEmpty();
     buf.flush();
     assertThat(lines).isEmpty();
   }
 
   @Test
-  void scattered() {
-    ArrayBlockingQueue<Integer> characters = new ArrayBlockingQueue<>(250);
+  void failingConsumer() {
+    List<String> lines = new ArrayList<>();
+    InputBuffer buf =
+        new InputBuffer(
+            bytes("one\ntwo\nthree"),
+            UTF_8,
+            l -> {
+              lines.add(l.asString());
+              throw new IllegalStateException("boom");
+            });
+    buf.drain();
+    assertThat(lines).containsExactly("one", "two", "three");
+    assertThat(buf.outputFailures()).isEqualTo(3L);
+  }
 
-    // Just need some Reader implementation that implements ready() + read()
-    Reader reader =
-        new StringReader("") {
-          @Override
-          public int read() {
-            return characters.poll();
-          }
+  @Test
+  void drain() {
+    List<String> lines = new ArrayList<>();
+    InputBuffer buf =
+        new InputBuffer(
+            bytes("Hello World\r\n\nFoo Bar Baz\nNo EOL"), UTF_8, l -> lines.add(l.asString()));
+    buf.drain();
+    assertThat(lines).containsExactly("Hello World", "", "Foo Bar Baz", "No EOL");
+    // Nothing left to flush
+    buf.flush();
+    assertThat(lines).containsExactly("Hello World", "", "Foo Bar Baz", "No EOL");
+  }
 
-          @Override
-          public boolean ready() {
-            return characters.size() > 0;
-          }
-        };
+  @Test
+  void linesSpanningReadBuffer() {
+    StringBuilder input = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      StringBuilder line = new StringBuilder();
+      for (int j = 0; j < i * 37; j++) {
+        line.append((char) ('a' + (j % 26)));
+      }
+      expected.add(line.toString());
+      input.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+    }
 
     List<String> lines = new ArrayList<>();
-    InputBuffer buf = new InputBuffer(reader, lines::add);
-    assertThat(buf.io()).isFalse();
-    assertThat(lines).isEmpty();
+    new InputBuffer(bytes(input.toString()), UTF_8, l -> lines.add(l.asString())).drain();
+    assertThat(lines).containsExactlyElementsOf(expected);
+  }
 
-    for (char c : "Hello World".toCharArray()) {
-      characters.add((int) c);
-    }
+  @Test
+  void charsets() {
+    String text = "Gr\u00fc\u00dfe \u2603\nna\u00efve\n"; // multi-byte UTF-8 sequences
 
-    // It should have done some I/O ...
-    assertThat(buf.io()).isTrue();
-    // ... but there was no trailing newline, so nothing to print (yet)
-    assertThat(lines).isEmpty();
+    List<String> lines = new ArrayList<>();
+    new InputBuffer(bytes(text), UTF_8, l -> lines.add(l.asString())).drain();
+    assertThat(lines).containsExactly("Gr\u00fc\u00dfe \u2603", "na\u00efve"); // decoded
+
+    lines.clear();
+    new InputBuffer(
+            new ByteArrayInputStream("na\u00efve\n".getBytes(ISO_8859_1)), // single byte
+            ISO_8859_1,
+            l -> lines.add(l.asString()))
+        .drain();
+    assertThat(lines).containsExactly("na\u00efve"); // decoded
+  }
+
+  @Test
+  void decodesLazily() {
+    List<Integer> lengths = new ArrayList<>();
+    List<String> lines = new ArrayList<>();
+    new InputBuffer(
+            bytes("Hello\nWorld\n"),
+            UTF_8,
+            l -> {
+              lengths.add(l.length());
+              if (l.bytes().get(l.bytes().position()) == 'W') {
+                // Same String instance for multiple asString() invocations
+                assertThat(l.asString()).isSameAs(l.asString());
+                lines.add(l.asString());
+              }
+            })
+        .drain();
+    assertThat(lengths).containsExactly(5, 5);
+    assertThat(lines).containsExactly("World");
+  }
 
-    for (char c : "\nFoo Bar Baz\nMeep".toCharArray()) {
-      characters.add((int) c);
+  @Test
+  void charSequence() {
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      longLine.append("\u00e4\u20ac"); // multi-byte UTF-8 sequences
     }
+    String text = "Hello\n\n" + longLine + "\nWorld\n";
 
-    // It should have done some I/O ...
-    assertThat(buf.io()).isTrue();
-    // ... and give us the first two lines ("Meep" is on an unterminated line)
-    assertThat(lines).containsExactly("Hello World", "Foo Bar Baz");
+    List<String> lines = new ArrayList<>();
+    List<CharSequence> instances = new ArrayList<>();
+    new InputBuffer(
+            bytes(text),
+            UTF_8,
+            l -> {
+              CharSequence chars = l.asCharSequence();
+              assertThat(chars).isNotInstanceOf(String.class);
+              assertThat(chars.length()).isEqualTo(chars.toString().length());
+              instances.add(chars);
+              lines.add(chars.toString());
+            })
+        .drain();
+    assertThat(lines).containsExactly("Hello", "", longLine.toString(), "World");
+    // The character buffer is reused, unless it needs to grow
+    assertThat(instances.get(0)).isSameAs(instances.get(1));
+    assertThat(instances.get(2)).isSameAs(instances.get(3));
+
+    // An already decoded String is returned as is
+    new InputBuffer(
+            bytes("Hello\n"),
+            UTF_8,
+            l -> {
+              String s = l.asString();
+              assertThat(l.asCharSequence()).isSameAs(s);
+            })
+        .drain();
+  }
 
-    // Just a CR does not trigger a "line complete"
-    characters.add(13);
-    assertThat(buf.io()).isTrue();
-    assertThat(lines).containsExactly("Hello World", "Foo Bar Baz");
+  @Test
+  void scattered() {
+    List<String> chunks =
+        asList("Hello World", "\nFoo Bar Baz\nMeep", "\r", "\n", "\nMore text\nNo EOL");
 
-    // ... but a LF does
-    characters.add(10);
-    assertThat(buf.io()).isTrue();
-    assertThat(lines).containsExactly("Hello World", "Foo Bar Baz", "Meep");
+    List<String> lines = new ArrayList<>();
+    // The lines emitted before each read, the last entry is the state at end-of-stream
+    List<List<String>> linesBeforeRead = new ArrayList<>();
 
-    // Add some more data, with an unterminated line...
-    for (char c : "\nMore text\nNo EOL".toCharArray()) {
-      characters.add((int) c);
-    }
-    assertThat(buf.io()).isTrue();
-    assertThat(lines).containsExactly("Hello World", "Foo Bar Baz", "Meep", "", "More text");
+    // Returns one chunk per read, like a pipe that receives the output in pieces
+    Iterator<String> pieces = chunks.iterator();
+    InputStream input =
+        new InputStream() {
+          @Override
+          public int read() {
+            throw new UnsupportedOperationException();
+          }
 
-    // "Final" flush() should yield the remaining data
-    buf.flush();
+          @Override
+          public int read(byte[] b, int off, int len) {
+            linesBeforeRead.add(new ArrayList<>(lines));
+            if (!pieces.hasNext()) {
+              return -1;
+            }
+            byte[] piece = pieces.next().getBytes(UTF_8);
+            assertThat(piece.length).isLessThanOrEqualTo(len);
+            System.arraycopy(piece, 0, b, off, piece.length);
+            return piece.length;
+          }
+        };
+
+    new InputBuffer(input, UTF_8, l -> lines.add(l.asString())).drain();
+
+    assertThat(linesBeforeRead)
+        .containsExactly(
+            // nothing read yet
+            emptyList(),
+            // no trailing newline, so nothing to emit (yet)
+            emptyList(),
+            // the first two lines ("Meep" is on an unterminated line)
+            asList("Hello World", "Foo Bar Baz"),
+            // just a CR does not trigger a "line complete"
+            asList("Hello World", "Foo Bar Baz"),
+            // ... but a LF does
+            asList("Hello World", "Foo Bar Baz", "Meep"),
+            // "No EOL" is on an unterminated line
+            asList("Hello World", "Foo Bar Baz", "Meep", "", "More text"));
+    // end-of-stream yields the remaining data
     assertThat(lines)
         .containsExactly("Hello World", "Foo Bar Baz", "Meep", "", "More text", "No EOL");
   }
@@ -20,6 +20,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
@@ -33,6 +34,30 @@ class TestJavaVM {
     assertThat(JavaVM.majorVersionFromString("1.8.0-foo+bar")).isEqualTo(8);
   }
 
+  @Test
+  void majorVersionFromReleaseFile(@TempDir Path jdkDir) throws Exception {
+    assertThat(JavaVM.majorVersionFromReleaseFile(jdkDir)).isEqualTo(-1);
+    assertThat(JavaVM.forJavaHome(jdkDir).getMajorVersion()).isEqualTo(-1);
+
+    Files.write(
+        jdkDir.resolve("release"),
+        Arrays.asList("IMPLEMENTOR=\"Eclipse Adoptium\"", "JAVA_VERSION=\"17.0.2\""));
+    assertThat(JavaVM.majorVersionFromReleaseFile(jdkDir)).isEqualTo(17);
+    assertThat(JavaVM.forJavaHome(jdkDir).getMajorVersion()).isEqualTo(17);
+
+    Files.write(jdkDir.resolve("release"), Arrays.asList("JAVA_VERSION=\"1.8.0_312\""));
+    assertThat(JavaVM.majorVersionFromReleaseFile(jdkDir)).isEqualTo(8);
+
+    Files.write(jdkDir.resolve("release"), Arrays.asList("JAVA_VERSION=\"foo\""));
+    assertThat(JavaVM.majorVersionFromReleaseFile(jdkDir)).isEqualTo(-1);
+  }
+
+  @Test
+  void currentJavaVMMajorVersion() {
+    assertThat(JavaVM.getCurrentJavaVM().getMajorVersion())
+        .isEqualTo(JavaVM.currentJavaVMMajorVersion());
+  }
+
   @Test
   void checkResolveEnvJdkHomeLinux() {
     Map<String, String> env = new HashMap<>();
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestJavaVMIndex {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @TempDir Path dir;
+
+  private static Path fakeJdk(Path javaHome, String version) throws IOException {
+    Files.createDirectories(javaHome.resolve("bin"));
+    Files.createFile(
+        javaHome.resolve("bin").resolve(JavaVM.executableName("java")),
+        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-x---")));
+    Files.write(javaHome.resolve("release"), singletonList("JAVA_VERSION=\"" + version + "\""));
+    return javaHome;
+  }
+
+  private static List<String> entries(JavaVMIndex index) {
+    return index.getEntries().stream()
+        .map(e -> e.getMajorVersion() + ":" + e.getJavaHome().getFileName())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void directory() throws IOException {
+    Path jdks = dir.resolve("jdks");
+    Path jdk11 = fakeJdk(jdks.resolve("jdk-11"), "11.0.2");
+    Path jdk21 = fakeJdk(jdks.resolve("jdk-21"), "21.0.1");
+    fakeJdk(jdks.resolve("macos-17").resolve("Contents").resolve("Home"), "17.0.9");
+    Files.createDirectories(jdks.resolve("not-a-jdk"));
+    Files.createFile(jdks.resolve("some-file"));
+
+    JavaVMIndex index =
+        JavaVMIndex.load(
+            null,
+            singletonList(new JavaVMIndex.Location(jdks, JavaVMIndex.Location.Kind.DIRECTORY)));
+
+    soft.assertThat(entries(index)).containsExactly("11:jdk-11", "21:jdk-21", "17:Home");
+    soft.assertThat(index.findExact(11).getJavaHome()).isEqualTo(jdk11);
+    soft.assertThat(index.findExact(12)).isNull();
+    soft.assertThat(index.find(8).getJavaHome()).isEqualTo(jdk11);
+    soft.assertThat(index.find(12).getMajorVersion()).isEqualTo(17);
+    soft.assertThat(index.find(18).getJavaHome()).isEqualTo(jdk21);
+    soft.assertThat(index.find(22)).isNull();
+  }
+
+  @Test
+  void cache() throws IOException {
+    Path jdks = dir.resolve("jdks");
+    Path cacheFile = dir.resolve("cache").resolve(JavaVMIndex.CACHE_FILE_NAME);
+    fakeJdk(jdks.resolve("jdk-11"), "11.0.2");
+    List<JavaVMIndex.Location> locations =
+        singletonList(new JavaVMIndex.Location(jdks, JavaVMIndex.Location.Kind.DIRECTORY));
+    FileTime mtime = FileTime.fromMillis(1_600_000_000_000L);
+    Files.setLastModifiedTime(jdks, mtime);
+
+    soft.assertThat(entries(JavaVMIndex.load(cacheFile, locations))).containsExactly("11:jdk-11");
+    soft.assertThat(cacheFile).isRegularFile();
+
+    // The directory did not change, the cached version is used, the release file is not read
+    Files.write(jdks.resolve("jdk-11").resolve("release"), singletonList("JAVA_VERSION=\"12\""));
+    soft.assertThat(entries(JavaVMIndex.load(cacheFile, locations))).containsExactly("11:jdk-11");
+
+    // An added JDK changes the modification time of the directory
+    fakeJdk(jdks.resolve("jdk-17"), "17");
+    Files.setLastModifiedTime(jdks, FileTime.fromMillis(mtime.toMillis() + 1000L));
+    soft.assertThat(entries(JavaVMIndex.load(cacheFile, locations)))
+        .containsExactly("12:jdk-11", "17:jdk-17");
+
+    // A corrupt cache file leads to a re-scan
+    Files.write(cacheFile, singletonList("\\u00"));
+    soft.assertThat(entries(JavaVMIndex.load(cacheFile, locations)))
+        .containsExactly("12:jdk-11", "17:jdk-17");
+  }
+
+  @Test
+  void javaHomeAndToolchains() throws IOException {
+    Path jdk8 = fakeJdk(dir.resolve("jdk8"), "1.8.0_312");
+    Path jdk17 = fakeJdk(dir.resolve("jdk17"), "17.0.2");
+    Path toolchains = dir.resolve("toolchains.xml");
+    Files.write(
+        toolchains,
+        asList(
+            "<toolchains>",
+            "  <toolchain><type>jdk</type><configuration>",
+            "    <jdkHome>" + jdk17 + "</jdkHome>",
+            "  </configuration></toolchain>",
+            "  <toolchain><type>jdk</type><configuration>",
+            "    <jdkHome>${env.JDK11_HOME}</jdkHome>",
+            "  </configuration></toolchain>",
+            "</toolchains>"));
+
+    JavaVMIndex index =
+        JavaVMIndex.load(
+            null,
+            asList(
+                new JavaVMIndex.Location(jdk8, JavaVMIndex.Location.Kind.JAVA_HOME),
+                new JavaVMIndex.Location(toolchains, JavaVMIndex.Location.Kind.MAVEN_TOOLCHAINS),
+                new JavaVMIndex.Location(
+                    dir.resolve("missing"), JavaVMIndex.Location.Kind.DIRECTORY)));
+
+    soft.assertThat(entries(index)).containsExactly("8:jdk8", "17:jdk17");
+  }
+
+  @Test
+  void defaultLocations() {
+    Map<String, String> env = new HashMap<>();
+    env.put("JAVA_HOME", "/opt/java");
+    env.put("GRADLE_USER_HOME", "/gradle-home");
+    Map<String, String> sysProps = new HashMap<>();
+    sysProps.put("user.home", "/home/user");
+    sysProps.put("os.name", "Linux");
+
+    soft.assertThat(
+            JavaVMIndex.defaultLocations(env::get, sysProps::get).stream()
+                .map(Object::toString)
+                .collect(Collectors.toList()))
+        .containsExactly(
+            "java_home:" + Paths.get("/opt/java").toAbsolutePath(),
+            "maven_toolchains:" + Paths.get("/home/user/.m2/toolchains.xml").toAbsolutePath(),
+            "directory:" + Paths.get("/home/user/.sdkman/candidates/java").toAbsolutePath(),
+            "directory:" + Paths.get("/gradle-home/jdks").toAbsolutePath(),
+            "directory:" + Paths.get("/usr/lib/jvm").toAbsolutePath());
+
+    soft.assertThat(JavaVMIndex.defaultCacheFile(env::get, sysProps::get))
+        .isEqualTo(Paths.get("/home/user/.cache/nessie-runner/jvm-index.properties"));
+    env.put("XDG_CACHE_HOME", "/cache");
+    soft.assertThat(JavaVMIndex.defaultCacheFile(env::get, sysProps::get))
+        .isEqualTo(Paths.get("/cache/nessie-runner/jvm-index.properties"));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestLaunchKey {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @Test
+  void launchKey() {
+    String key =
+        LaunchKey.of(
+            asList("java", "-jar", "app.jar"), emptyMap(), "/work", emptyList(), null, emptyList());
+    soft.assertThat(key).hasSize(64).matches("[0-9a-f]+");
+    soft.assertThat(
+            LaunchKey.of(
+                asList("java", "-jar", "app.jar"),
+                emptyMap(),
+                "/work",
+                emptyList(),
+                null,
+                emptyList()))
+        .isEqualTo(key);
+
+    // value boundaries matter
+    soft.assertThat(
+            LaunchKey.of(
+                asList("java", "-jarapp.jar"), emptyMap(), "/work", emptyList(), null, emptyList()))
+        .isNotEqualTo(key);
+    soft.assertThat(
+            LaunchKey.of(
+                asList("java", "-jar", "app.jar"),
+                emptyMap(),
+                "/other",
+                emptyList(),
+                null,
+                emptyList()))
+        .isNotEqualTo(key);
+    soft.assertThat(
+            LaunchKey.of(
+                asList("java", "-jar", "app.jar"),
+                emptyMap(),
+                "/work",
+                singletonList("quarkus"),
+                null,
+                emptyList()))
+        .isNotEqualTo(key);
+    soft.assertThat(
+            LaunchKey.of(
+                asList("java", "-jar", "app.jar"),
+                emptyMap(),
+                "/work",
+                emptyList(),
+                "/q/health/ready",
+                emptyList()))
+        .isNotEqualTo(key);
+  }
+
+  @Test
+  void environmentOrder() {
+    Map<String, String> env1 = new LinkedHashMap<>();
+    env1.put("A", "1");
+    env1.put("B", "2");
+    Map<String, String> env2 = new LinkedHashMap<>();
+    env2.put("B", "2");
+    env2.put("A", "1");
+    Map<String, String> env3 = new LinkedHashMap<>();
+    env3.put("A", "1");
+    env3.put("B", "3");
+
+    soft.assertThat(
+            LaunchKey.of(
+                singletonList("java"), env1, "/work", emptyList(), null, singletonList("fail")))
+        .isEqualTo(
+            LaunchKey.of(
+                singletonList("java"), env2, "/work", emptyList(), null, singletonList("fail")))
+        .isNotEqualTo(
+            LaunchKey.of(
+                singletonList("java"), env3, "/work", emptyList(), null, singletonList("fail")));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestLaunchProfile {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @Test
+  void forName() {
+    soft.assertThat(LaunchProfile.forName("fast-startup")).isSameAs(LaunchProfile.FAST_STARTUP);
+    soft.assertThat(LaunchProfile.forName(" Throughput ")).isSameAs(LaunchProfile.THROUGHPUT);
+    soft.assertThat(LaunchProfile.forName("low-memory")).isSameAs(LaunchProfile.LOW_MEMORY);
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> LaunchProfile.forName("fast"))
+        .withMessage(
+            "Unknown launch profile 'fast', supported: fast-startup, throughput, low-memory");
+  }
+
+  @Test
+  void optionName() {
+    soft.assertThat(LaunchProfile.optionName("-XX:TieredStopAtLevel=1"))
+        .isEqualTo("-XX:TieredStopAtLevel");
+    soft.assertThat(LaunchProfile.optionName("-XX:+UseSerialGC")).isEqualTo("-XX:UseSerialGC");
+    soft.assertThat(LaunchProfile.optionName("-XX:-UsePerfData")).isEqualTo("-XX:UsePerfData");
+    soft.assertThat(LaunchProfile.optionName("-Xmx1g")).isEqualTo("-Xmx");
+    soft.assertThat(LaunchProfile.optionName("-Xss256k")).isEqualTo("-Xss");
+    soft.assertThat(LaunchProfile.optionName("-Xshare:off")).isEqualTo("-Xshare");
+    soft.assertThat(LaunchProfile.optionName("-Dfoo=bar:baz")).isEqualTo("-Dfoo");
+    soft.assertThat(LaunchProfile.optionName("-ea")).isEqualTo("-ea");
+  }
+
+  @Test
+  void javaVersion() {
+    soft.assertThat(LaunchProfile.FAST_STARTUP.jvmArguments(11, emptyList()))
+        .containsExactly(
+            "-XX:TieredStopAtLevel=1",
+            "-XX:CICompilerCount=1",
+            "-XX:+UseSerialGC",
+            "-XX:-UsePerfData");
+    soft.assertThat(LaunchProfile.THROUGHPUT.jvmArguments(17, emptyList()))
+        .doesNotContain("-XX:+UseStringDeduplication");
+    soft.assertThat(LaunchProfile.THROUGHPUT.jvmArguments(21, emptyList()))
+        .contains("-XX:+UseStringDeduplication");
+    soft.assertThat(LaunchProfile.LOW_MEMORY.jvmArguments(21, emptyList()))
+        .doesNotContain("-XX:+UseCompactObjectHeaders");
+    soft.assertThat(LaunchProfile.LOW_MEMORY.jvmArguments(25, emptyList()))
+        .contains("-XX:+UseCompactObjectHeaders");
+    soft.assertThat(LaunchProfile.LOW_MEMORY.jvmArguments(-1, emptyList()))
+        .containsExactly(
+            "-XX:+UseSerialGC",
+            "-XX:TieredStopAtLevel=1",
+            "-XX:ReservedCodeCacheSize=64m",
+            "-XX:MaxRAMPercentage=25.0",
+            "-Xss512k");
+  }
+
+  @Test
+  void userArgumentsOverride() {
+    // overriding one option of a group drops the whole group
+    soft.assertThat(
+            LaunchProfile.FAST_STARTUP.jvmArguments(21, singletonList("-XX:TieredStopAtLevel=4")))
+        .containsExactly("-XX:+UseSerialGC", "-XX:-UsePerfData");
+    // selecting another GC drops the profile's GC
+    soft.assertThat(
+            LaunchProfile.FAST_STARTUP.jvmArguments(21, asList("-XX:+UseG1GC", "-XX:+UsePerfData")))
+        .containsExactly("-XX:TieredStopAtLevel=1", "-XX:CICompilerCount=1");
+    soft.assertThat(LaunchProfile.LOW_MEMORY.jvmArguments(21, asList("-Xss1m", "-Xmx128m")))
+        .doesNotContain("-Xss512k")
+        .contains("-XX:MaxRAMPercentage=25.0");
+  }
+}
@@ -15,15 +15,24 @@
  */
 package org.projectnessie.nessierunner.common;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.RepeatedTest;
@@ -92,6 +101,61 @@ class TestListenUrlWaiter {
         .containsExactly("https://localhost.in.some.space:4242", null);
   }
 
+  @Test
+  void lineSink() {
+    AtomicLong clock = new AtomicLong();
+    long timeout = 10_000L;
+
+    List<String> lines = new ArrayList<>();
+    List<Boolean> strings = new ArrayList<>();
+    ListenUrlWaiter waiter =
+        new ListenUrlWaiter(
+            clock::get,
+            timeout,
+            (CharSequence line) -> {
+              strings.add(line instanceof String);
+              lines.add(line.toString());
+            });
+
+    String output = "Hello\nListening on: http://127.0.0.1:4242\nWorld\nFoo Bar\n";
+    new InputBuffer(new ByteArrayInputStream(output.getBytes(UTF_8)), UTF_8, waiter::acceptLine)
+        .drain();
+
+    assertThat(waiter.peekListenUrls()).containsExactly("http://127.0.0.1:4242", null);
+    assertThat(lines)
+        .containsExactly("Hello", "Listening on: http://127.0.0.1:4242", "World", "Foo Bar");
+    // Lines after the listen URL are not decoded to a String
+    assertThat(strings).containsExactly(true, true, false, false);
+  }
+
+  @Test
+  void boundedCapturedLog() {
+    AtomicLong clock = new AtomicLong();
+    long timeout = 10_000L;
+
+    ListenUrlWaiter waiter =
+        new ListenUrlWaiter(
+            clock::get,
+            timeout,
+            (CharSequence line) -> {},
+            new CapturedLog(3, 1000),
+            ReadinessDetectors.defaults(),
+            Collections.emptyList(),
+            () -> {});
+    for (int i = 0; i < 10; i++) {
+      waiter.accept("line " + i);
+    }
+    waiter.exited(1);
+
+    assertThat(executor.submit(waiter::getListenUrls))
+        .failsWithin(5, TimeUnit.SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withMessageEndingWith(
+            " Process exited early, exit code is 1."
+                + ListenUrlWaiter.CAPTURED_LOG_FOLLOWS
+                + "[... 7 earlier lines dropped ...]\nline 7\nline 8\nline 9");
+  }
+
   @RepeatedTest(20) // repeat, risk of flakiness
   void timeout() {
     AtomicLong clock = new AtomicLong();
@@ -141,4 +205,113 @@ class TestListenUrlWaiter {
         .containsExactly("http://4.2.4.2:4242", "http://4.2.4.2:2424");
     assertThat(waiter.isTimeout()).isFalse();
   }
+
+  @Test
+  void async() {
+    AtomicLong clock = new AtomicLong();
+    long timeout = 10_000L;
+
+    ListenUrlWaiter waiter = new ListenUrlWaiter(clock::get, timeout, (CharSequence line) -> {});
+    CompletableFuture<List<String>> urls = waiter.getListenUrlsAsync();
+    assertThat(urls).isNotDone();
+
+    waiter.accept("Hello");
+    assertThat(urls).isNotDone();
+    waiter.accept("Listening on: http://127.0.0.1:4242");
+    assertThat(urls).isCompletedWithValue(Arrays.asList("http://127.0.0.1:4242", null));
+
+    // Stage for an already received listen URL
+    assertThat(waiter.getListenUrlsAsync())
+        .isCompletedWithValue(Arrays.asList("http://127.0.0.1:4242", null));
+  }
+
+  @Test
+  void asyncTimeout() {
+    AtomicLong clock = new AtomicLong();
+    long timeout = 10_000L;
+
+    ListenUrlWaiter waiter = new ListenUrlWaiter(clock::get, timeout, (CharSequence line) -> {});
+    CompletableFuture<List<String>> urls = waiter.getListenUrlsAsync();
+    waiter.accept("Hello");
+    waiter.timedOut();
+
+    assertThat(urls)
+        .failsWithin(5, TimeUnit.SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseExactlyInstanceOf(TimeoutException.class)
+        .withMessageEndingWith(
+            ListenUrlWaiter.TIMEOUT_MESSAGE + ListenUrlWaiter.CAPTURED_LOG_FOLLOWS + "Hello");
+  }
+
+  @Test
+  void failurePatterns() {
+    AtomicLong clock = new AtomicLong();
+    long timeout = 10_000L;
+
+    AtomicInteger failures = new AtomicInteger();
+    List<String> lines = new ArrayList<>();
+    ListenUrlWaiter waiter =
+        new ListenUrlWaiter(
+            clock::get,
+            timeout,
+            (CharSequence line) -> lines.add(line.toString()),
+            new CapturedLog(100, 10_000),
+            ReadinessDetectors.defaults(),
+            Collections.singletonList(Pattern.compile("Failed to start")),
+            failures::incrementAndGet);
+    CompletableFuture<List<String>> urls = waiter.getListenUrlsAsync();
+
+    waiter.accept("Hello");
+    assertThat(urls).isNotDone();
+    waiter.accept("ERROR [io.quarkus.runtime.Application] (main) Failed to start application");
+    waiter.accept("java.lang.RuntimeException: boom");
+
+    assertThat(failures).hasValue(1);
+    assertThat(urls)
+        .failsWithin(5, TimeUnit.SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withMessageEndingWith(
+            ListenUrlWaiter.STARTUP_FAILURE_MESSAGE
+                + "ERROR [io.quarkus.runtime.Application] (main) Failed to start application"
+                + ListenUrlWaiter.CAPTURED_LOG_FOLLOWS
+                + "Hello\nERROR [io.quarkus.runtime.Application] (main) Failed to start application");
+    // Lines are still forwarded
+    assertThat(lines).hasSize(3);
+  }
+
+  @Test
+  void readinessDetectors() {
+    AtomicLong clock = new AtomicLong();
+    long timeout = 10_000L;
+
+    ListenUrlWaiter waiter = new ListenUrlWaiter(clock::get, timeout, (String line) -> {});
+    waiter.accept(
+        "{\"timestamp\":\"2021-05-28T12:12:25.753\",\"level\":\"INFO\",\"message\":\"nessie-quarkus 0.6.2 on JVM (powered by Quarkus 1.13.4.Final) started in 1.444s. Listening on: http://0.0.0.0:39423\",\"ndc\":\"\"}");
+    assertThat(waiter.peekListenUrls()).containsExactly("http://0.0.0.0:39423", null);
+    assertThat(waiter.getDetectedValues())
+        .containsEntry(ReadinessDetector.HTTP_URL, "http://0.0.0.0:39423")
+        .containsEntry(ReadinessDetector.HTTP_PORT, "39423")
+        .containsEntry("application", "nessie-quarkus")
+        .containsEntry("version", "0.6.2")
+        .containsEntry("quarkusVersion", "1.13.4.Final")
+        .doesNotContainKey(ReadinessDetector.MANAGEMENT_URL);
+
+    waiter =
+        new ListenUrlWaiter(
+            clock::get,
+            timeout,
+            line -> {},
+            new CapturedLog(100, 10_000),
+            Collections.singletonList(
+                ReadinessDetectors.regex("Server started on port (?<httpPort>[0-9]+)")),
+            Collections.emptyList(),
+            () -> {});
+    waiter.accept("Listening on: http://0.0.0.0:39423");
+    assertThat(waiter.peekListenUrls()).isNull();
+    waiter.accept("Server started on port 8080");
+    assertThat(waiter.peekListenUrls()).containsExactly("http://localhost:8080", null);
+    assertThat(waiter.getDetectedValues())
+        .containsEntry(ReadinessDetector.HTTP_URL, "http://localhost:8080")
+        .containsEntry(ReadinessDetector.HTTP_PORT, "8080");
+  }
 }
@@ -15,15 +15,27 @@
  */
 package org.projectnessie.nessierunner.common;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,10 +48,12 @@ import org.assertj.core.api.SoftAssertions;
 import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
 import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 
 @ExtendWith(SoftAssertionsExtension.class)
 class TestProcessHandler {
@@ -59,9 +73,23 @@ class TestProcessHandler {
     executor.awaitTermination(10, SECONDS);
   }
 
+  private final List<ProcessHandlerMock> mocks = new ArrayList<>();
+
+  private ProcessHandlerMock processHandlerMock() {
+    ProcessHandlerMock phMock = new ProcessHandlerMock();
+    mocks.add(phMock);
+    return phMock;
+  }
+
+  @AfterEach
+  void stopProcessHandlers() {
+    // also for failed tests, so that no "process" and no handler thread outlives its test
+    mocks.forEach(ProcessHandlerMock::close);
+  }
+
   @Test
   void notStarted() {
-    ProcessHandlerMock phMock = new ProcessHandlerMock();
+    ProcessHandlerMock phMock = processHandlerMock();
 
     soft.assertThatThrownBy(phMock.ph::stop)
         .isInstanceOf(IllegalStateException.class)
@@ -70,7 +98,7 @@ class TestProcessHandler {
 
   @Test
   void doubleStart() {
-    ProcessHandlerMock phMock = new ProcessHandlerMock();
+    ProcessHandlerMock phMock = processHandlerMock();
 
     phMock.ph.started(phMock.proc);
 
@@ -82,7 +110,7 @@ class TestProcessHandler {
   @RepeatedTest(20)
   // repeat, risk of flakiness
   void processWithNoOutput() {
-    ProcessHandlerMock phMock = new ProcessHandlerMock();
+    ProcessHandlerMock phMock = processHandlerMock();
 
     phMock.ph.started(phMock.proc);
 
@@ -111,10 +139,41 @@ class TestProcessHandler {
     soft.assertThat(phMock.ph.isAlive()).isFalse();
   }
 
+  @Test
+  void timeoutDiagnostics(@TempDir Path dir) {
+    ProcessHandlerMock phMock = processHandlerMock();
+    // the diagnostics of the test JVM itself
+    phMock.pid = ProcessHandle.current().pid();
+    phMock.ph.setStartupDiagnostics(TestStartupDiagnostics.currentJavaVM(dir));
+
+    phMock.ph.started(phMock.proc);
+
+    Future<List<String>> futureListenUrl = executor.submit(phMock.ph::getListenUrls);
+
+    // bump the clock "past" the listen-url-timeout
+    phMock.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(phMock.timeToUrl + 10));
+
+    soft.assertThat(futureListenUrl)
+        .failsWithin(60, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(StartupTimeoutException.class)
+        .withMessageContaining(ListenUrlWaiter.TIMEOUT_MESSAGE + ListenUrlWaiter.NOTHING_RECEIVED)
+        .withMessageContaining(
+            "Thread dump, written to " + dir.resolve(StartupDiagnostics.THREAD_DUMP_FILE))
+        .withMessageContaining(
+            "Class histogram, written to " + dir.resolve(StartupDiagnostics.CLASS_HISTOGRAM_FILE));
+    soft.assertThat(dir.resolve(StartupDiagnostics.THREAD_DUMP_FILE)).isNotEmptyFile();
+    soft.assertThat(dir.resolve(StartupDiagnostics.CLASS_HISTOGRAM_FILE)).isNotEmptyFile();
+
+    phMock.ph.watchdogExitGrace();
+
+    soft.assertThat(phMock.ph.isAlive()).isFalse();
+  }
+
   @RepeatedTest(20)
   // repeat, risk of flakiness
   void processExitsEarly() {
-    ProcessHandlerMock phMock = new ProcessHandlerMock();
+    ProcessHandlerMock phMock = processHandlerMock();
 
     phMock.ph.started(phMock.proc);
 
@@ -124,7 +183,7 @@ class TestProcessHandler {
     soft.assertThatThrownBy(() -> phMock.ph.getExitCode())
         .isInstanceOf(IllegalThreadStateException.class);
 
-    phMock.exitCode.set(88);
+    phMock.exit(88);
 
     soft.assertThat(futureListenUrl)
         .failsWithin(5, SECONDS)
@@ -144,7 +203,7 @@ class TestProcessHandler {
   @RepeatedTest(20)
   // repeat, risk of flakiness
   void processLotsOfIoNoListen() throws Exception {
-    ProcessHandlerMock phMock = new ProcessHandlerMock();
+    ProcessHandlerMock phMock = processHandlerMock();
 
     phMock.ph.started(phMock.proc);
 
@@ -196,7 +255,7 @@ class TestProcessHandler {
   @RepeatedTest(20)
   // repeat, risk of flakiness
   void processLotsOfIoProperListenUrl() {
-    ProcessHandlerMock phMock = new ProcessHandlerMock();
+    ProcessHandlerMock phMock = processHandlerMock();
 
     phMock.ph.started(phMock.proc);
 
@@ -236,19 +295,411 @@ class TestProcessHandler {
     soft.assertThat(phMock.stdoutLines).hasSize((int) (phMock.timeToUrl / 10 / 2) + 1);
   }
 
+  @RepeatedTest(20)
+  // repeat, risk of flakiness
+  void processLotsOfIoAsyncOutput() throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    phMock.ph.setAsyncOutput(4, OutputOverflowPolicy.BLOCK).started(phMock.proc);
+
+    Future<List<String>> futureListenUrl = executor.submit(phMock.ph::getListenUrls);
+
+    for (int i = 0; i < 100; i++) {
+      for (char c : ("Hello world " + i + "\n").toCharArray()) {
+        phMock.stdout.put((byte) c);
+      }
+    }
+    for (char c : "Quarkus startup message... Listening on: http://0.0.0.0:4242\n".toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+    for (int i = 0; i < 100; i++) {
+      for (char c : ("More output " + i + "\n").toCharArray()) {
+        phMock.stdout.put((byte) c);
+      }
+    }
+
+    soft.assertThat(futureListenUrl)
+        .succeedsWithin(5, SECONDS)
+        .isEqualTo(Arrays.asList("http://0.0.0.0:4242", null));
+
+    long timeoutFail = System.currentTimeMillis() + SECONDS.toMillis(10);
+    while (!phMock.stdout.isEmpty()) {
+      soft.assertThat(System.currentTimeMillis() < timeoutFail).isTrue();
+      soft.assertAll();
+      Thread.sleep(1L);
+    }
+
+    // The .stop() waits until the watchdog has finished its work, including forwarding all lines
+    phMock.ph.stop();
+
+    soft.assertThat(phMock.stdoutLines)
+        .hasSize(201)
+        .startsWith("Hello world 0")
+        .endsWith("More output 99");
+  }
+
+  @Test
+  void failingStdoutTarget() throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    phMock.ph.setStdoutTarget(
+        line -> {
+          received.add(line);
+          throw new IllegalStateException("boom");
+        });
+
+    phMock.ph.started(phMock.proc);
+
+    Future<List<String>> futureListenUrl = executor.submit(phMock.ph::getListenUrls);
+
+    for (char c : "first\nsecond\n".toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+    phMock.exit(88);
+
+    // The exit is signalled, although the stdout target failed
+    soft.assertThat(futureListenUrl)
+        .failsWithin(5, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withMessageContaining("Process exited early, exit code is 88.");
+
+    phMock.ph.watchdogExitGrace();
+
+    // All output has been consumed
+    soft.assertThat(received).containsExactly("first", "second");
+  }
+
+  @Test
+  void stopWithOutputKeptOpen() {
+    ProcessHandlerMock phMock = processHandlerMock();
+    List<String> debug = Collections.synchronizedList(new ArrayList<>());
+    phMock.ph.setDebugTarget(debug::add);
+    phMock.outputKeptOpen = true;
+
+    phMock.ph.started(phMock.proc);
+
+    try {
+      // The "process" exits, but its output is not closed
+      phMock.ph.stop();
+
+      soft.assertThat(phMock.ph.isAlive()).isFalse();
+      soft.assertThat(debug)
+          .contains(
+              "The output of the process has not been closed, a descendant process may still use it");
+    } finally {
+      phMock.outputKeptOpen = false;
+    }
+  }
+
+  @RepeatedTest(5)
+  // repeat, risk of flakiness
+  void timings() throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    phMock.ph.commandBuildStarted();
+    phMock.clock.set(TimeUnit.MILLISECONDS.toNanos(1));
+    phMock.ph.started(phMock.proc);
+
+    phMock.clock.set(TimeUnit.MILLISECONDS.toNanos(3));
+    for (char c : "Hello\n".toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+    while (phMock.stdoutLines.isEmpty()) {
+      Thread.sleep(1L);
+    }
+
+    phMock.clock.set(TimeUnit.MILLISECONDS.toNanos(10));
+    for (char c : "Listening on: http://0.0.0.0:4242\n".toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+    soft.assertThat(phMock.ph.getListenUrlsAsync().toCompletableFuture())
+        .succeedsWithin(5, SECONDS);
+
+    ProcessTimings timings = phMock.ph.getTimings();
+    soft.assertThat(timings.isRecorded(ProcessTimings.Phase.SPAWN)).isFalse();
+    soft.assertThat(timings.isRecorded(ProcessTimings.Phase.STOP_REQUESTED)).isFalse();
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.COMMAND_BUILD)).isEqualTo(Duration.ZERO);
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.SPAWNED)).isEqualTo(Duration.ofMillis(1));
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.FIRST_OUTPUT))
+        .isEqualTo(Duration.ofMillis(3));
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.LISTEN_URL))
+        .isEqualTo(Duration.ofMillis(10));
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.READY)).isEqualTo(Duration.ofMillis(10));
+
+    phMock.clock.set(TimeUnit.MILLISECONDS.toNanos(20));
+    phMock.ph.stop();
+
+    timings = phMock.ph.getTimings();
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.STOP_REQUESTED))
+        .isEqualTo(Duration.ofMillis(20));
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.EXITED)).isEqualTo(Duration.ofMillis(20));
+  }
+
+  @Test
+  void asyncNotStarted() {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    soft.assertThatThrownBy(phMock.ph::getListenUrlsAsync)
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("No process started");
+  }
+
+  @RepeatedTest(20)
+  // repeat, risk of flakiness
+  void asyncListenUrl() throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    phMock.ph.started(phMock.proc);
+
+    CompletableFuture<List<String>> listenUrls =
+        phMock.ph.getListenUrlsAsync().toCompletableFuture();
+    soft.assertThat(listenUrls).isNotDone();
+
+    for (char c : "Quarkus startup message... Listening on: http://0.0.0.0:4242\n".toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+
+    soft.assertThat(listenUrls)
+        .succeedsWithin(5, SECONDS)
+        .isEqualTo(Arrays.asList("http://0.0.0.0:4242", null));
+
+    phMock.ph.stop();
+    soft.assertThat(phMock.ph.isAlive()).isFalse();
+  }
+
+  @RepeatedTest(5)
+  // repeat, risk of flakiness (each repetition waits for the scheduled timeout check)
+  void asyncTimeout() {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    phMock.ph.started(phMock.proc);
+
+    CompletableFuture<List<String>> listenUrls =
+        phMock.ph.getListenUrlsAsync().toCompletableFuture();
+
+    // bump the clock "past" the listen-url-timeout, the scheduled check stops the process
+    phMock.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(phMock.timeToUrl + 10));
+
+    soft.assertThat(listenUrls)
+        .failsWithin(5, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(TimeoutException.class)
+        .withMessageEndingWith(ListenUrlWaiter.TIMEOUT_MESSAGE + ListenUrlWaiter.NOTHING_RECEIVED);
+
+    phMock.ph.watchdogExitGrace();
+
+    soft.assertThat(phMock.ph.isAlive()).isFalse();
+  }
+
+  @RepeatedTest(20)
+  // repeat, risk of flakiness
+  void startupFailure() throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    phMock.ph.started(phMock.proc);
+
+    Future<List<String>> futureListenUrl = executor.submit(phMock.ph::getListenUrls);
+
+    for (char c :
+        "ERROR [io.quarkus.runtime.Application] (main) Failed to start application\n"
+            .toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+
+    // No clock advance, the failure pattern stops the process
+    soft.assertThat(futureListenUrl)
+        .failsWithin(5, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withMessageContaining(
+            ListenUrlWaiter.STARTUP_FAILURE_MESSAGE
+                + "ERROR [io.quarkus.runtime.Application] (main) Failed to start application");
+
+    phMock.ph.watchdogExitGrace();
+
+    soft.assertThat(phMock.ph.isAlive()).isFalse();
+    soft.assertThat(phMock.ph.getExitCode()).isEqualTo(42);
+  }
+
+  @Test
+  void noFailurePatterns() throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    phMock.ph.setFailurePatterns(Collections.emptyList()).started(phMock.proc);
+
+    CompletableFuture<List<String>> listenUrls =
+        phMock.ph.getListenUrlsAsync().toCompletableFuture();
+    for (char c :
+        "Failed to start application\nListening on: http://0.0.0.0:4242\n".toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+
+    soft.assertThat(listenUrls)
+        .succeedsWithin(5, SECONDS)
+        .isEqualTo(Arrays.asList("http://0.0.0.0:4242", null));
+
+    phMock.ph.stop();
+  }
+
+  @RepeatedTest(5)
+  // repeat, risk of flakiness
+  void portFileDetector(@TempDir Path dir) throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    Path portFile = dir.resolve("ports");
+    phMock
+        .ph
+        .setReadinessDetectors(Collections.singletonList(ReadinessDetectors.portFile(portFile)))
+        .started(phMock.proc);
+
+    CompletableFuture<List<String>> listenUrls =
+        phMock.ph.getListenUrlsAsync().toCompletableFuture();
+    for (char c : "Listening on: http://0.0.0.0:4242\n".toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+    soft.assertThat(listenUrls).isNotDone();
+    soft.assertThat(phMock.ph.getDetectedValues()).isEmpty();
+
+    Files.write(portFile, "httpPort=8080\nmanagementPort=9000\n".getBytes(UTF_8));
+
+    soft.assertThat(listenUrls)
+        .succeedsWithin(5, SECONDS)
+        .isEqualTo(Arrays.asList("http://localhost:8080", "http://localhost:9000"));
+    soft.assertThat(phMock.ph.getDetectedValues())
+        .containsEntry("httpPort", "8080")
+        .containsEntry("managementPort", "9000");
+
+    phMock.ph.stop();
+  }
+
+  @Test
+  void portFileDetectorIgnoresStaleFile(@TempDir Path dir) throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    Path portFile = dir.resolve("ports");
+    Files.write(portFile, "httpPort=8080\n".getBytes(UTF_8));
+
+    // a real process, that exits without ever writing the port file
+    Path java = Paths.get(System.getProperty("java.home"), "bin", JavaVM.executableName("java"));
+    phMock
+        .ph
+        .setReadinessDetectors(Collections.singletonList(ReadinessDetectors.portFile(portFile)))
+        .start(new ProcessBuilder(java.toString(), "-version"));
+
+    soft.assertThat(portFile).doesNotExist();
+    soft.assertThat(phMock.ph.getListenUrlsAsync().toCompletableFuture())
+        .failsWithin(30, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withMessageContaining("Process exited early, exit code is 0.");
+    soft.assertThat(phMock.ph.getDetectedValues()).isEmpty();
+  }
+
+  @RepeatedTest(5)
+  // repeat, risk of flakiness
+  void readinessProbe() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        ProcessHandler.DEFAULT_READINESS_PATH,
+        exchange -> {
+          exchange.sendResponseHeaders(requests.incrementAndGet() > 3 ? 200 : 503, -1);
+          exchange.close();
+        });
+    server.start();
+    try {
+      ProcessHandlerMock phMock = processHandlerMock();
+      List<String> debug = Collections.synchronizedList(new ArrayList<>());
+
+      phMock
+          .ph
+          .setReadinessPath(ProcessHandler.DEFAULT_READINESS_PATH)
+          .setDebugTarget(debug::add)
+          .started(phMock.proc);
+
+      Future<List<String>> futureListenUrl = executor.submit(phMock.ph::getListenUrls);
+
+      String httpUrl = "http://0.0.0.0:4242";
+      String managementUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+      for (char c :
+          ("Listening on: "
+                  + httpUrl
+                  + ". Management interface listening on "
+                  + managementUrl
+                  + ".\n")
+              .toCharArray()) {
+        phMock.stdout.put((byte) c);
+      }
+
+      soft.assertThat(futureListenUrl)
+          .succeedsWithin(10, SECONDS)
+          .isEqualTo(Arrays.asList(httpUrl, managementUrl));
+      soft.assertThat(requests).hasValue(4);
+      soft.assertThat(debug).hasSize(4);
+
+      phMock.ph.stop();
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @RepeatedTest(5)
+  // repeat, risk of flakiness
+  void readinessProbeTimeout() throws Exception {
+    ProcessHandlerMock phMock = processHandlerMock();
+
+    int port;
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+
+    phMock
+        .ph
+        .setReadinessPath(ProcessHandler.DEFAULT_READINESS_PATH)
+        .setDebugTarget(msg -> phMock.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100)))
+        .started(phMock.proc);
+
+    CompletableFuture<List<String>> listenUrls =
+        phMock.ph.getListenUrlsAsync().toCompletableFuture();
+
+    for (char c : ("Listening on: http://127.0.0.1:" + port + "\n").toCharArray()) {
+      phMock.stdout.put((byte) c);
+    }
+
+    // Each probe advances the clock, so the readiness deadline passes
+    soft.assertThat(listenUrls)
+        .failsWithin(10, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(TimeoutException.class)
+        .withMessageContaining(ReadinessProbe.TIMEOUT_MESSAGE);
+
+    // The process is stopped
+    phMock.ph.watchdogExitGrace();
+    soft.assertThat(phMock.ph.isAlive()).isFalse();
+  }
+
   static final class ProcessHandlerMock {
 
     AtomicLong clock = new AtomicLong();
 
     AtomicInteger exitCode = new AtomicInteger(-1);
 
+    // Completed when the "process" exits, backs Process.waitFor() and Process.onExit()
+    CompletableFuture<Process> exited = new CompletableFuture<>();
+
+    // PID of the "process", for the startup diagnostics, not supported if negative
+    long pid = -1L;
+
     // Full lines received "form the process" via stdout/stderr is collected in these lists
     List<String> stdoutLines = Collections.synchronizedList(new ArrayList<>());
 
     // Data that's "written by the process" to stdout/stderr is "piped" through these queues
     ArrayBlockingQueue<Byte> stdout = new ArrayBlockingQueue<>(1024);
 
-    @SuppressWarnings("InputStreamSlowMultibyteRead")
+    // Simulates a descendant process that inherited stdout and keeps it open after the exit
+    volatile boolean outputKeptOpen;
+
+    // Behaves like a pipe: blocks until data is available and signals end-of-stream once the
+    // process has exited and all data has been consumed.
     InputStream stdoutStream =
         new InputStream() {
           @Override
@@ -257,9 +708,38 @@ class TestProcessHandler {
           }
 
           @Override
-          public int read() {
-            Byte b = stdout.poll();
-            return b == null ? -1 : b.intValue();
+          public int read() throws IOException {
+            try {
+              while (true) {
+                Byte b = stdout.poll(1, TimeUnit.MILLISECONDS);
+                if (b != null) {
+                  return b.intValue();
+                }
+                if (exitCode.get() >= 0 && !outputKeptOpen) {
+                  return -1;
+                }
+              }
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new InterruptedIOException();
+            }
+          }
+
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+              return 0;
+            }
+            int c = read();
+            if (c == -1) {
+              return -1;
+            }
+            b[off] = (byte) c;
+            int n = 1;
+            for (Byte next; n < len && (next = stdout.poll()) != null; n++) {
+              b[off + n] = next;
+            }
+            return n;
           }
         };
 
@@ -281,13 +761,30 @@ class TestProcessHandler {
           }
 
           @Override
-          public int waitFor() {
-            throw new UnsupportedOperationException();
+          public int waitFor() throws InterruptedException {
+            try {
+              exited.get();
+            } catch (ExecutionException e) {
+              throw new IllegalStateException(e);
+            }
+            return exitCode.get();
           }
 
           @Override
           public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
-            return super.waitFor(timeout, unit);
+            try {
+              exited.get(timeout, unit);
+              return true;
+            } catch (TimeoutException e) {
+              return false;
+            } catch (ExecutionException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+
+          @Override
+          public CompletableFuture<Process> onExit() {
+            return exited;
           }
 
           @Override
@@ -299,18 +796,40 @@ class TestProcessHandler {
             return ec;
           }
 
+          @Override
+          public long pid() {
+            if (pid < 0L) {
+              throw new UnsupportedOperationException();
+            }
+            return pid;
+          }
+
           @Override
           public void destroy() {
-            exitCode.set(42);
+            exit(42);
           }
 
           @Override
           public Process destroyForcibly() {
-            exitCode.set(42);
+            exit(42);
             return this;
           }
         };
 
+    void exit(int code) {
+      exitCode.compareAndSet(-1, code);
+      exited.complete(proc);
+    }
+
+    void close() {
+      try {
+        ph.stop();
+      } catch (IllegalStateException e) {
+        // handler not started or its watchdog already gone, just let the "process" exit
+        exit(42);
+      }
+    }
+
     long timeToUrl = 500;
 
     ProcessHandler ph =
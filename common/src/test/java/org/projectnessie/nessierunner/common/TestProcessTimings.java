@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.projectnessie.nessierunner.common.ProcessTimings.NOT_RECORDED;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestProcessTimings {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  private static final long MS = 1_000_000L;
+
+  @Test
+  void nothingRecorded() {
+    long[] nanos = new long[ProcessTimings.Phase.values().length];
+    Arrays.fill(nanos, NOT_RECORDED);
+    ProcessTimings timings = new ProcessTimings(nanos);
+
+    for (ProcessTimings.Phase phase : ProcessTimings.Phase.values()) {
+      soft.assertThat(timings.isRecorded(phase)).isFalse();
+      soft.assertThat(timings.elapsed(phase)).isNull();
+    }
+    soft.assertThat(timings.toJson(Collections.emptyMap()))
+        .isEqualTo(
+            "{\n"
+                + "  \"attributes\": {},\n"
+                + "  \"phasesMillis\": {},\n"
+                + "  \"durationsMillis\": {}\n"
+                + "}\n");
+    soft.assertThat(timings).hasToString("ProcessTimings{}");
+  }
+
+  @Test
+  void timings(@TempDir Path dir) throws Exception {
+    long base = 5_000 * MS;
+    ProcessTimings timings =
+        new ProcessTimings(
+            new long[] {
+              NOT_RECORDED,
+              base,
+              base + 2 * MS,
+              base + 100 * MS + 500_000L,
+              base + 3000 * MS,
+              base + 3500 * MS,
+              base + 10_000 * MS,
+              base + 10_250 * MS
+            });
+
+    soft.assertThat(timings.isRecorded(ProcessTimings.Phase.COMMAND_BUILD)).isFalse();
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.SPAWN)).isEqualTo(Duration.ZERO);
+    soft.assertThat(timings.elapsed(ProcessTimings.Phase.READY)).isEqualTo(Duration.ofMillis(3500));
+    soft.assertThat(timings.between(ProcessTimings.Phase.SPAWNED, ProcessTimings.Phase.LISTEN_URL))
+        .isEqualTo(Duration.ofMillis(2998));
+    soft.assertThat(
+            timings.between(ProcessTimings.Phase.COMMAND_BUILD, ProcessTimings.Phase.LISTEN_URL))
+        .isNull();
+
+    Map<String, String> attributes = new LinkedHashMap<>();
+    attributes.put("executionId", "default");
+    attributes.put("quote", "\"\\\n\u0001"); // escaped in JSON
+
+    String json =
+        "{\n"
+            + "  \"attributes\": {\n"
+            + "    \"executionId\": \"default\",\n"
+            + "    \"quote\": \"\\\"\\\\\\n\\u0001\"\n"
+            + "  },\n"
+            + "  \"phasesMillis\": {\n"
+            + "    \"spawn\": 0.000,\n"
+            + "    \"spawned\": 2.000,\n"
+            + "    \"firstOutput\": 100.500,\n"
+            + "    \"listenUrl\": 3000.000,\n"
+            + "    \"ready\": 3500.000,\n"
+            + "    \"stopRequested\": 10000.000,\n"
+            + "    \"exited\": 10250.000\n"
+            + "  },\n"
+            + "  \"durationsMillis\": {\n"
+            + "    \"spawn\": 2.000,\n"
+            + "    \"toFirstOutput\": 98.500,\n"
+            + "    \"toListenUrl\": 2998.000,\n"
+            + "    \"readiness\": 500.000,\n"
+            + "    \"startup\": 3500.000,\n"
+            + "    \"stop\": 250.000\n"
+            + "  }\n"
+            + "}\n";
+    soft.assertThat(timings.toJson(attributes)).isEqualTo(json);
+
+    Path report = dir.resolve("a").resolve("b").resolve("report.json");
+    timings.writeReport(report, attributes);
+    soft.assertThat(new String(Files.readAllBytes(report), UTF_8)).isEqualTo(json);
+    soft.assertThat(Files.list(report.getParent())).containsExactly(report);
+
+    soft.assertThat(timings)
+        .hasToString(
+            "ProcessTimings{spawn=0ms, spawned=2ms, firstOutput=100ms, listenUrl=3000ms, "
+                + "ready=3500ms, stopRequested=10000ms, exited=10250ms}");
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestReadinessDetectors {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @Test
+  void quarkusConsole() {
+    ReadinessDetector detector = ReadinessDetectors.quarkusConsole();
+    soft.assertThat(detector.literal()).isEqualTo("Listening on: ");
+    soft.assertThat(detector.polling()).isFalse();
+    soft.assertThat(
+            detector.detect(
+                "2021-05-28 12:12:25,753 INFO  [io.quarkus] (main) nessie-quarkus 0.6.2-SNAPSHOT on JVM (powered by Quarkus 1.13.4.Final) started in 1.444s. Listening on: http://0.0.0.0:39423. Management interface listening on http://0.0.0.0:9000."))
+        .containsExactly(
+            Map.entry("httpUrl", "http://0.0.0.0:39423"),
+            Map.entry("managementUrl", "http://0.0.0.0:9000"),
+            Map.entry("application", "nessie-quarkus"),
+            Map.entry("version", "0.6.2-SNAPSHOT"),
+            Map.entry("quarkusVersion", "1.13.4.Final"));
+    soft.assertThat(detector.detect("Listening on: https://localhost:4242"))
+        .containsExactly(Map.entry("httpUrl", "https://localhost:4242"));
+    soft.assertThat(detector.detect("Listening on: http://localhost:4242 and more")).isNull();
+    // JSON lines are handled by the JSON detector
+    soft.assertThat(detector.detect("{\"message\":\"Listening on: http://localhost:4242\"}"))
+        .isNull();
+  }
+
+  @Test
+  void quarkusJsonConsole() {
+    ReadinessDetector detector = ReadinessDetectors.quarkusJsonConsole();
+    soft.assertThat(detector.literal()).isEqualTo("Listening on: ");
+    soft.assertThat(
+            detector.detect(
+                "{\"loggerName\":\"io.quarkus\",\"message\" : \"nessie-quarkus 0.6.2 on JVM (powered by Quarkus 3.2.1) started in 1.4s. Listening on: http://0.0.0.0:39423. Management interface listening on http://0.0.0.0:9000.\",\"threadName\":\"main\"}"))
+        .containsExactly(
+            Map.entry("httpUrl", "http://0.0.0.0:39423"),
+            Map.entry("managementUrl", "http://0.0.0.0:9000"),
+            Map.entry("application", "nessie-quarkus"),
+            Map.entry("version", "0.6.2"),
+            Map.entry("quarkusVersion", "3.2.1"));
+    soft.assertThat(detector.detect("Listening on: http://localhost:4242")).isNull();
+    // literal only in a different attribute
+    soft.assertThat(
+            detector.detect(
+                "{\"message\":\"Hello\",\"other\":\"Listening on: http://localhost:4242\"}"))
+        .isNull();
+  }
+
+  @Test
+  void jsonMessage() {
+    soft.assertThat(JsonMessageReadinessDetector.message("{\"message\":\"foo\"}")).isEqualTo("foo");
+    soft.assertThat(
+            JsonMessageReadinessDetector.message("{\"message\": \"a\\\"b\\\\c\\n\\u0041\"}"))
+        .isEqualTo("a\"b\\c\nA");
+    soft.assertThat(
+            JsonMessageReadinessDetector.message("{\"x\":\"\\\"message\\\"\",\"message\":\"m\"}"))
+        .isEqualTo("m");
+    soft.assertThat(JsonMessageReadinessDetector.message("{\"message\":\"unterminated")).isNull();
+    soft.assertThat(JsonMessageReadinessDetector.message("{\"other\":\"foo\"}")).isNull();
+  }
+
+  @Test
+  void regex() {
+    ReadinessDetector detector =
+        ReadinessDetectors.regex("Started (?<app>[a-z]+) on port (?<httpPort>[0-9]+)");
+    soft.assertThat(detector.literal()).isEqualTo(" on port ");
+    soft.assertThat(detector.detect("INFO Started myapp on port 8080"))
+        .containsExactly(Map.entry("app", "myapp"), Map.entry("httpPort", "8080"));
+    soft.assertThat(detector.detect("INFO Started on port 8080")).isNull();
+
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> ReadinessDetectors.regex("Started on port [0-9]+"))
+        .withMessageContaining("must contain a named group 'httpUrl' or 'httpPort'");
+  }
+
+  @Test
+  void requiredLiteral() {
+    soft.assertThat(ReadinessDetectors.requiredLiteral("Listening on: (?<httpUrl>.*)"))
+        .isEqualTo("Listening on: ");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("^.*port\\: (?<httpPort>\\d+)$"))
+        .isEqualTo("port: ");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("abc?def")).isEqualTo("def");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("abcd+ef")).isEqualTo("abcd");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("ab{2}cde[xyz]f")).isEqualTo("cde");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("a\\sbc")).isEqualTo("bc");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("foo|bar")).isNull();
+    soft.assertThat(ReadinessDetectors.requiredLiteral("(?i)foo")).isNull();
+    soft.assertThat(ReadinessDetectors.requiredLiteral("(foo|bar)baz")).isEqualTo("baz");
+    soft.assertThat(ReadinessDetectors.requiredLiteral(".*")).isNull();
+    // a ']' directly after '[' or '[^' is a member of the character class
+    soft.assertThat(ReadinessDetectors.requiredLiteral("[]a]bc")).isEqualTo("bc");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("[^]a]bc")).isEqualTo("bc");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("x[]]yz")).isEqualTo("yz");
+    // nested character classes
+    soft.assertThat(ReadinessDetectors.requiredLiteral("x[a-z&&[^q]]yz")).isEqualTo("yz");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("x[[]]a]yz")).isEqualTo("yz");
+    soft.assertThat(ReadinessDetectors.requiredLiteral("\\Qa[b\\E")).isNull();
+  }
+
+  @Test
+  void groupNames() {
+    soft.assertThat(RegexReadinessDetector.groupNames("(?<a>x)(?:y)\\(?<b>z)(?<c1>)"))
+        .containsExactly("a", "c1");
+  }
+
+  @Test
+  void portFile(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("ports");
+    ReadinessDetector detector = ReadinessDetectors.portFile(file);
+    soft.assertThat(detector.polling()).isTrue();
+    soft.assertThat(detector.literal()).isNull();
+
+    soft.assertThat(detector.poll()).isNull();
+    Files.write(file, new byte[0]);
+    soft.assertThat(detector.poll()).isNull();
+
+    Files.write(file, "8080\n".getBytes(UTF_8));
+    soft.assertThat(detector.poll()).containsExactly(Map.entry("httpPort", "8080"));
+
+    Files.write(file, "managementPort=9000\n".getBytes(UTF_8));
+    soft.assertThat(detector.poll()).isNull();
+
+    Files.write(file, "httpPort=8080\nmanagementPort=9000\n".getBytes(UTF_8));
+    soft.assertThat(detector.poll())
+        .containsEntry("httpPort", "8080")
+        .containsEntry("managementPort", "9000")
+        .hasSize(2);
+  }
+
+  @Test
+  void derivedValues() {
+    soft.assertThat(
+            ReadinessDetectors.withDerivedValues(
+                Map.of("httpUrl", "http://0.0.0.0:4242", "managementUrl", "http://0.0.0.0:9000")))
+        .containsEntry("httpPort", "4242")
+        .containsEntry("managementPort", "9000")
+        .hasSize(4);
+    soft.assertThat(ReadinessDetectors.withDerivedValues(Map.of("httpPort", "4242")))
+        .containsEntry("httpUrl", "http://localhost:4242")
+        .hasSize(2);
+    soft.assertThat(ReadinessDetectors.withDerivedValues(Map.of("httpUrl", "http://foo/")))
+        .hasSize(1);
+  }
+
+  @Test
+  void parse(@TempDir Path dir) {
+    soft.assertThat(ReadinessDetectors.parse("quarkus", dir))
+        .isInstanceOf(RegexReadinessDetector.class);
+    soft.assertThat(ReadinessDetectors.parse(" quarkus-json ", dir))
+        .isInstanceOf(JsonMessageReadinessDetector.class);
+    soft.assertThat(ReadinessDetectors.parse("port-file:target/ports", dir))
+        .isInstanceOf(PortFileReadinessDetector.class)
+        .hasToString("port-file:" + dir.resolve("target/ports"));
+    soft.assertThat(ReadinessDetectors.parse("regex:port (?<httpPort>[0-9]+)", dir).literal())
+        .isEqualTo("port ");
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> ReadinessDetectors.parse("foo", dir))
+        .withMessage("Unknown readiness detector specification: foo");
+  }
+}
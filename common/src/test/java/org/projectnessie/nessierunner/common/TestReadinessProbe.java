@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestReadinessProbe {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  private HttpServer server;
+  private ScheduledThreadPoolExecutor scheduler;
+  private final AtomicInteger requests = new AtomicInteger();
+  private volatile int readyAfter;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        ProcessHandler.DEFAULT_READINESS_PATH,
+        exchange -> {
+          int status = requests.incrementAndGet() > readyAfter ? 200 : 503;
+          exchange.sendResponseHeaders(status, -1);
+          exchange.close();
+        });
+    server.start();
+    scheduler = new ScheduledThreadPoolExecutor(1);
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+    scheduler.shutdownNow();
+  }
+
+  private URI uri() {
+    return ReadinessProbe.readinessUri(
+        "http://0.0.0.0:" + server.getAddress().getPort(), ProcessHandler.DEFAULT_READINESS_PATH);
+  }
+
+  @Test
+  void readinessUri() {
+    soft.assertThat(ReadinessProbe.readinessUri("http://0.0.0.0:4242", "/q/health/ready"))
+        .isEqualTo(URI.create("http://localhost:4242/q/health/ready"));
+    soft.assertThat(ReadinessProbe.readinessUri("https://127.0.0.1:4242/", "/q/health/ready"))
+        .isEqualTo(URI.create("https://127.0.0.1:4242/q/health/ready"));
+    soft.assertThat(ReadinessProbe.readinessUri("http://[::]:9000", "/ready"))
+        .isEqualTo(URI.create("http://localhost:9000/ready"));
+  }
+
+  @Test
+  void backoff() {
+    soft.assertThat(IntStream.range(0, 14).mapToObj(ReadinessProbe::delayMillis))
+        .containsExactly(
+            10L, 10L, 10L, 10L, 10L, 20L, 40L, 80L, 160L, 320L, 640L, 1000L, 1000L, 1000L);
+    soft.assertThat(ReadinessProbe.delayMillis(Integer.MAX_VALUE)).isEqualTo(1000L);
+  }
+
+  @Test
+  void readyAfterRetries() {
+    readyAfter = 3;
+    List<String> debug = Collections.synchronizedList(new ArrayList<>());
+    ReadinessProbe probe =
+        new ReadinessProbe(
+            HttpClient.newHttpClient(),
+            uri(),
+            System::nanoTime,
+            System.nanoTime() + SECONDS.toNanos(30),
+            scheduler,
+            debug::add);
+
+    soft.assertThat(probe.probe()).succeedsWithin(30, SECONDS);
+    soft.assertThat(requests).hasValue(4);
+    soft.assertThat(debug)
+        .hasSize(4)
+        .allMatch(msg -> msg.contains("latency"))
+        .last()
+        .asString()
+        .contains("#4", "HTTP status 200");
+  }
+
+  @Test
+  void timeout() {
+    readyAfter = Integer.MAX_VALUE;
+    AtomicLong clock = new AtomicLong();
+    ReadinessProbe probe =
+        new ReadinessProbe(
+            HttpClient.newHttpClient(),
+            uri(),
+            clock::get,
+            SECONDS.toNanos(10),
+            scheduler,
+            msg -> {
+              if (requests.get() >= 3) {
+                // deadline passed
+                clock.set(SECONDS.toNanos(11));
+              }
+            });
+
+    CompletableFuture<Void> ready = probe.probe();
+    soft.assertThat(ready)
+        .failsWithin(30, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(TimeoutException.class)
+        .withMessageContaining(ReadinessProbe.TIMEOUT_MESSAGE + uri())
+        .withMessageContaining("HTTP status 503");
+    soft.assertThat(requests).hasValue(3);
+  }
+
+  @Test
+  void cancel() throws Exception {
+    // Nothing's listening on the port
+    int port;
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+    URI uri = ReadinessProbe.readinessUri("http://127.0.0.1:" + port, "/q/health/ready");
+
+    List<String> debug = Collections.synchronizedList(new ArrayList<>());
+    ReadinessProbe probe =
+        new ReadinessProbe(
+            HttpClient.newHttpClient(),
+            uri,
+            System::nanoTime,
+            System.nanoTime() + SECONDS.toNanos(30),
+            scheduler,
+            debug::add);
+
+    CompletableFuture<Void> ready = probe.probe();
+    long timeoutFail = System.nanoTime() + SECONDS.toNanos(10);
+    while (debug.isEmpty()) {
+      soft.assertThat(System.nanoTime() < timeoutFail).isTrue();
+      soft.assertAll();
+      TimeUnit.MILLISECONDS.sleep(1);
+    }
+    soft.assertThat(ready).isNotDone();
+    probe.cancel("Process exited");
+
+    soft.assertThat(ready)
+        .failsWithin(5, SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withMessageContaining("Process exited");
+    soft.assertThat(debug.stream().collect(Collectors.joining("\n"))).contains("ConnectException");
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestResourceBudget {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @TempDir Path dir;
+
+  private static final long GIB = 1024L * 1024L * 1024L;
+
+  private Path write(String file, String... lines) throws IOException {
+    Path path = dir.resolve(file);
+    Files.createDirectories(path.getParent());
+    return Files.write(path, asList(lines));
+  }
+
+  private ResourceBudget detect(int availableProcessors) {
+    return ResourceBudget.detect(
+        dir.resolve("proc/self/cgroup"),
+        dir.resolve("cgroup"),
+        dir.resolve("proc/meminfo"),
+        availableProcessors);
+  }
+
+  @Test
+  void host() throws Exception {
+    write("proc/meminfo", "MemTotal:       16384000 kB", "MemFree:         1024 kB");
+
+    ResourceBudget budget = detect(8);
+    soft.assertThat(budget.getMemoryBytes()).isEqualTo(16384000L * 1024L);
+    soft.assertThat(budget.getCpus()).isEqualTo(8);
+    soft.assertThat(budget.toString()).endsWith(", 8 CPUs (host)");
+  }
+
+  @Test
+  void unknown() {
+    ResourceBudget budget = detect(2);
+    soft.assertThat(budget.getMemoryBytes()).isEqualTo(-1L);
+    soft.assertThat(budget.getCpus()).isEqualTo(2);
+    soft.assertThat(budget.jvmArguments(1, 50, emptyList()))
+        .containsExactly("-XX:ActiveProcessorCount=2");
+  }
+
+  @Test
+  void cgroupV2() throws Exception {
+    write("proc/meminfo", "MemTotal:       16384000 kB");
+    write("proc/self/cgroup", "0::/build/job");
+    write("cgroup/memory.max", "max");
+    write("cgroup/cpu.max", "max 100000");
+    write("cgroup/build/memory.max", Long.toString(4L * GIB));
+    write("cgroup/build/cpu.max", "max 100000");
+    write("cgroup/build/job/memory.max", Long.toString(8L * GIB));
+    write("cgroup/build/job/cpu.max", "250000 100000");
+
+    ResourceBudget budget = detect(16);
+    soft.assertThat(budget.getMemoryBytes()).isEqualTo(4L * GIB);
+    soft.assertThat(budget.getCpus()).isEqualTo(3);
+    soft.assertThat(budget.toString()).isEqualTo("4096.0 MiB memory, 3 CPUs (cgroup v2)");
+  }
+
+  @Test
+  void cgroupV2ContainerRoot() throws Exception {
+    // in a container, /proc/self/cgroup refers to the host's hierarchy
+    write("proc/self/cgroup", "0::/kubepods/pod1234/abcd");
+    write("cgroup/memory.max", Long.toString(2L * GIB));
+    write("cgroup/cpu.max", "100000 100000");
+
+    ResourceBudget budget = detect(16);
+    soft.assertThat(budget.getMemoryBytes()).isEqualTo(2L * GIB);
+    soft.assertThat(budget.getCpus()).isEqualTo(1);
+  }
+
+  @Test
+  void cgroupV1() throws Exception {
+    write("proc/meminfo", "MemTotal:       16384000 kB");
+    write(
+        "proc/self/cgroup",
+        "12:memory:/docker/abc",
+        "4:cpu,cpuacct:/docker/abc",
+        "1:name=systemd:/docker/abc",
+        "0::/system.slice");
+    write("cgroup/memory/memory.limit_in_bytes", "9223372036854771712");
+    write("cgroup/memory/docker/abc/memory.limit_in_bytes", Long.toString(6L * GIB));
+    write("cgroup/cpu,cpuacct/cpu.cfs_quota_us", "-1");
+    write("cgroup/cpu,cpuacct/cpu.cfs_period_us", "100000");
+    write("cgroup/cpu,cpuacct/docker/abc/cpu.cfs_quota_us", "400000");
+    write("cgroup/cpu,cpuacct/docker/abc/cpu.cfs_period_us", "100000");
+
+    ResourceBudget budget = detect(16);
+    soft.assertThat(budget.getMemoryBytes()).isEqualTo(6L * GIB);
+    soft.assertThat(budget.getCpus()).isEqualTo(4);
+    soft.assertThat(budget.toString()).isEqualTo("6144.0 MiB memory, 4 CPUs (cgroup v1)");
+  }
+
+  @Test
+  void cgroupV1Unlimited() throws Exception {
+    write("proc/meminfo", "MemTotal:       2048000 kB");
+    write("proc/self/cgroup", "4:memory:/", "3:cpu:/");
+    write("cgroup/memory/memory.limit_in_bytes", "9223372036854771712");
+    write("cgroup/cpu/cpu.cfs_quota_us", "-1");
+    write("cgroup/cpu/cpu.cfs_period_us", "100000");
+
+    ResourceBudget budget = detect(2);
+    soft.assertThat(budget.getMemoryBytes()).isEqualTo(2048000L * 1024L);
+    soft.assertThat(budget.getCpus()).isEqualTo(2);
+    soft.assertThat(budget.toString()).endsWith("(host)");
+  }
+
+  @Test
+  void jvmArguments() {
+    ResourceBudget budget = new ResourceBudget(8L * GIB, 8, "test");
+
+    // 50% of 8 GiB = 4 GiB, 75% of that as heap
+    soft.assertThat(budget.jvmArguments(1, 50, emptyList()))
+        .containsExactly("-Xmx3072m", "-XX:ActiveProcessorCount=8");
+    soft.assertThat(budget.jvmArguments(4, 50, emptyList()))
+        .containsExactly("-Xmx768m", "-XX:ActiveProcessorCount=2");
+    soft.assertThat(budget.jvmArguments(16, 100, emptyList()))
+        .containsExactly("-Xmx384m", "-XX:ActiveProcessorCount=1");
+    soft.assertThat(budget.jvmArguments(0, 50, emptyList()))
+        .containsExactly("-Xmx3072m", "-XX:ActiveProcessorCount=8");
+    soft.assertThat(new ResourceBudget(GIB, 1, "test").jvmArguments(64, 50, emptyList()))
+        .containsExactly("-Xmx64m", "-XX:ActiveProcessorCount=1");
+  }
+
+  @Test
+  void userArgumentsTakePrecedence() {
+    ResourceBudget budget = new ResourceBudget(8L * GIB, 8, "test");
+
+    soft.assertThat(budget.jvmArguments(2, 50, singletonList("-Xmx1g")))
+        .containsExactly("-XX:ActiveProcessorCount=4");
+    soft.assertThat(budget.jvmArguments(2, 50, singletonList("-XX:MaxRAMPercentage=25")))
+        .containsExactly("-XX:ActiveProcessorCount=4");
+    soft.assertThat(budget.jvmArguments(2, 50, singletonList("-XX:MaxHeapSize=1g")))
+        .containsExactly("-XX:ActiveProcessorCount=4");
+    soft.assertThat(budget.jvmArguments(2, 50, asList("-Xms512m", "-XX:ActiveProcessorCount=3")))
+        .containsExactly("-Xmx1536m");
+  }
+
+  @Test
+  void parse() {
+    soft.assertThat(ResourceBudget.parseV2Memory("max")).isEqualTo(-1L);
+    soft.assertThat(ResourceBudget.parseV2Memory("1024")).isEqualTo(1024L);
+    soft.assertThat(ResourceBudget.parseV1Memory("9223372036854771712")).isEqualTo(-1L);
+    soft.assertThat(ResourceBudget.parseV1Memory("1024")).isEqualTo(1024L);
+    soft.assertThat(ResourceBudget.parseV2Cpu("max 100000")).isEqualTo(-1d);
+    soft.assertThat(ResourceBudget.parseV2Cpu("50000 100000")).isEqualTo(0.5d);
+    soft.assertThat(ResourceBudget.parseV2Cpu(null)).isEqualTo(-1d);
+    soft.assertThat(ResourceBudget.parseV1Cpu("-1", "100000")).isEqualTo(-1d);
+    soft.assertThat(ResourceBudget.parseV1Cpu("150000", "100000")).isEqualTo(1.5d);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestResourceLimits {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  private static final ResourceUsage USAGE =
+      new ResourceUsage(10, 600L * 1024L * 1024L, 400L * 1024L * 1024L, 5000L, 10000L, 80, 60);
+
+  @Test
+  void noLimits() {
+    soft.assertThat(ResourceLimits.NONE.isLimited()).isFalse();
+    soft.assertThat(ResourceLimits.NONE.check(USAGE)).isEmpty();
+    soft.assertThat(ResourceLimits.of(0L, 0L, 0).isLimited()).isFalse();
+  }
+
+  @Test
+  void withinLimits() {
+    ResourceLimits limits = ResourceLimits.of(600L, 5000L, 80);
+    soft.assertThat(limits.isLimited()).isTrue();
+    soft.assertThat(limits.check(USAGE)).isEmpty();
+  }
+
+  @Test
+  void exceeded() {
+    soft.assertThat(ResourceLimits.of(512L, 0L, 0).check(USAGE))
+        .containsExactly("peak RSS 600.0 MiB exceeds the limit of 512.0 MiB");
+    soft.assertThat(ResourceLimits.of(0L, 4999L, 0).check(USAGE))
+        .containsExactly("CPU time 5000 ms exceeds the limit of 4999 ms");
+    soft.assertThat(ResourceLimits.of(0L, 0L, 79).check(USAGE))
+        .containsExactly("peak thread count 80 exceeds the limit of 79");
+    soft.assertThat(ResourceLimits.of(1L, 1L, 1).check(USAGE)).hasSize(3);
+  }
+}
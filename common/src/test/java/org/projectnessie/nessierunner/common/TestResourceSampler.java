@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestResourceSampler {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @TempDir Path proc;
+
+  private void fakeProcess(long pid, long utime, long stime, long cutime, int threads, long rssKb)
+      throws IOException {
+    Path dir = Files.createDirectories(proc.resolve(Long.toString(pid)));
+    StringBuilder stat = new StringBuilder();
+    stat.append(pid).append(" (java (main) x) S 1");
+    // fields 5..13
+    for (int i = 5; i <= 13; i++) {
+      stat.append(" 0");
+    }
+    stat.append(' ').append(utime).append(' ').append(stime).append(' ').append(cutime);
+    stat.append(" 0 20 0 ").append(threads).append(" 0 12345 1000 200\n");
+    Files.write(dir.resolve("stat"), stat.toString().getBytes(StandardCharsets.UTF_8));
+    Files.write(
+        dir.resolve("status"),
+        asList(
+            "Name:\tjava", "Threads:\t" + threads, "VmRSS:\t  " + rssKb + " kB", "VmSwap:\t0 kB"));
+  }
+
+  @Test
+  void statFields() {
+    String[] fields = ResourceSampler.statFields("42 (a (b) c) S 1 2 3\n");
+    soft.assertThat(fields).containsExactly("42", "a (b) c", "S", "1", "2", "3");
+    soft.assertThatIllegalArgumentException().isThrownBy(() -> ResourceSampler.statFields("42"));
+  }
+
+  @Test
+  void rssBytes() {
+    soft.assertThat(ResourceSampler.rssBytes(asList("Name:\tjava", "VmRSS:\t  2048 kB")))
+        .isEqualTo(2048L * 1024L);
+    soft.assertThat(ResourceSampler.rssBytes(singletonList("Name:\tkthreadd"))).isEqualTo(0L);
+  }
+
+  @Test
+  void sample() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    ResourceSampler sampler =
+        new ResourceSampler(proc, 100L, () -> LongStream.of(101L, 102L), clock::get);
+
+    soft.assertThat(sampler.usage()).isNull();
+
+    fakeProcess(100L, 100L, 50L, 10L, 20, 1024L);
+    fakeProcess(101L, 40L, 0L, 0L, 2, 512L);
+    // 102 does not exist (exited)
+    sampler.sample();
+
+    clock.set(TimeUnit.SECONDS.toNanos(2));
+    fakeProcess(100L, 200L, 50L, 10L, 30, 3072L);
+    fakeProcess(101L, 50L, 0L, 0L, 4, 1024L);
+    sampler.sample();
+
+    ResourceUsage usage = sampler.usage();
+    soft.assertThat(usage.getSamples()).isEqualTo(2);
+    soft.assertThat(usage.getPeakRssBytes()).isEqualTo(4096L * 1024L);
+    soft.assertThat(usage.getAverageRssBytes()).isEqualTo((1536L + 4096L) / 2 * 1024L);
+    // (200 + 50 + 10 + 50) ticks at 100 ticks per second
+    soft.assertThat(usage.getCpuMillis()).isEqualTo(3100L);
+    soft.assertThat(usage.getSampledMillis()).isEqualTo(2000L);
+    soft.assertThat(usage.getPeakThreads()).isEqualTo(34);
+    soft.assertThat(usage.getAverageThreads()).isEqualTo(28);
+    soft.assertThat(usage.toString())
+        .isEqualTo(
+            "peak RSS 4.0 MiB, average RSS 2.8 MiB, CPU 3.1 s (155% of one core), peak threads 34,"
+                + " average threads 28 (n=2)");
+    soft.assertThat(usage.toAttributes())
+        .containsEntry("peakRssBytes", Long.toString(4096L * 1024L))
+        .containsEntry("cpuMillis", "3100")
+        .containsEntry("peakThreads", "34");
+  }
+
+  @Test
+  void noProcess() {
+    ResourceSampler sampler = new ResourceSampler(proc, 100L, LongStream::empty, System::nanoTime);
+    sampler.sample();
+    soft.assertThat(sampler.usage()).isNull();
+  }
+
+  @Test
+  void currentProcess() {
+    long pid = ProcessHandle.current().pid();
+    assumeTrue(ResourceSampler.isSupported(pid));
+
+    ResourceSampler sampler =
+        new ResourceSampler(ResourceSampler.PROC, pid, LongStream::empty, System::nanoTime);
+    sampler.sample();
+
+    ResourceUsage usage = sampler.usage();
+    soft.assertThat(usage.getSamples()).isEqualTo(1);
+    soft.assertThat(usage.getPeakRssBytes()).isGreaterThan(1024L * 1024L);
+    soft.assertThat(usage.getPeakThreads()).isGreaterThan(1);
+    soft.assertThat(usage.getCpuMillis()).isGreaterThan(0L);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestServerInstances {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @Test
+  void instanceIndex() {
+    soft.assertThat(ServerInstances.instanceIndex(null, null)).isEqualTo(0);
+    soft.assertThat(ServerInstances.instanceIndex(null, "7")).isEqualTo(0);
+    soft.assertThat(ServerInstances.instanceIndex("1", "7")).isEqualTo(0);
+    soft.assertThat(ServerInstances.instanceIndex("3", null)).isEqualTo(0);
+    soft.assertThat(ServerInstances.instanceIndex("foo", "7")).isEqualTo(0);
+
+    // consecutive workers use different instances
+    soft.assertThat(ServerInstances.instanceIndex("3", "6")).isEqualTo(0);
+    soft.assertThat(ServerInstances.instanceIndex("3", "7")).isEqualTo(1);
+    soft.assertThat(ServerInstances.instanceIndex("3", "8")).isEqualTo(2);
+    soft.assertThat(ServerInstances.instanceIndex(" 3 ", " 9 ")).isEqualTo(0);
+
+    // non-numeric worker IDs are mapped deterministically
+    soft.assertThat(ServerInstances.instanceIndex("4", "worker-x"))
+        .isBetween(0, 3)
+        .isEqualTo(ServerInstances.instanceIndex("4", "worker-x"));
+  }
+
+  @Test
+  void indexedName() {
+    soft.assertThat(ServerInstances.indexedName("quarkus.http.test-url", 2))
+        .isEqualTo("quarkus.http.test-url.2");
+  }
+
+  @Test
+  void property() {
+    String property = "nessie.apprunner.test." + System.nanoTime();
+    String indexed = ServerInstances.indexedName(property, ServerInstances.instanceIndex());
+    try {
+      soft.assertThat(ServerInstances.property(property)).isNull();
+      System.setProperty(property, "plain");
+      soft.assertThat(ServerInstances.property(property)).isEqualTo("plain");
+      System.setProperty(indexed, "indexed");
+      soft.assertThat(ServerInstances.property(property)).isEqualTo("indexed");
+    } finally {
+      System.clearProperty(property);
+      System.clearProperty(indexed);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.projectnessie.nessierunner.common.ProcessTimings.NOT_RECORDED;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestStartStopBenchmark {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  private static final long MS = 1_000_000L;
+
+  private static ProcessTimings timings(long toListenUrl, long toReady, long stop) {
+    long base = 1_000 * MS;
+    return new ProcessTimings(
+        new long[] {
+          NOT_RECORDED,
+          base,
+          base + MS,
+          base + 2 * MS,
+          base + toListenUrl * MS,
+          base + toReady * MS,
+          stop >= 0 ? base + 10_000 * MS : NOT_RECORDED,
+          stop >= 0 ? base + (10_000 + stop) * MS : NOT_RECORDED
+        });
+  }
+
+  @Test
+  void percentiles() {
+    StartStopBenchmark benchmark = new StartStopBenchmark();
+    // record in reverse order, statistics must not depend on the order
+    for (int i = 100; i > 0; i--) {
+      benchmark.record(timings(i * 10, i * 10 + 5, i));
+    }
+
+    soft.assertThat(benchmark.getIterations()).isEqualTo(100);
+    StartStopBenchmark.Statistics toListenUrl =
+        benchmark.statistics(StartStopBenchmark.Metric.TO_LISTEN_URL);
+    soft.assertThat(toListenUrl.count()).isEqualTo(100);
+    soft.assertThat(toListenUrl.min()).isEqualTo(Duration.ofMillis(10));
+    soft.assertThat(toListenUrl.percentile(50)).isEqualTo(Duration.ofMillis(500));
+    soft.assertThat(toListenUrl.percentile(90)).isEqualTo(Duration.ofMillis(900));
+    soft.assertThat(toListenUrl.percentile(99)).isEqualTo(Duration.ofMillis(990));
+    soft.assertThat(toListenUrl.max()).isEqualTo(Duration.ofMillis(1000));
+    soft.assertThat(toListenUrl.percentile(100)).isEqualTo(Duration.ofMillis(1000));
+    soft.assertThat(benchmark.statistics(StartStopBenchmark.Metric.TO_READY).percentile(50))
+        .isEqualTo(Duration.ofMillis(505));
+    soft.assertThat(benchmark.statistics(StartStopBenchmark.Metric.STOP))
+        .hasToString("p50=50ms p90=90ms p99=99ms max=100ms (n=100)");
+    soft.assertThatIllegalArgumentException().isThrownBy(() -> toListenUrl.percentile(0));
+    soft.assertThatIllegalArgumentException().isThrownBy(() -> toListenUrl.percentile(101));
+
+    StartStopBenchmark single = new StartStopBenchmark();
+    single.record(timings(42, 43, 7));
+    StartStopBenchmark.Statistics singleStats =
+        single.statistics(StartStopBenchmark.Metric.TO_LISTEN_URL);
+    soft.assertThat(singleStats.percentile(50)).isEqualTo(Duration.ofMillis(42));
+    soft.assertThat(singleStats.percentile(99)).isEqualTo(Duration.ofMillis(42));
+  }
+
+  @Test
+  void report(@TempDir Path dir) throws Exception {
+    StartStopBenchmark benchmark = new StartStopBenchmark();
+    soft.assertThat(benchmark.statistics(StartStopBenchmark.Metric.TO_LISTEN_URL)).isNull();
+    soft.assertThat(benchmark.summary()).isEmpty();
+
+    benchmark.record(timings(100, 120, 30));
+    benchmark.record(timings(200, 220, -1));
+
+    soft.assertThat(benchmark.statistics(StartStopBenchmark.Metric.STOP).count()).isEqualTo(1);
+    soft.assertThat(benchmark.summary())
+        .containsExactly(
+            "toListenUrl  p50=100ms p90=200ms p99=200ms max=200ms (n=2)",
+            "toReady      p50=120ms p90=220ms p99=220ms max=220ms (n=2)",
+            "stop         p50=30ms p90=30ms p99=30ms max=30ms (n=1)");
+
+    String expected =
+        "{\n"
+            + "  \"attributes\": {\n"
+            + "    \"executionId\": \"bench\"\n"
+            + "  },\n"
+            + "  \"iterations\": 2,\n"
+            + "  \"statisticsMillis\": {\n"
+            + "    \"toListenUrl\": {\"min\": 100.000, \"p50\": 100.000, \"p90\": 200.000,"
+            + " \"p99\": 200.000, \"max\": 200.000},\n"
+            + "    \"toReady\": {\"min\": 120.000, \"p50\": 120.000, \"p90\": 220.000,"
+            + " \"p99\": 220.000, \"max\": 220.000},\n"
+            + "    \"stop\": {\"min\": 30.000, \"p50\": 30.000, \"p90\": 30.000,"
+            + " \"p99\": 30.000, \"max\": 30.000}\n"
+            + "  },\n"
+            + "  \"iterationsMillis\": {\n"
+            + "    \"toListenUrl\": [100.000, 200.000],\n"
+            + "    \"toReady\": [120.000, 220.000],\n"
+            + "    \"stop\": [30.000, null]\n"
+            + "  }\n"
+            + "}\n";
+    soft.assertThat(benchmark.toJson(Collections.singletonMap("executionId", "bench")))
+        .isEqualTo(expected);
+
+    Path file = dir.resolve("reports").resolve("benchmark.json");
+    benchmark.writeReport(file, Collections.singletonMap("executionId", "bench"));
+    soft.assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo(expected);
+  }
+
+  @Test
+  void invalidIterations() {
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> StartStopBenchmark.run(0, 0, ProcessHandler::new, msg -> {}));
+    soft.assertThatIllegalArgumentException()
+        .isThrownBy(() -> StartStopBenchmark.run(-1, 1, ProcessHandler::new, msg -> {}));
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.InjectSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith(SoftAssertionsExtension.class)
+class TestStartupDiagnostics {
+  @InjectSoftAssertions protected SoftAssertions soft;
+
+  @TempDir Path dir;
+
+  static StartupDiagnostics currentJavaVM(Path dir) {
+    StartupDiagnostics diagnostics =
+        StartupDiagnostics.of(JavaVM.forJavaHome(Paths.get(System.getProperty("java.home"))), dir);
+    assumeTrue(diagnostics.hasJcmd(), "jcmd is not available");
+    return diagnostics;
+  }
+
+  @Test
+  void collect() throws Exception {
+    StartupDiagnostics.Result result =
+        currentJavaVM(dir.resolve("work")).collect(ProcessHandle.current().pid());
+
+    soft.assertThat(result.getFailures()).isEmpty();
+    soft.assertThat(result.isSigquit()).isFalse();
+    soft.assertThat(result.getThreadDumpFile())
+        .isEqualTo(dir.resolve("work").resolve(StartupDiagnostics.THREAD_DUMP_FILE));
+    soft.assertThat(result.getThreadDump())
+        .contains("Full thread dump")
+        .isEqualTo(new String(Files.readAllBytes(result.getThreadDumpFile()), UTF_8));
+    soft.assertThat(result.getClassHistogramFile())
+        .isEqualTo(dir.resolve("work").resolve(StartupDiagnostics.CLASS_HISTOGRAM_FILE));
+    soft.assertThat(result.getClassHistogram())
+        .contains("java.lang.String")
+        .isEqualTo(new String(Files.readAllBytes(result.getClassHistogramFile()), UTF_8));
+    soft.assertThat(result.format())
+        .contains("Thread dump, written to " + result.getThreadDumpFile() + ":\n")
+        .contains("Class histogram, written to " + result.getClassHistogramFile() + ":\n")
+        .containsPattern("\\.\\.\\. \\d+ more lines in " + result.getThreadDumpFile() + "\n")
+        .endsWith(" more lines in " + result.getClassHistogramFile() + "\n");
+  }
+
+  @Test
+  void jcmdFailure() {
+    // not a process, jcmd fails
+    StartupDiagnostics.Result result = currentJavaVM(dir).collect(Long.MAX_VALUE);
+
+    soft.assertThat(result.getFailures())
+        .containsExactly(
+            "jcmd Thread.print failed with exit code 1",
+            "jcmd GC.class_histogram failed with exit code 1");
+    soft.assertThat(result.format())
+        .contains("\nDiagnostics failure: jcmd Thread.print failed with exit code 1\n");
+  }
+
+  @Test
+  void timeLimit() {
+    Path jcmd = JavaVM.forJavaHome(Paths.get(System.getProperty("java.home"))).getJcmdExecutable();
+    StartupDiagnostics.Result result =
+        new StartupDiagnostics(jcmd, dir, 0L).collect(ProcessHandle.current().pid());
+
+    soft.assertThat(result.getFailures())
+        .containsExactly(
+            "jcmd Thread.print skipped, the diagnostics took longer than 0 ms",
+            "jcmd GC.class_histogram skipped, the diagnostics took longer than 0 ms");
+    soft.assertThat(result.getThreadDump()).isNull();
+    soft.assertThat(result.getClassHistogram()).isNull();
+  }
+
+  @Test
+  void format() {
+    String histogram =
+        IntStream.rangeClosed(1, 30).mapToObj(i -> "line " + i).collect(Collectors.joining("\n"));
+    StartupDiagnostics.Result result =
+        new StartupDiagnostics.Result(
+            "\"main\" #1 prio=5\n",
+            dir.resolve("threads.txt"),
+            histogram,
+            dir.resolve("histogram.txt"),
+            false,
+            emptyList());
+    soft.assertThat(result.format())
+        .isEqualTo(
+            "\nThread dump, written to "
+                + dir.resolve("threads.txt")
+                + ":\n\"main\" #1 prio=5\n"
+                + "\nClass histogram, written to "
+                + dir.resolve("histogram.txt")
+                + ":\n"
+                + IntStream.rangeClosed(1, StartupDiagnostics.HISTOGRAM_MESSAGE_LINES)
+                    .mapToObj(i -> "line " + i + "\n")
+                    .collect(Collectors.joining())
+                + "... 5 more lines in "
+                + dir.resolve("histogram.txt")
+                + "\n");
+
+    String threadDump =
+        IntStream.rangeClosed(1, 100)
+            .mapToObj(i -> "\"thread-" + i + "\" #" + i)
+            .collect(Collectors.joining("\n"));
+    StartupDiagnostics.Result threads =
+        new StartupDiagnostics.Result(
+            threadDump, dir.resolve("threads.txt"), null, null, false, emptyList());
+    soft.assertThat(threads.format())
+        .isEqualTo(
+            "\nThread dump, written to "
+                + dir.resolve("threads.txt")
+                + ":\n"
+                + IntStream.rangeClosed(1, StartupDiagnostics.THREAD_DUMP_MESSAGE_LINES)
+                    .mapToObj(i -> "\"thread-" + i + "\" #" + i + "\n")
+                    .collect(Collectors.joining())
+                + "... 60 more lines in "
+                + dir.resolve("threads.txt")
+                + "\n");
+
+    StartupDiagnostics.Result sigquit =
+        new StartupDiagnostics.Result(null, null, null, null, true, singletonList("oops"));
+    soft.assertThat(sigquit.format())
+        .isEqualTo(
+            "\nThread dump requested via SIGQUIT, printed to the process output.\n"
+                + "\nDiagnostics failure: oops\n");
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.gradle;
+
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import org.gradle.api.Project;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds custom values to the build scan, if the Develocity (or Gradle Enterprise) plugin is applied.
+ * Uses reflection, because the plugin is not a dependency of this plugin.
+ */
+final class BuildScanValues {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BuildScanValues.class);
+
+  private BuildScanValues() {}
+
+  /**
+   * Returns a consumer for build scan values (name, value), which is a no-op, if build scans are
+   * not available.
+   */
+  static BiConsumer<String, String> forProject(Project project) {
+    Object buildScan = null;
+    try {
+      Object develocity = project.getRootProject().getExtensions().findByName("develocity");
+      if (develocity != null) {
+        buildScan = develocity.getClass().getMethod("getBuildScan").invoke(develocity);
+      }
+      if (buildScan == null) {
+        buildScan = project.getRootProject().getExtensions().findByName("buildScan");
+      }
+      if (buildScan == null) {
+        return (name, value) -> {};
+      }
+      Method valueMethod = buildScan.getClass().getMethod("value", String.class, String.class);
+      Object target = buildScan;
+      return (name, value) -> {
+        try {
+          valueMethod.invoke(target, name, value);
+        } catch (Exception e) {
+          LOGGER.debug("Failed to add build scan value {}", name, e);
+        }
+      };
+    } catch (Exception e) {
+      LOGGER.debug("Build scan extension not usable", e);
+      return (name, value) -> {};
+    }
+  }
+}
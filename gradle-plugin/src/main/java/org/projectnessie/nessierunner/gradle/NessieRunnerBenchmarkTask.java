@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.gradle;
+
+import static org.projectnessie.nessierunner.gradle.NessieRunnerPlugin.APP_CONFIG_NAME;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ProcessTimings;
+import org.projectnessie.nessierunner.common.StartStopBenchmark;
+
+/**
+ * Starts and stops the Nessie-Quarkus server repeatedly, using the configuration of the {@link
+ * NessieRunnerExtension}, and reports the p50/p90/p99/max latencies to the listen URL, to readiness
+ * and to stop the server. The results are written as JSON to {@code benchmark-<task name>.json} in
+ * the {@link NessieRunnerExtension#getReportDirectory() report directory}.
+ */
+public abstract class NessieRunnerBenchmarkTask extends DefaultTask {
+
+  public NessieRunnerBenchmarkTask() {
+    getIterations().convention(10);
+    getWarmupIterations().convention(1);
+    // The task has no outputs, the benchmark is always executed.
+    notCompatibleWithConfigurationCache("NessieRunner's benchmark needs the project's extension");
+  }
+
+  /** Number of measured start/stop iterations, defaults to {@code 10}. */
+  @Internal
+  public abstract Property<Integer> getIterations();
+
+  /**
+   * Number of start/stop iterations before the measured ones, not included in the results, defaults
+   * to {@code 1}.
+   */
+  @Internal
+  public abstract Property<Integer> getWarmupIterations();
+
+  @TaskAction
+  public void benchmark() {
+    NessieRunnerExtension extension =
+        getProject().getExtensions().getByType(NessieRunnerExtension.class);
+    Configuration appConfig = getProject().getConfigurations().getByName(APP_CONFIG_NAME);
+    String dependenciesString = NessieRunnerTaskConfigurer.dependenciesString(appConfig);
+    FileCollection files = NessieRunnerTaskConfigurer.appFiles(appConfig);
+
+    AtomicReference<ProcessHandler> last = new AtomicReference<>();
+    StartStopBenchmark benchmark;
+    try {
+      benchmark =
+          StartStopBenchmark.run(
+              getWarmupIterations().get(),
+              getIterations().get(),
+              () -> {
+                ProcessState processState = new ProcessState();
+                try {
+                  processState.startProcess(this, extension, files, dependenciesString);
+                } catch (RuntimeException e) {
+                  ProcessHandler processHandler = processState.getProcessHandler();
+                  if (processHandler != null
+                      && processHandler.getTimings().isRecorded(ProcessTimings.Phase.SPAWNED)) {
+                    processHandler.stop();
+                  }
+                  throw e;
+                }
+                last.set(processState.getProcessHandler());
+                return processState.getProcessHandler();
+              },
+              msg -> getLogger().lifecycle(msg));
+    } catch (GradleException e) {
+      throw e;
+    } catch (IllegalArgumentException e) {
+      throw new GradleException(e.getMessage(), e);
+    } catch (Exception e) {
+      throw new GradleException("Start/stop benchmark failed", e);
+    }
+
+    getLogger()
+        .lifecycle(
+            "Start/stop benchmark results for {}, {} iterations:",
+            getPath(),
+            benchmark.getIterations());
+    benchmark.summary().forEach(line -> getLogger().lifecycle("  {}", line));
+
+    Map<String, String> attributes = new LinkedHashMap<>();
+    attributes.put("executionId", getName());
+    attributes.put("project", getProject().getPath());
+    attributes.put("warmupIterations", Integer.toString(getWarmupIterations().get()));
+    attributes.put("javaVersion", Integer.toString(extension.getJavaVersion().get()));
+    attributes.put("jvmArguments", String.join(" ", extension.getJvmArguments().get()));
+    attributes.putAll(last.get().getDetectedValues());
+    Path reportFile =
+        extension
+            .getReportDirectory()
+            .file("benchmark-" + getName() + ".json")
+            .get()
+            .getAsFile()
+            .toPath();
+    try {
+      benchmark.writeReport(reportFile, attributes);
+    } catch (IOException e) {
+      throw new GradleException(
+          String.format("Failed to write the benchmark report %s", reportFile), e);
+    }
+    getLogger().lifecycle("Benchmark report written to {}", reportFile);
+  }
+}
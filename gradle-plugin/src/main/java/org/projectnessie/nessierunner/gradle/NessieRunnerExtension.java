@@ -18,6 +18,7 @@ package org.projectnessie.nessierunner.gradle;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.MapProperty;
@@ -25,6 +26,11 @@ import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskCollection;
 import org.gradle.api.tasks.TaskProvider;
+import org.projectnessie.nessierunner.common.DataDirectoryTemplate;
+import org.projectnessie.nessierunner.common.FlightRecording;
+import org.projectnessie.nessierunner.common.OutputOverflowPolicy;
+import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ResourceBudget;
 
 public class NessieRunnerExtension {
   private final MapProperty<String, String> environment;
@@ -44,6 +50,32 @@ public class NessieRunnerExtension {
   private final RegularFileProperty workingDirectory;
   private final Property<Long> timeToListenUrlMillis;
   private final Property<Long> timeToStopMillis;
+  private final Property<Integer> outputQueueSize;
+  private final Property<OutputOverflowPolicy> outputOverflowPolicy;
+  private final ListProperty<String> failurePatterns;
+  private final Property<Boolean> readinessProbe;
+  private final Property<String> readinessPath;
+  private final ListProperty<String> readinessDetectors;
+  private final MapProperty<String, String> detectedValueProperties;
+  private final Property<Boolean> classDataSharing;
+  private final Property<String> launchProfile;
+  private final Property<Boolean> shareServer;
+  private final Property<Boolean> asyncStart;
+  private final Property<Integer> instances;
+  private final DirectoryProperty dataDirectoryTemplate;
+  private final Property<String> dataDirectory;
+  private final Property<String> dataDirectoryProperty;
+  private final ListProperty<String> dataDirectoryLinkPatterns;
+  private final Property<Long> resourceSamplingIntervalMillis;
+  private final Property<Long> maxRssMegabytes;
+  private final Property<Long> maxCpuMillis;
+  private final Property<Integer> maxThreads;
+  private final Property<Boolean> resourceBudget;
+  private final Property<Integer> resourceBudgetMemoryPercentage;
+  private final Property<Integer> resourceBudgetServers;
+  private final Property<Boolean> profiling;
+  private final Property<String> profilingSettings;
+  private final DirectoryProperty reportDirectory;
 
   private final Provider<NessieRunnerService> nessieRunnerServiceProvider;
 
@@ -76,6 +108,61 @@ public class NessieRunnerExtension {
     executableJar = project.getObjects().fileProperty();
     timeToListenUrlMillis = project.getObjects().property(Long.class).convention(0L);
     timeToStopMillis = project.getObjects().property(Long.class).convention(0L);
+    outputQueueSize = project.getObjects().property(Integer.class).convention(0);
+    outputOverflowPolicy =
+        project
+            .getObjects()
+            .property(OutputOverflowPolicy.class)
+            .convention(OutputOverflowPolicy.BLOCK);
+    failurePatterns =
+        project
+            .getObjects()
+            .listProperty(String.class)
+            .convention(ProcessHandler.DEFAULT_FAILURE_PATTERNS);
+    readinessProbe = project.getObjects().property(Boolean.class).convention(false);
+    readinessPath =
+        project
+            .getObjects()
+            .property(String.class)
+            .convention(ProcessHandler.DEFAULT_READINESS_PATH);
+    readinessDetectors = project.getObjects().listProperty(String.class);
+    detectedValueProperties = project.getObjects().mapProperty(String.class, String.class);
+    classDataSharing = project.getObjects().property(Boolean.class).convention(false);
+    launchProfile = project.getObjects().property(String.class);
+    shareServer = project.getObjects().property(Boolean.class).convention(false);
+    asyncStart = project.getObjects().property(Boolean.class).convention(false);
+    instances = project.getObjects().property(Integer.class).convention(1);
+    dataDirectoryTemplate = project.getObjects().directoryProperty();
+    dataDirectory = project.getObjects().property(String.class).convention("data");
+    dataDirectoryProperty =
+        project
+            .getObjects()
+            .property(String.class)
+            .convention("nessie.version.store.persist.rocks.database-path");
+    dataDirectoryLinkPatterns =
+        project
+            .getObjects()
+            .listProperty(String.class)
+            .convention(DataDirectoryTemplate.DEFAULT_LINK_PATTERNS);
+    resourceSamplingIntervalMillis = project.getObjects().property(Long.class).convention(0L);
+    maxRssMegabytes = project.getObjects().property(Long.class).convention(0L);
+    maxCpuMillis = project.getObjects().property(Long.class).convention(0L);
+    maxThreads = project.getObjects().property(Integer.class).convention(0);
+    resourceBudget = project.getObjects().property(Boolean.class).convention(false);
+    resourceBudgetMemoryPercentage =
+        project
+            .getObjects()
+            .property(Integer.class)
+            .convention(ResourceBudget.DEFAULT_MEMORY_PERCENTAGE);
+    resourceBudgetServers = project.getObjects().property(Integer.class).convention(0);
+    profiling = project.getObjects().property(Boolean.class).convention(false);
+    profilingSettings =
+        project.getObjects().property(String.class).convention(FlightRecording.DEFAULT_SETTINGS);
+    reportDirectory =
+        project
+            .getObjects()
+            .directoryProperty()
+            .convention(project.getLayout().getBuildDirectory().dir("nessie-runner"));
   }
 
   public MapProperty<String, String> getSystemProperties() {
@@ -146,6 +233,254 @@ public class NessieRunnerExtension {
     return timeToStopMillis;
   }
 
+  /**
+   * Maximum number of output lines of the process queued for asynchronous forwarding to the Gradle
+   * logger in batches, {@code 0} forwards the output synchronously. Defaults to {@code 0}.
+   */
+  public Property<Integer> getOutputQueueSize() {
+    return outputQueueSize;
+  }
+
+  /**
+   * What to do, when the output queue is full, because the Gradle logger cannot keep up. Defaults
+   * to {@link OutputOverflowPolicy#BLOCK}.
+   */
+  public Property<OutputOverflowPolicy> getOutputOverflowPolicy() {
+    return outputOverflowPolicy;
+  }
+
+  /**
+   * Regular expressions for output lines that indicate that the process failed to start. If a line
+   * matches before the listen URL has been emitted, the process is stopped immediately instead of
+   * waiting for {@link #getTimeToListenUrlMillis()}. Defaults to {@link
+   * ProcessHandler#DEFAULT_FAILURE_PATTERNS}, an empty list disables the check.
+   */
+  public ListProperty<String> getFailurePatterns() {
+    return failurePatterns;
+  }
+
+  /**
+   * Whether to wait until the application's readiness endpoint, see {@link #getReadinessPath()},
+   * reports readiness via HTTP status 200, after the listen URL has been emitted. The readiness
+   * endpoint is polled on the management URL, if present, or the HTTP URL. Must succeed within
+   * {@link #getTimeToListenUrlMillis()}. Defaults to {@code false}.
+   */
+  public Property<Boolean> getReadinessProbe() {
+    return readinessProbe;
+  }
+
+  /**
+   * Path of the readiness endpoint, see {@link #getReadinessProbe()}. Defaults to {@value
+   * ProcessHandler#DEFAULT_READINESS_PATH}.
+   */
+  public Property<String> getReadinessPath() {
+    return readinessPath;
+  }
+
+  /**
+   * Detectors for the listen URL and other values, relative paths are resolved against {@link
+   * #getWorkingDirectory()}. Supported: {@code quarkus} (plain text console log), {@code
+   * quarkus-json} (JSON console log), {@code port-file:<path>} (file containing the port or
+   * properties), {@code regex:<regex>} (named groups are the detected values, requires a group
+   * named {@code httpUrl} or {@code httpPort}). Defaults to {@code quarkus-json} and {@code
+   * quarkus}, if empty.
+   */
+  public ListProperty<String> getReadinessDetectors() {
+    return readinessDetectors;
+  }
+
+  /**
+   * Maps names of values detected by the {@link #getReadinessDetectors()}, for example {@code
+   * version}, to property names. The detected values are passed as system properties to the tasks
+   * and set as extra properties.
+   */
+  public MapProperty<String, String> getDetectedValueProperties() {
+    return detectedValueProperties;
+  }
+
+  /**
+   * Whether to use class data sharing to reduce the startup time. The first run creates a dynamic
+   * CDS archive, or an AOT cache for Java 25 and newer, in the {@link #getWorkingDirectory()},
+   * later runs use it. The archive is re-created, when the executable jar or the Java-VM change.
+   * Requires Java 13 or newer, ignored if the {@link #getJvmArguments()} already configure class
+   * data sharing. Defaults to {@code false}.
+   */
+  public Property<Boolean> getClassDataSharing() {
+    return classDataSharing;
+  }
+
+  /**
+   * Named set of JVM options for the server: {@code fast-startup}, {@code throughput} or {@code
+   * low-memory}. Options not supported by the Java-VM are dropped, options also configured in the
+   * {@link #getJvmArguments()} are overridden by those. Not set by default.
+   */
+  public Property<String> getLaunchProfile() {
+    return launchProfile;
+  }
+
+  /**
+   * Whether tasks of this project with the same effective launch configuration share one server.
+   * The shared server is started by the first task and stopped, when the last task using it
+   * finished. Note that state persisted by one task is visible to the other tasks. Defaults to
+   * {@code false}, each task gets its own server.
+   */
+  public Property<Boolean> getShareServer() {
+    return shareServer;
+  }
+
+  /**
+   * Whether the server is spawned by the {@code nessieQuarkusStart} task, which runs before the
+   * compile tasks of this project, instead of by the included task itself. The included tasks
+   * depend on the start task and await the server, so the server starts while the build compiles. A
+   * spawned server, that is not used, for example because the included tasks are up-to-date, is
+   * stopped when the included tasks completed. Defaults to {@code false}.
+   */
+  public Property<Boolean> getAsyncStart() {
+    return asyncStart;
+  }
+
+  /**
+   * Number of server instances started in parallel for each included task, for example to match the
+   * {@code maxParallelForks} of a {@code Test} task. With more than one instance, each instance
+   * uses the subdirectory {@code instance-<index>} of the {@link #getWorkingDirectory() working
+   * directory}, and the listen URLs and ports are passed as indexed system properties, for example
+   * {@code quarkus.http.test-url.0}, plus the number of instances as {@code
+   * nessie.apprunner.instances}. The non-indexed system properties refer to the first instance.
+   * Tests pick the instance for their fork via {@code ServerInstances.property(...)} from {@code
+   * nessie-runner-common}. Cannot be combined with {@link #getShareServer()} or {@link
+   * #getAsyncStart()}. Defaults to {@code 1}.
+   */
+  public Property<Integer> getInstances() {
+    return instances;
+  }
+
+  /**
+   * Pre-seeded data directory, for example of a RocksDB version store, that is cloned into the
+   * {@link #getDataDirectory() data directory} before each start, so the server starts with fresh,
+   * pre-populated state. Can be the output of a seed task. The whole directory is cloned via
+   * reflinks, if the file system supports it, otherwise files matching the {@link
+   * #getDataDirectoryLinkPatterns() link patterns} are hard-linked and other files are copied.
+   */
+  public DirectoryProperty getDataDirectoryTemplate() {
+    return dataDirectoryTemplate;
+  }
+
+  /**
+   * Directory the {@link #getDataDirectoryTemplate() template} is cloned into, relative to the
+   * {@link #getWorkingDirectory() working directory}. Deleted and re-created for each start.
+   * Defaults to {@code data}.
+   */
+  public Property<String> getDataDirectory() {
+    return dataDirectory;
+  }
+
+  /**
+   * System property, that points the server to the cloned data directory. Defaults to {@code
+   * nessie.version.store.persist.rocks.database-path}.
+   */
+  public Property<String> getDataDirectoryProperty() {
+    return dataDirectoryProperty;
+  }
+
+  /**
+   * Glob patterns for the names of files in the {@link #getDataDirectoryTemplate() template}, that
+   * are never modified in place and can be hard-linked. Defaults to RocksDB's {@code *.sst} and
+   * {@code *.blob} files.
+   */
+  public ListProperty<String> getDataDirectoryLinkPatterns() {
+    return dataDirectoryLinkPatterns;
+  }
+
+  /**
+   * Interval in milliseconds to sample the resident set size, CPU time and thread count of the
+   * server and its descendants from {@code /proc}, Linux only. The summary is logged when the
+   * server is stopped and added to the timings report. {@code 0} disables sampling, unless a
+   * resource limit is configured, which uses an interval of 1000 ms by default. Defaults to {@code
+   * 0}.
+   */
+  public Property<Long> getResourceSamplingIntervalMillis() {
+    return resourceSamplingIntervalMillis;
+  }
+
+  /**
+   * Maximum peak resident set size of the server and its descendants in MiB, the task fails if it
+   * is exceeded. Defaults to {@code 0}, no limit.
+   */
+  public Property<Long> getMaxRssMegabytes() {
+    return maxRssMegabytes;
+  }
+
+  /**
+   * Maximum CPU time of the server and its descendants in milliseconds, the task fails if it is
+   * exceeded. Defaults to {@code 0}, no limit.
+   */
+  public Property<Long> getMaxCpuMillis() {
+    return maxCpuMillis;
+  }
+
+  /**
+   * Maximum peak number of threads of the server and its descendants, the task fails if it is
+   * exceeded. Defaults to {@code 0}, no limit.
+   */
+  public Property<Integer> getMaxThreads() {
+    return maxThreads;
+  }
+
+  /**
+   * Whether to split the memory and CPUs available to the build, limited by its cgroup, between the
+   * concurrently running servers, via {@code -Xmx} and {@code -XX:ActiveProcessorCount}. Options
+   * configured in the JVM arguments take precedence. Defaults to {@code false}.
+   */
+  public Property<Boolean> getResourceBudget() {
+    return resourceBudget;
+  }
+
+  /**
+   * Percentage of the available memory shared by the servers of the resource budget. Defaults to
+   * {@code 50}.
+   */
+  public Property<Integer> getResourceBudgetMemoryPercentage() {
+    return resourceBudgetMemoryPercentage;
+  }
+
+  /**
+   * Number of concurrently running servers to split the resource budget between. Defaults to {@code
+   * 0}, which counts the servers running in the build, including the ones being started.
+   */
+  public Property<Integer> getResourceBudgetServers() {
+    return resourceBudgetServers;
+  }
+
+  /**
+   * Whether to record the server with the JDK Flight Recorder. The recording is written to {@code
+   * recording-<task name>.jfr} in the {@link #getReportDirectory() report directory}, when the
+   * server is stopped or its startup failed, and summarized in the log: the top CPU methods during
+   * startup, GC pauses and class loading. Defaults to {@code false}.
+   */
+  public Property<Boolean> getProfiling() {
+    return profiling;
+  }
+
+  /**
+   * JFR settings for {@link #getProfiling() profiling}, the name of JDK settings or the path to a
+   * .jfc file. Defaults to {@code profile}.
+   */
+  public Property<String> getProfilingSettings() {
+    return profilingSettings;
+  }
+
+  Provider<NessieRunnerService> getNessieRunnerService() {
+    return nessieRunnerServiceProvider;
+  }
+
+  /**
+   * Directory for the JSON reports with the startup and shutdown phase timings, one file per task
+   * named {@code timings-<task name>.json}. Defaults to {@code build/nessie-runner}.
+   */
+  public DirectoryProperty getReportDirectory() {
+    return reportDirectory;
+  }
+
   public NessieRunnerExtension includeTasks(TaskCollection<? extends Task> taskCollection) {
     return includeTasks(taskCollection, null);
   }
@@ -16,17 +16,30 @@
 package org.projectnessie.nessierunner.gradle;
 
 import java.util.concurrent.ThreadLocalRandom;
+import javax.inject.Inject;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.compile.AbstractCompile;
+import org.gradle.build.event.BuildEventsListenerRegistry;
 
-public class NessieRunnerPlugin implements Plugin<Project> {
+public abstract class NessieRunnerPlugin implements Plugin<Project> {
 
   static final String EXTENSION_NAME = "nessieQuarkusApp";
 
   /** The configuration that contains the Quarkus server application as the only dependency. */
   static final String APP_CONFIG_NAME = "nessieQuarkusServer";
 
+  /** The task that starts and stops the Quarkus server repeatedly to benchmark its latencies. */
+  static final String BENCHMARK_TASK_NAME = "nessieQuarkusBenchmark";
+
+  /** The task that spawns the Quarkus server, when asynchronous start is enabled. */
+  static final String START_TASK_NAME = "nessieQuarkusStart";
+
+  @Inject
+  protected abstract BuildEventsListenerRegistry getEventsListenerRegistry();
+
   @Override
   public void apply(Project project) {
     project
@@ -49,9 +62,38 @@ public class NessieRunnerPlugin implements Plugin<Project> {
                 "nessie-quarkus-runner-" + ThreadLocalRandom.current().nextLong(),
                 NessieRunnerService.class,
                 spec -> {});
+    // Release the servers of tasks that complete without running their actions or that fail.
+    getEventsListenerRegistry().onTaskCompletion(runnerService);
 
     project
         .getExtensions()
         .create(EXTENSION_NAME, NessieRunnerExtension.class, project, runnerService);
+
+    TaskProvider<NessieRunnerStartTask> startTask =
+        project
+            .getTasks()
+            .register(
+                START_TASK_NAME,
+                NessieRunnerStartTask.class,
+                t -> {
+                  t.setDescription(
+                      "Spawns the Nessie-Quarkus server, awaited by the included tasks, when asyncStart is enabled.");
+                  t.getNessieRunnerService().set(runnerService);
+                  t.usesService(runnerService);
+                });
+    // Let the server start while the build compiles, if the start task is scheduled at all.
+    project
+        .getTasks()
+        .withType(AbstractCompile.class)
+        .configureEach(t -> t.shouldRunAfter(startTask));
+
+    project
+        .getTasks()
+        .register(
+            BENCHMARK_TASK_NAME,
+            NessieRunnerBenchmarkTask.class,
+            t ->
+                t.setDescription(
+                    "Starts and stops the Nessie-Quarkus server repeatedly and reports the latencies."));
   }
 }
@@ -15,45 +15,320 @@
  */
 package org.projectnessie.nessierunner.gradle;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import org.gradle.api.GradleException;
 import org.gradle.api.Task;
 import org.gradle.api.services.BuildService;
 import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+import org.gradle.tooling.events.task.TaskFinishEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Keeps track of the processes started for the tasks of a project, by task path.
+ *
+ * <p>The service is registered as a task completion listener, so the processes of a task are
+ * released when the task completed, whatever its outcome, even if the task's actions did not run or
+ * failed.
+ */
 public abstract class NessieRunnerService
-    implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+    implements BuildService<BuildServiceParameters.None>,
+        OperationCompletionListener,
+        AutoCloseable {
   private static final Logger LOGGER = LoggerFactory.getLogger(NessieRunnerService.class);
 
-  private final Map<Task, ProcessState> processes = new IdentityHashMap<>();
+  private final Map<String, ProcessState> processes = new HashMap<>();
+
+  /**
+   * The instances except the first one, for tasks with more than one server instance, guarded by
+   * {@link #processes}. The first instance is in {@link #processes}.
+   */
+  private final Map<String, List<ProcessState>> additionalInstances = new HashMap<>();
+
+  /** Shared processes by their launch key, guarded by {@link #processes}. */
+  private final Map<String, SharedProcess> sharedProcesses = new HashMap<>();
+
+  /**
+   * Processes spawned by the {@link NessieRunnerStartTask}, that are not yet used by a task, by
+   * their launch key, guarded by {@link #processes}. Not contained in {@link #processes}, because
+   * the start task completes before the process is used.
+   */
+  private final Map<String, ProcessState> spawnedProcesses = new HashMap<>();
+
+  /**
+   * Paths of the tasks in the task graph that may use a shared process, but did not complete yet,
+   * guarded by {@link #processes}. Tasks execute one after another, shared processes are kept
+   * running while such a task is pending.
+   */
+  private final Set<String> pendingSharedUsers = new HashSet<>();
+
+  /**
+   * Paths of the tasks in the task graph that may use a process spawned by the start task, but did
+   * not complete yet, guarded by {@link #processes}. Spawned processes, that are not used by any
+   * task, are stopped when no such task is pending.
+   */
+  private final Set<String> pendingAsyncUsers = new HashSet<>();
 
   @Override
   public void close() {
     synchronized (processes) {
-      if (!processes.isEmpty()) {
-        LOGGER.warn("Cleaning up {} Nessie Quarkus services", processes.size());
+      Set<ProcessState> states = Collections.newSetFromMap(new IdentityHashMap<>());
+      states.addAll(processes.values());
+      additionalInstances.values().forEach(states::addAll);
+      states.addAll(spawnedProcesses.values());
+      if (!states.isEmpty()) {
+        LOGGER.warn("Cleaning up {} Nessie Quarkus services", states.size());
       }
-      for (ProcessState state : processes.values()) {
-        state.quarkusStop(LOGGER);
+      for (ProcessState state : states) {
+        try {
+          state.quarkusStop(LOGGER);
+        } catch (RuntimeException e) {
+          LOGGER.warn("Failure while stopping a Nessie Quarkus service", e);
+        }
       }
+      processes.clear();
+      additionalInstances.clear();
+      spawnedProcesses.clear();
+      sharedProcesses.clear();
+      pendingSharedUsers.clear();
+      pendingAsyncUsers.clear();
+    }
+  }
+
+  /** Returns the number of running servers, for the resource budget. */
+  public int runningServers() {
+    synchronized (processes) {
+      Set<ProcessState> states = Collections.newSetFromMap(new IdentityHashMap<>());
+      states.addAll(processes.values());
+      additionalInstances.values().forEach(states::addAll);
+      states.addAll(spawnedProcesses.values());
+      return (int) states.stream().filter(ProcessState::isAlive).count();
     }
   }
 
   public void register(ProcessState processState, Task task) {
     synchronized (processes) {
-      processes.put(task, processState);
+      processes.put(task.getPath(), processState);
+    }
+  }
+
+  /**
+   * Registers a process spawned by the given start task, the next task with the same launch key
+   * uses it. Processes that are not used by any task are stopped, when all {@link
+   * #asyncUserScheduled(Task) scheduled tasks} completed.
+   */
+  public void spawned(ProcessState processState, Task startTask) {
+    ProcessState unused;
+    synchronized (processes) {
+      if (pendingAsyncUsers.isEmpty()) {
+        unused = processState;
+      } else {
+        unused = spawnedProcesses.put(processState.getLaunchKey(), processState);
+      }
+    }
+    if (unused == processState) {
+      startTask
+          .getLogger()
+          .lifecycle("No scheduled task uses the Nessie Quarkus service, stopping it");
+    }
+    if (unused != null) {
+      unused.quarkusStop(startTask.getLogger());
+    }
+  }
+
+  /** Registers a task in the task graph, that may use a process spawned by the start task. */
+  public void asyncUserScheduled(Task task) {
+    synchronized (processes) {
+      pendingAsyncUsers.add(task.getPath());
+    }
+  }
+
+  /**
+   * Returns the spawned process with the same launch key as the given prepared process, or the
+   * prepared process. Must be called while holding the lock on {@link #processes}.
+   */
+  private ProcessState claimSpawned(ProcessState prepared) {
+    ProcessState spawned = spawnedProcesses.remove(prepared.getLaunchKey());
+    return spawned != null ? spawned : prepared;
+  }
+
+  /** Registers a task in the task graph, that may use a shared process. */
+  public void sharedUserScheduled(Task task) {
+    synchronized (processes) {
+      pendingSharedUsers.add(task.getPath());
+    }
+  }
+
+  /**
+   * Starts the prepared process for the given task, or awaits a process with the same launch key
+   * that has been {@link #spawned(ProcessState, Task) spawned} by a start task.
+   *
+   * <p>If {@code share} is {@code true}, a process with the same launch key that has been started
+   * for another task is used instead. Shared processes are stopped, when no task uses them and no
+   * {@link #sharedUserScheduled(Task) scheduled task} is pending, or when the build service closes.
+   *
+   * @return the process state to use for the task
+   */
+  public ProcessState start(ProcessState prepared, Task task, boolean share) {
+    if (!share) {
+      ProcessState state;
+      synchronized (processes) {
+        state = claimSpawned(prepared);
+        processes.put(task.getPath(), state);
+      }
+      state.launch(task);
+      return state;
+    }
+
+    SharedProcess shared;
+    synchronized (processes) {
+      shared =
+          sharedProcesses.computeIfAbsent(
+              prepared.getLaunchKey(),
+              k -> new SharedProcess(claimSpawned(prepared), task.getPath()));
+      shared.references++;
+      processes.put(task.getPath(), shared.processState);
+    }
+    shared.launch(task);
+    return shared.processState;
+  }
+
+  /**
+   * Starts the prepared instances for the given task in parallel, all processes are spawned before
+   * waiting for their listen URLs. The instances are stopped, when the task finished.
+   */
+  public void startInstances(List<ProcessState> instances, Task task) {
+    synchronized (processes) {
+      processes.put(task.getPath(), instances.get(0));
+      additionalInstances.put(
+          task.getPath(), new ArrayList<>(instances.subList(1, instances.size())));
+    }
+    for (ProcessState instance : instances) {
+      instance.spawn(task);
+    }
+    for (ProcessState instance : instances) {
+      instance.await(task);
     }
   }
 
+  /** Stops the processes of the given task, when the task's actions finished successfully. */
   public void finished(Task task) {
-    ProcessState state;
+    finished(task.getPath(), task.getLogger());
+  }
+
+  /**
+   * Releases the processes of completed tasks, including tasks that were up-to-date, taken from the
+   * build cache, skipped or failed. A no-op for tasks, whose processes have already been stopped
+   * via {@link #finished(Task)}.
+   */
+  @Override
+  public void onFinish(FinishEvent event) {
+    if (event instanceof TaskFinishEvent) {
+      String taskPath = ((TaskFinishEvent) event).getDescriptor().getTaskPath();
+      try {
+        finished(taskPath, LOGGER);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failure while stopping a Nessie Quarkus service for {}", taskPath, e);
+      }
+    }
+  }
+
+  private void finished(String taskPath, Logger logger) {
+    List<ProcessState> toStop = new ArrayList<>();
     synchronized (processes) {
-      state = processes.remove(task);
+      boolean pending = pendingSharedUsers.remove(taskPath);
+      boolean asyncPending = pendingAsyncUsers.remove(taskPath);
+      List<ProcessState> additional = additionalInstances.remove(taskPath);
+      ProcessState state = processes.remove(taskPath);
+      if (!pending && !asyncPending && additional == null && state == null) {
+        return;
+      }
+      if (asyncPending && pendingAsyncUsers.isEmpty() && !spawnedProcesses.isEmpty()) {
+        logger.info(
+            "Stopping {} Nessie Quarkus service(s) spawned, but not used by any task",
+            spawnedProcesses.size());
+        toStop.addAll(spawnedProcesses.values());
+        spawnedProcesses.clear();
+      }
+      if (additional != null) {
+        toStop.addAll(additional);
+      }
+      SharedProcess shared = state != null ? sharedProcesses.get(state.getLaunchKey()) : null;
+      if (shared != null && shared.processState == state) {
+        shared.references--;
+      } else if (state != null) {
+        toStop.add(state);
+      }
+      if (pendingSharedUsers.isEmpty()) {
+        for (Iterator<SharedProcess> iter = sharedProcesses.values().iterator(); iter.hasNext(); ) {
+          SharedProcess unused = iter.next();
+          if (unused.references == 0) {
+            iter.remove();
+            toStop.add(unused.processState);
+          }
+        }
+      } else if (shared != null && shared.processState == state) {
+        logger.info(
+            "Keeping the shared Nessie Quarkus service running for {} pending task(s)",
+            pendingSharedUsers.size());
+      }
+    }
+    RuntimeException failure = null;
+    for (ProcessState state : toStop) {
+      try {
+        state.quarkusStop(logger);
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
     }
-    if (state != null) {
-      state.quarkusStop(task.getLogger());
+  }
+
+  private static final class SharedProcess {
+    private final ProcessState processState;
+    private final String startedFor;
+    private int references;
+    private boolean launched;
+    private RuntimeException failure;
+
+    SharedProcess(ProcessState processState, String startedFor) {
+      this.processState = processState;
+      this.startedFor = startedFor;
+    }
+
+    synchronized void launch(Task task) {
+      if (failure != null) {
+        throw new GradleException(
+            String.format("Shared Nessie Quarkus service started for %s failed", startedFor),
+            failure);
+      }
+      if (launched) {
+        task.getLogger().lifecycle("Using the Nessie Quarkus service started for {}", startedFor);
+        return;
+      }
+      try {
+        processState.launch(task);
+        launched = true;
+      } catch (RuntimeException e) {
+        failure = e;
+        throw e;
+      }
     }
   }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.gradle;
+
+import static org.projectnessie.nessierunner.gradle.NessieRunnerPlugin.APP_CONFIG_NAME;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Spawns the Nessie-Quarkus server without waiting for it, when {@link
+ * NessieRunnerExtension#getAsyncStart()} is enabled. The included tasks depend on this task and
+ * await the server, so the server starts while the build compiles the tests.
+ */
+public abstract class NessieRunnerStartTask extends DefaultTask {
+
+  public NessieRunnerStartTask() {
+    // The task has no outputs, the server is always started.
+    notCompatibleWithConfigurationCache("NessieRunner's start task needs the project's extension");
+  }
+
+  @Internal
+  public abstract Property<NessieRunnerService> getNessieRunnerService();
+
+  @TaskAction
+  public void spawn() {
+    NessieRunnerExtension extension =
+        getProject().getExtensions().getByType(NessieRunnerExtension.class);
+    Configuration appConfig = getProject().getConfigurations().getByName(APP_CONFIG_NAME);
+
+    ProcessState processState = new ProcessState();
+    processState.prepare(
+        this,
+        extension,
+        NessieRunnerTaskConfigurer.appFiles(appConfig),
+        NessieRunnerTaskConfigurer.dependenciesString(appConfig));
+    processState.spawn(this);
+    getNessieRunnerService().get().spawned(processState, this);
+  }
+}
@@ -17,13 +17,17 @@ package org.projectnessie.nessierunner.gradle;
 
 import static org.projectnessie.nessierunner.gradle.NessieRunnerPlugin.APP_CONFIG_NAME;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.DependencySet;
+import org.gradle.api.execution.TaskExecutionGraph;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.plugins.ExtraPropertiesExtension;
@@ -65,18 +69,20 @@ public class NessieRunnerTaskConfigurer<T extends Task> implements Action<T> {
       inputs.file(execJar).withPathSensitivity(PathSensitivity.RELATIVE);
     }
     inputs.property("nessie.quarkus.javaVersion", extension.getJavaVersion().get());
+    inputs.property(
+        "nessie.quarkus.readinessDetectors", extension.getReadinessDetectors().get().toString());
+    inputs.property("nessie.quarkus.launchProfile", extension.getLaunchProfile().getOrElse(""));
+    inputs.property("nessie.quarkus.instances", extension.getInstances().get());
+    inputs
+        .dir(extension.getDataDirectoryTemplate())
+        .withPropertyName("nessie.quarkus.dataDirectoryTemplate")
+        .withPathSensitivity(PathSensitivity.RELATIVE)
+        .optional();
 
     inputs.files(appConfig);
 
-    DependencySet dependencies = appConfig.getDependencies();
-    // Although we assert that only a single artifact is used (later), collect all dependencies
-    // for a nicer error message.
-    String dependenciesString =
-        dependencies.stream()
-            .map(d -> String.format("%s:%s:%s", d.getGroup(), d.getName(), d.getVersion()))
-            .collect(Collectors.joining(", "));
-    FileCollection files =
-        !dependencies.isEmpty() ? appConfig.getIncoming().artifactView(v -> {}).getFiles() : null;
+    String dependenciesString = dependenciesString(appConfig);
+    FileCollection files = appFiles(appConfig);
 
     ExtraPropertiesExtension extra =
         task.getExtensions().findByType(ExtraPropertiesExtension.class);
@@ -94,6 +100,9 @@ public class NessieRunnerTaskConfigurer<T extends Task> implements Action<T> {
               extra.set(extension.getManagementListenPortProperty().get(), listenPort);
             }
             : (listenUrl, listenPort) -> {};
+    BiConsumer<String, String> detectedValueConsumer =
+        extra != null ? extra::set : (property, value) -> {};
+    BiConsumer<String, String> buildScanValueConsumer = BuildScanValues.forProject(project);
 
     if (extra != null) {
       task.notCompatibleWithConfigurationCache(
@@ -103,21 +112,69 @@ public class NessieRunnerTaskConfigurer<T extends Task> implements Action<T> {
     // Start the Nessie-Quarkus-App only when the Test task actually runs
 
     task.usesService(nessieRunnerServiceProvider);
+    if (extension.getAsyncStart().get()) {
+      task.dependsOn(NessieRunnerPlugin.START_TASK_NAME);
+    }
+    project
+        .getGradle()
+        .getTaskGraph()
+        .whenReady(
+            new Action<TaskExecutionGraph>() {
+              @Override
+              public void execute(TaskExecutionGraph graph) {
+                if (!graph.hasTask(task)) {
+                  return;
+                }
+                if (extension.getShareServer().get()) {
+                  nessieRunnerServiceProvider.get().sharedUserScheduled(task);
+                }
+                if (extension.getAsyncStart().get()) {
+                  nessieRunnerServiceProvider.get().asyncUserScheduled(task);
+                }
+              }
+            });
     task.doFirst(
         new Action<Task>() {
           @SuppressWarnings("unchecked")
           @Override
           public void execute(Task t) {
-            ProcessState processState = new ProcessState();
-            nessieRunnerServiceProvider.get().register(processState, t);
+            int instanceCount = extension.getInstances().get();
+            ProcessState processState;
+            if (instanceCount > 1) {
+              if (extension.getShareServer().get() || extension.getAsyncStart().get()) {
+                throw new GradleException(
+                    "More than one server instance cannot be combined with shareServer or asyncStart");
+              }
+              List<ProcessState> instances = new ArrayList<>();
+              for (int i = 0; i < instanceCount; i++) {
+                ProcessState instance = new ProcessState();
+                instance.prepare(t, extension, files, dependenciesString, i, instanceCount);
+                instances.add(instance);
+              }
+              nessieRunnerServiceProvider.get().startInstances(instances, t);
+              ProcessState.configureInstances(t, extension, instances);
+              processState = instances.get(0);
+            } else if (instanceCount == 1) {
+              processState = new ProcessState();
+              processState.prepare(t, extension, files, dependenciesString);
+              processState =
+                  nessieRunnerServiceProvider
+                      .get()
+                      .start(processState, t, extension.getShareServer().get());
+            } else {
+              throw new GradleException(
+                  String.format(
+                      "The number of server instances must be at least 1, but is %d",
+                      instanceCount));
+            }
 
-            processState.quarkusStart(
+            processState.configureTask(
                 t,
                 extension,
-                files,
-                dependenciesString,
                 httpUrlAndPortConsumer,
-                managementUrlAndPortConsumer);
+                managementUrlAndPortConsumer,
+                detectedValueConsumer,
+                buildScanValueConsumer);
             if (postStartAction != null) {
               postStartAction.execute((T) t);
             }
@@ -131,4 +188,21 @@ public class NessieRunnerTaskConfigurer<T extends Task> implements Action<T> {
           }
         });
   }
+
+  /**
+   * Although we assert that only a single artifact is used (later), collect all dependencies for a
+   * nicer error message.
+   */
+  static String dependenciesString(Configuration appConfig) {
+    DependencySet dependencies = appConfig.getDependencies();
+    return dependencies.stream()
+        .map(d -> String.format("%s:%s:%s", d.getGroup(), d.getName(), d.getVersion()))
+        .collect(Collectors.joining(", "));
+  }
+
+  static FileCollection appFiles(Configuration appConfig) {
+    return !appConfig.getDependencies().isEmpty()
+        ? appConfig.getIncoming().artifactView(v -> {}).getFiles()
+        : null;
+  }
 }
@@ -20,25 +20,53 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import org.gradle.api.GradleException;
 import org.gradle.api.Task;
+import org.gradle.api.file.Directory;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.process.JavaForkOptions;
+import org.projectnessie.nessierunner.common.ClassDataSharing;
+import org.projectnessie.nessierunner.common.DataDirectoryTemplate;
+import org.projectnessie.nessierunner.common.FlightRecording;
 import org.projectnessie.nessierunner.common.JavaVM;
+import org.projectnessie.nessierunner.common.LaunchKey;
+import org.projectnessie.nessierunner.common.LaunchProfile;
+import org.projectnessie.nessierunner.common.LineSink;
 import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ProcessTimings;
+import org.projectnessie.nessierunner.common.ReadinessDetector;
+import org.projectnessie.nessierunner.common.ReadinessDetectors;
+import org.projectnessie.nessierunner.common.ResourceBudget;
+import org.projectnessie.nessierunner.common.ResourceLimits;
+import org.projectnessie.nessierunner.common.ResourceUsage;
+import org.projectnessie.nessierunner.common.ServerInstances;
+import org.projectnessie.nessierunner.common.StartupDiagnostics;
 import org.slf4j.Logger;
 
 public class ProcessState {
 
   private ProcessHandler processHandler;
+  private Path reportFile;
+  private String executionId;
+  private List<String> command;
+  private ProcessBuilder processBuilder;
+  private ClassDataSharing cds;
+  private String launchKey;
+  private DataDirectoryTemplate dataTemplate;
+  private Path dataDir;
+  private boolean spawned;
 
   public ProcessState() {
     // intentionally empty
@@ -47,13 +75,64 @@ public class ProcessState {
   @TaskAction
   public void noop() {}
 
-  void quarkusStart(
+  ProcessHandler getProcessHandler() {
+    return processHandler;
+  }
+
+  boolean isAlive() {
+    return processHandler != null && processHandler.isAlive();
+  }
+
+  String getLaunchKey() {
+    return launchKey;
+  }
+
+  /**
+   * Builds the command, starts the process and waits for its listen URLs, the timings report is
+   * written in any case.
+   */
+  void startProcess(
+      Task task,
+      NessieRunnerExtension extension,
+      FileCollection appConfigFiles,
+      String dependenciesString) {
+    prepare(task, extension, appConfigFiles, dependenciesString);
+    launch(task);
+  }
+
+  /**
+   * Builds the command and configures the process handler, computes the {@link #getLaunchKey()
+   * launch key} from the effective launch configuration.
+   */
+  void prepare(
+      Task task,
+      NessieRunnerExtension extension,
+      FileCollection appConfigFiles,
+      String dependenciesString) {
+    prepare(task, extension, appConfigFiles, dependenciesString, 0, 1);
+  }
+
+  /**
+   * Like {@link #prepare(Task, NessieRunnerExtension, FileCollection, String)}, for the instance
+   * with the given index of {@code instanceCount} instances. With more than one instance, each
+   * instance gets its own working directory and timings report.
+   */
+  void prepare(
       Task task,
       NessieRunnerExtension extension,
       FileCollection appConfigFiles,
       String dependenciesString,
-      BiConsumer<String, String> httpUrlAndPortConsumer,
-      BiConsumer<String, String> managementUrlAndPortConsumer) {
+      int instance,
+      int instanceCount) {
+    processHandler = new ProcessHandler().commandBuildStarted();
+    executionId = instanceCount > 1 ? task.getName() + "-" + instance : task.getName();
+    reportFile =
+        extension
+            .getReportDirectory()
+            .file("timings-" + executionId + ".json")
+            .get()
+            .getAsFile()
+            .toPath();
 
     RegularFile configuredJar = extension.getExecutableJar().getOrNull();
 
@@ -91,6 +170,9 @@ public class ProcessState {
     }
 
     Path workDir = extension.getWorkingDirectory().getAsFile().get().toPath();
+    if (instanceCount > 1) {
+      workDir = workDir.resolve("instance-" + instance);
+    }
     if (!Files.isDirectory(workDir)) {
       try {
         Files.createDirectories(workDir);
@@ -100,14 +182,119 @@ public class ProcessState {
       }
     }
 
-    List<String> command = new ArrayList<>();
+    List<ReadinessDetector> detectors = new ArrayList<>();
+    try {
+      for (String spec : extension.getReadinessDetectors().get()) {
+        detectors.add(ReadinessDetectors.parse(spec, workDir));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new GradleException(e.getMessage(), e);
+    }
+
+    Logger logger = task.getLogger();
+
+    cds = null;
+    if (extension.getClassDataSharing().get()) {
+      List<String> userJvmArguments = new ArrayList<>(extension.getJvmArguments().get());
+      userJvmArguments.addAll(extension.getJvmArgumentsNonInput().get());
+      if (ClassDataSharing.isConfiguredByUser(userJvmArguments)) {
+        logger.info("Class data sharing is configured via jvmArguments");
+      } else {
+        try {
+          cds = ClassDataSharing.forApplication(workDir, execJar.toPath(), javaVM);
+        } catch (IOException e) {
+          throw new GradleException("Failed to set up class data sharing", e);
+        }
+        if (!cds.isSupported()) {
+          logger.warn(
+              "Class data sharing is not supported by the Java-VM in {}", javaVM.getJavaHome());
+        }
+      }
+    }
+
+    command = new ArrayList<>();
     command.add(javaVM.getJavaExecutable().toString());
+    if (cds != null) {
+      command.addAll(cds.jvmArguments());
+    }
+    String profileName = extension.getLaunchProfile().getOrNull();
+    if (profileName != null && !profileName.trim().isEmpty()) {
+      LaunchProfile profile;
+      try {
+        profile = LaunchProfile.forName(profileName);
+      } catch (IllegalArgumentException e) {
+        throw new GradleException(e.getMessage(), e);
+      }
+      List<String> userJvmArguments = new ArrayList<>(extension.getJvmArguments().get());
+      userJvmArguments.addAll(extension.getJvmArgumentsNonInput().get());
+      int majorVersion = javaVM.getMajorVersion();
+      List<String> profileArguments =
+          profile.jvmArguments(
+              majorVersion > 0 ? majorVersion : extension.getJavaVersion().get(), userJvmArguments);
+      logger.info(
+          "Using launch profile {}: {}", profile.profileName(), String.join(" ", profileArguments));
+      command.addAll(profileArguments);
+    }
+    List<String> budgetArguments = Collections.emptyList();
+    if (extension.getResourceBudget().get()) {
+      ResourceBudget budget = ResourceBudget.detect();
+      int servers = extension.getResourceBudgetServers().get();
+      if (servers <= 0) {
+        servers = extension.getNessieRunnerService().get().runningServers() + instanceCount;
+      }
+      List<String> userJvmArguments = new ArrayList<>(extension.getJvmArguments().get());
+      userJvmArguments.addAll(extension.getJvmArgumentsNonInput().get());
+      budgetArguments =
+          budget.jvmArguments(
+              servers, extension.getResourceBudgetMemoryPercentage().get(), userJvmArguments);
+      logger.info(
+          "Resource budget {} for {} server(s): {}",
+          budget,
+          servers,
+          String.join(" ", budgetArguments));
+    }
+    // The budget and recording arguments are excluded from the launch key, see below
+    int budgetIndex = command.size();
+    command.addAll(budgetArguments);
+    FlightRecording recording = null;
+    if (extension.getProfiling().get()) {
+      recording =
+          FlightRecording.of(
+              extension
+                  .getReportDirectory()
+                  .file("recording-" + executionId + ".jfr")
+                  .get()
+                  .getAsFile()
+                  .toPath(),
+              extension.getProfilingSettings().getOrNull());
+      int majorVersion = javaVM.getMajorVersion();
+      command.addAll(
+          recording.jvmArguments(
+              majorVersion > 0 ? majorVersion : extension.getJavaVersion().get()));
+    }
+    int notKeyedEnd = command.size();
+    processHandler.setFlightRecording(recording);
+    processHandler.setStartupDiagnostics(StartupDiagnostics.of(javaVM, workDir));
     command.addAll(extension.getJvmArguments().get());
     command.addAll(extension.getJvmArgumentsNonInput().get());
     command.add("-Dquarkus.http.port=0");
     command.add("-Dquarkus.management.port=0");
     command.add("-Dquarkus.log.level=INFO");
     command.add("-Dquarkus.log.console.level=INFO");
+    dataTemplate = null;
+    dataDir = null;
+    Directory templateDir = extension.getDataDirectoryTemplate().getOrNull();
+    if (templateDir != null) {
+      try {
+        dataTemplate =
+            DataDirectoryTemplate.of(
+                templateDir.getAsFile().toPath(), extension.getDataDirectoryLinkPatterns().get());
+      } catch (IllegalArgumentException e) {
+        throw new GradleException(e.getMessage(), e);
+      }
+      dataDir = workDir.resolve(extension.getDataDirectory().get()).toAbsolutePath();
+      command.add(String.format("-D%s=%s", extension.getDataDirectoryProperty().get(), dataDir));
+    }
     extension
         .getSystemProperties()
         .get()
@@ -121,37 +308,187 @@ public class ProcessState {
     command.addAll(extension.getArguments().get());
     command.addAll(extension.getArgumentsNonInput().get());
 
-    task.getLogger().info("Starting process: {}", command);
+    Map<String, String> environment = new LinkedHashMap<>(extension.getEnvironment().get());
+    environment.putAll(extension.getEnvironmentNonInput().get());
 
-    ProcessBuilder processBuilder = new ProcessBuilder().command(command);
-    extension.getEnvironment().get().forEach((k, v) -> processBuilder.environment().put(k, v));
-    extension
-        .getEnvironmentNonInput()
-        .get()
-        .forEach((k, v) -> processBuilder.environment().put(k, v));
+    processBuilder = new ProcessBuilder().command(command);
+    processBuilder.environment().putAll(environment);
     processBuilder.directory(workDir.toFile());
 
-    Logger logger = task.getLogger();
+    processHandler.setStdoutSink(LineSink.joining("[output] ", logger::info));
+    processHandler.setAsyncOutput(
+        extension.getOutputQueueSize().get(), extension.getOutputOverflowPolicy().get());
+    processHandler.setFailurePatterns(extension.getFailurePatterns().get());
+    if (!detectors.isEmpty()) {
+      processHandler.setReadinessDetectors(detectors);
+    }
+    if (extension.getReadinessProbe().get()) {
+      processHandler.setReadinessPath(extension.getReadinessPath().get());
+    }
+    processHandler.setDebugTarget(msg -> logger.debug(msg));
+    ResourceLimits resourceLimits =
+        ResourceLimits.of(
+            extension.getMaxRssMegabytes().get(),
+            extension.getMaxCpuMillis().get(),
+            extension.getMaxThreads().get());
+    long samplingIntervalMillis = extension.getResourceSamplingIntervalMillis().get();
+    processHandler.setResourceSampling(
+        samplingIntervalMillis > 0L || !resourceLimits.isLimited()
+            ? samplingIntervalMillis
+            : ProcessHandler.DEFAULT_RESOURCE_SAMPLING_INTERVAL_MILLIS,
+        resourceLimits);
+    if (extension.getTimeToListenUrlMillis().get() > 0L) {
+      processHandler.setTimeToListenUrlMillis(extension.getTimeToListenUrlMillis().get());
+    }
+    if (extension.getTimeToStopMillis().get() > 0L) {
+      processHandler.setTimeStopMillis(extension.getTimeToStopMillis().get());
+    }
 
-    try {
-      processHandler = new ProcessHandler();
-      processHandler.setStdoutTarget(line -> logger.info("[output] {}", line));
-      processHandler.start(processBuilder);
-      if (extension.getTimeToListenUrlMillis().get() > 0L) {
-        processHandler.setTimeToListenUrlMillis(extension.getTimeToListenUrlMillis().get());
+    List<String> keyCommand = new ArrayList<>(command);
+    // The resource budget depends on the number of running servers and the recording file name on
+    // the task, not on the server itself. A server spawned by the start task must match the
+    // server for the task using it.
+    keyCommand.subList(budgetIndex, notKeyedEnd).clear();
+    if (dataTemplate != null) {
+      // Servers cloned from different templates are not interchangeable
+      keyCommand.add("dataDirectoryTemplate=" + dataTemplate.getTemplate());
+    }
+    launchKey =
+        LaunchKey.of(
+            keyCommand,
+            environment,
+            workDir.toString(),
+            extension.getReadinessDetectors().get(),
+            extension.getReadinessProbe().get() ? extension.getReadinessPath().get() : null,
+            extension.getFailurePatterns().get());
+  }
+
+  /**
+   * Starts the prepared process, unless it has already been {@link #spawn(Task) spawned}, and waits
+   * for its listen URLs.
+   */
+  void launch(Task task) {
+    if (!spawned) {
+      spawn(task);
+    }
+    await(task);
+  }
+
+  /** Starts the prepared process, but does not wait for its listen URLs. */
+  void spawn(Task task) {
+    Logger logger = task.getLogger();
+    if (dataTemplate != null) {
+      try {
+        DataDirectoryTemplate.Result result = dataTemplate.cloneTo(dataDir);
+        logger.info(
+            "Cloned data directory template {} to {} {}",
+            dataTemplate.getTemplate(),
+            dataDir,
+            result);
+      } catch (IOException | IllegalArgumentException e) {
+        throw new GradleException(
+            String.format(
+                "Failed to clone the data directory template %s to %s",
+                dataTemplate.getTemplate(), dataDir),
+            e);
       }
-      if (extension.getTimeToStopMillis().get() > 0L) {
-        processHandler.setTimeStopMillis(extension.getTimeToStopMillis().get());
+    }
+    FlightRecording recording = processHandler.getFlightRecording();
+    if (recording != null) {
+      try {
+        recording.prepare();
+      } catch (IOException e) {
+        throw new GradleException(
+            String.format("Failed to prepare the JFR recording %s", recording.getFile()), e);
       }
+    }
+    logger.info("Starting process: {}", command);
+    try {
+      processHandler.start(processBuilder);
+      spawned = true;
+    } catch (IOException e) {
+      writeTimingsReport(logger);
+      throw new GradleException(String.format("Failed to start the process %s", command), e);
+    }
+  }
+
+  /** Waits for the listen URLs of the spawned process. */
+  void await(Task task) {
+    Logger logger = task.getLogger();
+    try {
       processHandler.getListenUrls();
+      if (cds != null) {
+        long startupMillis =
+            processHandler
+                .getTimings()
+                .between(ProcessTimings.Phase.SPAWN, ProcessTimings.Phase.LISTEN_URL)
+                .toMillis();
+        try {
+          task.getLogger().lifecycle(cds.recordStartup(startupMillis));
+        } catch (IOException e) {
+          logger.warn("Failed to record the startup time", e);
+        }
+      }
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new GradleException(String.format("Process-start interrupted: %s", command), e);
     } catch (TimeoutException e) {
+      logFlightRecording(logger);
       throw new GradleException(
           String.format("Nessie-Server/Quarkus did not emit listen URL. Process: %s", command), e);
-    } catch (IOException e) {
-      throw new GradleException(String.format("Failed to start the process %s", command), e);
+    } catch (RuntimeException e) {
+      logFlightRecording(logger);
+      throw e;
+    } finally {
+      writeTimingsReport(logger);
+    }
+  }
+
+  /** Logs the summary of the JFR recording of a process that failed to start. */
+  private void logFlightRecording(Logger logger) {
+    FlightRecording recording = processHandler.getFlightRecording();
+    if (recording == null) {
+      return;
+    }
+    try {
+      // Wait for the process to exit, which writes the recording
+      processHandler.stop();
+    } catch (RuntimeException e) {
+      logger.debug("Failed to stop the process", e);
+    }
+    lifecycle(logger, recording.report(processHandler.getTimings()));
+  }
+
+  /**
+   * Passes the listen URLs and detected values of the started process to the task, called for each
+   * task using the process.
+   */
+  void configureTask(
+      Task task,
+      NessieRunnerExtension extension,
+      BiConsumer<String, String> httpUrlAndPortConsumer,
+      BiConsumer<String, String> managementUrlAndPortConsumer,
+      BiConsumer<String, String> detectedValueConsumer,
+      BiConsumer<String, String> buildScanValueConsumer) {
+    Logger logger = task.getLogger();
+
+    ProcessTimings timings = processHandler.getTimings();
+    String scanPrefix = "nessie-runner " + task.getPath() + " ";
+    buildScanDuration(
+        buildScanValueConsumer,
+        scanPrefix + "to-first-output-ms",
+        timings.between(ProcessTimings.Phase.SPAWNED, ProcessTimings.Phase.FIRST_OUTPUT));
+    buildScanDuration(
+        buildScanValueConsumer,
+        scanPrefix + "to-listen-url-ms",
+        timings.between(ProcessTimings.Phase.SPAWNED, ProcessTimings.Phase.LISTEN_URL));
+    buildScanDuration(
+        buildScanValueConsumer,
+        scanPrefix + "startup-ms",
+        timings.elapsed(ProcessTimings.Phase.READY));
+    String appVersion = processHandler.getDetectedValues().get("version");
+    if (appVersion != null) {
+      buildScanValueConsumer.accept(scanPrefix + "version", appVersion);
     }
 
     List<String> listenUrls;
@@ -168,14 +505,14 @@ public class ProcessState {
     // Add the Quarkus properties as "generic properties", so any task can use them.
     httpUrlAndPortConsumer.accept(httpListenUrl, httpListenPort);
 
-    List<String> jvmOpts;
+    List<String> jvmOpts = new ArrayList<>();
 
     String managementListenUrl = listenUrls.get(1);
     if (managementListenUrl != null) {
       String managementListenPort = Integer.toString(URI.create(managementListenUrl).getPort());
       managementUrlAndPortConsumer.accept(managementListenUrl, managementListenPort);
 
-      jvmOpts =
+      jvmOpts.addAll(
           Arrays.asList(
               String.format("-D%s=%s", extension.getHttpListenUrlProperty().get(), httpListenUrl),
               String.format("-D%s=%s", extension.getHttpListenPortProperty().get(), httpListenPort),
@@ -183,15 +520,30 @@ public class ProcessState {
                   "-D%s=%s", extension.getManagementListenUrlProperty().get(), managementListenUrl),
               String.format(
                   "-D%s=%s",
-                  extension.getManagementListenPortProperty().get(), managementListenPort));
+                  extension.getManagementListenPortProperty().get(), managementListenPort)));
     } else {
-      jvmOpts =
+      jvmOpts.addAll(
           Arrays.asList(
               String.format("-D%s=%s", extension.getHttpListenUrlProperty().get(), httpListenUrl),
               String.format(
-                  "-D%s=%s", extension.getHttpListenPortProperty().get(), httpListenPort));
+                  "-D%s=%s", extension.getHttpListenPortProperty().get(), httpListenPort)));
     }
 
+    Map<String, String> detectedValues = processHandler.getDetectedValues();
+    extension
+        .getDetectedValueProperties()
+        .get()
+        .forEach(
+            (name, property) -> {
+              String value = detectedValues.get(name);
+              if (value != null) {
+                detectedValueConsumer.accept(property, value);
+                jvmOpts.add(String.format("-D%s=%s", property, value));
+              } else {
+                logger.warn("No value '{}' has been detected", name);
+              }
+            });
+
     // Do not put the "dynamic" properties (quarkus.http.test-port) to the `Test` task's
     // system-properties, because those are subject to the test-task's inputs, which is used
     // as the build-cache key. Instead, pass the dynamic properties via a
@@ -203,20 +555,124 @@ public class ProcessState {
     }
   }
 
+  /**
+   * Passes the listen URLs of all instances started for the task as indexed system properties and
+   * the number of instances to the task, if it is a {@link JavaForkOptions}.
+   */
+  static void configureInstances(
+      Task task, NessieRunnerExtension extension, List<ProcessState> instances) {
+    List<String> jvmOpts = new ArrayList<>();
+    jvmOpts.add(String.format("-D%s=%d", ServerInstances.INSTANCES_PROPERTY, instances.size()));
+    for (int i = 0; i < instances.size(); i++) {
+      List<String> listenUrls;
+      try {
+        listenUrls = instances.get(i).processHandler.getListenUrls();
+      } catch (Exception e) {
+        // Does not block and therefore not throw, all instances have been awaited.
+        throw new RuntimeException(e);
+      }
+      addIndexedListenUrl(
+          jvmOpts,
+          extension.getHttpListenUrlProperty().get(),
+          extension.getHttpListenPortProperty().get(),
+          i,
+          listenUrls.get(0));
+      addIndexedListenUrl(
+          jvmOpts,
+          extension.getManagementListenUrlProperty().get(),
+          extension.getManagementListenPortProperty().get(),
+          i,
+          listenUrls.get(1));
+    }
+
+    // Passed via a CommandLineArgumentProvider, see configureTask()
+    if (task instanceof JavaForkOptions) {
+      JavaForkOptions test = (JavaForkOptions) task;
+      test.getJvmArgumentProviders().add(() -> jvmOpts);
+    }
+  }
+
+  private static void addIndexedListenUrl(
+      List<String> jvmOpts, String urlProperty, String portProperty, int index, String listenUrl) {
+    if (listenUrl == null) {
+      return;
+    }
+    jvmOpts.add(
+        String.format("-D%s=%s", ServerInstances.indexedName(urlProperty, index), listenUrl));
+    jvmOpts.add(
+        String.format(
+            "-D%s=%d",
+            ServerInstances.indexedName(portProperty, index), URI.create(listenUrl).getPort()));
+  }
+
   void quarkusStop(Logger logger) {
     if (processHandler == null) {
       logger.debug("No application found.");
       return;
     }
 
+    List<String> violations;
     try {
       processHandler.stop();
       logger.info("Quarkus application stopped.");
+      ResourceUsage usage = processHandler.getResourceUsage();
+      if (usage != null) {
+        lifecycle(
+            logger, String.format("Nessie Quarkus resource usage (%s): %s", executionId, usage));
+      }
+      FlightRecording recording = processHandler.getFlightRecording();
+      if (recording != null) {
+        lifecycle(logger, recording.report(processHandler.getTimings()));
+      }
+      violations = processHandler.getResourceLimitViolations();
     } catch (Exception e) {
       throw new RuntimeException(e);
     } finally {
+      writeTimingsReport(logger);
       processHandler = null;
     }
+    if (!violations.isEmpty()) {
+      throw new GradleException(
+          String.format(
+              "Nessie Quarkus (%s) exceeded its resource limits: %s",
+              executionId, String.join(", ", violations)));
+    }
+  }
+
+  private static void lifecycle(Logger logger, String message) {
+    if (logger instanceof org.gradle.api.logging.Logger) {
+      ((org.gradle.api.logging.Logger) logger).lifecycle(message);
+    } else {
+      logger.info(message);
+    }
+  }
+
+  private static void buildScanDuration(
+      BiConsumer<String, String> buildScanValueConsumer, String name, Duration duration) {
+    if (duration != null) {
+      buildScanValueConsumer.accept(name, Long.toString(duration.toMillis()));
+    }
+  }
+
+  private void writeTimingsReport(Logger logger) {
+    if (!processHandler.getTimings().isRecorded(ProcessTimings.Phase.SPAWNED)) {
+      return;
+    }
+    Map<String, String> attributes = new LinkedHashMap<>();
+    attributes.put("executionId", executionId);
+    attributes.putAll(processHandler.getDetectedValues());
+    ResourceUsage usage = processHandler.getResourceUsage();
+    if (usage != null) {
+      attributes.putAll(usage.toAttributes());
+    }
+    if (!processHandler.isAlive()) {
+      attributes.put("exitCode", Integer.toString(processHandler.getExitCode()));
+    }
+    try {
+      processHandler.getTimings().writeReport(reportFile, attributes);
+    } catch (IOException e) {
+      logger.warn("Failed to write the timings report {}", reportFile, e);
+    }
   }
 
   static String noJavaMessage(int version) {
@@ -17,11 +17,14 @@ package org.projectnessie.nessierunner.gradle;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.gradle.testkit.runner.BuildResult;
@@ -297,11 +300,243 @@ class TestNessieRunnerPlugin {
         .isEqualTo(TaskOutcome.FROM_CACHE);
   }
 
-  private GradleRunner createGradleRunner(String task) {
+  /**
+   * Two test tasks share one server, which is stopped after the last of them completed, also if a
+   * task is up-to-date or fails.
+   */
+  @Test
+  void shareServer() throws Exception {
+    writeFakeServerBuild(
+        "tasks.register('test2', Test) {",
+        "    testClassesDirs = sourceSets.test.output.classesDirs",
+        "    classpath = sourceSets.test.runtimeClasspath",
+        "    inputs.property('rerun', findProperty('rerun') ?: '')",
+        "    mustRunAfter test",
+        "}",
+        "test.systemProperty 'failTest', findProperty('failTest') ?: 'false'",
+        "",
+        "nessieQuarkusApp {",
+        "    shareServer = true",
+        "    includeTask(tasks.named('test'))",
+        "    includeTask(tasks.named('test2'))",
+        "}");
+
+    BuildResult result = createGradleRunner("test", "test2", "checkStopped").build();
+    assertThat(Stream.of(":test", ":test2", ":checkStopped").map(result::task))
+        .extracting(BuildTask::getOutcome)
+        .containsOnly(TaskOutcome.SUCCESS);
+    assertThat(Arrays.asList(result.getOutput().split("\n")))
+        .contains("Using the Nessie Quarkus service started for :test");
+    Properties first = serverProperties("test");
+    Properties second = serverProperties("test2");
+    assertThat(second.getProperty("pid")).isNotNull().isEqualTo(first.getProperty("pid"));
+    assertThat(second.getProperty("quarkus.http.test-url"))
+        .isEqualTo(first.getProperty("quarkus.http.test-url"));
+    assertThat(serverPids()).containsExactly(first.getProperty("pid"));
+
+    // An up-to-date task must not keep the shared server running
+    result = createGradleRunner("test", "test2", "checkStopped", "-Prerun=1").build();
+    assertThat(result.task(":test"))
+        .extracting(BuildTask::getOutcome)
+        .isEqualTo(TaskOutcome.UP_TO_DATE);
+    assertThat(Stream.of(":test2", ":checkStopped").map(result::task))
+        .extracting(BuildTask::getOutcome)
+        .containsOnly(TaskOutcome.SUCCESS);
+    assertThat(serverProperties("test2").getProperty("pid")).isNotEqualTo(first.getProperty("pid"));
+
+    // A failed task must release the shared server
+    result =
+        createGradleRunner(
+                "test", "test2", "checkStopped", "--continue", "-Prerun=1", "-PfailTest=true")
+            .buildAndFail();
+    assertThat(result.task(":test"))
+        .extracting(BuildTask::getOutcome)
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.task(":test2"))
+        .extracting(BuildTask::getOutcome)
+        .isEqualTo(TaskOutcome.UP_TO_DATE);
+    assertThat(result.task(":checkStopped"))
+        .extracting(BuildTask::getOutcome)
+        .isEqualTo(TaskOutcome.SUCCESS);
+  }
+
+  /**
+   * Writes a build using a fake server instead of Nessie, which is built by the test project. The
+   * test tasks write the Quarkus and Nessie system properties and the PID of the server they used
+   * to {@code build/server-<task name>.properties}, the servers record their PIDs in {@code
+   * build/servers}, the {@code checkStopped} task fails, if any of these servers is still running.
+   */
+  private void writeFakeServerBuild(String... lines) throws Exception {
+    Path resources = Paths.get("src/test/resources/org/projectnessie/quarkus/gradle");
+    Path testTargetDir = testProjectDir.resolve("src/test/java/org/projectnessie/quarkus/gradle");
+    Files.delete(testTargetDir.resolve("TestSimulatingTestUsingThePlugin.java"));
+    Files.copy(
+        resources.resolve("TestUsingFakeServer.java"),
+        testTargetDir.resolve("TestUsingFakeServer.java"));
+    Path serverTargetDir =
+        testProjectDir.resolve("src/server/java/org/projectnessie/quarkus/gradle");
+    Files.createDirectories(serverTargetDir);
+    Files.copy(resources.resolve("FakeServer.java"), serverTargetDir.resolve("FakeServer.java"));
+
+    Files.write(
+        buildFile,
+        Stream.concat(
+                Stream.of(
+                    "plugins {",
+                    "    id 'java'",
+                    "    id 'org.projectnessie'",
+                    "}",
+                    "",
+                    "repositories {",
+                    "    mavenCentral()",
+                    "}",
+                    "",
+                    "sourceSets {",
+                    "    server",
+                    "}",
+                    "",
+                    "def serverJar = tasks.register('serverJar', Jar) {",
+                    "    from sourceSets.server.output",
+                    "    archiveFileName = 'fake-server.jar'",
+                    "    destinationDirectory = layout.buildDirectory.dir('server')",
+                    "    manifest.attributes('Main-Class': 'org.projectnessie.quarkus.gradle.FakeServer')",
+                    "}",
+                    "",
+                    "testing {",
+                    "  suites {",
+                    "    configureEach {",
+                    "      (it as JvmTestSuite).useJUnitJupiter('"
+                        + System.getProperty("junit-version")
+                        + "')",
+                    "    }",
+                    "  }",
+                    "}",
+                    "",
+                    "tasks.withType(Test).configureEach {",
+                    "    useJUnitPlatform()",
+                    "    dependsOn serverJar",
+                    "    systemProperty 'outputFile', layout.buildDirectory.file(\"server-${name}.properties\").get().asFile.path",
+                    "}",
+                    "",
+                    "tasks.named('nessieQuarkusStart') {",
+                    "    dependsOn serverJar",
+                    "}",
+                    "",
+                    "tasks.register('checkStopped') {",
+                    "    mustRunAfter tasks.withType(Test)",
+                    "    doLast {",
+                    "        fileTree(layout.buildDirectory.dir('servers')).each { f ->",
+                    "            def pid = f.name as long",
+                    "            // task completion events are delivered asynchronously",
+                    "            try {",
+                    "                ProcessHandle.of(pid).ifPresent { it.onExit().get(30, java.util.concurrent.TimeUnit.SECONDS) }",
+                    "            } catch (java.util.concurrent.TimeoutException e) {",
+                    "                throw new GradleException(\"Server ${pid} is still running\")",
+                    "            }",
+                    "        }",
+                    "    }",
+                    "}",
+                    "",
+                    "nessieQuarkusApp {",
+                    "    javaVersion = " + Runtime.version().feature(),
+                    "    executableJar = serverJar.flatMap { it.archiveFile }",
+                    "    jvmArguments.add(\"-DpidDir=${layout.buildDirectory.dir('servers').get().asFile}\")",
+                    "}",
+                    ""),
+                Stream.of(lines))
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * The server is spawned by the start task and used by the test task. A server spawned for an
+   * up-to-date test task is not used, but must be stopped when the test task completed.
+   */
+  @Test
+  void asyncStart() throws Exception {
+    writeFakeServerBuild(
+        "nessieQuarkusApp {", "    asyncStart = true", "    includeTask(tasks.named('test'))", "}");
+
+    BuildResult result = createGradleRunner("test", "checkStopped").build();
+    assertThat(Stream.of(":nessieQuarkusStart", ":test", ":checkStopped").map(result::task))
+        .extracting(BuildTask::getOutcome)
+        .containsOnly(TaskOutcome.SUCCESS);
+    assertThat(serverPids()).containsExactly(serverProperties("test").getProperty("pid"));
+
+    result = createGradleRunner("test", "checkStopped").build();
+    assertThat(result.task(":test"))
+        .extracting(BuildTask::getOutcome)
+        .isEqualTo(TaskOutcome.UP_TO_DATE);
+    assertThat(Stream.of(":nessieQuarkusStart", ":checkStopped").map(result::task))
+        .extracting(BuildTask::getOutcome)
+        .containsOnly(TaskOutcome.SUCCESS);
+    assertThat(serverPids()).hasSize(2);
+  }
+
+  /**
+   * The arguments for the JFR recording, which are specific to the task, must not prevent the test
+   * task from using the server spawned by the start task.
+   */
+  @Test
+  void asyncStartWithProfiling() throws Exception {
+    writeFakeServerBuild(
+        "nessieQuarkusApp {",
+        "    asyncStart = true",
+        "    profiling = true",
+        "    includeTask(tasks.named('test'))",
+        "}");
+
+    BuildResult result = createGradleRunner("test", "checkStopped").build();
+    assertThat(Stream.of(":nessieQuarkusStart", ":test", ":checkStopped").map(result::task))
+        .extracting(BuildTask::getOutcome)
+        .containsOnly(TaskOutcome.SUCCESS);
+    assertThat(serverPids()).containsExactly(serverProperties("test").getProperty("pid"));
+    assertThat(testProjectDir.resolve("build/nessie-runner/recording-nessieQuarkusStart.jfr"))
+        .isNotEmptyFile();
+  }
+
+  /** Each server instance of a task gets its own process and listen URL. */
+  @Test
+  void instances() throws Exception {
+    writeFakeServerBuild(
+        "nessieQuarkusApp {", "    instances = 2", "    includeTask(tasks.named('test'))", "}");
+
+    BuildResult result = createGradleRunner("test", "checkStopped").build();
+    assertThat(Stream.of(":test", ":checkStopped").map(result::task))
+        .extracting(BuildTask::getOutcome)
+        .containsOnly(TaskOutcome.SUCCESS);
+    Properties props = serverProperties("test");
+    assertThat(props.getProperty("nessie.apprunner.instances")).isEqualTo("2");
+    assertThat(props.getProperty("quarkus.http.test-url.0")).isNotNull();
+    assertThat(props.getProperty("quarkus.http.test-url.1"))
+        .isNotNull()
+        .isNotEqualTo(props.getProperty("quarkus.http.test-url.0"));
+    assertThat(serverPids()).hasSize(2).contains(props.getProperty("pid"));
+  }
+
+  private List<String> serverPids() throws Exception {
+    try (Stream<Path> pids = Files.list(testProjectDir.resolve("build/servers"))) {
+      return pids.map(p -> p.getFileName().toString()).collect(Collectors.toList());
+    }
+  }
+
+  private Properties serverProperties(String task) throws Exception {
+    Properties props = new Properties();
+    try (Reader reader =
+        Files.newBufferedReader(testProjectDir.resolve("build/server-" + task + ".properties"))) {
+      props.load(reader);
+    }
+    return props;
+  }
+
+  private GradleRunner createGradleRunner(String... tasks) {
+    List<String> arguments =
+        new ArrayList<>(
+            Arrays.asList("--no-configuration-cache", "--build-cache", "--info", "--stacktrace"));
+    arguments.addAll(Arrays.asList(tasks));
     return GradleRunner.create()
         .withPluginClasspath()
         .withProjectDir(testProjectDir.toFile())
-        .withArguments("--no-configuration-cache", "--build-cache", "--info", "--stacktrace", task)
+        .withArguments(arguments)
         .withDebug(true)
         .forwardOutput();
   }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.quarkus.gradle;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Stands in for the Nessie server in tests that do not need Nessie. Emits the listen URL like
+ * Quarkus and writes its PID to every connection. Records its PID as a file in the directory given
+ * via the system property {@code pidDir}.
+ */
+public class FakeServer {
+  public static void main(String[] args) throws Exception {
+    long pid = ProcessHandle.current().pid();
+    Path pidDir = Paths.get(System.getProperty("pidDir"));
+    Files.createDirectories(pidDir);
+    Files.createFile(pidDir.resolve(Long.toString(pid)));
+
+    try (ServerSocket server = new ServerSocket(0)) {
+      System.out.println("Listening on: http://0.0.0.0:" + server.getLocalPort());
+      System.out.flush();
+      byte[] pidLine = (pid + "\n").getBytes(UTF_8);
+      while (true) {
+        try (Socket socket = server.accept();
+            OutputStream out = socket.getOutputStream()) {
+          out.write(pidLine);
+        }
+      }
+    }
+  }
+}
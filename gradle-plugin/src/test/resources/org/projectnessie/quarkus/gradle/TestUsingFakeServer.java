@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.quarkus.gradle;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This is not a test for the plugin itself, this is a test that is run BY the test for the plugin.
+ * Writes the Quarkus and Nessie system properties and the PID of the server listening on the HTTP
+ * URL to the file given via the system property {@code outputFile}.
+ */
+class TestUsingFakeServer {
+  @Test
+  void useServer() throws Exception {
+    Properties props = new Properties();
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith("quarkus.") || name.startsWith("nessie.")) {
+        props.setProperty(name, System.getProperty(name));
+      }
+    }
+
+    URI uri = URI.create(System.getProperty("quarkus.http.test-url"));
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), uri.getPort());
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8))) {
+      props.setProperty("pid", reader.readLine());
+    }
+
+    try (Writer writer = Files.newBufferedWriter(Paths.get(System.getProperty("outputFile")))) {
+      props.store(writer, null);
+    }
+
+    assertFalse(Boolean.getBoolean("failTest"), "failTest");
+  }
+}
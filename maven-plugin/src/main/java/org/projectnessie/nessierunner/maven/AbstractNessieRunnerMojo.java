@@ -15,11 +15,19 @@
  */
 package org.projectnessie.nessierunner.maven;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ProcessTimings;
+import org.projectnessie.nessierunner.common.ResourceUsage;
 
 /*
  * Base class to share configuration between mojo.
@@ -43,6 +51,28 @@ abstract class AbstractNessieRunnerMojo extends AbstractMojo {
   @Parameter(property = "nessie.apprunner.executionId", required = false, defaultValue = "default")
   private String executionId;
 
+  /**
+   * Whether modules of the reactor build with the same execution id and the same effective
+   * configuration share one application. The shared application is started by the first module and
+   * stopped after the last {@code stop} execution in the reactor. Safe to use with parallel builds.
+   * The shared application runs in the {@code sharedWorkingDirectory} instead of the module's
+   * {@code workingDirectory}. Note that state persisted by one module is visible to the other
+   * modules.
+   */
+  @Parameter(property = "nessie.apprunner.shareServer", defaultValue = "false")
+  private boolean shareServer;
+
+  /** The current mojo execution. */
+  @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+  private MojoExecution mojoExecution;
+
+  /**
+   * Directory for the JSON reports with the startup and shutdown phase timings, one file per
+   * execution id named {@code timings-<execution id>.json}.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/nessie-runner")
+  private String reportDirectory;
+
   public boolean isSkipped() {
     return skip;
   }
@@ -59,6 +89,25 @@ abstract class AbstractNessieRunnerMojo extends AbstractMojo {
     return session;
   }
 
+  public boolean isShareServer() {
+    return shareServer;
+  }
+
+  public MojoExecution getMojoExecution() {
+    return mojoExecution;
+  }
+
+  SharedApplications getSharedApplications() {
+    return SharedApplications.forSession(
+        session,
+        mojoExecution.getMojoDescriptor().getPluginDescriptor().getPluginLookupKey(),
+        getLog());
+  }
+
+  public Path getReportDirectory() {
+    return Paths.get(reportDirectory);
+  }
+
   private String getContextKey() {
     final String key = CONTEXT_KEY + '.' + getExecutionId();
     return key;
@@ -74,6 +123,30 @@ abstract class AbstractNessieRunnerMojo extends AbstractMojo {
     project.setContextValue(key, null);
   }
 
+  /** Writes the timings report for the application, failures are logged as warnings. */
+  protected void writeTimingsReport(ProcessHandler application) {
+    if (!application.getTimings().isRecorded(ProcessTimings.Phase.SPAWNED)) {
+      return;
+    }
+    Path reportFile = getReportDirectory().resolve("timings-" + getExecutionId() + ".json");
+    Map<String, String> attributes = new LinkedHashMap<>();
+    attributes.put("executionId", getExecutionId());
+    attributes.put("project", project.getGroupId() + ":" + project.getArtifactId());
+    attributes.putAll(application.getDetectedValues());
+    ResourceUsage usage = application.getResourceUsage();
+    if (usage != null) {
+      attributes.putAll(usage.toAttributes());
+    }
+    if (!application.isAlive()) {
+      attributes.put("exitCode", Integer.toString(application.getExitCode()));
+    }
+    try {
+      application.getTimings().writeReport(reportFile, attributes);
+    } catch (IOException e) {
+      getLog().warn(String.format("Failed to write the timings report %s", reportFile), e);
+    }
+  }
+
   protected void setApplicationHandle(ProcessHandler application) {
     final String key = getContextKey();
     final Object previous = project.getContextValue(key);
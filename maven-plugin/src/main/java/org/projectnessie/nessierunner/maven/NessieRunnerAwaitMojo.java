@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.maven;
+
+import java.util.List;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.projectnessie.nessierunner.common.ProcessHandler;
+
+/**
+ * Waits for the listen URLs of the Quarkus application started by the {@code start-async} goal with
+ * the same {@code executionId}, and sets the project properties like the {@code start} goal.
+ */
+@Mojo(
+    name = "await",
+    requiresDependencyResolution = ResolutionScope.NONE,
+    threadSafe = true,
+    defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
+public class NessieRunnerAwaitMojo extends NessieRunnerStartMojo {
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (isSkipped()) {
+      getLog().debug("Execution is skipped");
+      return;
+    }
+
+    ProcessHandler processHandler = getApplication();
+    PreparedApplication application = takePreparedApplication();
+    if (processHandler == null || application == null) {
+      throw new MojoExecutionException(
+          String.format(
+              "No application started by the start-async goal found for execution id '%s'.",
+              getExecutionId()));
+    }
+
+    try {
+      List<String> listenUrls = awaitApplication(processHandler, application);
+      setProjectProperties(processHandler, listenUrls);
+    } finally {
+      writeTimingsReport(processHandler);
+    }
+  }
+}
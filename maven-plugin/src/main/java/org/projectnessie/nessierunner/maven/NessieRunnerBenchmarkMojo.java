@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.maven;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ProcessTimings;
+import org.projectnessie.nessierunner.common.StartStopBenchmark;
+
+/**
+ * Starts and stops the Quarkus application repeatedly, using the configuration of the {@code start}
+ * goal, and reports the p50/p90/p99/max latencies to the listen URL, to readiness and to stop the
+ * application. The results are written as JSON to {@code benchmark-<execution id>.json} in the
+ * report directory.
+ */
+@Mojo(name = "benchmark", requiresDependencyResolution = ResolutionScope.NONE, threadSafe = true)
+public class NessieRunnerBenchmarkMojo extends NessieRunnerStartMojo {
+
+  /** Number of measured start/stop iterations. */
+  @Parameter(property = "nessie.apprunner.benchmark.iterations", defaultValue = "10")
+  private int iterations;
+
+  /** Number of start/stop iterations before the measured ones, not included in the results. */
+  @Parameter(property = "nessie.apprunner.benchmark.warmupIterations", defaultValue = "1")
+  private int warmupIterations;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (isSkipped()) {
+      getLog().debug("Execution is skipped");
+      return;
+    }
+
+    AtomicReference<ProcessHandler> last = new AtomicReference<>();
+    StartStopBenchmark benchmark;
+    try {
+      benchmark =
+          StartStopBenchmark.run(
+              warmupIterations,
+              iterations,
+              () -> {
+                ProcessHandler processHandler = new ProcessHandler().commandBuildStarted();
+                last.set(processHandler);
+                try {
+                  startApplication(processHandler, false);
+                } catch (MojoExecutionException e) {
+                  if (processHandler.getTimings().isRecorded(ProcessTimings.Phase.SPAWNED)) {
+                    processHandler.stop();
+                  }
+                  throw e;
+                }
+                return processHandler;
+              },
+              msg -> getLog().info(msg));
+    } catch (MojoExecutionException e) {
+      throw e;
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(e.getMessage(), e);
+    } catch (Exception e) {
+      throw new MojoExecutionException("Start/stop benchmark failed", e);
+    }
+
+    getLog()
+        .info(
+            String.format(
+                "Start/stop benchmark results for execution id '%s', %d iterations:",
+                getExecutionId(), benchmark.getIterations()));
+    benchmark.summary().forEach(line -> getLog().info("  " + line));
+
+    Map<String, String> attributes = new LinkedHashMap<>();
+    attributes.put("executionId", getExecutionId());
+    attributes.put("project", getProject().getGroupId() + ":" + getProject().getArtifactId());
+    attributes.put("warmupIterations", Integer.toString(warmupIterations));
+    attributes.put("javaVersion", Integer.toString(getJavaVersion()));
+    attributes.put("jvmArguments", String.join(" ", getJvmArguments()));
+    attributes.putAll(last.get().getDetectedValues());
+    Path reportFile = getReportDirectory().resolve("benchmark-" + getExecutionId() + ".json");
+    try {
+      benchmark.writeReport(reportFile, attributes);
+    } catch (IOException e) {
+      throw new MojoExecutionException(
+          String.format("Failed to write the benchmark report %s", reportFile), e);
+    }
+    getLog().info(String.format("Benchmark report written to %s", reportFile));
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.projectnessie.nessierunner.common.ProcessHandler;
+
+/**
+ * Starts the Quarkus application like the {@code start} goal, but does not wait for the listen
+ * URLs, so that the application starts while the build continues, for example while compiling the
+ * tests. The {@code await} goal, using the same {@code executionId}, waits for the listen URLs and
+ * sets the project properties. Cannot be combined with {@code shareServer}.
+ */
+@Mojo(
+    name = "start-async",
+    requiresDependencyResolution = ResolutionScope.NONE,
+    threadSafe = true,
+    defaultPhase = LifecyclePhase.PROCESS_TEST_RESOURCES)
+public class NessieRunnerStartAsyncMojo extends NessieRunnerStartMojo {
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (isSkipped()) {
+      getLog().debug("Execution is skipped");
+      return;
+    }
+    if (isShareServer()) {
+      throw new MojoExecutionException(
+          "The start-async goal does not support shareServer, use the start goal instead");
+    }
+
+    ProcessHandler processHandler = new ProcessHandler().commandBuildStarted();
+    PreparedApplication application = prepareApplication(processHandler);
+    try {
+      spawnApplication(processHandler, application, true);
+    } catch (MojoExecutionException e) {
+      writeTimingsReport(processHandler);
+      throw e;
+    }
+    setPreparedApplication(application);
+  }
+}
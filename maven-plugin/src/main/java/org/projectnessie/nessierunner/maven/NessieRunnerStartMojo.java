@@ -22,7 +22,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.stream.Collectors;
@@ -42,13 +44,27 @@ import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
+import org.projectnessie.nessierunner.common.ClassDataSharing;
+import org.projectnessie.nessierunner.common.DataDirectoryTemplate;
+import org.projectnessie.nessierunner.common.FlightRecording;
 import org.projectnessie.nessierunner.common.JavaVM;
+import org.projectnessie.nessierunner.common.LaunchKey;
+import org.projectnessie.nessierunner.common.LaunchProfile;
+import org.projectnessie.nessierunner.common.LineSink;
+import org.projectnessie.nessierunner.common.OutputOverflowPolicy;
 import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ProcessTimings;
+import org.projectnessie.nessierunner.common.ReadinessDetector;
+import org.projectnessie.nessierunner.common.ReadinessDetectors;
+import org.projectnessie.nessierunner.common.ResourceBudget;
+import org.projectnessie.nessierunner.common.ResourceLimits;
+import org.projectnessie.nessierunner.common.StartupDiagnostics;
 
 /** Starting Quarkus application. */
 @Mojo(name = "start", requiresDependencyResolution = ResolutionScope.NONE, threadSafe = true)
 @SuppressWarnings("InvalidBlockTag")
 public class NessieRunnerStartMojo extends AbstractNessieRunnerMojo {
+  private static final String PREPARED_CONTEXT_KEY = "nessie.quarkus.app.prepared";
 
   /** The entry point to Aether, i.e. the component doing all the work. */
   @Component private RepositorySystem repoSystem;
@@ -125,10 +141,179 @@ public class NessieRunnerStartMojo extends AbstractNessieRunnerMojo {
   @Parameter(defaultValue = "${build.directory}/nessie-quarkus")
   private String workingDirectory;
 
+  /**
+   * Working directory of the application, if {@code shareServer} is enabled, used instead of the
+   * {@link #workingDirectory}. Must be the same for all modules of the reactor, otherwise they do
+   * not share the application.
+   */
+  @Parameter(defaultValue = "${session.topLevelProject.build.directory}/nessie-quarkus-shared")
+  private String sharedWorkingDirectory;
+
   @Parameter private long timeToListenUrlMillis;
 
   @Parameter private long timeToStopMillis;
 
+  /**
+   * Maximum number of output lines of the process queued for asynchronous forwarding to the Maven
+   * log in batches, {@code 0} forwards the output synchronously, which is the default.
+   */
+  @Parameter(defaultValue = "0")
+  private int outputQueueSize;
+
+  /**
+   * What to do, when the output queue is full, because the Maven log cannot keep up: {@code BLOCK}
+   * waits (and lets the process block), {@code DROP} drops lines, {@code SUMMARIZE} drops lines but
+   * logs the number of dropped lines.
+   */
+  @Parameter(defaultValue = "BLOCK")
+  private OutputOverflowPolicy outputOverflowPolicy;
+
+  /**
+   * Regular expressions for output lines that indicate that the process failed to start. If a line
+   * matches before the listen URL has been emitted, the process is stopped immediately instead of
+   * waiting for {@link #timeToListenUrlMillis}. Defaults to {@link
+   * ProcessHandler#DEFAULT_FAILURE_PATTERNS}, an empty list disables the check.
+   */
+  @Parameter private List<String> failurePatterns;
+
+  /**
+   * Whether to wait until the application's readiness endpoint, see {@link #readinessPath}, reports
+   * readiness via HTTP status 200, after the listen URL has been emitted. The readiness endpoint is
+   * polled on the management URL, if present, or the HTTP URL. Must succeed within {@link
+   * #timeToListenUrlMillis}.
+   */
+  @Parameter(defaultValue = "false")
+  private boolean readinessProbe;
+
+  /** Path of the readiness endpoint, see {@link #readinessProbe}. */
+  @Parameter(defaultValue = ProcessHandler.DEFAULT_READINESS_PATH)
+  private String readinessPath;
+
+  /**
+   * Detectors for the listen URL and other values, relative paths are resolved against {@link
+   * #workingDirectory}. Supported: {@code quarkus} (plain text console log), {@code quarkus-json}
+   * (JSON console log), {@code port-file:<path>} (file containing the port or properties), {@code
+   * regex:<regex>} (named groups are the detected values, requires a group named {@code httpUrl} or
+   * {@code httpPort}). Defaults to {@code quarkus-json} and {@code quarkus}.
+   */
+  @Parameter private List<String> readinessDetectors;
+
+  /**
+   * Maps names of values detected by the {@link #readinessDetectors}, for example {@code version},
+   * to project properties, that receive the detected values.
+   */
+  @Parameter private Map<String, String> detectedValueProperties;
+
+  /**
+   * Whether to use class data sharing to reduce the startup time. The first run creates a dynamic
+   * CDS archive, or an AOT cache for Java 25 and newer, in the {@link #workingDirectory}, later
+   * runs use it. The archive is re-created, when the executable jar or the Java-VM change. Requires
+   * Java 13 or newer, ignored if the {@link #jvmArguments} already configure class data sharing.
+   */
+  @Parameter(defaultValue = "false")
+  private boolean classDataSharing;
+
+  /**
+   * Named set of JVM options for the application: {@code fast-startup}, {@code throughput} or
+   * {@code low-memory}. Options not supported by the Java-VM are dropped, options also configured
+   * in {@link #jvmArguments} are overridden by those.
+   */
+  @Parameter(property = "nessie.apprunner.launchProfile")
+  private String launchProfile;
+
+  /**
+   * Pre-seeded data directory, for example of a RocksDB version store, that is cloned into {@link
+   * #dataDirectory} before each start, so the application starts with fresh, pre-populated state.
+   * The whole directory is cloned via reflinks, if the file system supports it, otherwise files
+   * matching {@link #dataDirectoryLinkPatterns} are hard-linked and other files are copied.
+   */
+  @Parameter(property = "nessie.apprunner.dataDirectoryTemplate")
+  private String dataDirectoryTemplate;
+
+  /**
+   * Directory the {@link #dataDirectoryTemplate} is cloned into, relative to the {@link
+   * #workingDirectory}. Deleted and re-created for each start.
+   */
+  @Parameter(defaultValue = "data")
+  private String dataDirectory;
+
+  /** System property, that points the application to the cloned {@link #dataDirectory}. */
+  @Parameter(defaultValue = "nessie.version.store.persist.rocks.database-path")
+  private String dataDirectoryProperty;
+
+  /**
+   * Glob patterns for the names of files in the {@link #dataDirectoryTemplate}, that are never
+   * modified in place and can be hard-linked. Defaults to RocksDB's {@code *.sst} and {@code
+   * *.blob} files.
+   */
+  @Parameter private List<String> dataDirectoryLinkPatterns;
+
+  /**
+   * Interval in milliseconds to sample the resident set size, CPU time and thread count of the
+   * application and its descendants from {@code /proc}, Linux only. The summary is logged by the
+   * {@code stop} goal and added to the timings report. {@code 0} disables sampling, unless a
+   * resource limit is configured, which uses an interval of 1000 ms by default.
+   */
+  @Parameter(property = "nessie.apprunner.resourceSamplingIntervalMillis", defaultValue = "0")
+  private long resourceSamplingIntervalMillis;
+
+  /**
+   * Maximum peak resident set size of the application and its descendants in MiB, the {@code stop}
+   * goal fails if it is exceeded. {@code 0} means no limit.
+   */
+  @Parameter(property = "nessie.apprunner.maxRssMegabytes", defaultValue = "0")
+  private long maxRssMegabytes;
+
+  /**
+   * Maximum CPU time of the application and its descendants in milliseconds, the {@code stop} goal
+   * fails if it is exceeded. {@code 0} means no limit.
+   */
+  @Parameter(property = "nessie.apprunner.maxCpuMillis", defaultValue = "0")
+  private long maxCpuMillis;
+
+  /**
+   * Maximum peak number of threads of the application and its descendants, the {@code stop} goal
+   * fails if it is exceeded. {@code 0} means no limit.
+   */
+  @Parameter(property = "nessie.apprunner.maxThreads", defaultValue = "0")
+  private int maxThreads;
+
+  /**
+   * Whether to split the memory and CPUs available to the build, limited by its cgroup, between the
+   * concurrently running applications, via {@code -Xmx} and {@code -XX:ActiveProcessorCount}.
+   * Options configured in {@link #jvmArguments} take precedence.
+   */
+  @Parameter(property = "nessie.apprunner.resourceBudget", defaultValue = "false")
+  private boolean resourceBudget;
+
+  /** Percentage of the available memory shared by the applications of the resource budget. */
+  @Parameter(
+      property = "nessie.apprunner.resourceBudgetMemoryPercentage",
+      defaultValue = "" + ResourceBudget.DEFAULT_MEMORY_PERCENTAGE)
+  private int resourceBudgetMemoryPercentage;
+
+  /**
+   * Number of concurrently running applications to split the resource budget between. {@code 0}
+   * counts the applications started by the plugin in the Maven session, including this one.
+   */
+  @Parameter(property = "nessie.apprunner.resourceBudgetServers", defaultValue = "0")
+  private int resourceBudgetServers;
+
+  /**
+   * Whether to record the application with the JDK Flight Recorder. The recording is written to
+   * {@code recording-<execution id>.jfr} in the {@code reportDirectory}, when the application is
+   * stopped or its startup failed, and summarized in the log: the top CPU methods during startup,
+   * GC pauses and class loading.
+   */
+  @Parameter(property = "nessie.apprunner.profiling", defaultValue = "false")
+  private boolean profiling;
+
+  /** JFR settings for {@link #profiling}, the name of JDK settings or the path to a .jfc file. */
+  @Parameter(
+      property = "nessie.apprunner.profilingSettings",
+      defaultValue = FlightRecording.DEFAULT_SETTINGS)
+  private String profilingSettings;
+
   static String noJavaVMMessage(int version) {
     return String.format(
         "Could not find a Java-VM for Java version %d. "
@@ -145,6 +330,72 @@ public class NessieRunnerStartMojo extends AbstractNessieRunnerMojo {
       return;
     }
 
+    ProcessHandler processHandler = new ProcessHandler().commandBuildStarted();
+    try {
+      PreparedApplication application = prepareApplication(processHandler);
+      List<String> listenUrls;
+      if (isShareServer()) {
+        SharedApplications.SharedApplication shared =
+            getSharedApplications().get(getExecutionId(), application.getLaunchKey());
+        ProcessHandler launching = processHandler;
+        processHandler =
+            shared.start(
+                launching,
+                () -> launchApplication(launching, application, false),
+                getProject().getId(),
+                getLog());
+        setApplicationHandle(processHandler);
+        listenUrls = shared.getListenUrls();
+      } else {
+        listenUrls = launchApplication(processHandler, application, true);
+      }
+
+      setProjectProperties(processHandler, listenUrls);
+    } finally {
+      writeTimingsReport(processHandler);
+    }
+  }
+
+  /** Sets the project properties for the listen URLs and the detected values. */
+  void setProjectProperties(ProcessHandler processHandler, List<String> listenUrls) {
+    Properties projectProperties = getProject().getProperties();
+    projectProperties.setProperty(httpListenUrlProperty, listenUrls.get(0));
+    projectProperties.setProperty(
+        httpListenPortProperty, Integer.toString(URI.create(listenUrls.get(0)).getPort()));
+    if (listenUrls.get(1) != null) {
+      projectProperties.setProperty(managementListenUrlProperty, listenUrls.get(1));
+      projectProperties.setProperty(
+          managementListenPortProperty, Integer.toString(URI.create(listenUrls.get(1)).getPort()));
+    }
+    if (detectedValueProperties != null) {
+      Map<String, String> detectedValues = processHandler.getDetectedValues();
+      detectedValueProperties.forEach(
+          (name, property) -> {
+            String value = detectedValues.get(name);
+            if (value != null) {
+              projectProperties.setProperty(property, value);
+            } else {
+              getLog().warn(String.format("No value '%s' has been detected", name));
+            }
+          });
+    }
+  }
+
+  /**
+   * Builds the command, starts the process using the given handler and waits for the listen URLs.
+   *
+   * @param processHandler handler to start the process with
+   * @param registerHandle whether to register the handler for the {@code stop} goal
+   * @return the listen URLs
+   */
+  protected List<String> startApplication(ProcessHandler processHandler, boolean registerHandle)
+      throws MojoExecutionException {
+    return launchApplication(processHandler, prepareApplication(processHandler), registerHandle);
+  }
+
+  /** Builds the command and configures the given handler, but does not start the process. */
+  PreparedApplication prepareApplication(ProcessHandler processHandler)
+      throws MojoExecutionException {
     getLog().debug(String.format("Searching for Java %d ...", javaVersion));
     String javaExecutable =
         toolchainManager
@@ -172,13 +423,13 @@ public class NessieRunnerStartMojo extends AbstractNessieRunnerMojo {
     }
     getLog().debug(String.format("Using javaExecutable %s", javaExecutable));
 
-    Path workDir = Paths.get(workingDirectory);
+    Path workDir = Paths.get(isShareServer() ? sharedWorkingDirectory : workingDirectory);
     if (!Files.isDirectory(workDir)) {
       try {
         Files.createDirectories(workDir);
       } catch (IOException e) {
         throw new MojoExecutionException(
-            String.format("Failed to create working directory %s", workingDirectory), e);
+            String.format("Failed to create working directory %s", workDir), e);
       }
     }
 
@@ -238,11 +489,111 @@ public class NessieRunnerStartMojo extends AbstractNessieRunnerMojo {
           "The options appArtifactId and executableJar are mutually exclusive");
     }
 
+    List<ReadinessDetector> detectors = null;
+    if (readinessDetectors != null && !readinessDetectors.isEmpty()) {
+      try {
+        detectors =
+            readinessDetectors.stream()
+                .map(spec -> ReadinessDetectors.parse(spec, workDir))
+                .collect(Collectors.toList());
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException(e.getMessage(), e);
+      }
+    }
+
+    LaunchProfile profile = null;
+    if (launchProfile != null && !launchProfile.trim().isEmpty()) {
+      try {
+        profile = LaunchProfile.forName(launchProfile);
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException(e.getMessage(), e);
+      }
+    }
+
+    JavaVM javaVM = JavaVM.forJavaHome(Paths.get(javaExecutable).getParent().getParent());
+
+    ClassDataSharing cds = null;
+    if (classDataSharing) {
+      if (jvmArguments != null && ClassDataSharing.isConfiguredByUser(jvmArguments)) {
+        getLog().info("Class data sharing is configured via jvmArguments");
+      } else {
+        try {
+          cds = ClassDataSharing.forApplication(workDir, Paths.get(execJar), javaVM);
+        } catch (IOException e) {
+          throw new MojoExecutionException("Failed to set up class data sharing", e);
+        }
+        if (!cds.isSupported()) {
+          getLog()
+              .warn(
+                  String.format(
+                      "Class data sharing is not supported by the Java-VM in %s",
+                      javaVM.getJavaHome()));
+        }
+      }
+    }
+
     List<String> command = new ArrayList<>();
     command.add(javaExecutable);
+    if (cds != null) {
+      command.addAll(cds.jvmArguments());
+    }
+    if (profile != null) {
+      int majorVersion = javaVM.getMajorVersion();
+      List<String> profileArguments =
+          profile.jvmArguments(majorVersion > 0 ? majorVersion : javaVersion, getJvmArguments());
+      getLog()
+          .info(
+              String.format(
+                  "Using launch profile %s: %s",
+                  profile.profileName(), String.join(" ", profileArguments)));
+      command.addAll(profileArguments);
+    }
+    List<String> budgetArguments = Collections.emptyList();
+    if (resourceBudget) {
+      ResourceBudget budget = ResourceBudget.detect();
+      int servers =
+          resourceBudgetServers > 0
+              ? resourceBudgetServers
+              : RunningApplications.forSession(getSession(), getLog()).count() + 1;
+      budgetArguments =
+          budget.jvmArguments(servers, resourceBudgetMemoryPercentage, getJvmArguments());
+      getLog()
+          .info(
+              String.format(
+                  "Resource budget %s for %d server(s): %s",
+                  budget, servers, String.join(" ", budgetArguments)));
+    }
+    int budgetIndex = command.size();
+    command.addAll(budgetArguments);
+    FlightRecording recording = null;
+    if (profiling) {
+      recording =
+          FlightRecording.of(
+              getReportDirectory().resolve("recording-" + getExecutionId() + ".jfr"),
+              profilingSettings);
+      int majorVersion = javaVM.getMajorVersion();
+      command.addAll(recording.jvmArguments(majorVersion > 0 ? majorVersion : javaVersion));
+    }
+    int notKeyedEnd = command.size();
     if (jvmArguments != null) {
       command.addAll(jvmArguments);
     }
+    DataDirectoryTemplate dataTemplate = null;
+    Path dataDir = null;
+    if (dataDirectoryTemplate != null && !dataDirectoryTemplate.trim().isEmpty()) {
+      try {
+        dataTemplate =
+            DataDirectoryTemplate.of(
+                Paths.get(dataDirectoryTemplate),
+                dataDirectoryLinkPatterns != null
+                    ? dataDirectoryLinkPatterns
+                    : DataDirectoryTemplate.DEFAULT_LINK_PATTERNS);
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException(e.getMessage(), e);
+      }
+      dataDir = workDir.resolve(dataDirectory).toAbsolutePath();
+      command.add(String.format("-D%s=%s", dataDirectoryProperty, dataDir));
+    }
     if (systemProperties != null) {
       systemProperties.forEach(
           (k, v) -> command.add(String.format("-D%s=%s", k.toString(), v.toString())));
@@ -255,54 +606,227 @@ public class NessieRunnerStartMojo extends AbstractNessieRunnerMojo {
       command.addAll(arguments);
     }
 
+    ProcessBuilder processBuilder = new ProcessBuilder().command(command);
+    if (environment != null) {
+      environment.forEach((k, v) -> processBuilder.environment().put(k.toString(), v.toString()));
+    }
+    processBuilder.directory(workDir.toFile());
+
+    if (timeToListenUrlMillis > 0L) {
+      processHandler.setTimeToListenUrlMillis(timeToListenUrlMillis);
+    }
+    if (timeToStopMillis > 0L) {
+      processHandler.setTimeStopMillis(timeToStopMillis);
+    }
+    processHandler.setStdoutSink(LineSink.joining("[output] ", getLog()::info));
+    processHandler.setAsyncOutput(outputQueueSize, outputOverflowPolicy);
+    if (failurePatterns != null) {
+      processHandler.setFailurePatterns(failurePatterns);
+    }
+    if (detectors != null) {
+      processHandler.setReadinessDetectors(detectors);
+    }
+    if (readinessProbe) {
+      processHandler.setReadinessPath(readinessPath);
+    }
+    processHandler.setDebugTarget(msg -> getLog().debug(msg));
+    processHandler.setFlightRecording(recording);
+    processHandler.setStartupDiagnostics(StartupDiagnostics.of(javaVM, workDir));
+    ResourceLimits resourceLimits = ResourceLimits.of(maxRssMegabytes, maxCpuMillis, maxThreads);
+    processHandler.setResourceSampling(
+        resourceSamplingIntervalMillis > 0L || !resourceLimits.isLimited()
+            ? resourceSamplingIntervalMillis
+            : ProcessHandler.DEFAULT_RESOURCE_SAMPLING_INTERVAL_MILLIS,
+        resourceLimits);
+
+    Map<String, String> env = new HashMap<>();
+    if (environment != null) {
+      environment.forEach((k, v) -> env.put(k.toString(), v.toString()));
+    }
+    List<String> keyCommand = new ArrayList<>(command);
+    // The resource budget depends on the number of running servers and the recording file name on
+    // the execution, not on the server itself
+    keyCommand.subList(budgetIndex, notKeyedEnd).clear();
+    if (dataTemplate != null) {
+      // Servers cloned from different templates are not interchangeable
+      keyCommand.add("dataDirectoryTemplate=" + dataTemplate.getTemplate());
+    }
+    String launchKey =
+        LaunchKey.of(
+            keyCommand,
+            env,
+            workDir.toString(),
+            readinessDetectors != null ? readinessDetectors : Collections.emptyList(),
+            readinessProbe ? readinessPath : null,
+            failurePatterns != null ? failurePatterns : ProcessHandler.DEFAULT_FAILURE_PATTERNS);
+
+    return new PreparedApplication(command, processBuilder, cds, launchKey, dataTemplate, dataDir);
+  }
+
+  /**
+   * Starts the process of a prepared application and waits for the listen URLs.
+   *
+   * @param processHandler handler to start the process with, as passed to {@link
+   *     #prepareApplication(ProcessHandler)}
+   * @param application the prepared application
+   * @param registerHandle whether to register the handler for the {@code stop} goal
+   * @return the listen URLs
+   */
+  List<String> launchApplication(
+      ProcessHandler processHandler, PreparedApplication application, boolean registerHandle)
+      throws MojoExecutionException {
+    spawnApplication(processHandler, application, registerHandle);
+    return awaitApplication(processHandler, application);
+  }
+
+  /** Starts the process of a prepared application, but does not wait for the listen URLs. */
+  void spawnApplication(
+      ProcessHandler processHandler, PreparedApplication application, boolean registerHandle)
+      throws MojoExecutionException {
     getLog()
         .info(
             String.format(
                 "Starting process: %s, additional env: %s",
-                String.join(" ", command),
+                String.join(" ", application.command),
                 environment != null
                     ? environment.entrySet().stream()
                         .map(e -> String.format("%s=%s", e.getKey(), e.getValue()))
                         .collect(Collectors.joining(", "))
                     : "<none>"));
 
-    ProcessBuilder processBuilder = new ProcessBuilder().command(command);
-    if (environment != null) {
-      environment.forEach((k, v) -> processBuilder.environment().put(k.toString(), v.toString()));
+    if (application.dataTemplate != null) {
+      try {
+        DataDirectoryTemplate.Result result =
+            application.dataTemplate.cloneTo(application.dataDirectory);
+        getLog()
+            .info(
+                String.format(
+                    "Cloned data directory template %s to %s %s",
+                    application.dataTemplate.getTemplate(), application.dataDirectory, result));
+      } catch (IOException | IllegalArgumentException e) {
+        throw new MojoExecutionException(
+            String.format(
+                "Failed to clone the data directory template %s to %s",
+                application.dataTemplate.getTemplate(), application.dataDirectory),
+            e);
+      }
     }
-    processBuilder.directory(workDir.toFile());
 
-    try {
-      ProcessHandler processHandler = new ProcessHandler();
-      if (timeToListenUrlMillis > 0L) {
-        processHandler.setTimeToListenUrlMillis(timeToListenUrlMillis);
-      }
-      if (timeToStopMillis > 0L) {
-        processHandler.setTimeStopMillis(timeToStopMillis);
+    FlightRecording recording = processHandler.getFlightRecording();
+    if (recording != null) {
+      try {
+        recording.prepare();
+      } catch (IOException e) {
+        throw new MojoExecutionException(
+            String.format("Failed to prepare the JFR recording %s", recording.getFile()), e);
       }
-      processHandler.setStdoutTarget(line -> getLog().info(String.format("[output] %s", line)));
-      processHandler.start(processBuilder);
+    }
+
+    try {
+      processHandler.start(application.processBuilder);
+    } catch (IOException e) {
+      throw new MojoExecutionException(
+          String.format("Failed to start the process %s", application.command), e);
+    }
+    RunningApplications.forSession(getSession(), getLog()).add(processHandler);
 
+    if (registerHandle) {
       setApplicationHandle(processHandler);
+    }
+  }
 
+  /** Waits for the listen URLs of a spawned application. */
+  List<String> awaitApplication(ProcessHandler processHandler, PreparedApplication application)
+      throws MojoExecutionException {
+    List<String> command = application.command;
+    ClassDataSharing cds = application.cds;
+    try {
       List<String> listenUrls = processHandler.getListenUrls();
-
-      Properties projectProperties = getProject().getProperties();
-      projectProperties.setProperty(httpListenUrlProperty, listenUrls.get(0));
-      projectProperties.setProperty(
-          httpListenPortProperty, Integer.toString(URI.create(listenUrls.get(0)).getPort()));
-      if (listenUrls.get(1) != null) {
-        projectProperties.setProperty(managementListenUrlProperty, listenUrls.get(1));
-        projectProperties.setProperty(
-            managementListenPortProperty,
-            Integer.toString(URI.create(listenUrls.get(1)).getPort()));
+      if (cds != null) {
+        long startupMillis =
+            processHandler
+                .getTimings()
+                .between(ProcessTimings.Phase.SPAWN, ProcessTimings.Phase.LISTEN_URL)
+                .toMillis();
+        try {
+          getLog().info(cds.recordStartup(startupMillis));
+        } catch (IOException e) {
+          getLog().warn("Failed to record the startup time", e);
+        }
       }
 
+      return listenUrls;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new MojoExecutionException(String.format("Process-start interrupted: %s", command), e);
     } catch (Exception e) {
+      logFlightRecording(processHandler);
       throw new MojoExecutionException(String.format("Failed to start the process %s", command), e);
     }
   }
+
+  /** Logs the summary of the JFR recording of a process that failed to start. */
+  private void logFlightRecording(ProcessHandler processHandler) {
+    if (processHandler.getFlightRecording() == null) {
+      return;
+    }
+    try {
+      // Wait for the process to exit, which writes the recording
+      processHandler.stop();
+    } catch (RuntimeException e) {
+      getLog().debug("Failed to stop the process", e);
+    }
+    getLog().info(processHandler.getFlightRecording().report(processHandler.getTimings()));
+  }
+
+  /** Remembers the prepared application for the {@code await} goal. */
+  void setPreparedApplication(PreparedApplication application) {
+    getProject().setContextValue(PREPARED_CONTEXT_KEY + '.' + getExecutionId(), application);
+  }
+
+  /** Retrieves and forgets the application prepared by the {@code start-async} goal. */
+  PreparedApplication takePreparedApplication() {
+    String key = PREPARED_CONTEXT_KEY + '.' + getExecutionId();
+    PreparedApplication application = (PreparedApplication) getProject().getContextValue(key);
+    getProject().setContextValue(key, null);
+    return application;
+  }
+
+  /** The command and configuration of an application, that has not been started yet. */
+  static final class PreparedApplication {
+    private final List<String> command;
+    private final ProcessBuilder processBuilder;
+    private final ClassDataSharing cds;
+    private final String launchKey;
+    private final DataDirectoryTemplate dataTemplate;
+    private final Path dataDirectory;
+
+    PreparedApplication(
+        List<String> command,
+        ProcessBuilder processBuilder,
+        ClassDataSharing cds,
+        String launchKey,
+        DataDirectoryTemplate dataTemplate,
+        Path dataDirectory) {
+      this.command = command;
+      this.processBuilder = processBuilder;
+      this.cds = cds;
+      this.launchKey = launchKey;
+      this.dataTemplate = dataTemplate;
+      this.dataDirectory = dataDirectory;
+    }
+
+    /** Key of the effective launch configuration, see {@link LaunchKey}. */
+    String getLaunchKey() {
+      return launchKey;
+    }
+  }
+
+  protected int getJavaVersion() {
+    return javaVersion;
+  }
+
+  protected List<String> getJvmArguments() {
+    return jvmArguments != null ? jvmArguments : Collections.emptyList();
+  }
 }
@@ -15,10 +15,13 @@
  */
 package org.projectnessie.nessierunner.maven;
 
+import java.util.List;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.projectnessie.nessierunner.common.FlightRecording;
 import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ResourceUsage;
 
 /** Stop Quarkus application. */
 @Mojo(name = "stop", requiresDependencyResolution = ResolutionScope.NONE, threadSafe = true)
@@ -31,6 +34,20 @@ public class NessieRunnerStopMojo extends AbstractNessieRunnerMojo {
       return;
     }
 
+    if (isShareServer()) {
+      // Shared applications are stopped after the last stop execution of the reactor, or when the
+      // session ends, if a stop execution is skipped
+      resetApplication();
+      List<String> violations =
+          getSharedApplications()
+              .stopExecuted(
+                  SharedApplications.stopExecutionKey(
+                      getProject(), getMojoExecution().getExecutionId()),
+                  getLog());
+      failOnResourceLimitViolations(violations);
+      return;
+    }
+
     ProcessHandler application = getApplication();
     if (application == null) {
       getLog().warn(String.format("No application found for execution id '%s'.", getExecutionId()));
@@ -40,10 +57,30 @@ public class NessieRunnerStopMojo extends AbstractNessieRunnerMojo {
     try {
       application.stop();
       getLog().info("Quarkus application stopped.");
+      ResourceUsage usage = application.getResourceUsage();
+      if (usage != null) {
+        getLog().info(String.format("Resource usage: %s", usage));
+      }
+      FlightRecording recording = application.getFlightRecording();
+      if (recording != null) {
+        getLog().info(recording.report(application.getTimings()));
+      }
     } catch (Exception e) {
       throw new MojoExecutionException("Error while stopping Quarkus application", e);
     } finally {
+      writeTimingsReport(application);
       resetApplication();
     }
+    failOnResourceLimitViolations(application.getResourceLimitViolations());
+  }
+
+  private static void failOnResourceLimitViolations(List<String> violations)
+      throws MojoExecutionException {
+    if (!violations.isEmpty()) {
+      throw new MojoExecutionException(
+          String.format(
+              "Quarkus application exceeded its resource limits: %s",
+              String.join(", ", violations)));
+    }
   }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.maven;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.SessionData;
+import org.projectnessie.nessierunner.common.ProcessHandler;
+
+/**
+ * Processes started by the plugin in a Maven session, counted for the {@code resourceBudget}. Held
+ * in the session data like {@link SharedApplications}, so concurrently built modules ({@code mvn
+ * -T}) see each other's processes. Processes that are no longer alive are not counted, so nothing
+ * has to be removed when an application is stopped.
+ *
+ * <p>Processes that are still alive when the Maven session ends, for example because the {@code
+ * stop} goal did not run due to a build failure, are stopped then.
+ */
+final class RunningApplications {
+
+  private final Set<ProcessHandler> processes = ConcurrentHashMap.newKeySet();
+
+  private RunningApplications() {}
+
+  static RunningApplications forSession(MavenSession session, Log log) {
+    SessionData data = session.getRepositorySession().getData();
+    // The class is used as the key, it is unique per plugin class loader
+    Object key = RunningApplications.class;
+    while (true) {
+      Object existing = data.get(key);
+      if (existing != null) {
+        return (RunningApplications) existing;
+      }
+      RunningApplications created = new RunningApplications();
+      if (data.set(key, null, created)) {
+        SessionEndListener.register(session, () -> created.sessionEnded(log));
+        return created;
+      }
+    }
+  }
+
+  void add(ProcessHandler processHandler) {
+    processes.add(processHandler);
+  }
+
+  /** Returns the number of running processes. */
+  int count() {
+    processes.removeIf(p -> !p.isAlive());
+    return processes.size();
+  }
+
+  private void sessionEnded(Log log) {
+    for (ProcessHandler process : processes) {
+      if (process.isAlive()) {
+        log.info("Stopping Quarkus application, that is still running at the end of the session.");
+        try {
+          process.stop();
+        } catch (RuntimeException e) {
+          log.warn("Failed to stop the Quarkus application", e);
+        }
+      }
+    }
+    processes.clear();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.maven;
+
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Runs an action when the Maven session ended, also if the build failed. Installed as the execution
+ * listener of the session's request and delegates all events to the previously installed listener,
+ * because lifecycle participants are only available to plugins declared as {@code extensions}.
+ * Unlike a JVM shutdown hook, this also works with the Maven daemon ({@code mvnd}), which keeps the
+ * JVM running after a build.
+ */
+final class SessionEndListener implements ExecutionListener {
+
+  private final ExecutionListener delegate;
+  private final Runnable action;
+
+  private SessionEndListener(ExecutionListener delegate, Runnable action) {
+    this.delegate = delegate != null ? delegate : new AbstractExecutionListener();
+    this.action = action;
+  }
+
+  static void register(MavenSession session, Runnable action) {
+    MavenExecutionRequest request = session.getRequest();
+    synchronized (request) {
+      request.setExecutionListener(new SessionEndListener(request.getExecutionListener(), action));
+    }
+  }
+
+  @Override
+  public void sessionEnded(ExecutionEvent event) {
+    try {
+      delegate.sessionEnded(event);
+    } finally {
+      action.run();
+    }
+  }
+
+  @Override
+  public void projectDiscoveryStarted(ExecutionEvent event) {
+    delegate.projectDiscoveryStarted(event);
+  }
+
+  @Override
+  public void sessionStarted(ExecutionEvent event) {
+    delegate.sessionStarted(event);
+  }
+
+  @Override
+  public void projectSkipped(ExecutionEvent event) {
+    delegate.projectSkipped(event);
+  }
+
+  @Override
+  public void projectStarted(ExecutionEvent event) {
+    delegate.projectStarted(event);
+  }
+
+  @Override
+  public void projectSucceeded(ExecutionEvent event) {
+    delegate.projectSucceeded(event);
+  }
+
+  @Override
+  public void projectFailed(ExecutionEvent event) {
+    delegate.projectFailed(event);
+  }
+
+  @Override
+  public void mojoSkipped(ExecutionEvent event) {
+    delegate.mojoSkipped(event);
+  }
+
+  @Override
+  public void mojoStarted(ExecutionEvent event) {
+    delegate.mojoStarted(event);
+  }
+
+  @Override
+  public void mojoSucceeded(ExecutionEvent event) {
+    delegate.mojoSucceeded(event);
+  }
+
+  @Override
+  public void mojoFailed(ExecutionEvent event) {
+    delegate.mojoFailed(event);
+  }
+
+  @Override
+  public void forkStarted(ExecutionEvent event) {
+    delegate.forkStarted(event);
+  }
+
+  @Override
+  public void forkSucceeded(ExecutionEvent event) {
+    delegate.forkSucceeded(event);
+  }
+
+  @Override
+  public void forkFailed(ExecutionEvent event) {
+    delegate.forkFailed(event);
+  }
+
+  @Override
+  public void forkedProjectStarted(ExecutionEvent event) {
+    delegate.forkedProjectStarted(event);
+  }
+
+  @Override
+  public void forkedProjectSucceeded(ExecutionEvent event) {
+    delegate.forkedProjectSucceeded(event);
+  }
+
+  @Override
+  public void forkedProjectFailed(ExecutionEvent event) {
+    delegate.forkedProjectFailed(event);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.nessierunner.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.SessionData;
+import org.projectnessie.nessierunner.common.FlightRecording;
+import org.projectnessie.nessierunner.common.ProcessHandler;
+import org.projectnessie.nessierunner.common.ResourceUsage;
+
+/**
+ * Applications shared by the modules of a reactor build, see {@code shareServer}. Held in the
+ * session data of the Maven session's repository session, so it lives as long as the Maven session
+ * and is safe to use from concurrently built modules ({@code mvn -T}).
+ *
+ * <p>Shared applications are stopped after the last {@code stop} execution of the plugin in the
+ * reactor has been executed. If not all of these executions run, for example because of a build
+ * failure or because only some modules are built, the applications are stopped when the Maven
+ * session ends.
+ */
+final class SharedApplications {
+
+  private final Map<String, SharedApplication> applications = new ConcurrentHashMap<>();
+  private final Set<String> pendingStops;
+
+  private SharedApplications(Set<String> pendingStops) {
+    this.pendingStops = pendingStops;
+  }
+
+  static SharedApplications forSession(MavenSession session, String pluginKey, Log log) {
+    SessionData data = session.getRepositorySession().getData();
+    // The class is used as the key, it is unique per plugin class loader
+    Object key = SharedApplications.class;
+    while (true) {
+      Object existing = data.get(key);
+      if (existing != null) {
+        return (SharedApplications) existing;
+      }
+      SharedApplications created = new SharedApplications(stopExecutions(session, pluginKey));
+      if (data.set(key, null, created)) {
+        SessionEndListener.register(session, () -> created.sessionEnded(log));
+        return created;
+      }
+    }
+  }
+
+  /** Collects the {@code stop} executions of the plugin in all projects of the reactor. */
+  static Set<String> stopExecutions(MavenSession session, String pluginKey) {
+    Set<String> stops = new HashSet<>();
+    for (MavenProject project : session.getProjects()) {
+      Plugin plugin = project.getPlugin(pluginKey);
+      if (plugin != null) {
+        for (PluginExecution execution : plugin.getExecutions()) {
+          if (execution.getGoals().contains("stop")) {
+            stops.add(stopExecutionKey(project, execution.getId()));
+          }
+        }
+      }
+    }
+    return stops;
+  }
+
+  static String stopExecutionKey(MavenProject project, String executionId) {
+    return project.getId() + '/' + executionId;
+  }
+
+  /** Returns the shared application for the given execution id and launch key. */
+  SharedApplication get(String executionId, String launchKey) {
+    return applications.computeIfAbsent(
+        executionId + '/' + launchKey, k -> new SharedApplication());
+  }
+
+  /**
+   * Records that a {@code stop} execution has been executed, stops all shared applications, if it
+   * was the last pending one.
+   *
+   * @return the exceeded resource limits of the stopped applications
+   */
+  List<String> stopExecuted(String stopExecution, Log log) {
+    List<SharedApplication> toStop;
+    synchronized (pendingStops) {
+      pendingStops.remove(stopExecution);
+      if (!pendingStops.isEmpty()) {
+        log.info(
+            String.format(
+                "Keeping shared Quarkus application(s) running for %d pending stop execution(s).",
+                pendingStops.size()));
+        return Collections.emptyList();
+      }
+      toStop = new ArrayList<>(applications.values());
+      applications.clear();
+    }
+    List<String> violations = new ArrayList<>();
+    for (SharedApplication application : toStop) {
+      violations.addAll(application.stop(log));
+    }
+    return violations;
+  }
+
+  /** Stops the shared applications, that are still running when the Maven session ends. */
+  private void sessionEnded(Log log) {
+    List<SharedApplication> toStop;
+    synchronized (pendingStops) {
+      toStop = new ArrayList<>(applications.values());
+      applications.clear();
+    }
+    for (SharedApplication application : toStop) {
+      try {
+        List<String> violations = application.stop(log);
+        if (!violations.isEmpty()) {
+          log.warn(
+              String.format(
+                  "Quarkus application exceeded its resource limits: %s",
+                  String.join(", ", violations)));
+        }
+      } catch (RuntimeException e) {
+        log.warn("Failed to stop the shared Quarkus application", e);
+      }
+    }
+  }
+
+  /** Starts a process for a shared application. */
+  @FunctionalInterface
+  interface Launcher {
+    List<String> launch() throws MojoExecutionException;
+  }
+
+  static final class SharedApplication {
+    private ProcessHandler processHandler;
+    private List<String> listenUrls;
+    private String startedBy;
+    private MojoExecutionException failure;
+
+    /**
+     * Starts the application using the given handler and launcher, if it has not been started yet.
+     * Concurrent callers wait for the first one to start the application.
+     *
+     * @return the handler of the shared application
+     */
+    synchronized ProcessHandler start(
+        ProcessHandler processHandler, Launcher launcher, String user, Log log)
+        throws MojoExecutionException {
+      if (failure != null) {
+        throw new MojoExecutionException(
+            String.format("Shared Quarkus application started by %s failed to start", startedBy),
+            failure);
+      }
+      if (this.processHandler == null) {
+        startedBy = user;
+        try {
+          listenUrls = launcher.launch();
+        } catch (MojoExecutionException e) {
+          failure = e;
+          throw e;
+        }
+        this.processHandler = processHandler;
+      } else {
+        log.info(String.format("Using the shared Quarkus application started by %s", startedBy));
+      }
+      return this.processHandler;
+    }
+
+    synchronized List<String> getListenUrls() {
+      return listenUrls;
+    }
+
+    synchronized List<String> stop(Log log) {
+      if (processHandler == null) {
+        return Collections.emptyList();
+      }
+      processHandler.stop();
+      log.info(String.format("Shared Quarkus application started by %s stopped.", startedBy));
+      ResourceUsage usage = processHandler.getResourceUsage();
+      if (usage != null) {
+        log.info(String.format("Resource usage: %s", usage));
+      }
+      FlightRecording recording = processHandler.getFlightRecording();
+      if (recording != null) {
+        log.info(recording.report(processHandler.getTimings()));
+      }
+      List<String> violations = processHandler.getResourceLimitViolations();
+      processHandler = null;
+      return violations;
+    }
+  }
+}
@@ -16,6 +16,7 @@
 package org.projectnessie.nessierunner.maven;
 
 import static com.soebes.itf.extension.assertj.MavenITAssertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 
 import com.soebes.itf.jupiter.extension.MavenCLIOptions;
 import com.soebes.itf.jupiter.extension.MavenGoal;
@@ -24,6 +25,7 @@ import com.soebes.itf.jupiter.extension.MavenOption;
 import com.soebes.itf.jupiter.extension.MavenRepository;
 import com.soebes.itf.jupiter.extension.MavenTest;
 import com.soebes.itf.jupiter.maven.MavenExecutionResult;
+import java.nio.file.Path;
 
 @MavenJupiterExtension
 @MavenRepository
@@ -72,6 +74,81 @@ class ITNessieMavenPlugin {
         .anyMatch(s -> s.matches("Quarkus application stopped."));
   }
 
+  @MavenTest
+  @MavenGoal("verify")
+  @MavenOption(MavenCLIOptions.ERRORS)
+  void shareServer(MavenExecutionResult result) {
+    assertThat(result)
+        .isSuccessful()
+        .out()
+        .info()
+        .anyMatch(
+            s ->
+                s.matches(
+                    "Using the shared Quarkus application started by .*shareServer-module-a.*"))
+        .anyMatch(
+            s ->
+                s.matches(
+                    "Keeping shared Quarkus application\\(s\\) running for 1 pending stop execution\\(s\\)."))
+        .anyMatch(
+            s ->
+                s.matches(
+                    "Shared Quarkus application started by .*shareServer-module-a.* stopped."))
+        .filteredOn(s -> s.startsWith("Starting process: "))
+        .hasSize(1);
+
+    // The modules' working directories differ, the shared application runs in the session's one
+    Path projectDir = result.getMavenProjectResult().getTargetProjectDirectory();
+    assertThat(projectDir.resolve("target/nessie-quarkus-shared")).isDirectory();
+    assertThat(projectDir.resolve("module-a/target/nessie-quarkus")).doesNotExist();
+    assertThat(projectDir.resolve("module-b/target/nessie-quarkus")).doesNotExist();
+  }
+
+  @MavenTest
+  @MavenGoal("verify")
+  @MavenOption(MavenCLIOptions.ERRORS)
+  void shareServerStoppedAtSessionEnd(MavenExecutionResult result) {
+    assertThat(result)
+        .isSuccessful()
+        .out()
+        .info()
+        .containsSubsequence(
+            "Keeping shared Quarkus application(s) running for 1 pending stop execution(s).",
+            "BUILD SUCCESS",
+            "Shared Quarkus application started by org.projectnessie.it-test:"
+                + "nessie-apprunner-maven-it-shareServerStoppedAtSessionEnd-module-a:pom:0.42-SNAPSHOT"
+                + " stopped.");
+  }
+
+  @MavenTest
+  @MavenGoal("verify")
+  @MavenOption(MavenCLIOptions.ERRORS)
+  void shareServerStopSkipped(MavenExecutionResult result) {
+    assertThat(result)
+        .isSuccessful()
+        .out()
+        .info()
+        .containsSubsequence(
+            "Keeping shared Quarkus application(s) running for 1 pending stop execution(s).",
+            "BUILD SUCCESS",
+            "Shared Quarkus application started by org.projectnessie.it-test:"
+                + "nessie-apprunner-maven-it-shareServerStopSkipped-module-a:pom:0.42-SNAPSHOT"
+                + " stopped.");
+  }
+
+  @MavenTest
+  @MavenGoal("verify")
+  @MavenOption(MavenCLIOptions.ERRORS)
+  void startAsyncAwait(MavenExecutionResult result) {
+    assertThat(result)
+        .isSuccessful()
+        .out()
+        .info()
+        .anyMatch(s -> s.matches("Starting process: .*-jar .*startAsyncAwait-fake-server.*"))
+        .anyMatch(s -> s.matches(".*Server URL: http://.*:[0-9]+"))
+        .anyMatch(s -> s.matches("Quarkus application stopped."));
+  }
+
   @MavenTest
   @MavenGoal("verify")
   @MavenOption(MavenCLIOptions.ERRORS)
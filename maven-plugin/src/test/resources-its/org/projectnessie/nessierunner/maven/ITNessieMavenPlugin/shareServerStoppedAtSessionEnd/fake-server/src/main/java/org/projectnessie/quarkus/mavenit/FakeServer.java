@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectnessie.quarkus.mavenit;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/** Stands in for the Nessie server, emits the listen URL like Quarkus. */
+public class FakeServer {
+  public static void main(String[] args) throws Exception {
+    try (ServerSocket server = new ServerSocket(0)) {
+      System.out.println("Listening on: http://0.0.0.0:" + server.getLocalPort());
+      System.out.flush();
+      while (true) {
+        server.accept().close();
+      }
+    }
+  }
+}